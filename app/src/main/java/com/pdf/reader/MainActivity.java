@@ -6,9 +6,13 @@ import android.content.Intent;
 import android.net.Uri;
 import android.os.Build;
 import android.os.Bundle;
+import android.os.CancellationSignal;
+import android.print.PrintAttributes;
 import android.print.PrintManager;
 import android.provider.Settings;
+import android.view.View;
 import android.widget.Button;
+import android.widget.CheckBox;
 import android.widget.RadioButton;
 import android.widget.RadioGroup;
 import android.widget.TextView;
@@ -18,28 +22,58 @@ import androidx.activity.result.contract.ActivityResultContracts;
 import androidx.annotation.Nullable;
 import androidx.appcompat.app.AppCompatActivity;
 
+import com.pdf.reader.doc.DocumentFingerprint;
+import com.pdf.reader.doc.DocumentStaging;
+import com.pdf.reader.net.DirectPrintClient;
+import com.pdf.reader.net.PrinterDiagnostics;
+import com.pdf.reader.pdf.Imposition;
+import com.pdf.reader.print.BlankPageDetector;
+import com.pdf.reader.print.DirectPrintJob;
+import com.pdf.reader.print.ImposedPdfPrintAdapter;
+import com.pdf.reader.print.ManualDuplexJob;
 import com.pdf.reader.print.PdfPrintAdapter;
+import com.pdf.reader.print.PrintMetrics;
 import com.pdf.reader.print.SelectivePdfPrintAdapter;
 import com.pdf.reader.util.NetUtils;
-import com.pdf.reader.util.PrintServiceChecker;
 
-import java.util.List;
+import org.json.JSONException;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
 import java.util.Locale;
 import java.util.Map;
+import java.util.function.Consumer;
 
 public class MainActivity extends AppCompatActivity {
 
     private Button btnChoosePdf;
+    private Button btnRead;
     private Button btnPrintPdf;
+    private Button btnPrintBack;
     private Button btnPrintSettings;
     private Button btnWifiSettings;
     private Button btnSelfCheck;
+    private Button btnExportMetrics;
+    private Button btnDirectPrint;
     private TextView tvStatus;
     private TextView tvSelected;
     private RadioGroup rgPageMode;
     private RadioButton rbAll, rbOdd, rbEven;
+    private CheckBox cbSkipBlank;
+    private RadioGroup rgImposition;
+    private CheckBox cbRtl;
 
     private Uri selectedPdfUri;
+    // 选中文档在本机的副本；暂存完成前或失败时为 null，此时直接读源文件
+    private Uri stagedPdfUri;
+    private boolean staging;
+    // 暂存期间点了打印：拷贝结束后再开始
+    private Runnable afterStaging;
+    // 手动双面：正面打印后保留，翻面后打印背面
+    private ManualDuplexJob duplexJob;
+    // 进行中的直连打印，再点一次按钮即取消
+    private CancellationSignal directPrint;
 
     private final ActivityResultLauncher<String[]> permissionLauncher =
             registerForActivityResult(new ActivityResultContracts.RequestMultiplePermissions(), result -> {
@@ -50,6 +84,14 @@ public class MainActivity extends AppCompatActivity {
                 }
             });
 
+    // 每个打印任务结束后在状态区给出分阶段耗时
+    private final Consumer<PrintMetrics.Job> metricsListener = job -> appendStatus(job.summary());
+
+    private final ActivityResultLauncher<String> exportMetricsLauncher =
+            registerForActivityResult(new ActivityResultContracts.CreateDocument("application/json"), uri -> {
+                if (uri != null) exportMetrics(uri);
+            });
+
     private final ActivityResultLauncher<Intent> pickPdfLauncher =
             registerForActivityResult(new ActivityResultContracts.StartActivityForResult(), activityResult -> {
                 if (activityResult.getResultCode() == RESULT_OK && activityResult.getData() != null) {
@@ -59,7 +101,9 @@ public class MainActivity extends AppCompatActivity {
                                 & (Intent.FLAG_GRANT_READ_URI_PERMISSION | Intent.FLAG_GRANT_PERSISTABLE_URI_PERMISSION);
                         try { getContentResolver().takePersistableUriPermission(uri, takeFlags); } catch (Exception ignored) {}
                         selectedPdfUri = uri;
+                        releaseDuplexJob();
                         tvSelected.setText("已选择文件: " + uri.toString());
+                        stage(uri);
                         btnPrintPdf.setEnabled(true);
                         tvStatus.setText("状态: 已选择 PDF");
                     }
@@ -72,16 +116,23 @@ public class MainActivity extends AppCompatActivity {
         setContentView(R.layout.activity_main);
 
         btnChoosePdf = findViewById(R.id.btnChoosePdf);
+        btnRead = findViewById(R.id.btnRead);
         btnPrintPdf = findViewById(R.id.btnPrintPdf);
+        btnPrintBack = findViewById(R.id.btnPrintBack);
         btnPrintSettings = findViewById(R.id.btnPrintSettings);
         btnWifiSettings = findViewById(R.id.btnWifiSettings);
         btnSelfCheck = findViewById(R.id.btnSelfCheck);
+        btnExportMetrics = findViewById(R.id.btnExportMetrics);
+        btnDirectPrint = findViewById(R.id.btnDirectPrint);
         tvStatus = findViewById(R.id.tvStatus);
         tvSelected = findViewById(R.id.tvSelected);
         rgPageMode = findViewById(R.id.rgPageMode);
         rbAll = findViewById(R.id.rbAll);
         rbOdd = findViewById(R.id.rbOdd);
         rbEven = findViewById(R.id.rbEven);
+        cbSkipBlank = findViewById(R.id.cbSkipBlank);
+        rgImposition = findViewById(R.id.rgImposition);
+        cbRtl = findViewById(R.id.cbRtl);
 
         btnChoosePdf.setOnClickListener(v -> {
             Intent intent = new Intent(Intent.ACTION_OPEN_DOCUMENT);
@@ -90,19 +141,39 @@ public class MainActivity extends AppCompatActivity {
             pickPdfLauncher.launch(intent);
         });
 
+        btnRead.setOnClickListener(v -> {
+            if (selectedPdfUri == null) {
+                tvStatus.setText("状态: 请先选择 PDF 文件");
+                return;
+            }
+            whenStaged(this::openReader, "正在把文档缓存到本机，完成后自动打开…");
+        });
+
         btnPrintPdf.setOnClickListener(v -> {
             if (selectedPdfUri == null) {
                 tvStatus.setText("状态: 请先选择 PDF 文件");
                 return;
             }
-            int checkedId = rgPageMode.getCheckedRadioButtonId();
-            if (checkedId == R.id.rbAll) {
-                printAll(selectedPdfUri);
-            } else if (checkedId == R.id.rbOdd) {
-                printSelective(selectedPdfUri, SelectivePdfPrintAdapter.Mode.ODD);
-            } else if (checkedId == R.id.rbEven) {
-                printSelective(selectedPdfUri, SelectivePdfPrintAdapter.Mode.EVEN);
+            whenStaged(this::printSelected);
+        });
+
+        btnPrintBack.setOnClickListener(v -> printDuplexBack());
+
+        btnDirectPrint.setOnClickListener(v -> {
+            if (directPrint != null) {
+                directPrint.cancel();
+                return;
+            }
+            if (selectedPdfUri == null) {
+                tvStatus.setText("状态: 请先选择 PDF 文件");
+                return;
             }
+            whenStaged(() -> printDirect(printSource()));
+        });
+
+        cbSkipBlank.setOnCheckedChangeListener((b, checked) -> {
+            // 暂存中时由暂存完成的回调分析
+            if (checked && selectedPdfUri != null && !staging) reportBlankPages(printSource());
         });
 
         btnPrintSettings.setOnClickListener(v -> {
@@ -131,10 +202,103 @@ public class MainActivity extends AppCompatActivity {
             }
         });
 
+        btnExportMetrics.setOnClickListener(v -> {
+            if (PrintMetrics.getInstance().getRecentJobs().isEmpty()) {
+                appendStatus("还没有打印记录。");
+                return;
+            }
+            exportMetricsLauncher.launch("print-metrics-" + System.currentTimeMillis() + ".json");
+        });
+
+        PrintMetrics.getInstance().addListener(metricsListener);
+
         btnPrintPdf.setEnabled(false);
         tvStatus.setText("状态: 就绪");
     }
 
+    @Override
+    protected void onDestroy() {
+        PrintMetrics.getInstance().removeListener(metricsListener);
+        super.onDestroy();
+    }
+
+    // 先把文档拷到本机，指纹、空白页分析与打印都读本地副本，云盘上的文件只下载一次
+    private void stage(Uri uri) {
+        stagedPdfUri = null;
+        staging = true;
+        afterStaging = null;
+        DocumentStaging.get(this).stageAsync(getContentResolver(), uri, staged -> {
+            if (!uri.equals(selectedPdfUri)) return;
+            stagedPdfUri = staged;
+            staging = false;
+            identify(printSource());
+            if (cbSkipBlank.isChecked()) reportBlankPages(printSource());
+            Runnable next = afterStaging;
+            afterStaging = null;
+            if (next != null) next.run();
+        });
+    }
+
+    private Uri printSource() {
+        return stagedPdfUri != null ? stagedPdfUri : selectedPdfUri;
+    }
+
+    private void whenStaged(Runnable action) {
+        whenStaged(action, "正在把文档缓存到本机，完成后自动开始打印…");
+    }
+
+    private void whenStaged(Runnable action, String waiting) {
+        if (!staging) {
+            action.run();
+            return;
+        }
+        afterStaging = action;
+        appendStatus(waiting);
+    }
+
+    // 阅读器基于 PdfRenderer，需要可定位的文件，打开本地副本
+    private void openReader() {
+        startActivity(new Intent(this, ReaderActivity.class)
+                .putExtra(ReaderActivity.EXTRA_URI, printSource().toString())
+                .putExtra(ReaderActivity.EXTRA_RTL, cbRtl.isChecked()));
+    }
+
+    // 快速指纹毫秒级即可返回，随后在后台继续做全量哈希
+    private void identify(Uri uri) {
+        DocumentFingerprint.getInstance().identifyAsync(getContentResolver(), uri, true, id -> {
+            if (id == null || !uri.equals(printSource())) return;
+            tvSelected.setText("已选择文件: " + selectedPdfUri + "\n文档 ID: " + id.substring(0, 12));
+        });
+    }
+
+    private void printSelected() {
+        Uri uri = printSource();
+        // 拼版作用于整本文档，优先于页码选项
+        int impositionId = rgImposition.getCheckedRadioButtonId();
+        if (impositionId == R.id.rb2Up) {
+            printImposed(uri, Imposition.Layout.TWO_UP);
+            return;
+        } else if (impositionId == R.id.rb4Up) {
+            printImposed(uri, Imposition.Layout.FOUR_UP);
+            return;
+        } else if (impositionId == R.id.rbBooklet) {
+            printImposed(uri, Imposition.Layout.BOOKLET);
+            return;
+        }
+        int checkedId = rgPageMode.getCheckedRadioButtonId();
+        if (checkedId == R.id.rbAll && cbSkipBlank.isChecked()) {
+            printSelective(uri, SelectivePdfPrintAdapter.Mode.ALL);
+        } else if (checkedId == R.id.rbAll) {
+            printAll(uri);
+        } else if (checkedId == R.id.rbOdd) {
+            printSelective(uri, SelectivePdfPrintAdapter.Mode.ODD);
+        } else if (checkedId == R.id.rbEven) {
+            printSelective(uri, SelectivePdfPrintAdapter.Mode.EVEN);
+        } else if (checkedId == R.id.rbDuplex) {
+            printDuplexFront(uri);
+        }
+    }
+
     private void printAll(Uri uri) {
         try {
             ContentResolver resolver = getContentResolver();
@@ -149,40 +313,174 @@ public class MainActivity extends AppCompatActivity {
 
     private void printSelective(Uri uri, SelectivePdfPrintAdapter.Mode mode) {
         try {
-            String jobName = mode == SelectivePdfPrintAdapter.Mode.ODD ? "打印PDF（仅奇数页）" : "打印PDF（仅偶数页）";
+            String jobName = mode == SelectivePdfPrintAdapter.Mode.ODD ? "打印PDF（仅奇数页）"
+                    : mode == SelectivePdfPrintAdapter.Mode.EVEN ? "打印PDF（仅偶数页）" : "打印PDF（全部）";
             PrintManager printManager = (PrintManager) getSystemService(PRINT_SERVICE);
             SelectivePdfPrintAdapter adapter = new SelectivePdfPrintAdapter(this, uri, jobName, mode);
+            adapter.setSkipBlankPages(cbSkipBlank.isChecked());
             printManager.print(jobName, adapter, null);
         } catch (Exception e) {
             appendStatus("启动打印失败 - " + e.getMessage());
         }
     }
 
+    private void printImposed(Uri uri, Imposition.Layout layout) {
+        try {
+            String jobName = layout == Imposition.Layout.TWO_UP ? "打印PDF（2 合 1）"
+                    : layout == Imposition.Layout.FOUR_UP ? "打印PDF（4 合 1）" : "打印PDF（小册子）";
+            Imposition.Binding binding = cbRtl.isChecked() ? Imposition.Binding.RIGHT : Imposition.Binding.LEFT;
+            PrintManager printManager = (PrintManager) getSystemService(PRINT_SERVICE);
+            ImposedPdfPrintAdapter adapter = new ImposedPdfPrintAdapter(this, uri, jobName, layout, binding);
+            // 小册子需短边翻转双面；打印机不支持时对话框里仍可改为单面
+            PrintAttributes attrs = layout == Imposition.Layout.BOOKLET
+                    ? new PrintAttributes.Builder().setDuplexMode(PrintAttributes.DUPLEX_MODE_SHORT_EDGE).build()
+                    : null;
+            printManager.print(jobName, adapter, attrs);
+        } catch (Exception e) {
+            appendStatus("启动打印失败 - " + e.getMessage());
+        }
+    }
+
+    // 绕过打印服务插件，边生成边发给热点上的打印机；页码模式与跳过空白页同样生效，拼版与双面不适用
+    private void printDirect(Uri uri) {
+        DirectPrintClient client = DirectPrintClient.forWifiGateway(this);
+        if (client == null) {
+            appendStatus("未连接 Wi‑Fi，请先连接打印机热点（DIRECT‑xx‑EPSON）。");
+            return;
+        }
+        int checkedId = rgPageMode.getCheckedRadioButtonId();
+        SelectivePdfPrintAdapter.Mode mode = checkedId == R.id.rbOdd ? SelectivePdfPrintAdapter.Mode.ODD
+                : checkedId == R.id.rbEven ? SelectivePdfPrintAdapter.Mode.EVEN : SelectivePdfPrintAdapter.Mode.ALL;
+        String jobName = "打印PDF（直连）";
+        SelectivePdfPrintAdapter source = new SelectivePdfPrintAdapter(this, uri, jobName, mode);
+        source.setSkipBlankPages(cbSkipBlank.isChecked());
+        appendStatus("正在直连 " + client.getHost() + " 打印…");
+        btnDirectPrint.setText("取消直连打印");
+        directPrint = DirectPrintJob.start(source, client, jobName, new DirectPrintJob.Listener() {
+            @Override
+            public void onProgress(long bytesSent) {
+                btnDirectPrint.setText(String.format(Locale.CHINA, "取消直连打印（已发送 %.1f MB）",
+                        bytesSent / 1048576.0));
+            }
+
+            @Override
+            public void onFinished(String error) {
+                directPrint = null;
+                btnDirectPrint.setText("直连打印（不经插件，需已连接打印机热点）");
+                appendStatus(error == null ? "直连打印已发送完毕。" : error);
+            }
+        });
+    }
+
+    // 打印前在后台分析并列出空白页；结果按文档缓存，随后的打印直接复用
+    private void reportBlankPages(Uri uri) {
+        BlankPageDetector.getInstance().analyzeAsync(getContentResolver(), uri, result -> {
+            if (result == null || !uri.equals(printSource())) return;
+            int[] blank = result.blankPages(BlankPageDetector.DEFAULT_THRESHOLD);
+            if (blank.length == 0) {
+                appendStatus("未检测到空白页。");
+                return;
+            }
+            StringBuilder sb = new StringBuilder("检测到 ").append(blank.length).append(" 张空白页，打印时将跳过：第 ");
+            for (int i = 0; i < blank.length && i < 20; i++) sb.append(i > 0 ? "、" : "").append(blank[i] + 1);
+            sb.append(blank.length > 20 ? " 等页" : " 页");
+            appendStatus(sb.toString());
+        });
+    }
+
+    // 一次生成正反两面的假脱机文件，正面立即打印
+    private void printDuplexFront(Uri uri) {
+        try {
+            releaseDuplexJob();
+            duplexJob = new ManualDuplexJob(this, uri);
+            String jobName = "打印PDF（双面·正面）";
+            PrintManager printManager = (PrintManager) getSystemService(PRINT_SERVICE);
+            printManager.print(jobName, duplexJob.adapter(ManualDuplexJob.Side.FRONT, jobName), null);
+            btnPrintBack.setVisibility(View.VISIBLE);
+            appendStatus("正面打印完成后，将整叠纸翻面放回纸盒，再点“翻面后打印背面”。");
+        } catch (Exception e) {
+            appendStatus("启动打印失败 - " + e.getMessage());
+        }
+    }
+
+    private void printDuplexBack() {
+        if (duplexJob == null) return;
+        try {
+            if (duplexJob.hasUnpairedLastSheet()) {
+                appendStatus("总页数为奇数：最后一张正面没有背面，放回纸盒前请先取出。");
+            }
+            String jobName = "打印PDF（双面·背面）";
+            PrintManager printManager = (PrintManager) getSystemService(PRINT_SERVICE);
+            printManager.print(jobName, duplexJob.adapter(ManualDuplexJob.Side.BACK, jobName), null);
+        } catch (Exception e) {
+            appendStatus("启动打印失败 - " + e.getMessage());
+        }
+    }
+
+    private void releaseDuplexJob() {
+        if (duplexJob != null) duplexJob.release();
+        duplexJob = null;
+        btnPrintBack.setVisibility(View.GONE);
+    }
+
+    // 最近 20 个任务的全部记录，供不同机型、不同路径之间离线对比
+    private void exportMetrics(Uri uri) {
+        try (OutputStream out = getContentResolver().openOutputStream(uri)) {
+            if (out == null) throw new IOException("无法写入所选位置");
+            out.write(PrintMetrics.getInstance().toJson().getBytes(StandardCharsets.UTF_8));
+            appendStatus("已导出 " + PrintMetrics.getInstance().getRecentJobs().size() + " 个打印任务的性能记录。");
+        } catch (IOException | JSONException e) {
+            appendStatus("导出失败 - " + e.getMessage());
+        }
+    }
+
     private void doSelfCheck() {
-        StringBuilder sb = new StringBuilder();
-        // 1) SSID 检测（是否连到打印机热点）
         String ssid = NetUtils.getCurrentSsid(this);
+        appendStatus("正在自检…");
+        // 探测在后台并行执行，同一网络上的重复自检直接取缓存
+        PrinterDiagnostics.get(this).runAsync(ssid, false, report -> appendStatus(formatSelfCheck(report)));
+    }
+
+    private static String formatSelfCheck(PrinterDiagnostics.Report report) {
+        StringBuilder sb = new StringBuilder();
+        // 1) SSID 与打印机可达性
+        String ssid = report.ssid;
         if (ssid == null) {
-            sb.append("• 当前未能获取 SSID，请确认已授予定位权限且开启定位开关；建议在 Wi‑Fi 设置连接到打印机热点（通常以 DIRECT‑ 开头）。\n");
+            sb.append("• 当前未能获取 SSID，请确认已授予定位权限且开启定位开关。\n");
         } else {
             sb.append(String.format(Locale.CHINA, "• 当前已连接: %s\n", ssid));
-            if (!(ssid.toLowerCase(Locale.ROOT).contains("epson") ||
-                    ssid.toLowerCase(Locale.ROOT).contains("l8058") ||
-                    ssid.toLowerCase(Locale.ROOT).startsWith("direct-"))) {
-                sb.append("  建议连接到打印机热点（DIRECT‑xx‑EPSON/L8058）或将打印机加入同一路由网络。\n");
+        }
+        if (report.isPrinterReachable()) {
+            sb.append("• 已在当前网络找到打印机");
+            for (PrinterDiagnostics.Printer p : report.printers) {
+                sb.append("\n  ").append(p.name);
+                if (p.host != null) sb.append("（").append(p.host).append(':').append(p.port).append("）");
             }
+            sb.append("\n");
+        } else {
+            sb.append("• 当前网络上未发现打印机。建议连接到打印机热点（DIRECT‑xx‑EPSON/L8058）或将打印机加入同一路由网络。\n");
         }
 
         // 2) 打印服务检测（是否安装/启用）
-        List<String> services = PrintServiceChecker.listInstalledPrintServices(this);
-        if (services.isEmpty()) {
+        if (report.printServices.isEmpty()) {
             sb.append("• 未检测到已安装的打印服务。请安装并启用：华为打印服务插件 / Mopria Print Service / Epson Print Enabler。\n");
         } else {
-            sb.append("• 已检测到打印服务: ").append(services).append("\n");
+            sb.append("• 已检测到打印服务: ").append(report.printServices).append("\n");
             sb.append("  如仍显示“该打印机目前无法使用”，请在“打印设置”中确保服务已启用。\n");
         }
 
-        appendStatus(sb.toString());
+        // 3) 各项探测耗时
+        sb.append(String.format(Locale.CHINA, "• 探测明细（共 %d ms）：\n", report.totalMs));
+        for (PrinterDiagnostics.Probe p : report.probes) {
+            sb.append(String.format(Locale.CHINA, "  %s：%s，%d ms", p.name,
+                    p.ok ? "正常" : p.timedOut ? "超时" : "未通过", p.elapsedMs));
+            if (p.detail != null && !p.timedOut) sb.append("（").append(p.detail).append("）");
+            sb.append("\n");
+        }
+        if (report.cached) {
+            sb.append(String.format(Locale.CHINA, "  （%d 秒前的结果，网络未变化）\n", report.ageMs / 1000));
+        }
+        return sb.toString();
     }
 
     private boolean areLocationPermissionsGranted(Map<String, Boolean> result) {
@@ -0,0 +1,88 @@
+package com.pdf.reader;
+
+import android.net.Uri;
+import android.os.Bundle;
+import android.view.View;
+import android.widget.CheckBox;
+import android.widget.RadioGroup;
+import android.widget.TextView;
+import android.widget.Toast;
+
+import androidx.annotation.Nullable;
+import androidx.appcompat.app.AppCompatActivity;
+
+import com.pdf.reader.doc.DocumentStaging;
+import com.pdf.reader.view.PdfReaderView;
+
+import java.util.Locale;
+
+/** 阅读界面：打开 {@link #EXTRA_URI} 指向的文档（通常是暂存后的本地副本）。 */
+public class ReaderActivity extends AppCompatActivity {
+
+    /** 文档 URI（字符串）。 */
+    public static final String EXTRA_URI = "com.pdf.reader.extra.URI";
+    /** 是否从右往左翻页。 */
+    public static final String EXTRA_RTL = "com.pdf.reader.extra.RTL";
+
+    private PdfReaderView readerView;
+    private View readerBar;
+    private TextView tvPage;
+    // 阅读期间翻页随时重新读取，暂存副本不能被淘汰
+    private Uri docUri;
+
+    @Override
+    protected void onCreate(@Nullable Bundle savedInstanceState) {
+        super.onCreate(savedInstanceState);
+        setContentView(R.layout.activity_reader);
+
+        readerView = findViewById(R.id.readerView);
+        readerBar = findViewById(R.id.readerBar);
+        tvPage = findViewById(R.id.tvPage);
+        RadioGroup rgReaderLayout = findViewById(R.id.rgReaderLayout);
+        CheckBox cbReaderRtl = findViewById(R.id.cbReaderRtl);
+
+        boolean rtl = getIntent().getBooleanExtra(EXTRA_RTL, false);
+        cbReaderRtl.setChecked(rtl);
+        readerView.setRightToLeft(rtl);
+        cbReaderRtl.setOnCheckedChangeListener((b, checked) -> readerView.setRightToLeft(checked));
+
+        rgReaderLayout.setOnCheckedChangeListener((group, id) -> {
+            if (id == R.id.rbDouble) readerView.setLayout(PdfReaderView.Layout.DOUBLE);
+            else if (id == R.id.rbHalf) readerView.setLayout(PdfReaderView.Layout.HALF);
+            else readerView.setLayout(PdfReaderView.Layout.SINGLE);
+        });
+
+        readerView.setOnPageChangeListener((first, last, count) -> tvPage.setText(first == last
+                ? String.format(Locale.CHINA, "第 %d / %d 页", first + 1, count)
+                : String.format(Locale.CHINA, "第 %d–%d / %d 页", first + 1, last + 1, count)));
+        readerView.setOnCenterTapListener(() ->
+                readerBar.setVisibility(readerBar.getVisibility() == View.VISIBLE ? View.GONE : View.VISIBLE));
+
+        String uri = getIntent().getStringExtra(EXTRA_URI);
+        if (uri == null) {
+            finish();
+            return;
+        }
+        docUri = Uri.parse(uri);
+        DocumentStaging.get(this).retain(docUri);
+        readerView.open(getContentResolver(), docUri, count -> {
+            if (count <= 0) {
+                Toast.makeText(this, "无法打开该 PDF", Toast.LENGTH_LONG).show();
+                finish();
+            }
+        });
+    }
+
+    @Override
+    public void onTrimMemory(int level) {
+        super.onTrimMemory(level);
+        readerView.onTrimMemory(level);
+    }
+
+    @Override
+    protected void onDestroy() {
+        readerView.close();
+        if (docUri != null) DocumentStaging.get(this).release(docUri);
+        super.onDestroy();
+    }
+}
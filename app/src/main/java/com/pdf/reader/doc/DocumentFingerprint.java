@@ -0,0 +1,191 @@
+package com.pdf.reader.doc;
+
+import android.content.ContentResolver;
+import android.net.Uri;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.ParcelFileDescriptor;
+import android.os.SystemClock;
+import android.util.Log;
+import android.util.LruCache;
+
+import com.pdf.reader.util.BackgroundExecutors;
+
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.function.Consumer;
+
+/**
+ * 文档内容指纹，与 URI 无关：同一本书经不同提供方/路径打开得到相同 ID，同一 URI 内容变了 ID 随之改变。
+ * <p>
+ * 快速 ID = SHA-1（文件大小 + 开头 64KB + 末尾 64KB（trailer / xref，增量修改必改写此处）
+ * + 均匀分布的 16 个 4KB 采样块），经 FileChannel 定位读取，总读入量固定约 192KB，1GB 文件也只需毫秒级。
+ * 结果按 URI 缓存，并以文件大小 + 修改时间校验。
+ * <p>
+ * 需要严格判定时可在后台对整个文件做 SHA-256（{@link #identifyAsync}），完成后由 {@link #getFullHash} 取得。
+ */
+public final class DocumentFingerprint {
+
+    private static final String TAG = "DocFingerprint";
+    private static final int EDGE_BYTES = 64 * 1024;
+    private static final int SAMPLE_BYTES = 4 * 1024;
+    private static final int SAMPLES = 16;
+    private static final int STREAM_BUFFER = 1024 * 1024;
+
+    private static final DocumentFingerprint INSTANCE = new DocumentFingerprint();
+
+    public static DocumentFingerprint getInstance() {
+        return INSTANCE;
+    }
+
+    private static final class Entry {
+        final long size;
+        final long lastModified;
+        final String id;
+        volatile String fullHash;
+
+        Entry(long size, long lastModified, String id) {
+            this.size = size;
+            this.lastModified = lastModified;
+            this.id = id;
+        }
+    }
+
+    // 全量哈希按文件大小耗时可达数秒，单线程、后台优先级，空闲后线程退出
+    private static final ThreadPoolExecutor EXECUTOR = BackgroundExecutors.serial("doc-fingerprint");
+
+    private final LruCache<String, Entry> cache = new LruCache<>(32);
+    private final Handler main = new Handler(Looper.getMainLooper());
+
+    private DocumentFingerprint() {}
+
+    /** 取文档的快速 ID（40 位十六进制）；URI 未变化且文件大小、修改时间一致时直接返回缓存值。 */
+    public String getId(ContentResolver resolver, Uri uri) throws IOException {
+        return entry(resolver, uri).id;
+    }
+
+    /** 已完成的全量 SHA-256；尚未计算或文件已变化时返回 null。 */
+    public String getFullHash(ContentResolver resolver, Uri uri) {
+        Entry e = cache.get(uri.toString());
+        if (e == null || e.fullHash == null) return null;
+        long[] stat = DocumentMetadataCache.stat(resolver, uri);
+        return stat != null && stat[0] == e.size && stat[1] == e.lastModified ? e.fullHash : null;
+    }
+
+    /**
+     * 在后台计算快速 ID 并在主线程回调（失败时回调 null）；fullHash 为 true 时随后继续计算全量哈希。
+     */
+    public void identifyAsync(ContentResolver resolver, Uri uri, boolean fullHash, Consumer<String> onId) {
+        EXECUTOR.execute(() -> {
+            Entry e;
+            try {
+                e = entry(resolver, uri);
+            } catch (IOException | RuntimeException ex) {
+                Log.w(TAG, "计算文档指纹失败: " + ex.getMessage());
+                main.post(() -> onId.accept(null));
+                return;
+            }
+            main.post(() -> onId.accept(e.id));
+            if (fullHash && e.fullHash == null) {
+                long start = SystemClock.elapsedRealtime();
+                try {
+                    e.fullHash = streamHash(resolver, uri);
+                    Log.d(TAG, "全量哈希 " + e.size + " 字节，用时 " + (SystemClock.elapsedRealtime() - start) + " ms");
+                } catch (IOException | RuntimeException ex) {
+                    Log.w(TAG, "全量哈希失败: " + ex.getMessage());
+                }
+            }
+        });
+    }
+
+    private Entry entry(ContentResolver resolver, Uri uri) throws IOException {
+        String key = uri.toString();
+        long[] stat = DocumentMetadataCache.stat(resolver, uri);
+        Entry e = cache.get(key);
+        if (e != null && stat != null && e.size == stat[0] && e.lastModified == stat[1]) return e;
+        long start = SystemClock.elapsedRealtime();
+        String id = quickHash(resolver, uri);
+        // 提供方给不出大小时不缓存，每次重新计算（只读约 192KB）
+        e = new Entry(stat != null ? stat[0] : -1, stat != null ? stat[1] : -1, id);
+        if (stat != null) cache.put(key, e);
+        else cache.remove(key);
+        Log.d(TAG, "快速指纹用时 " + (SystemClock.elapsedRealtime() - start) + " ms");
+        return e;
+    }
+
+    private static String quickHash(ContentResolver resolver, Uri uri) throws IOException {
+        try (ParcelFileDescriptor pfd = open(resolver, uri);
+             FileInputStream in = new FileInputStream(pfd.getFileDescriptor());
+             FileChannel ch = in.getChannel()) {
+            long size = ch.size();
+            if (size <= 0) throw new IOException("文件为空或不可定位");
+            MessageDigest md = digest("SHA-1");
+            md.update(ByteBuffer.allocate(8).putLong(0, size));
+            ByteBuffer buf = ByteBuffer.allocate(EDGE_BYTES);
+            update(md, ch, buf, 0, EDGE_BYTES, size);
+            update(md, ch, buf, size - EDGE_BYTES, EDGE_BYTES, size);
+            // 采样块均匀分布在开头与末尾之间；小文件时与两端重叠，不影响稳定性
+            for (int i = 0; i < SAMPLES; i++) {
+                update(md, ch, buf, (size - SAMPLE_BYTES) * i / (SAMPLES - 1), SAMPLE_BYTES, size);
+            }
+            return hex(md.digest());
+        }
+    }
+
+    private static String streamHash(ContentResolver resolver, Uri uri) throws IOException {
+        try (ParcelFileDescriptor pfd = open(resolver, uri);
+             FileInputStream in = new FileInputStream(pfd.getFileDescriptor());
+             FileChannel ch = in.getChannel()) {
+            MessageDigest md = digest("SHA-256");
+            ByteBuffer buf = ByteBuffer.allocateDirect(STREAM_BUFFER);
+            long pos = 0;
+            int n;
+            while ((n = ch.read(buf, pos)) >= 0) {
+                pos += n;
+                buf.flip();
+                md.update(buf);
+                buf.clear();
+            }
+            return hex(md.digest());
+        }
+    }
+
+    private static ParcelFileDescriptor open(ContentResolver resolver, Uri uri) throws IOException {
+        ParcelFileDescriptor pfd = resolver.openFileDescriptor(uri, "r");
+        if (pfd == null) throw new IOException("无法打开 PDF");
+        return pfd;
+    }
+
+    // 读取 [position, position+length) 与文件的交集并计入摘要
+    private static void update(MessageDigest md, FileChannel ch, ByteBuffer buf,
+                               long position, int length, long size) throws IOException {
+        position = Math.max(0, position);
+        buf.clear();
+        buf.limit((int) Math.min(length, size - position));
+        while (buf.hasRemaining()) {
+            int n = ch.read(buf, position + buf.position());
+            if (n < 0) throw new IOException("文件被截断");
+        }
+        buf.flip();
+        md.update(buf);
+    }
+
+    private static MessageDigest digest(String algorithm) {
+        try {
+            return MessageDigest.getInstance(algorithm);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static String hex(byte[] b) {
+        StringBuilder sb = new StringBuilder(b.length * 2);
+        for (byte x : b) sb.append(Character.forDigit((x >> 4) & 15, 16)).append(Character.forDigit(x & 15, 16));
+        return sb.toString();
+    }
+}
@@ -0,0 +1,33 @@
+package com.pdf.reader.doc;
+
+import com.pdf.reader.pdf.PdfPageIndex;
+
+import java.io.IOException;
+
+/**
+ * 文档级元数据：页数与各页尺寸（point，按 CropBox 与 /Rotate 计算）。
+ * 尺寸由惰性页面索引按需读取，只解析被访问到的页面；
+ * 源文件无法解析结构时只有页数，{@link #hasPageSizes()} 为 false。
+ */
+public final class DocumentMetadata {
+
+    public final int pageCount;
+    private final PdfPageIndex index; // null 表示尺寸未知
+
+    DocumentMetadata(int pageCount, PdfPageIndex index) {
+        this.pageCount = pageCount;
+        this.index = index;
+    }
+
+    public boolean hasPageSizes() {
+        return index != null;
+    }
+
+    public float getPageWidth(int page) throws IOException {
+        return index.getPage(page).getWidth();
+    }
+
+    public float getPageHeight(int page) throws IOException {
+        return index.getPage(page).getHeight();
+    }
+}
@@ -0,0 +1,160 @@
+package com.pdf.reader.doc;
+
+import android.content.ContentResolver;
+import android.database.Cursor;
+import android.graphics.pdf.PdfRenderer;
+import android.net.Uri;
+import android.os.ParcelFileDescriptor;
+import android.provider.DocumentsContract;
+import android.provider.OpenableColumns;
+import android.util.Log;
+import android.util.LruCache;
+
+import com.pdf.reader.pdf.PdfFile;
+import com.pdf.reader.pdf.PdfPageIndex;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 文档元数据缓存，键为 URI，并以文件大小 + 最后修改时间校验是否仍然有效。
+ * 命中时只做一次轻量的元数据查询，不打开、不解析文件；打印对话框每次改纸张/颜色/方向触发的 onLayout
+ * 因而不再重复解析整本 PDF。
+ * <p>
+ * 页面尺寸由 {@link PdfPageIndex} 按需读取。提供方给不出文件大小时不缓存；给不出修改时间时只按大小校验。
+ */
+public final class DocumentMetadataCache {
+
+    private static final String TAG = "DocMetaCache";
+    // 每项持有源文件的只读映射与交叉引用表，数量不宜多
+    private static final int MAX_ENTRIES = 8;
+
+    private static final DocumentMetadataCache INSTANCE = new DocumentMetadataCache();
+
+    public static DocumentMetadataCache getInstance() {
+        return INSTANCE;
+    }
+
+    private static final class Entry {
+        final long size;
+        final long lastModified;
+        final DocumentMetadata meta;
+
+        Entry(long size, long lastModified, DocumentMetadata meta) {
+            this.size = size;
+            this.lastModified = lastModified;
+            this.meta = meta;
+        }
+    }
+
+    private final LruCache<String, Entry> cache = new LruCache<>(MAX_ENTRIES);
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong hitNanos = new AtomicLong();
+    private final AtomicLong missNanos = new AtomicLong();
+
+    private DocumentMetadataCache() {}
+
+    /** 取文档元数据；缓存未命中或文件已变化时重新解析。 */
+    public DocumentMetadata get(ContentResolver resolver, Uri uri) throws IOException {
+        long start = System.nanoTime();
+        String key = uri.toString();
+        long[] stat = stat(resolver, uri);
+        Entry e = cache.get(key);
+        if (e != null && stat != null && e.size == stat[0] && e.lastModified == stat[1]) {
+            hits.incrementAndGet();
+            hitNanos.addAndGet(System.nanoTime() - start);
+            return e.meta;
+        }
+        DocumentMetadata meta = load(resolver, uri);
+        if (stat != null) cache.put(key, new Entry(stat[0], stat[1], meta));
+        else cache.remove(key);
+        misses.incrementAndGet();
+        long nanos = System.nanoTime() - start;
+        missNanos.addAndGet(nanos);
+        Log.d(TAG, "解析 " + meta.pageCount + " 页，用时 " + nanos / 1_000_000 + " ms；" + getStats());
+        return meta;
+    }
+
+    /** 文档被修改或删除时主动失效。 */
+    public void invalidate(Uri uri) {
+        cache.remove(uri.toString());
+    }
+
+    public long getHitCount() {
+        return hits.get();
+    }
+
+    public long getMissCount() {
+        return misses.get();
+    }
+
+    public double getHitRate() {
+        long h = hits.get(), total = h + misses.get();
+        return total == 0 ? 0 : (double) h / total;
+    }
+
+    /** 命中时的平均查询耗时（微秒）。 */
+    public long getAverageHitMicros() {
+        long h = hits.get();
+        return h == 0 ? 0 : hitNanos.get() / h / 1000;
+    }
+
+    /** 未命中（含解析）时的平均耗时（微秒）。 */
+    public long getAverageMissMicros() {
+        long m = misses.get();
+        return m == 0 ? 0 : missNanos.get() / m / 1000;
+    }
+
+    public String getStats() {
+        return String.format(Locale.ROOT, "命中率 %.0f%%（%d/%d），命中 %d µs，未命中 %d µs",
+                getHitRate() * 100, hits.get(), hits.get() + misses.get(),
+                getAverageHitMicros(), getAverageMissMicros());
+    }
+
+    // 返回 {大小, 修改时间}；大小未知时返回 null（修改时间未知记为 -1）
+    static long[] stat(ContentResolver resolver, Uri uri) {
+        if ("file".equals(uri.getScheme())) {
+            File f = new File(uri.getPath());
+            return f.isFile() ? new long[]{f.length(), f.lastModified()} : null;
+        }
+        try (Cursor c = resolver.query(uri, null, null, null, null)) {
+            if (c == null || !c.moveToFirst()) return null;
+            int sizeCol = c.getColumnIndex(OpenableColumns.SIZE);
+            if (sizeCol < 0 || c.isNull(sizeCol)) return null;
+            int timeCol = c.getColumnIndex(DocumentsContract.Document.COLUMN_LAST_MODIFIED);
+            long time = (timeCol >= 0 && !c.isNull(timeCol)) ? c.getLong(timeCol) : -1;
+            return new long[]{c.getLong(sizeCol), time};
+        } catch (RuntimeException e) {
+            // 个别提供方不支持查询
+            return null;
+        }
+    }
+
+    private static DocumentMetadata load(ContentResolver resolver, Uri uri) throws IOException {
+        try (ParcelFileDescriptor pfd = resolver.openFileDescriptor(uri, "r")) {
+            if (pfd == null) throw new IOException("无法打开 PDF");
+            try (FileInputStream in = new FileInputStream(pfd.getFileDescriptor());
+                 FileChannel channel = in.getChannel()) {
+                return fromPdf(PdfFile.open(channel));
+            } catch (IOException | RuntimeException e) {
+                // 结构无法解析（含加密文档）时退回 PdfRenderer，只取页数
+                Log.w(TAG, "结构解析失败，改用 PdfRenderer 读取页数: " + e.getMessage());
+                try (PdfRenderer renderer = new PdfRenderer(pfd.dup())) {
+                    return new DocumentMetadata(renderer.getPageCount(), null);
+                }
+            }
+        }
+    }
+
+    private static DocumentMetadata fromPdf(PdfFile pdf) throws IOException {
+        // 页数取自页面树根的 /Count，不遍历页面；顺带定位末页，/Count 与实际不符时索引会就地改用全量遍历的结果
+        PdfPageIndex index = PdfPageIndex.open(pdf);
+        index.verify();
+        return new DocumentMetadata(index.getPageCount(), index);
+    }
+}
@@ -0,0 +1,272 @@
+package com.pdf.reader.doc;
+
+import android.content.ContentResolver;
+import android.content.Context;
+import android.net.Uri;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.ParcelFileDescriptor;
+import android.os.SystemClock;
+import android.util.Log;
+
+import com.pdf.reader.util.BackgroundExecutors;
+import com.pdf.reader.util.ChannelCopier;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.function.Consumer;
+
+/**
+ * 文档暂存：选中文件后立即在后台把它整份拷贝到 cacheDir/staged，之后的解析、渲染、打印都读本地副本。
+ * 云盘、SAF 提供方每次打开都可能重新下载，个别提供方只给不可定位的管道（PdfRenderer 无法使用）；
+ * 本地副本可定位、可只读映射，打印从本地磁盘的速度开始。
+ * <p>
+ * 副本以 file:// URI 交给调用方，ContentResolver 可直接打开，各打印路径不必区分来源。
+ * 副本按 URI + 文件大小 + 修改时间命名，源文件变化后自然换成新副本；提供方给不出大小时无法校验，每次都重新拷贝。
+ * 按总字节数做 LRU 淘汰，最近使用时间记在文件修改时间上，与 {@code PageDiskCache} 相同。
+ * 打印对话框与阅读器在整个生命周期内反复按 URI 重新打开副本，使用期间以 {@link #retain} / {@link #release}
+ * 计数，计数不为 0 的副本不会被淘汰。
+ * 新选择的文档优先：正在拷贝的旧文档随即放弃。
+ */
+public final class DocumentStaging {
+
+    private static final String TAG = "DocStaging";
+    private static final String DIR = "staged";
+    /** 默认容量：512MB，可容纳几本扫描版古籍。 */
+    static final long DEFAULT_MAX_BYTES = 512L * 1024 * 1024;
+    // 拷贝前预留的空间，不把存储写满
+    private static final long FREE_SPACE_RESERVE = 64L * 1024 * 1024;
+
+    private static DocumentStaging instance;
+
+    public static synchronized DocumentStaging get(Context context) {
+        if (instance == null) {
+            instance = new DocumentStaging(new File(context.getApplicationContext().getCacheDir(), DIR), DEFAULT_MAX_BYTES);
+        }
+        return instance;
+    }
+
+    // 拷贝受存储与网络带宽限制，并行无益：单线程、后台优先级，空闲后线程退出
+    private static final ThreadPoolExecutor EXECUTOR = BackgroundExecutors.serial("doc-staging");
+
+    private final File dir;
+    private final long maxBytes;
+    private final Handler main = new Handler(Looper.getMainLooper());
+    // 文件名 → 字节数，访问有序；null 表示尚未扫描目录（guarded by this）
+    private LinkedHashMap<String, Long> index;
+    private long totalBytes;
+    // 正在拷贝的 URI → 等待结果的回调（guarded by this）
+    private final Map<String, List<Consumer<Uri>>> pending = new HashMap<>();
+    // 文件名 → 使用者数（guarded by this）
+    private final Map<String, Integer> inUse = new HashMap<>();
+    private volatile String latest;
+
+    private DocumentStaging(File dir, long maxBytes) {
+        this.dir = dir;
+        this.maxBytes = maxBytes;
+    }
+
+    /**
+     * 在后台暂存 uri，完成后在主线程回调本地副本的 file:// URI；失败或被更新的请求取代时回调 null。
+     * 本来就是本地文件时直接回调原 URI。同一 URI 正在拷贝时等待同一次结果。
+     */
+    public void stageAsync(ContentResolver resolver, Uri uri, Consumer<Uri> onStaged) {
+        if ("file".equals(uri.getScheme())) {
+            main.post(() -> onStaged.accept(uri));
+            return;
+        }
+        String key = uri.toString();
+        latest = key;
+        synchronized (this) {
+            List<Consumer<Uri>> waiting = pending.get(key);
+            if (waiting != null) {
+                waiting.add(onStaged);
+                return;
+            }
+            waiting = new ArrayList<>();
+            waiting.add(onStaged);
+            pending.put(key, waiting);
+        }
+        EXECUTOR.execute(() -> {
+            Uri staged;
+            try {
+                staged = Uri.fromFile(stage(resolver, uri));
+            } catch (CancellationException e) {
+                Log.d(TAG, "已选择其他文档，放弃暂存 " + key);
+                staged = null;
+            } catch (IOException | RuntimeException e) {
+                Log.w(TAG, "暂存失败，改为直接读取源文件: " + e.getMessage());
+                staged = null;
+            }
+            List<Consumer<Uri>> callbacks;
+            synchronized (this) {
+                callbacks = pending.remove(key);
+            }
+            Uri result = staged;
+            main.post(() -> {
+                for (Consumer<Uri> c : callbacks) c.accept(result);
+            });
+        });
+    }
+
+    /** 副本开始被使用（打印对话框、阅读器），使用期间不会被淘汰。不是暂存副本的 URI 忽略。 */
+    public synchronized void retain(Uri uri) {
+        String name = stagedName(uri);
+        if (name != null) inUse.merge(name, 1, Integer::sum);
+    }
+
+    /** 与 {@link #retain} 成对调用。 */
+    public synchronized void release(Uri uri) {
+        String name = stagedName(uri);
+        if (name != null) inUse.computeIfPresent(name, (k, n) -> n > 1 ? n - 1 : null);
+    }
+
+    /** 清空全部副本（正在使用的除外）。 */
+    public synchronized void clear() {
+        File[] files = dir.listFiles();
+        if (files != null) {
+            for (File f : files) {
+                if (!inUse.containsKey(f.getName())) f.delete();
+            }
+        }
+        index = null;
+        ensureIndex();
+    }
+
+    public synchronized long sizeBytes() {
+        ensureIndex();
+        return totalBytes;
+    }
+
+    // 有效副本直接复用（刷新最近使用时间）；否则整份拷贝到临时文件，校验大小后改名
+    private File stage(ContentResolver resolver, Uri uri) throws IOException {
+        String key = uri.toString();
+        long[] stat = DocumentMetadataCache.stat(resolver, uri);
+        String name = fileName(stat != null ? key + ":" + stat[0] + ":" + stat[1] : key);
+        File f = new File(dir, name);
+        synchronized (this) {
+            if (stat != null && ensureIndex().get(name) != null && f.length() == stat[0]) {
+                f.setLastModified(System.currentTimeMillis());
+                return f;
+            }
+        }
+        if (!dir.isDirectory() && !dir.mkdirs()) throw new IOException("无法创建 " + dir);
+        if (stat != null && dir.getUsableSpace() < stat[0] + FREE_SPACE_RESERVE) {
+            throw new IOException("存储空间不足");
+        }
+
+        long start = SystemClock.elapsedRealtime();
+        File tmp = new File(dir, name + ".tmp");
+        long copied;
+        try (ReadableByteChannel in = openSource(resolver, uri);
+             FileOutputStream out = new FileOutputStream(tmp);
+             FileChannel outChannel = out.getChannel()) {
+            copied = ChannelCopier.copy(in, outChannel, () -> !key.equals(latest));
+        } catch (IOException | RuntimeException e) {
+            tmp.delete();
+            throw e;
+        }
+        if (stat != null && copied != stat[0]) {
+            tmp.delete();
+            throw new IOException("拷贝不完整（" + copied + " / " + stat[0] + " 字节）");
+        }
+        if (!tmp.renameTo(f)) {
+            tmp.delete();
+            throw new IOException("重命名失败");
+        }
+        synchronized (this) {
+            Long old = ensureIndex().put(name, f.length());
+            totalBytes += f.length() - (old != null ? old : 0);
+            trim(name);
+        }
+        long ms = Math.max(1, SystemClock.elapsedRealtime() - start);
+        Log.i(TAG, String.format(Locale.ROOT, "暂存 %d 字节，用时 %d ms，%.1f MB/s", copied, ms,
+                copied / 1048.576 / ms));
+        return f;
+    }
+
+    // 优先取文件描述符（可零拷贝）；只提供流的提供方回退到 InputStream
+    private static ReadableByteChannel openSource(ContentResolver resolver, Uri uri) throws IOException {
+        ParcelFileDescriptor pfd = null;
+        try {
+            pfd = resolver.openFileDescriptor(uri, "r");
+        } catch (FileNotFoundException ignored) { }
+        if (pfd != null) {
+            return new ParcelFileDescriptor.AutoCloseInputStream(pfd).getChannel();
+        }
+        InputStream in = resolver.openInputStream(uri);
+        if (in == null) throw new IOException("无法打开 PDF");
+        return Channels.newChannel(in);
+    }
+
+    // 从最久未用的副本开始删，刚暂存的那一份与正在使用的保留（即使因此超过了容量）
+    private void trim(String keep) {
+        Iterator<Map.Entry<String, Long>> it = index.entrySet().iterator();
+        while (totalBytes > maxBytes && it.hasNext()) {
+            Map.Entry<String, Long> e = it.next();
+            if (e.getKey().equals(keep) || inUse.containsKey(e.getKey())) continue;
+            new File(dir, e.getKey()).delete();
+            totalBytes -= e.getValue();
+            it.remove();
+        }
+    }
+
+    // 首次访问时按修改时间从旧到新重建访问顺序，顺带清理上次残留的临时文件
+    private LinkedHashMap<String, Long> ensureIndex() {
+        if (index != null) return index;
+        index = new LinkedHashMap<>(16, 0.75f, true);
+        totalBytes = 0;
+        File[] files = dir.listFiles();
+        if (files != null) {
+            Arrays.sort(files, Comparator.comparingLong(File::lastModified));
+            for (File f : files) {
+                if (f.getName().endsWith(".tmp")) {
+                    f.delete();
+                    continue;
+                }
+                index.put(f.getName(), f.length());
+                totalBytes += f.length();
+            }
+        }
+        trim(null);
+        return index;
+    }
+
+    // 本目录下副本的文件名；其他 URI 返回 null
+    private String stagedName(Uri uri) {
+        if (uri == null || !"file".equals(uri.getScheme()) || uri.getPath() == null) return null;
+        File f = new File(uri.getPath());
+        return dir.equals(f.getParentFile()) ? f.getName() : null;
+    }
+
+    private static String fileName(String key) {
+        try {
+            byte[] d = MessageDigest.getInstance("SHA-1").digest(key.getBytes(StandardCharsets.UTF_8));
+            StringBuilder sb = new StringBuilder(d.length * 2 + 4);
+            for (byte b : d) sb.append(Character.forDigit((b >> 4) & 15, 16)).append(Character.forDigit(b & 15, 16));
+            return sb.append(".pdf").toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
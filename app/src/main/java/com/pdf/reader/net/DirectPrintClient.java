@@ -0,0 +1,345 @@
+package com.pdf.reader.net;
+
+import android.content.Context;
+import android.net.ConnectivityManager;
+import android.net.LinkProperties;
+import android.net.Network;
+import android.net.NetworkCapabilities;
+import android.net.RouteInfo;
+import android.os.CancellationSignal;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.LongConsumer;
+
+/**
+ * 不经打印服务插件的直连打印客户端：文档边生成边发给打印机，不像插件那样先把整份文档重新假脱机再发送。
+ * <ul>
+ *   <li>IPP（631 端口）：HTTP 分块传输的 Print-Job，打印机返回作业 ID；发送前可用 Get-Printer-Attributes
+ *       确认打印机接受 PDF；</li>
+ *   <li>RAW（9100 端口）：原样写入套接字，适合不开 IPP、但能直接解释 PDF 的打印机。</li>
+ * </ul>
+ * 连接绑定到打印机所在的 Wi‑Fi 网络：DIRECT 热点没有外网，系统可能把默认路由留在移动数据上。
+ * 取消或生成文档失败时直接断开连接，而不是正常结束请求：IPP 的分块传输没有以零长度块结束，
+ * RAW 连接以 RST 复位，打印机据此丢弃这份不完整的作业。
+ * 所有方法都会阻塞，须在后台线程调用。
+ */
+public final class DirectPrintClient {
+
+    public enum Protocol { IPP, RAW }
+
+    /** 文档生成方：向 out 写出完整文档。out 直接连着打印机，写出多少就发送多少；不要关闭 out。 */
+    public interface Body {
+        void writeTo(OutputStream out) throws Exception;
+    }
+
+    /** 打印机的基本状态（Get-Printer-Attributes）。 */
+    public static final class PrinterInfo {
+        public final String makeAndModel;
+        /** 3 空闲、4 处理中、5 停止。 */
+        public final int state;
+        public final List<String> stateReasons;
+        public final List<String> documentFormats;
+        public final boolean acceptingJobs;
+
+        PrinterInfo(String makeAndModel, int state, List<String> stateReasons, List<String> documentFormats,
+                    boolean acceptingJobs) {
+            this.makeAndModel = makeAndModel;
+            this.state = state;
+            this.stateReasons = stateReasons;
+            this.documentFormats = documentFormats;
+            this.acceptingJobs = acceptingJobs;
+        }
+
+        public boolean supportsPdf() {
+            return documentFormats.contains(PDF);
+        }
+    }
+
+    public static final int IPP_PORT = 631;
+    public static final int RAW_PORT = 9100;
+    public static final String PDF = "application/pdf";
+
+    // IPP Everywhere 约定的路径，Epson 等主流打印机都提供
+    static final String IPP_PATH = "/ipp/print";
+    private static final int CONNECT_TIMEOUT_MS = 5000;
+    // 文档发完后打印机可能在处理完数据才回应
+    private static final int RESPONSE_TIMEOUT_MS = 60_000;
+    private static final int RAW_DRAIN_TIMEOUT_MS = 2000;
+    private static final int CHUNK_SIZE = 64 * 1024;
+    private static final long PROGRESS_STEP = 256 * 1024;
+
+    private static final AtomicInteger REQUEST_IDS = new AtomicInteger(1);
+
+    private final Network network;
+    private final String host;
+    private final int ippPort;
+    private final int rawPort;
+
+    /** @param network 连接绑定的网络；null 表示使用系统默认网络 */
+    public DirectPrintClient(Network network, String host) {
+        this(network, host, IPP_PORT, RAW_PORT);
+    }
+
+    /** 端口不是标准端口的打印机（测试中为本机的替身服务）。 */
+    DirectPrintClient(Network network, String host, int ippPort, int rawPort) {
+        this.network = network;
+        this.host = host;
+        this.ippPort = ippPort;
+        this.rawPort = rawPort;
+    }
+
+    /**
+     * 以当前 Wi‑Fi 的默认网关为打印机：连上 DIRECT‑xx‑EPSON 热点时网关就是打印机本身。
+     * 没有连接 Wi‑Fi 时返回 null。
+     */
+    public static DirectPrintClient forWifiGateway(Context context) {
+        ConnectivityManager cm = (ConnectivityManager) context.getApplicationContext()
+                .getSystemService(Context.CONNECTIVITY_SERVICE);
+        if (cm == null) return null;
+        for (Network n : cm.getAllNetworks()) {
+            NetworkCapabilities caps = cm.getNetworkCapabilities(n);
+            if (caps == null || !caps.hasTransport(NetworkCapabilities.TRANSPORT_WIFI)) continue;
+            LinkProperties lp = cm.getLinkProperties(n);
+            if (lp == null) continue;
+            for (RouteInfo r : lp.getRoutes()) {
+                InetAddress gw = r.getGateway();
+                if (r.isDefaultRoute() && r.hasGateway() && gw != null) {
+                    return new DirectPrintClient(n, gw.getHostAddress());
+                }
+            }
+        }
+        return null;
+    }
+
+    public String getHost() {
+        return host;
+    }
+
+    int ippPort() {
+        return ippPort;
+    }
+
+    int rawPort() {
+        return rawPort;
+    }
+
+    public PrinterInfo getPrinterInfo() throws IOException {
+        byte[] request = new IppMessage.Request(IppMessage.GET_PRINTER_ATTRIBUTES, REQUEST_IDS.getAndIncrement(), printerUri())
+                .attribute(IppMessage.VALUE_KEYWORD, "requested-attributes",
+                        "printer-make-and-model", "printer-state", "printer-state-reasons",
+                        "document-format-supported", "printer-is-accepting-jobs")
+                .finish();
+        HttpURLConnection c = openIpp();
+        try {
+            c.setFixedLengthStreamingMode(request.length);
+            try (OutputStream out = c.getOutputStream()) {
+                out.write(request);
+            }
+            IppMessage.Response r = readResponse(c);
+            Object accepting = r.first("printer-is-accepting-jobs");
+            return new PrinterInfo(r.stringValue("printer-make-and-model"), r.intValue("printer-state", 0),
+                    strings(r.values("printer-state-reasons")), strings(r.values("document-format-supported")),
+                    !Boolean.FALSE.equals(accepting));
+        } finally {
+            c.disconnect();
+        }
+    }
+
+    /**
+     * IPP Print-Job：请求头之后逐块发送 body 写出的数据，返回打印机分配的作业 ID（未返回时为 0）。
+     * progress 在调用线程上回调已发送的字节数（约每 256 KB 一次）；取消时抛出 CancellationException。
+     */
+    public int printIpp(String jobName, String userName, String documentFormat, Body body,
+                        LongConsumer progress, CancellationSignal signal) throws Exception {
+        byte[] header = new IppMessage.Request(IppMessage.PRINT_JOB, REQUEST_IDS.getAndIncrement(), printerUri())
+                .attribute(IppMessage.VALUE_NAME, "requesting-user-name", userName)
+                .attribute(IppMessage.VALUE_NAME, "job-name", jobName)
+                .attribute(IppMessage.VALUE_MIME, "document-format", documentFormat)
+                .finish();
+        HttpURLConnection c = openIpp();
+        signal.setOnCancelListener(c::disconnect);
+        try {
+            c.setChunkedStreamingMode(CHUNK_SIZE);
+            OutputStream out = new ProgressStream(c.getOutputStream(), progress, signal);
+            out.write(header);
+            body.writeTo(out);
+            // 只在文档完整写出后关闭：关闭会发出结束的零长度块，之前的任何异常都由 finally 中的 disconnect 断开
+            out.close();
+            IppMessage.Response r = readResponse(c);
+            return r.intValue("job-id", 0);
+        } catch (IOException e) {
+            if (signal.isCanceled()) throw new CancellationException();
+            throw e;
+        } finally {
+            signal.setOnCancelListener(null);
+            c.disconnect();
+        }
+    }
+
+    /** 原始端口打印：连接 9100 端口写出 body，写完后关闭发送方向并等打印机收下。 */
+    public void printRaw(Body body, LongConsumer progress, CancellationSignal signal) throws Exception {
+        Socket socket = newSocket();
+        signal.setOnCancelListener(() -> abort(socket));
+        boolean sent = false;
+        try {
+            socket.connect(new InetSocketAddress(host, rawPort), CONNECT_TIMEOUT_MS);
+            socket.setSendBufferSize(CHUNK_SIZE);
+            OutputStream out = new ProgressStream(new BufferedOutputStream(socket.getOutputStream(), CHUNK_SIZE),
+                    progress, signal);
+            body.writeTo(out);
+            out.flush();
+            sent = true;
+            // 直接关闭时若打印机回传的状态数据未读，内核会发 RST，可能丢掉尚未送达的尾部
+            socket.shutdownOutput();
+            socket.setSoTimeout(RAW_DRAIN_TIMEOUT_MS);
+            InputStream in = socket.getInputStream();
+            byte[] drain = new byte[1024];
+            try {
+                while (in.read(drain) >= 0) {
+                    // 丢弃打印机回传的状态
+                }
+            } catch (SocketTimeoutException ignored) {
+                // 打印机保持连接直到打印结束，数据已送达即可
+            }
+        } catch (IOException e) {
+            if (signal.isCanceled()) throw new CancellationException();
+            throw e;
+        } finally {
+            signal.setOnCancelListener(null);
+            if (sent) closeQuietly(socket);
+            else abort(socket);
+        }
+    }
+
+    /** 端口是否可连接（自检用），返回建立连接的耗时，连不上时抛出 IOException。 */
+    long connectMillis(int port, int timeoutMs) throws IOException {
+        long start = System.nanoTime();
+        connect(port, timeoutMs).close();
+        return (System.nanoTime() - start) / 1_000_000;
+    }
+
+    /** 在打印机所在网络上建立到 port 的连接，由调用方关闭。 */
+    Socket connect(int port, int timeoutMs) throws IOException {
+        Socket socket = newSocket();
+        try {
+            socket.connect(new InetSocketAddress(host, port), timeoutMs);
+            return socket;
+        } catch (IOException e) {
+            closeQuietly(socket);
+            throw e;
+        }
+    }
+
+    private Socket newSocket() throws IOException {
+        return network != null ? network.getSocketFactory().createSocket() : new Socket();
+    }
+
+    String printerUri() {
+        return "ipp://" + host + ":" + ippPort + IPP_PATH;
+    }
+
+    private HttpURLConnection openIpp() throws IOException {
+        URL url = new URL("http", host, ippPort, IPP_PATH);
+        HttpURLConnection c = (HttpURLConnection) (network != null ? network.openConnection(url) : url.openConnection());
+        c.setConnectTimeout(CONNECT_TIMEOUT_MS);
+        c.setReadTimeout(RESPONSE_TIMEOUT_MS);
+        c.setDoOutput(true);
+        c.setUseCaches(false);
+        c.setRequestMethod("POST");
+        c.setRequestProperty("Content-Type", "application/ipp");
+        return c;
+    }
+
+    private static IppMessage.Response readResponse(HttpURLConnection c) throws IOException {
+        int code = c.getResponseCode();
+        if (code != HttpURLConnection.HTTP_OK) throw new IOException("打印机返回 HTTP " + code);
+        IppMessage.Response r;
+        try (InputStream in = new BufferedInputStream(c.getInputStream())) {
+            r = IppMessage.Response.parse(in);
+        }
+        if (!r.isSuccess()) {
+            String msg = r.stringValue("status-message");
+            throw new IOException(String.format(Locale.ROOT, "打印机拒绝请求（IPP 状态 0x%04x%s）", r.status,
+                    msg != null ? "：" + msg : ""));
+        }
+        return r;
+    }
+
+    private static List<String> strings(List<Object> values) {
+        List<String> out = new ArrayList<>(values.size());
+        for (Object v : values) if (v instanceof String) out.add((String) v);
+        return Collections.unmodifiableList(out);
+    }
+
+    /** 以 RST 复位连接：正常关闭发出的 FIN 会让打印机把已收到的部分当作完整作业打印。 */
+    private static void abort(Socket s) {
+        try {
+            s.setSoLinger(true, 0);
+        } catch (IOException ignored) {
+            // 尚未连接或已关闭
+        }
+        closeQuietly(s);
+    }
+
+    private static void closeQuietly(Socket s) {
+        try {
+            s.close();
+        } catch (IOException ignored) {
+        }
+    }
+
+    /** 统计已发送字节、按步长回调进度，并在每次写之前检查取消。 */
+    private static final class ProgressStream extends FilterOutputStream {
+        private final LongConsumer progress;
+        private final CancellationSignal signal;
+        private long sent;
+        private long reported;
+
+        ProgressStream(OutputStream out, LongConsumer progress, CancellationSignal signal) {
+            super(out);
+            this.progress = progress;
+            this.signal = signal;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            if (signal.isCanceled()) throw new CancellationException();
+            out.write(b);
+            sent++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            if (signal.isCanceled()) throw new CancellationException();
+            out.write(b, off, len);
+            sent += len;
+            if (progress != null && sent - reported >= PROGRESS_STEP) {
+                reported = sent;
+                progress.accept(sent);
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (progress != null && sent != reported) progress.accept(sent);
+            super.close();
+        }
+    }
+}
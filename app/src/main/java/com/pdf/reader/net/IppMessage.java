@@ -0,0 +1,151 @@
+package com.pdf.reader.net;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * IPP/1.1 报文（RFC 8010）的最小编解码：请求只需字符串类属性，响应解析整数、枚举、布尔与字符串类属性，
+ * 其余类型跳过。请求头后紧跟文档数据，由调用方接着写出。
+ */
+final class IppMessage {
+
+    static final int PRINT_JOB = 0x0002;
+    static final int GET_PRINTER_ATTRIBUTES = 0x000B;
+
+    static final int TAG_OPERATION = 0x01;
+    static final int TAG_END = 0x03;
+
+    static final int VALUE_INTEGER = 0x21;
+    static final int VALUE_BOOLEAN = 0x22;
+    static final int VALUE_ENUM = 0x23;
+    static final int VALUE_NAME = 0x42;
+    static final int VALUE_KEYWORD = 0x44;
+    static final int VALUE_URI = 0x45;
+    static final int VALUE_CHARSET = 0x47;
+    static final int VALUE_LANGUAGE = 0x48;
+    static final int VALUE_MIME = 0x49;
+
+    private IppMessage() {}
+
+    /** 请求头：版本、操作、请求 ID 与操作属性组的必填项（字符集、语言、打印机 URI）。 */
+    static final class Request {
+        private final ByteArrayOutputStream buf = new ByteArrayOutputStream(256);
+        private final DataOutputStream out = new DataOutputStream(buf);
+
+        Request(int operation, int requestId, String printerUri) throws IOException {
+            out.writeShort(0x0101);
+            out.writeShort(operation);
+            out.writeInt(requestId);
+            out.writeByte(TAG_OPERATION);
+            attribute(VALUE_CHARSET, "attributes-charset", "utf-8");
+            attribute(VALUE_LANGUAGE, "attributes-natural-language", "zh-cn");
+            attribute(VALUE_URI, "printer-uri", printerUri);
+        }
+
+        /** 多个值按 additional-value 编码（名称长度为 0）。 */
+        Request attribute(int valueTag, String name, String... values) throws IOException {
+            for (int i = 0; i < values.length; i++) {
+                byte[] n = i == 0 ? name.getBytes(StandardCharsets.UTF_8) : new byte[0];
+                byte[] v = values[i].getBytes(StandardCharsets.UTF_8);
+                out.writeByte(valueTag);
+                out.writeShort(n.length);
+                out.write(n);
+                out.writeShort(v.length);
+                out.write(v);
+            }
+            return this;
+        }
+
+        byte[] finish() throws IOException {
+            out.writeByte(TAG_END);
+            out.flush();
+            return buf.toByteArray();
+        }
+    }
+
+    /** 响应：状态码与全部属性（同名属性跨组合并，按出现顺序保留多个值）。 */
+    static final class Response {
+        final int status;
+        private final Map<String, List<Object>> attributes;
+
+        private Response(int status, Map<String, List<Object>> attributes) {
+            this.status = status;
+            this.attributes = attributes;
+        }
+
+        /** 0x0000~0x00FF 为成功（含“部分属性被忽略”之类的附带说明）。 */
+        boolean isSuccess() {
+            return status < 0x0100;
+        }
+
+        List<Object> values(String name) {
+            List<Object> v = attributes.get(name);
+            return v != null ? v : Collections.emptyList();
+        }
+
+        Object first(String name) {
+            List<Object> v = values(name);
+            return v.isEmpty() ? null : v.get(0);
+        }
+
+        int intValue(String name, int fallback) {
+            Object v = first(name);
+            return v instanceof Integer ? (Integer) v : fallback;
+        }
+
+        String stringValue(String name) {
+            Object v = first(name);
+            return v instanceof String ? (String) v : null;
+        }
+
+        static Response parse(InputStream stream) throws IOException {
+            DataInputStream in = new DataInputStream(stream);
+            in.readUnsignedShort(); // 版本
+            int status = in.readUnsignedShort();
+            in.readInt(); // 请求 ID
+            Map<String, List<Object>> attrs = new LinkedHashMap<>();
+            String last = null;
+            while (true) {
+                int tag = in.read();
+                if (tag < 0) throw new EOFException("IPP 响应不完整");
+                if (tag == TAG_END) break;
+                if (tag < 0x10) continue; // 属性组分隔符
+                String name = readString(in, in.readUnsignedShort());
+                if (name.isEmpty()) name = last;
+                byte[] value = new byte[in.readUnsignedShort()];
+                in.readFully(value);
+                if (name == null) continue;
+                last = name;
+                Object v = decode(tag, value);
+                if (v != null) attrs.computeIfAbsent(name, k -> new ArrayList<>()).add(v);
+            }
+            return new Response(status, attrs);
+        }
+
+        private static Object decode(int tag, byte[] v) {
+            if ((tag == VALUE_INTEGER || tag == VALUE_ENUM) && v.length == 4) {
+                return ((v[0] & 0xFF) << 24) | ((v[1] & 0xFF) << 16) | ((v[2] & 0xFF) << 8) | (v[3] & 0xFF);
+            }
+            if (tag == VALUE_BOOLEAN && v.length == 1) return v[0] != 0;
+            // 0x40~0x4F 为字符串类（text、name、keyword、uri、mimeMediaType……）
+            if (tag >= 0x40 && tag <= 0x4F) return new String(v, StandardCharsets.UTF_8);
+            return null;
+        }
+
+        private static String readString(DataInputStream in, int length) throws IOException {
+            byte[] b = new byte[length];
+            in.readFully(b);
+            return new String(b, StandardCharsets.UTF_8);
+        }
+    }
+}
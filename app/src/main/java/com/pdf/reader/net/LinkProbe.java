@@ -0,0 +1,191 @@
+package com.pdf.reader.net;
+
+import android.os.SystemClock;
+import android.util.Log;
+
+import com.pdf.reader.util.BackgroundExecutors;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ThreadPoolExecutor;
+
+/**
+ * 到打印机的链路测速：往返时延取几次 TCP 建连的最小值；持续吞吐量用一次 HTTP 分块上传测得——
+ * 向 IPP 端口发送 Get-Printer-Attributes，请求之后附带填充数据（查询类操作的附带数据被打印机丢弃，
+ * 不会打印出任何东西），打印机读完整个请求才应答，从开始发送到收到应答的时间扣掉一次往返即为传输时间。
+ * 填充数据在 {@value #PROBE_BUDGET_MS} ms 或 {@value #PROBE_MAX_BYTES} 字节处截止，弱信号下测速也不会拖太久。
+ * <p>
+ * 结果按打印机地址缓存 {@value #TTL_MS} ms；Wi‑Fi 连上打印机后即可 {@link #refreshAsync} 预先测好，
+ * 打印时直接取用。测速结果供打印流水线估算各输出路径的总耗时。
+ */
+public final class LinkProbe {
+
+    private static final String TAG = "LinkProbe";
+    private static final long TTL_MS = 2 * 60_000;
+    private static final int PING_COUNT = 3;
+    private static final int CONNECT_TIMEOUT_MS = 3000;
+    private static final int RESPONSE_TIMEOUT_MS = 5000;
+    private static final long PROBE_BUDGET_MS = 1500;
+    private static final int PROBE_MAX_BYTES = 1024 * 1024;
+    private static final int CHUNK_SIZE = 16 * 1024;
+    private static final int SEND_BUFFER_SIZE = 64 * 1024;
+
+    /** 一次测速的结果。 */
+    public static final class Result {
+        public final String host;
+        public final double rttMs;
+        public final long bytesPerSecond;
+        /** 测速实际上传的字节数，越多越可信。 */
+        public final long probedBytes;
+        private final long measuredAt;
+
+        Result(String host, double rttMs, long bytesPerSecond, long probedBytes) {
+            this.host = host;
+            this.rttMs = rttMs;
+            this.bytesPerSecond = bytesPerSecond;
+            this.probedBytes = probedBytes;
+            this.measuredAt = SystemClock.elapsedRealtime();
+        }
+
+        /** 按测得的吞吐量传完 bytes 字节的估计用时（毫秒），含一次往返。 */
+        public long estimateTransferMs(long bytes) {
+            return Math.round(rttMs + bytes * 1000.0 / Math.max(1, bytesPerSecond));
+        }
+
+        @Override
+        public String toString() {
+            return String.format(Locale.ROOT, "%s RTT %.1f ms，%.2f MB/s（测速 %d KB）", host, rttMs,
+                    bytesPerSecond / 1048576.0, probedBytes / 1024);
+        }
+    }
+
+    private static final LinkProbe INSTANCE = new LinkProbe();
+
+    public static LinkProbe getInstance() {
+        return INSTANCE;
+    }
+
+    private static final ThreadPoolExecutor EXECUTOR = BackgroundExecutors.serial("link-probe");
+
+    private final Map<String, Result> cache = new HashMap<>(); // guarded by this
+    private final Set<String> refreshing = new HashSet<>(); // guarded by this
+
+    private LinkProbe() {}
+
+    /** 未过期的测速结果，没有时返回 null。 */
+    public synchronized Result getCached(String host) {
+        Result r = cache.get(host);
+        return r != null && SystemClock.elapsedRealtime() - r.measuredAt < TTL_MS ? r : null;
+    }
+
+    /** 后台测速并缓存；已有未过期结果或同一地址正在测速时什么也不做。 */
+    public void refreshAsync(DirectPrintClient client) {
+        if (client == null) return;
+        String host = client.getHost();
+        synchronized (this) {
+            if (getCached(host) != null || !refreshing.add(host)) return;
+        }
+        EXECUTOR.execute(() -> {
+            try {
+                measure(client);
+            } catch (IOException e) {
+                Log.w(TAG, host + " 测速失败: " + e.getMessage());
+            } finally {
+                synchronized (this) {
+                    refreshing.remove(host);
+                }
+            }
+        });
+    }
+
+    /** 取缓存，没有时当场测速（阻塞约 2 秒，须在后台线程调用）。 */
+    public Result getOrMeasure(DirectPrintClient client) throws IOException {
+        Result r = getCached(client.getHost());
+        return r != null ? r : measure(client);
+    }
+
+    /** 测速并缓存结果。打印机不接受测速请求时抛出 IOException。 */
+    public Result measure(DirectPrintClient client) throws IOException {
+        Result r = measure(client, client.ippPort(), PROBE_BUDGET_MS, PROBE_MAX_BYTES);
+        synchronized (this) {
+            cache.put(client.getHost(), r);
+        }
+        Log.i(TAG, r.toString());
+        return r;
+    }
+
+    static Result measure(DirectPrintClient client, int port, long budgetMs, int maxBytes) throws IOException {
+        long rttNanos = Long.MAX_VALUE;
+        for (int i = 0; i < PING_COUNT; i++) {
+            long start = System.nanoTime();
+            client.connect(port, CONNECT_TIMEOUT_MS).close();
+            rttNanos = Math.min(rttNanos, System.nanoTime() - start);
+        }
+
+        byte[] request = new IppMessage.Request(IppMessage.GET_PRINTER_ATTRIBUTES, 1, client.printerUri())
+                .attribute(IppMessage.VALUE_KEYWORD, "requested-attributes", "printer-state")
+                .finish();
+        String head = "POST " + DirectPrintClient.IPP_PATH + " HTTP/1.1\r\n"
+                + "Host: " + client.getHost() + ":" + port + "\r\n"
+                + "Content-Type: application/ipp\r\n"
+                + "Transfer-Encoding: chunked\r\n"
+                + "Connection: close\r\n\r\n";
+        byte[] padding = new byte[CHUNK_SIZE];
+
+        try (Socket socket = client.connect(port, CONNECT_TIMEOUT_MS)) {
+            socket.setSoTimeout(RESPONSE_TIMEOUT_MS);
+            // 发送缓冲区小一些，写入才会随链路速度阻塞，到截止时间时积压在缓冲区里的数据不多
+            socket.setSendBufferSize(SEND_BUFFER_SIZE);
+            OutputStream out = new BufferedOutputStream(socket.getOutputStream(), CHUNK_SIZE + 16);
+            long start = System.nanoTime();
+            long budgetNanos = budgetMs * 1_000_000;
+            out.write(head.getBytes(StandardCharsets.US_ASCII));
+            writeChunk(out, request, request.length);
+            long sent = request.length;
+            while (sent < maxBytes && System.nanoTime() - start < budgetNanos) {
+                int n = (int) Math.min(padding.length, maxBytes - sent);
+                writeChunk(out, padding, n);
+                sent += n;
+            }
+            out.write("0\r\n\r\n".getBytes(StandardCharsets.US_ASCII));
+            out.flush();
+
+            // 应答在打印机读完整个请求之后才到，此时发送缓冲区里的数据也已送达
+            int status = readStatus(socket.getInputStream());
+            long elapsed = System.nanoTime() - start;
+            if (status != 200) throw new IOException("打印机不接受测速请求（HTTP " + status + "）");
+            long transferNanos = Math.max(1_000_000, elapsed - rttNanos);
+            return new Result(client.getHost(), rttNanos / 1e6, sent * 1_000_000_000L / transferNanos, sent);
+        }
+    }
+
+    private static void writeChunk(OutputStream out, byte[] data, int length) throws IOException {
+        out.write((Integer.toHexString(length) + "\r\n").getBytes(StandardCharsets.US_ASCII));
+        out.write(data, 0, length);
+        out.write('\r');
+        out.write('\n');
+    }
+
+    // 只读状态行 "HTTP/1.1 200 OK"，其余应答不关心
+    private static int readStatus(InputStream in) throws IOException {
+        StringBuilder line = new StringBuilder();
+        int c;
+        while ((c = in.read()) >= 0 && c != '\n') line.append((char) c);
+        String[] parts = line.toString().trim().split(" ");
+        if (parts.length < 2 || !parts[0].startsWith("HTTP/")) throw new IOException("无法识别的应答: " + line);
+        try {
+            return Integer.parseInt(parts[1]);
+        } catch (NumberFormatException e) {
+            throw new IOException("无法识别的应答: " + line);
+        }
+    }
+}
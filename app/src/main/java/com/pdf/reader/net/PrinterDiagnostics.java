@@ -0,0 +1,417 @@
+package com.pdf.reader.net;
+
+import android.content.Context;
+import android.net.nsd.NsdManager;
+import android.net.nsd.NsdServiceInfo;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
+import android.util.Log;
+
+import com.pdf.reader.util.BackgroundExecutors;
+import com.pdf.reader.util.PrintServiceChecker;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.function.Consumer;
+
+/**
+ * 自检背后的诊断引擎：几个探测并行执行，各有超时，整体耗时约等于最慢的一项。
+ * <ul>
+ *   <li>DNS-SD（mDNS）发现 {@code _ipp._tcp} 与 {@code _pdl-datastream._tcp} 打印机；</li>
+ *   <li>Wi‑Fi 网关（DIRECT 热点上即打印机）的 631 / 9100 端口是否可连；</li>
+ *   <li>已安装的打印服务（PackageManager 查询与加载名称较慢，不放在主线程）。</li>
+ * </ul>
+ * 结果按 SSID 缓存（找到打印机时 5 分钟，否则 30 秒），同一网络上重复自检立即返回；同一 SSID 正在诊断时，
+ * 新的请求等待同一次结果，不重复探测。每项探测都记录耗时。
+ */
+public final class PrinterDiagnostics {
+
+    private static final String TAG = "PrinterDiagnostics";
+    private static final long TTL_MS = 5 * 60_000;
+    // 没找到打印机的结果只缓存一小会儿：用户多半正要去开打印机或切换网络
+    private static final long MISS_TTL_MS = 30_000;
+    private static final int MAX_CACHED_SSIDS = 8;
+    private static final long MDNS_TIMEOUT_MS = 4000;
+    // 发现窗口之后留给逐个解析主机地址的时间
+    private static final long MDNS_RESOLVE_MS = 1500;
+    private static final int TCP_TIMEOUT_MS = 2000;
+    private static final long SERVICES_TIMEOUT_MS = 3000;
+
+    /** 一项探测的结果。 */
+    public static final class Probe {
+        public final String name;
+        public final boolean ok;
+        public final boolean timedOut;
+        public final long elapsedMs;
+        public final String detail;
+
+        Probe(String name, boolean ok, boolean timedOut, long elapsedMs, String detail) {
+            this.name = name;
+            this.ok = ok;
+            this.timedOut = timedOut;
+            this.elapsedMs = elapsedMs;
+            this.detail = detail;
+        }
+    }
+
+    /** 发现的打印机；host 为 null 表示服务已发现但地址未能在时限内解析。 */
+    public static final class Printer {
+        public final String name;
+        public final String serviceType;
+        public final String host;
+        public final int port;
+
+        Printer(String name, String serviceType, String host, int port) {
+            this.name = name;
+            this.serviceType = serviceType;
+            this.host = host;
+            this.port = port;
+        }
+    }
+
+    /** 一次诊断的汇总。 */
+    public static final class Report {
+        public final String ssid;
+        public final List<Probe> probes;
+        public final List<Printer> printers;
+        public final List<String> printServices;
+        public final long totalMs;
+        /** 取自缓存时为 true，此时 {@link #ageMs} 为距上次实际探测的时间。 */
+        public final boolean cached;
+        public final long ageMs;
+        private final long createdAt;
+
+        Report(String ssid, List<Probe> probes, List<Printer> printers, List<String> printServices,
+               long totalMs, long createdAt, boolean cached, long ageMs) {
+            this.ssid = ssid;
+            this.probes = probes;
+            this.printers = printers;
+            this.printServices = printServices;
+            this.totalMs = totalMs;
+            this.createdAt = createdAt;
+            this.cached = cached;
+            this.ageMs = ageMs;
+        }
+
+        /** mDNS 发现了打印机，或网关的 631/9100 端口可连接。 */
+        public boolean isPrinterReachable() {
+            if (!printers.isEmpty()) return true;
+            for (Probe p : probes) {
+                if (p.ok && p.name.startsWith("TCP")) return true;
+            }
+            return false;
+        }
+
+        Report asCached(long now) {
+            return new Report(ssid, probes, printers, printServices, totalMs, createdAt, true, now - createdAt);
+        }
+    }
+
+    /** 按服务类型浏览局域网打印机，超时即返回已找到的部分。 */
+    interface Browser {
+        List<Printer> browse(String serviceType, long timeoutMs) throws InterruptedException;
+    }
+
+    /** 其余探测与时钟、回调线程；测试中换成本机替身。 */
+    interface Environment {
+        /** Wi‑Fi 网关上的打印机；未连接 Wi‑Fi 时返回 null。 */
+        DirectPrintClient gateway();
+
+        List<String> printServices() throws Exception;
+
+        /** 单调时钟（毫秒），用于缓存有效期与各项探测的期限。 */
+        long now();
+
+        /** 把回调交给主线程。 */
+        void post(Runnable r);
+    }
+
+    private static PrinterDiagnostics instance;
+
+    public static synchronized PrinterDiagnostics get(Context context) {
+        if (instance == null) {
+            Context app = context.getApplicationContext();
+            instance = new PrinterDiagnostics(new NsdBrowser((NsdManager) app.getSystemService(Context.NSD_SERVICE)),
+                    new AndroidEnvironment(app));
+        }
+        return instance;
+    }
+
+    // 汇总与每项探测各占一个线程，不设上限：固定大小的池在两次诊断重叠（如切换了 SSID）时，
+    // 后一次的探测会排在前一次之后，被汇总线程按期限误判为超时
+    private static final ThreadPoolExecutor EXECUTOR = BackgroundExecutors.unbounded("diagnostics");
+
+    private final Browser browser;
+    private final Environment env;
+    // guarded by this
+    private final LinkedHashMap<String, Report> cache = new LinkedHashMap<>(16, 0.75f, true);
+    private final Map<String, List<Consumer<Report>>> pending = new HashMap<>();
+
+    PrinterDiagnostics(Browser browser, Environment env) {
+        this.browser = browser;
+        this.env = env;
+    }
+
+    /**
+     * 诊断并在主线程回调。缓存未过期时立即回调（cached 为 true）；force 为 true 时忽略缓存重新探测。
+     * ssid 为 null（未连接或无定位权限）时按同一个“未知网络”缓存。
+     */
+    public void runAsync(String ssid, boolean force, Consumer<Report> onReport) {
+        String key = ssid != null ? ssid : "";
+        synchronized (this) {
+            Report hit = force ? null : cache.get(key);
+            long ttl = hit != null && hit.isPrinterReachable() ? TTL_MS : MISS_TTL_MS;
+            long now = env.now();
+            if (hit != null && now - hit.createdAt < ttl) {
+                Report r = hit.asCached(now);
+                env.post(() -> onReport.accept(r));
+                return;
+            }
+            List<Consumer<Report>> waiting = pending.get(key);
+            if (waiting != null) {
+                waiting.add(onReport);
+                return;
+            }
+            waiting = new ArrayList<>();
+            waiting.add(onReport);
+            pending.put(key, waiting);
+        }
+        EXECUTOR.execute(() -> {
+            Report r = run(ssid);
+            List<Consumer<Report>> callbacks;
+            synchronized (this) {
+                cache.put(key, r);
+                if (cache.size() > MAX_CACHED_SSIDS) cache.remove(cache.keySet().iterator().next());
+                callbacks = pending.remove(key);
+            }
+            env.post(() -> {
+                for (Consumer<Report> c : callbacks) c.accept(r);
+            });
+        });
+    }
+
+    /** 网络切换或用户更换打印机后清空缓存。 */
+    public synchronized void invalidate() {
+        cache.clear();
+    }
+
+    private Report run(String ssid) {
+        long start = env.now();
+        DirectPrintClient gateway = env.gateway();
+
+        List<String> names = new ArrayList<>();
+        List<Callable<Object>> tasks = new ArrayList<>();
+        List<Long> timeouts = new ArrayList<>();
+        for (String type : new String[]{"_ipp._tcp", "_pdl-datastream._tcp"}) {
+            names.add("mDNS " + type);
+            tasks.add(() -> browser.browse(type, MDNS_TIMEOUT_MS - MDNS_RESOLVE_MS));
+            timeouts.add(MDNS_TIMEOUT_MS);
+        }
+        int[] ports = gateway != null ? new int[]{gateway.ippPort(), gateway.rawPort()}
+                : new int[]{DirectPrintClient.IPP_PORT, DirectPrintClient.RAW_PORT};
+        for (int port : ports) {
+            names.add("TCP " + port);
+            tasks.add(() -> {
+                if (gateway == null) throw new IOException("未连接 Wi‑Fi");
+                return gateway.getHost() + " 连接用时 " + gateway.connectMillis(port, TCP_TIMEOUT_MS) + " ms";
+            });
+            timeouts.add((long) TCP_TIMEOUT_MS + 500);
+        }
+        names.add("打印服务");
+        tasks.add(env::printServices);
+        timeouts.add(SERVICES_TIMEOUT_MS);
+
+        List<Future<Object>> futures = new ArrayList<>(tasks.size());
+        List<Long> started = new ArrayList<>(tasks.size());
+        // 各项自己记下完成时刻：按顺序收集结果时，排在慢探测后面的项早已完成
+        AtomicLongArray finished = new AtomicLongArray(tasks.size());
+        for (int i = 0; i < tasks.size(); i++) {
+            int k = i;
+            Callable<Object> t = tasks.get(i);
+            started.add(env.now());
+            futures.add(EXECUTOR.submit(() -> {
+                try {
+                    return t.call();
+                } finally {
+                    finished.set(k, env.now());
+                }
+            }));
+        }
+
+        List<Probe> probes = new ArrayList<>();
+        List<Printer> printers = new ArrayList<>();
+        List<String> services = Collections.emptyList();
+        for (int i = 0; i < futures.size(); i++) {
+            long deadline = started.get(i) + timeouts.get(i);
+            Object value = null;
+            boolean timedOut = false;
+            String detail;
+            try {
+                value = futures.get(i).get(Math.max(0, deadline - env.now()), TimeUnit.MILLISECONDS);
+                detail = null;
+            } catch (TimeoutException e) {
+                futures.get(i).cancel(true);
+                timedOut = true;
+                detail = "超时";
+            } catch (ExecutionException e) {
+                detail = e.getCause() != null ? e.getCause().getMessage() : e.getMessage();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                detail = "已中断";
+            }
+            long end = timedOut || finished.get(i) == 0 ? deadline : finished.get(i);
+            long elapsed = Math.min(end, deadline) - started.get(i);
+            if (value instanceof List && names.get(i).startsWith("mDNS")) {
+                @SuppressWarnings("unchecked")
+                List<Printer> found = (List<Printer>) value;
+                printers.addAll(found);
+                detail = "发现 " + found.size() + " 台";
+            } else if (value instanceof List) {
+                @SuppressWarnings("unchecked")
+                List<String> list = (List<String>) value;
+                services = Collections.unmodifiableList(list);
+                detail = list.size() + " 个";
+            } else if (value != null) {
+                detail = value.toString();
+            }
+            boolean ok = value != null && !(value instanceof List && ((List<?>) value).isEmpty());
+            probes.add(new Probe(names.get(i), ok, timedOut, elapsed, detail));
+        }
+
+        long total = env.now() - start;
+        StringBuilder log = new StringBuilder("诊断 ").append(ssid).append(" 用时 ").append(total).append(" ms：");
+        for (Probe p : probes) log.append(p.name).append(' ').append(p.elapsedMs).append(" ms；");
+        Log.i(TAG, log.toString());
+        return new Report(ssid, Collections.unmodifiableList(probes), Collections.unmodifiableList(printers),
+                services, total, start, false, 0);
+    }
+
+    private static final class AndroidEnvironment implements Environment {
+        private final Context context;
+        private final Handler main = new Handler(Looper.getMainLooper());
+
+        AndroidEnvironment(Context context) {
+            this.context = context;
+        }
+
+        @Override
+        public DirectPrintClient gateway() {
+            return DirectPrintClient.forWifiGateway(context);
+        }
+
+        @Override
+        public List<String> printServices() {
+            return PrintServiceChecker.listInstalledPrintServices(context);
+        }
+
+        @Override
+        public long now() {
+            return SystemClock.elapsedRealtime();
+        }
+
+        @Override
+        public void post(Runnable r) {
+            main.post(r);
+        }
+    }
+
+    /** 基于 NsdManager 的实现：先在发现窗口内收集服务，再逐个解析地址（同一时刻只能有一个解析请求）。 */
+    private static final class NsdBrowser implements Browser {
+        private final NsdManager nsd;
+
+        NsdBrowser(NsdManager nsd) {
+            this.nsd = nsd;
+        }
+
+        @Override
+        public List<Printer> browse(String serviceType, long windowMs) throws InterruptedException {
+            if (nsd == null) return Collections.emptyList();
+            BlockingQueue<NsdServiceInfo> found = new LinkedBlockingQueue<>();
+            NsdManager.DiscoveryListener listener = new NsdManager.DiscoveryListener() {
+                @Override
+                public void onStartDiscoveryFailed(String type, int errorCode) {
+                    Log.w(TAG, type + " 发现启动失败: " + errorCode);
+                }
+
+                @Override
+                public void onStopDiscoveryFailed(String type, int errorCode) {
+                }
+
+                @Override
+                public void onDiscoveryStarted(String type) {
+                }
+
+                @Override
+                public void onDiscoveryStopped(String type) {
+                }
+
+                @Override
+                public void onServiceFound(NsdServiceInfo info) {
+                    found.add(info);
+                }
+
+                @Override
+                public void onServiceLost(NsdServiceInfo info) {
+                }
+            };
+            nsd.discoverServices(serviceType, NsdManager.PROTOCOL_DNS_SD, listener);
+            Map<String, NsdServiceInfo> unique = new LinkedHashMap<>();
+            try {
+                long deadline = SystemClock.elapsedRealtime() + windowMs;
+                long left;
+                while ((left = deadline - SystemClock.elapsedRealtime()) > 0) {
+                    NsdServiceInfo info = found.poll(left, TimeUnit.MILLISECONDS);
+                    if (info != null) unique.putIfAbsent(info.getServiceName(), info);
+                }
+            } finally {
+                try {
+                    nsd.stopServiceDiscovery(listener);
+                } catch (IllegalArgumentException ignored) {
+                    // 启动失败时监听器未注册
+                }
+            }
+            long deadline = SystemClock.elapsedRealtime() + MDNS_RESOLVE_MS;
+            List<Printer> printers = new ArrayList<>(unique.size());
+            for (NsdServiceInfo info : unique.values()) {
+                NsdServiceInfo resolved = resolve(info, deadline - SystemClock.elapsedRealtime());
+                printers.add(resolved != null && resolved.getHost() != null
+                        ? new Printer(info.getServiceName(), serviceType, resolved.getHost().getHostAddress(), resolved.getPort())
+                        : new Printer(info.getServiceName(), serviceType, null, 0));
+            }
+            return printers;
+        }
+
+        private NsdServiceInfo resolve(NsdServiceInfo info, long timeoutMs) throws InterruptedException {
+            if (timeoutMs <= 0) return null;
+            BlockingQueue<NsdServiceInfo> result = new LinkedBlockingQueue<>();
+            nsd.resolveService(info, new NsdManager.ResolveListener() {
+                @Override
+                public void onResolveFailed(NsdServiceInfo s, int errorCode) {
+                    result.add(s);
+                }
+
+                @Override
+                public void onServiceResolved(NsdServiceInfo s) {
+                    result.add(s);
+                }
+            });
+            NsdServiceInfo r = result.poll(timeoutMs, TimeUnit.MILLISECONDS);
+            return r != null && r.getHost() != null ? r : null;
+        }
+    }
+}
@@ -22,7 +22,8 @@ import java.util.List;
  * 说明：
  * - 与 WifiNetworkSpecifier 不同，Suggestion 连接是系统层的，打印服务等其他应用也能访问该网络；
  * - 首次添加建议后，系统可能在通知栏提示“有可用的网络建议”，用户需点“连接”或在 Wi‑Fi 面板选择；
- * - 通过广播与网络回调尽量感知连接结果，但最终连不连由系统决策。
+ * - 通过广播与网络回调尽量感知连接结果，但最终连不连由系统决策；
+ * - 连上后由 {@link LinkProbe} 在后台测一次链路速度。
  */
 public class WifiConnector {
 
@@ -95,7 +96,7 @@ public class WifiConnector {
 
         // 4) 尝试立即判断当前连接（如果本来就连着）
         if (isCurrentlyConnectedToTarget()) {
-            if (callback != null) callback.onConnected();
+            notifyConnected();
         }
         // 实际连接可能需要用户在通知栏点确认，或在 Wi‑Fi 面板选择；请在 UI 里引导用户
     }
@@ -126,6 +127,12 @@ public class WifiConnector {
         if (callback != null) callback.onDisconnected();
     }
 
+    // 连上打印机热点后立即在后台测速，打印时按链路质量选择输出路径
+    private void notifyConnected() {
+        if (callback != null) callback.onConnected();
+        LinkProbe.getInstance().refreshAsync(DirectPrintClient.forWifiGateway(appContext));
+    }
+
     private void registerSuggestionReceiver() {
         if (receiverRegistered) return;
         suggestionReceiver = new BroadcastReceiver() {
@@ -134,7 +141,7 @@ public class WifiConnector {
                 // 当通过建议成功连接某网络时会触发此广播
                 if (WifiManager.ACTION_WIFI_NETWORK_SUGGESTION_POST_CONNECTION.equals(intent.getAction())) {
                     if (isCurrentlyConnectedToTarget()) {
-                        if (callback != null) callback.onConnected();
+                        notifyConnected();
                     }
                 }
             }
@@ -150,7 +157,7 @@ public class WifiConnector {
             @Override
             public void onAvailable(@NonNull Network network) {
                 if (isCurrentlyConnectedToTarget()) {
-                    if (callback != null) callback.onConnected();
+                    notifyConnected();
                 }
             }
 
@@ -164,7 +171,7 @@ public class WifiConnector {
             public void onCapabilitiesChanged(@NonNull Network network, @NonNull NetworkCapabilities caps) {
                 if (caps.hasTransport(NetworkCapabilities.TRANSPORT_WIFI)) {
                     if (isCurrentlyConnectedToTarget()) {
-                        if (callback != null) callback.onConnected();
+                        notifyConnected();
                     }
                 }
             }
@@ -0,0 +1,167 @@
+package com.pdf.reader.pdf;
+
+import java.io.ByteArrayOutputStream;
+
+/**
+ * CCITT Group 4（T.6 / MMR）二值图像编码，对应 PDF 的 /CCITTFaxDecode /K -1。
+ * 输入为按行打包的 1 位像素（MSB 在前，1 = 黑），每行 (width + 7) / 8 字节。
+ * 黑白扫描的古籍文字页通常可压到原始 1 位数据的 1/10 以下。
+ */
+public final class CcittG4Encoder {
+    private CcittG4Encoder() {}
+
+    private static final String[] WHITE_TERM = {
+            "00110101", "000111", "0111", "1000", "1011", "1100", "1110", "1111",
+            "10011", "10100", "00111", "01000", "001000", "000011", "110100", "110101",
+            "101010", "101011", "0100111", "0001100", "0001000", "0010111", "0000011", "0000100",
+            "0101000", "0101011", "0010011", "0100100", "0011000", "00000010", "00000011", "00011010",
+            "00011011", "00010010", "00010011", "00010100", "00010101", "00010110", "00010111", "00101000",
+            "00101001", "00101010", "00101011", "00101100", "00101101", "00000100", "00000101", "00001010",
+            "00001011", "01010010", "01010011", "01010100", "01010101", "00100100", "00100101", "01011000",
+            "01011001", "01011010", "01011011", "01001010", "01001011", "00110010", "00110011", "00110100",
+    };
+    // 64, 128, ... 1728
+    private static final String[] WHITE_MAKEUP = {
+            "11011", "10010", "010111", "0110111", "00110110", "00110111", "01100100", "01100101",
+            "01101000", "01100111", "011001100", "011001101", "011010010", "011010011", "011010100", "011010101",
+            "011010110", "011010111", "011011000", "011011001", "011011010", "011011011", "010011000", "010011001",
+            "010011010", "011000", "010011011",
+    };
+    private static final String[] BLACK_TERM = {
+            "0000110111", "010", "11", "10", "011", "0011", "0010", "00011",
+            "000101", "000100", "0000100", "0000101", "0000111", "00000100", "00000111", "000011000",
+            "0000010111", "0000011000", "0000001000", "00001100111", "00001101000", "00001101100", "00000110111", "00000101000",
+            "00000010111", "00000011000", "000011001010", "000011001011", "000011001100", "000011001101", "000001101000", "000001101001",
+            "000001101010", "000001101011", "000011010010", "000011010011", "000011010100", "000011010101", "000011010110", "000011010111",
+            "000001101100", "000001101101", "000011011010", "000011011011", "000001010100", "000001010101", "000001010110", "000001010111",
+            "000001100100", "000001100101", "000001010010", "000001010011", "000000100100", "000000110111", "000000111000", "000000100111",
+            "000000101000", "000001011000", "000001011001", "000000101011", "000000101100", "000001011010", "000001100110", "000001100111",
+    };
+    private static final String[] BLACK_MAKEUP = {
+            "0000001111", "000011001000", "000011001001", "000001011011", "000000110011", "000000110100", "000000110101", "0000001101100",
+            "0000001101101", "0000001001010", "0000001001011", "0000001001100", "0000001001101", "0000001110010", "0000001110011", "0000001110100",
+            "0000001110101", "0000001110110", "0000001110111", "0000001010010", "0000001010011", "0000001010100", "0000001010101", "0000001011010",
+            "0000001011011", "0000001100100", "0000001100101",
+    };
+    // 1792, 1856, ... 2560，黑白共用
+    private static final String[] EXT_MAKEUP = {
+            "00000001000", "00000001100", "00000001101", "000000010010", "000000010011", "000000010100", "000000010101",
+            "000000010110", "000000010111", "000000011100", "000000011101", "000000011110", "000000011111",
+    };
+    // 垂直模式，下标 = (b1 - a1) + 3
+    private static final String[] VERTICAL = {"0000011", "000011", "011", "1", "010", "000010", "0000010"};
+    private static final String PASS = "0001";
+    private static final String HORIZONTAL = "001";
+    private static final String EOL = "000000000001";
+
+    private static final class BitWriter {
+        final ByteArrayOutputStream out;
+        int acc;
+        int n;
+
+        BitWriter(int capacity) {
+            out = new ByteArrayOutputStream(capacity);
+        }
+
+        void put(String code) {
+            for (int i = 0; i < code.length(); i++) {
+                acc = (acc << 1) | (code.charAt(i) - '0');
+                if (++n == 8) {
+                    out.write(acc);
+                    acc = 0;
+                    n = 0;
+                }
+            }
+        }
+
+        byte[] finish() {
+            if (n > 0) out.write(acc << (8 - n));
+            return out.toByteArray();
+        }
+    }
+
+    public static byte[] encode(byte[] packed, int width, int height) {
+        int rowBytes = (width + 7) / 8;
+        byte[] ref = new byte[rowBytes]; // 第一行之上的假想参考行：全白
+        byte[] cur = new byte[rowBytes];
+        BitWriter w = new BitWriter(Math.max(64, packed.length / 8));
+        for (int y = 0; y < height; y++) {
+            System.arraycopy(packed, y * rowBytes, cur, 0, rowBytes);
+            encodeRow(w, cur, ref, width);
+            byte[] t = ref;
+            ref = cur;
+            cur = t;
+        }
+        w.put(EOL);
+        w.put(EOL);
+        return w.finish();
+    }
+
+    private static void encodeRow(BitWriter w, byte[] line, byte[] ref, int width) {
+        int a0 = 0;
+        int a1 = pixel(line, 0) != 0 ? 0 : findDiff(line, 0, width, 0);
+        int b1 = pixel(ref, 0) != 0 ? 0 : findDiff(ref, 0, width, 0);
+        while (true) {
+            int b2 = b1 < width ? findDiff(ref, b1, width, pixel(ref, b1)) : width;
+            if (b2 >= a1) {
+                int d = b1 - a1;
+                if (d < -3 || d > 3) {
+                    int a2 = a1 < width ? findDiff(line, a1, width, pixel(line, a1)) : width;
+                    w.put(HORIZONTAL);
+                    if (a0 + a1 == 0 || pixel(line, a0) == 0) {
+                        putRun(w, a1 - a0, false);
+                        putRun(w, a2 - a1, true);
+                    } else {
+                        putRun(w, a1 - a0, true);
+                        putRun(w, a2 - a1, false);
+                    }
+                    a0 = a2;
+                } else {
+                    w.put(VERTICAL[d + 3]);
+                    a0 = a1;
+                }
+            } else {
+                w.put(PASS);
+                a0 = b2;
+            }
+            if (a0 >= width) break;
+            int color = pixel(line, a0);
+            a1 = findDiff(line, a0, width, color);
+            b1 = findDiff(ref, a0, width, color ^ 1);
+            b1 = findDiff(ref, b1, width, color);
+        }
+    }
+
+    private static void putRun(BitWriter w, int run, boolean black) {
+        while (run >= 2624) {
+            w.put(EXT_MAKEUP[EXT_MAKEUP.length - 1]);
+            run -= 2560;
+        }
+        if (run >= 64) {
+            int m = run / 64; // 1..40
+            if (m <= 27) w.put(black ? BLACK_MAKEUP[m - 1] : WHITE_MAKEUP[m - 1]);
+            else w.put(EXT_MAKEUP[m - 28]);
+            run -= m * 64;
+        }
+        w.put(black ? BLACK_TERM[run] : WHITE_TERM[run]);
+    }
+
+    private static int pixel(byte[] row, int x) {
+        return (row[x >> 3] >> (7 - (x & 7))) & 1;
+    }
+
+    /** 从 start 开始跳过颜色为 color 的像素，返回第一个颜色不同的位置（没有则返回 end）。 */
+    private static int findDiff(byte[] row, int start, int end, int color) {
+        int x = start;
+        int skip = color == 0 ? 0 : 0xFF;
+        while (x < end) {
+            if ((x & 7) == 0 && x + 8 <= end && (row[x >> 3] & 0xFF) == skip) {
+                x += 8;
+                continue;
+            }
+            if (pixel(row, x) != color) return x;
+            x++;
+        }
+        return end;
+    }
+}
@@ -0,0 +1,133 @@
+package com.pdf.reader.pdf;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * 拼版方案：输出纸张尺寸，以及每张输出页上各个格子（放哪一页、放在哪里）。纯几何计算，不涉及文件。
+ * <ul>
+ *   <li>2 合 1：横向纸张左右两格；4 合 1：纵向纸张 2×2 四格；</li>
+ *   <li>小册子：横向纸张左右两格，按骑马订顺序排页，每 {@code sheetsPerSignature} 张纸为一帖，
+ *       输出顺序为第 1 张正面、第 1 张背面、第 2 张正面……，需短边翻转双面打印后对折；</li>
+ *   <li>右翻（{@link Binding#RIGHT}，竖排古籍）：同一张纸上页序从右到左，小册子的书脊在右侧。</li>
+ * </ul>
+ * 尺寸单位为 point，坐标为 PDF 坐标（左下角为原点）。
+ */
+public final class Imposition {
+
+    public enum Layout { TWO_UP, FOUR_UP, BOOKLET }
+
+    public enum Binding { LEFT, RIGHT }
+
+    /** 一个格子：{@link #page} 为输入页序列中的下标，-1 表示留空。 */
+    public static final class Slot {
+        public final int page;
+        public final float x;
+        public final float y;
+        public final float width;
+        public final float height;
+
+        Slot(int page, float x, float y, float width, float height) {
+            this.page = page;
+            this.x = x;
+            this.y = y;
+            this.width = width;
+            this.height = height;
+        }
+    }
+
+    public final float sheetWidth;
+    public final float sheetHeight;
+    private final List<List<Slot>> sheets;
+
+    private Imposition(float sheetWidth, float sheetHeight, List<List<Slot>> sheets) {
+        this.sheetWidth = sheetWidth;
+        this.sheetHeight = sheetHeight;
+        this.sheets = sheets;
+    }
+
+    /**
+     * @param pages       输入页数
+     * @param paperWidth  纸张宽（任意方向，按版式自动取横向或纵向）
+     * @param margin      纸张四周留白
+     * @param sheetsPerSignature 小册子每帖的纸张数，&lt;= 0 表示整本一帖
+     */
+    public static Imposition create(Layout layout, Binding binding, int pages, float paperWidth, float paperHeight,
+                                    float margin, int sheetsPerSignature) {
+        boolean landscape = layout != Layout.FOUR_UP;
+        float w = landscape ? Math.max(paperWidth, paperHeight) : Math.min(paperWidth, paperHeight);
+        float h = landscape ? Math.min(paperWidth, paperHeight) : Math.max(paperWidth, paperHeight);
+        int cols = 2, rows = layout == Layout.FOUR_UP ? 2 : 1;
+        float cellW = (w - 2 * margin) / cols;
+        float cellH = (h - 2 * margin) / rows;
+
+        // 每张输出页上各格的页序（-1 为空），按阅读顺序：行从上到下，行内左翻从左到右、右翻从右到左
+        List<int[]> order = new ArrayList<>();
+        if (layout == Layout.BOOKLET) {
+            int perSig = sheetsPerSignature > 0 ? sheetsPerSignature * 4 : Math.max(4, (pages + 3) / 4 * 4);
+            for (int base = 0; base < Math.max(1, pages); base += perSig) {
+                int p = Math.min(perSig, (pages - base + 3) / 4 * 4); // 末帖只取够用的纸张
+                for (int i = 0; i < p / 4; i++) {
+                    // 骑马订：第 i 张纸正面为 (p-1-2i, 2i)，背面为 (2i+1, p-2-2i)，均为“左格, 右格”（左翻）
+                    int[] front = {p - 1 - 2 * i, 2 * i};
+                    int[] back = {2 * i + 1, p - 2 - 2 * i};
+                    for (int[] side : new int[][]{front, back}) {
+                        if (binding == Binding.RIGHT) swap(side);
+                        for (int k = 0; k < 2; k++) side[k] = base + side[k] < pages ? base + side[k] : -1;
+                        order.add(side);
+                    }
+                }
+            }
+        } else {
+            int per = cols * rows;
+            for (int base = 0; base < pages; base += per) {
+                int[] cells = new int[per];
+                for (int k = 0; k < per; k++) cells[k] = base + k < pages ? base + k : -1;
+                if (binding == Binding.RIGHT) {
+                    for (int r = 0; r < rows; r++) {
+                        int[] row = {cells[r * 2], cells[r * 2 + 1]};
+                        swap(row);
+                        cells[r * 2] = row[0];
+                        cells[r * 2 + 1] = row[1];
+                    }
+                }
+                order.add(cells);
+            }
+        }
+
+        List<List<Slot>> sheets = new ArrayList<>(order.size());
+        for (int[] cells : order) {
+            List<Slot> slots = new ArrayList<>(cells.length);
+            for (int k = 0; k < cells.length; k++) {
+                int col = k % cols, row = k / cols;
+                float x = margin + col * cellW;
+                float y = h - margin - (row + 1) * cellH;
+                slots.add(new Slot(cells[k], x, y, cellW, cellH));
+            }
+            sheets.add(Collections.unmodifiableList(slots));
+        }
+        return new Imposition(w, h, Collections.unmodifiableList(sheets));
+    }
+
+    public int getSheetCount() {
+        return sheets.size();
+    }
+
+    public List<Slot> getSheet(int index) {
+        return sheets.get(index);
+    }
+
+    /** 只保留指定的输出页（0 基，按给定顺序），用于打印对话框的页码范围。 */
+    public Imposition select(int[] sheetIndices) {
+        List<List<Slot>> picked = new ArrayList<>(sheetIndices.length);
+        for (int i : sheetIndices) picked.add(sheets.get(i));
+        return new Imposition(sheetWidth, sheetHeight, Collections.unmodifiableList(picked));
+    }
+
+    private static void swap(int[] pair) {
+        int t = pair[0];
+        pair[0] = pair[1];
+        pair[1] = t;
+    }
+}
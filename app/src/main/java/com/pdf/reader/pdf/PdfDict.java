@@ -0,0 +1,45 @@
+package com.pdf.reader.pdf;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * 字典对象。键为不带斜杠的名称，值为 PdfName/PdfRef/PdfString/PdfDict/List/Long/Double/Boolean。
+ * 值为 null 的键视为不存在（与 PDF 规范一致）。
+ */
+public final class PdfDict {
+
+    private final LinkedHashMap<String, Object> map = new LinkedHashMap<>();
+
+    public Object get(String key) {
+        return map.get(key);
+    }
+
+    public void put(String key, Object value) {
+        if (value == null) map.remove(key);
+        else map.put(key, value);
+    }
+
+    public Object remove(String key) {
+        return map.remove(key);
+    }
+
+    public boolean containsKey(String key) {
+        return map.containsKey(key);
+    }
+
+    public int size() {
+        return map.size();
+    }
+
+    public Set<Map.Entry<String, Object>> entrySet() {
+        return map.entrySet();
+    }
+
+    /** 直接值为名称时返回其字符串，否则返回 null（不解引用）。 */
+    public String getName(String key) {
+        Object v = map.get(key);
+        return v instanceof PdfName ? ((PdfName) v).name : null;
+    }
+}
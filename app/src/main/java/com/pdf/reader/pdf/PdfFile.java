@@ -0,0 +1,503 @@
+package com.pdf.reader.pdf;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * 纯 Java 的 PDF 结构读取：交叉引用表（传统 xref 表 / xref 流 / 混合）、对象流、页面树。
+ * 不做任何渲染，只按需解析对象；源数据通常是只读映射区，流数据以切片形式引用、不复制。
+ * 限制：单个 ByteBuffer 最大 2GB。
+ */
+public final class PdfFile {
+
+    private static final byte[] STARTXREF = "startxref".getBytes(StandardCharsets.ISO_8859_1);
+    private static final byte[] TRAILER = "trailer".getBytes(StandardCharsets.ISO_8859_1);
+    private static final byte[] ENDSTREAM = "endstream".getBytes(StandardCharsets.ISO_8859_1);
+
+    private static final class XrefEntry {
+        final int type;      // 0=空闲 1=普通 2=位于对象流
+        final long offset;   // type1: 文件偏移；type2: 对象流的对象号
+        final int index;     // type2: 在对象流中的序号
+
+        XrefEntry(int type, long offset, int index) {
+            this.type = type;
+            this.offset = offset;
+            this.index = index;
+        }
+    }
+
+    private static final class ObjectStream {
+        final ByteBuffer data;
+        final int first;
+        final int[] nums;
+        final int[] offsets;
+
+        ObjectStream(ByteBuffer data, int first, int[] nums, int[] offsets) {
+            this.data = data;
+            this.first = first;
+            this.nums = nums;
+            this.offsets = offsets;
+        }
+    }
+
+    private final ByteBuffer buf;
+    private final Map<Integer, XrefEntry> xref = new HashMap<>();
+    private final Map<Integer, ObjectStream> objStmCache = new LinkedHashMap<Integer, ObjectStream>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Integer, ObjectStream> eldest) {
+            return size() > 8;
+        }
+    };
+    private PdfDict trailer;
+    private String version = "1.7";
+    private List<PdfRef> pageRefs;
+
+    private PdfFile(ByteBuffer buf) {
+        this.buf = buf;
+    }
+
+    /** 以只读方式映射整个文件并解析结构。映射在通道关闭后依然有效。 */
+    public static PdfFile open(FileChannel channel) throws IOException {
+        long size = channel.size();
+        if (size <= 0) throw new IOException("文件为空或不可定位");
+        if (size > Integer.MAX_VALUE) throw new IOException("文件超过 2GB，无法映射");
+        MappedByteBuffer map = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+        return open(map);
+    }
+
+    public static PdfFile open(ByteBuffer data) throws IOException {
+        PdfFile f = new PdfFile(data);
+        f.readHeader();
+        try {
+            f.readXrefChain(f.findStartXref());
+            if (f.trailer == null || !(f.resolve(f.trailer.get("Root")) instanceof PdfDict)) {
+                throw new IOException("缺少 Root");
+            }
+        } catch (IOException | RuntimeException e) {
+            // 交叉引用损坏：扫描全文重建
+            f.xref.clear();
+            f.trailer = null;
+            f.reconstruct();
+        }
+        return f;
+    }
+
+    public String getVersion() {
+        return version;
+    }
+
+    public PdfDict getTrailer() {
+        return trailer;
+    }
+
+    public boolean isEncrypted() {
+        return trailer.containsKey("Encrypt");
+    }
+
+    public PdfDict getCatalog() throws IOException {
+        Object root = resolve(trailer.get("Root"));
+        if (!(root instanceof PdfDict)) throw new IOException("缺少文档目录（Root）");
+        return (PdfDict) root;
+    }
+
+    /** 文档内最大对象号 + 1（对应 trailer 的 /Size）。 */
+    public int getObjectCount() {
+        int max = 0;
+        for (int n : xref.keySet()) max = Math.max(max, n);
+        return max + 1;
+    }
+
+    // ---------------------------------------------------------------- 对象访问
+
+    /** 读取间接对象；对象不存在或已释放时返回 null。 */
+    public Object getObject(int num) throws IOException {
+        XrefEntry e = xref.get(num);
+        if (e == null || e.type == 0) return null;
+        if (e.type == 1) return parseIndirect((int) e.offset, num);
+        return getCompressed((int) e.offset, e.index, num);
+    }
+
+    /** 普通对象在文件中的字节偏移；位于对象流中、空闲或不存在时返回 -1。 */
+    public long getObjectOffset(int num) {
+        XrefEntry e = xref.get(num);
+        return e != null && e.type == 1 ? e.offset : -1;
+    }
+
+    /** 解引用：PdfRef 转为实际对象，其余原样返回。 */
+    public Object resolve(Object o) throws IOException {
+        for (int depth = 0; o instanceof PdfRef; depth++) {
+            if (depth > 32) throw new IOException("引用链过深");
+            o = getObject(((PdfRef) o).num);
+        }
+        return o;
+    }
+
+    public PdfDict resolveDict(Object o) throws IOException {
+        o = resolve(o);
+        if (o instanceof PdfStream) return ((PdfStream) o).dict;
+        return o instanceof PdfDict ? (PdfDict) o : null;
+    }
+
+    /** 解码流（仅支持无滤镜与 FlateDecode，足以读取结构与内容流）。 */
+    public byte[] decodeStream(PdfStream stream) throws IOException {
+        return PdfFilters.decode(stream, this);
+    }
+
+    // ---------------------------------------------------------------- 页面树
+
+    /** 按阅读顺序列出所有页面对象的引用（结果缓存）。 */
+    public synchronized List<PdfRef> getPageRefs() throws IOException {
+        if (pageRefs != null) return pageRefs;
+        Object pages = getCatalog().get("Pages");
+        if (!(pages instanceof PdfRef)) throw new IOException("页面树根无效");
+        List<PdfRef> out = new ArrayList<>();
+        collectPages((PdfRef) pages, out, new HashSet<>(), 0);
+        pageRefs = Collections.unmodifiableList(out);
+        return pageRefs;
+    }
+
+    public int getPageCount() throws IOException {
+        return getPageRefs().size();
+    }
+
+    public PdfDict getPage(int index) throws IOException {
+        PdfDict page = resolveDict(getPageRefs().get(index));
+        if (page == null) throw new IOException("第 " + (index + 1) + " 页对象缺失");
+        return page;
+    }
+
+    /** 读取可继承的页面属性（Resources / MediaBox / CropBox / Rotate），沿 /Parent 向上查找。 */
+    public Object getInherited(PdfDict page, String key) throws IOException {
+        PdfDict node = page;
+        for (int depth = 0; node != null && depth < 64; depth++) {
+            Object v = node.get(key);
+            if (v != null) return v;
+            node = resolveDict(node.get("Parent"));
+        }
+        return null;
+    }
+
+    private void collectPages(PdfRef ref, List<PdfRef> out, Set<Integer> visited, int depth) throws IOException {
+        if (depth > 64 || !visited.add(ref.num)) return;
+        PdfDict node = resolveDict(ref);
+        if (node == null) return;
+        Object kids = resolve(node.get("Kids"));
+        boolean isTree = "Pages".equals(node.getName("Type")) || (kids instanceof List && !"Page".equals(node.getName("Type")));
+        if (!isTree) {
+            out.add(ref);
+            return;
+        }
+        if (!(kids instanceof List)) return;
+        for (Object kid : (List<?>) kids) {
+            if (kid instanceof PdfRef) collectPages((PdfRef) kid, out, visited, depth + 1);
+        }
+    }
+
+    // ---------------------------------------------------------------- 解析
+
+    private void readHeader() {
+        int n = Math.min(buf.limit(), 1024);
+        for (int i = 0; i + 8 <= n; i++) {
+            if (buf.get(i) == '%' && buf.get(i + 1) == 'P' && buf.get(i + 2) == 'D' && buf.get(i + 3) == 'F' && buf.get(i + 4) == '-') {
+                StringBuilder sb = new StringBuilder();
+                for (int j = i + 5; j < n && sb.length() < 4; j++) {
+                    int c = buf.get(j) & 0xFF;
+                    if ((c >= '0' && c <= '9') || c == '.') sb.append((char) c);
+                    else break;
+                }
+                if (sb.length() >= 3) version = sb.toString();
+                return;
+            }
+        }
+    }
+
+    private int findStartXref() throws IOException {
+        int limit = buf.limit();
+        int from = Math.max(0, limit - 2048);
+        int at = lastIndexOf(STARTXREF, from, limit);
+        if (at < 0) throw new IOException("未找到 startxref");
+        PdfParser p = new PdfParser(buf, at + STARTXREF.length);
+        long off = p.readLong();
+        if (off <= 0 || off >= limit) throw new IOException("startxref 越界");
+        return (int) off;
+    }
+
+    private void readXrefChain(int offset) throws IOException {
+        Set<Integer> seen = new HashSet<>();
+        while (offset > 0 && seen.add(offset)) {
+            PdfParser p = new PdfParser(buf, offset);
+            Map<Integer, XrefEntry> entries = new HashMap<>();
+            PdfDict section;
+            if (p.tryKeyword("xref")) {
+                section = readXrefTable(p, entries);
+                Object xrefStm = section.get("XRefStm");
+                if (xrefStm instanceof Number) {
+                    // 混合文件：表中标为空闲（或未列出）的对象以 xref 流为准
+                    Map<Integer, XrefEntry> hidden = new HashMap<>();
+                    readXrefStream(((Number) xrefStm).intValue(), hidden);
+                    for (Map.Entry<Integer, XrefEntry> e : hidden.entrySet()) {
+                        XrefEntry cur = entries.get(e.getKey());
+                        if (cur == null || cur.type == 0) entries.put(e.getKey(), e.getValue());
+                    }
+                }
+            } else {
+                section = readXrefStream(offset, entries);
+            }
+            // 越新的段越先读到，先到者优先
+            for (Map.Entry<Integer, XrefEntry> e : entries.entrySet()) {
+                xref.putIfAbsent(e.getKey(), e.getValue());
+            }
+            if (trailer == null) trailer = section;
+            Object prev = section.get("Prev");
+            offset = prev instanceof Number ? ((Number) prev).intValue() : -1;
+        }
+        if (trailer == null) throw new IOException("缺少 trailer");
+    }
+
+    private PdfDict readXrefTable(PdfParser p, Map<Integer, XrefEntry> out) throws IOException {
+        while (true) {
+            if (p.tryKeyword("trailer")) {
+                Object t = p.readObject();
+                if (!(t instanceof PdfDict)) throw new IOException("trailer 无效");
+                return (PdfDict) t;
+            }
+            int start = p.readInt();
+            int count = p.readInt();
+            for (int i = 0; i < count; i++) {
+                long off = p.readLong();
+                p.readInt(); // generation
+                String kind = p.readKeyword();
+                int num = start + i;
+                if ("n".equals(kind)) {
+                    out.putIfAbsent(num, new XrefEntry(1, off, 0));
+                } else if ("f".equals(kind)) {
+                    out.putIfAbsent(num, new XrefEntry(0, 0, 0));
+                } else {
+                    throw new IOException("xref 表项无效: " + kind);
+                }
+            }
+        }
+    }
+
+    private PdfDict readXrefStream(int offset, Map<Integer, XrefEntry> out) throws IOException {
+        Object o = parseIndirect(offset, -1);
+        if (!(o instanceof PdfStream)) throw new IOException("xref 流无效");
+        PdfStream s = (PdfStream) o;
+        List<?> w = (List<?>) s.dict.get("W");
+        if (w == null || w.size() < 3) throw new IOException("xref 流缺少 /W");
+        int w0 = PdfFilters.intOf(w.get(0), 1), w1 = PdfFilters.intOf(w.get(1), 0), w2 = PdfFilters.intOf(w.get(2), 0);
+        int size = PdfFilters.intOf(s.dict.get("Size"), 0);
+        Object idx = s.dict.get("Index");
+        List<?> index = idx instanceof List ? (List<?>) idx : Arrays.asList(0L, (long) size);
+        byte[] data = decodeStream(s);
+        int rowLen = w0 + w1 + w2;
+        int p = 0;
+        for (int k = 0; k + 1 < index.size(); k += 2) {
+            int start = PdfFilters.intOf(index.get(k), 0);
+            int count = PdfFilters.intOf(index.get(k + 1), 0);
+            for (int i = 0; i < count && p + rowLen <= data.length; i++) {
+                int type = w0 == 0 ? 1 : (int) field(data, p, w0);
+                long f2 = field(data, p + w0, w1);
+                long f3 = field(data, p + w0 + w1, w2);
+                p += rowLen;
+                int num = start + i;
+                if (type == 0) out.putIfAbsent(num, new XrefEntry(0, 0, 0));
+                else if (type == 1) out.putIfAbsent(num, new XrefEntry(1, f2, 0));
+                else if (type == 2) out.putIfAbsent(num, new XrefEntry(2, f2, (int) f3));
+            }
+        }
+        return s.dict;
+    }
+
+    private static long field(byte[] d, int off, int width) {
+        long v = 0;
+        for (int i = 0; i < width; i++) v = (v << 8) | (d[off + i] & 0xFF);
+        return v;
+    }
+
+    private Object parseIndirect(int offset, int expectNum) throws IOException {
+        if (offset < 0 || offset >= buf.limit()) throw new IOException("对象偏移越界: " + offset);
+        PdfParser p = new PdfParser(buf, offset);
+        int num = p.readInt();
+        p.readInt();
+        p.expectKeyword("obj");
+        if (expectNum >= 0 && num != expectNum) {
+            throw new IOException("对象号不符：期望 " + expectNum + "，实际 " + num);
+        }
+        Object obj = p.readObject();
+        if (obj instanceof PdfDict && p.tryKeyword("stream")) {
+            PdfDict dict = (PdfDict) obj;
+            int start = p.streamDataStart();
+            int len = streamLength(dict, start);
+            ByteBuffer slice = buf.duplicate();
+            slice.limit(start + len).position(start);
+            return new PdfStream(dict, slice.slice());
+        }
+        return obj;
+    }
+
+    private int streamLength(PdfDict dict, int start) throws IOException {
+        int limit = buf.limit();
+        Object l = dict.get("Length");
+        if (l instanceof PdfRef) {
+            try {
+                l = resolve(l);
+            } catch (IOException e) {
+                l = null;
+            }
+        }
+        if (l instanceof Number) {
+            long len = ((Number) l).longValue();
+            if (len >= 0 && start + len <= limit) {
+                PdfParser p = new PdfParser(buf, (int) (start + len));
+                if (p.tryKeyword("endstream")) return (int) len;
+            }
+        }
+        // /Length 缺失或错误：向后搜索 endstream
+        int end = indexOf(ENDSTREAM, start, limit);
+        if (end < 0) throw new IOException("流未以 endstream 结束");
+        int len = end - start;
+        if (len > 0 && buf.get(start + len - 1) == '\n') len--;
+        if (len > 0 && buf.get(start + len - 1) == '\r') len--;
+        return len;
+    }
+
+    private Object getCompressed(int stmNum, int index, int num) throws IOException {
+        ObjectStream os = loadObjectStream(stmNum);
+        int i = index;
+        if (i < 0 || i >= os.nums.length || os.nums[i] != num) {
+            i = -1;
+            for (int k = 0; k < os.nums.length; k++) {
+                if (os.nums[k] == num) {
+                    i = k;
+                    break;
+                }
+            }
+            if (i < 0) return null;
+        }
+        PdfParser p = new PdfParser(os.data, os.first + os.offsets[i]);
+        return p.readObject();
+    }
+
+    private synchronized ObjectStream loadObjectStream(int stmNum) throws IOException {
+        ObjectStream os = objStmCache.get(stmNum);
+        if (os != null) return os;
+        Object o = getObject(stmNum);
+        if (!(o instanceof PdfStream)) throw new IOException("对象流 " + stmNum + " 无效");
+        PdfStream s = (PdfStream) o;
+        int n = PdfFilters.intOf(s.dict.get("N"), 0);
+        int first = PdfFilters.intOf(s.dict.get("First"), 0);
+        ByteBuffer data = ByteBuffer.wrap(decodeStream(s));
+        PdfParser p = new PdfParser(data, 0);
+        int[] nums = new int[n];
+        int[] offsets = new int[n];
+        for (int i = 0; i < n; i++) {
+            nums[i] = p.readInt();
+            offsets[i] = p.readInt();
+        }
+        os = new ObjectStream(data, first, nums, offsets);
+        objStmCache.put(stmNum, os);
+        return os;
+    }
+
+    /** 交叉引用损坏时的兜底：扫描全文的 "N G obj"，并展开扫描到的对象流。 */
+    private void reconstruct() throws IOException {
+        int limit = buf.limit();
+        List<Integer> objStms = new ArrayList<>();
+        PdfRef root = null;
+        for (int i = 0; i + 3 <= limit; i++) {
+            if (buf.get(i) != 'o' || buf.get(i + 1) != 'b' || buf.get(i + 2) != 'j') continue;
+            if (i + 3 < limit && !PdfParser.isWhitespace(buf.get(i + 3) & 0xFF) && !PdfParser.isDelimiter(buf.get(i + 3) & 0xFF)) continue;
+            int p = i - 1;
+            while (p >= 0 && PdfParser.isWhitespace(buf.get(p) & 0xFF)) p--;
+            int genEnd = p;
+            while (p >= 0 && Character.isDigit(buf.get(p))) p--;
+            if (p == genEnd) continue;
+            int sep = p;
+            while (p >= 0 && PdfParser.isWhitespace(buf.get(p) & 0xFF)) p--;
+            if (p == sep) continue;
+            int numEnd = p;
+            while (p >= 0 && Character.isDigit(buf.get(p))) p--;
+            if (p == numEnd) continue;
+            int start = p + 1;
+            int num;
+            try {
+                num = (int) new PdfParser(buf, start).readLong();
+            } catch (IOException e) {
+                continue;
+            }
+            xref.put(num, new XrefEntry(1, start, 0));
+            try {
+                Object o = parseIndirect(start, num);
+                PdfDict d = o instanceof PdfStream ? ((PdfStream) o).dict : (o instanceof PdfDict ? (PdfDict) o : null);
+                if (d != null) {
+                    String type = d.getName("Type");
+                    if ("ObjStm".equals(type)) objStms.add(num);
+                    else if ("Catalog".equals(type)) root = new PdfRef(num, 0);
+                }
+            } catch (IOException | RuntimeException ignored) { }
+        }
+        for (int stm : objStms) {
+            try {
+                ObjectStream os = loadObjectStream(stm);
+                for (int k = 0; k < os.nums.length; k++) {
+                    xref.putIfAbsent(os.nums[k], new XrefEntry(2, stm, k));
+                    if (root == null) {
+                        Object o = getCompressed(stm, k, os.nums[k]);
+                        if (o instanceof PdfDict && "Catalog".equals(((PdfDict) o).getName("Type"))) {
+                            root = new PdfRef(os.nums[k], 0);
+                        }
+                    }
+                }
+            } catch (IOException | RuntimeException ignored) { }
+        }
+        int t = lastIndexOf(TRAILER, 0, limit);
+        if (t >= 0) {
+            try {
+                Object o = new PdfParser(buf, t + TRAILER.length).readObject();
+                if (o instanceof PdfDict) trailer = (PdfDict) o;
+            } catch (IOException ignored) { }
+        }
+        if (trailer == null) trailer = new PdfDict();
+        if (!(resolve(trailer.get("Root")) instanceof PdfDict)) {
+            if (root == null) throw new IOException("无法定位文档目录，文件可能已损坏");
+            trailer.put("Root", root);
+        }
+    }
+
+    // ---------------------------------------------------------------- 字节搜索
+
+    private int indexOf(byte[] pat, int from, int to) {
+        outer:
+        for (int i = from; i + pat.length <= to; i++) {
+            for (int k = 0; k < pat.length; k++) {
+                if (buf.get(i + k) != pat[k]) continue outer;
+            }
+            return i;
+        }
+        return -1;
+    }
+
+    private int lastIndexOf(byte[] pat, int from, int to) {
+        outer:
+        for (int i = to - pat.length; i >= from; i--) {
+            for (int k = 0; k < pat.length; k++) {
+                if (buf.get(i + k) != pat[k]) continue outer;
+            }
+            return i;
+        }
+        return -1;
+    }
+}
@@ -0,0 +1,122 @@
+package com.pdf.reader.pdf;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+/**
+ * 流解码。解析结构只需要 FlateDecode（交叉引用流/对象流），其余滤镜原样透传、不在此解码。
+ */
+final class PdfFilters {
+    private PdfFilters() {}
+
+    static byte[] decode(PdfStream stream, PdfFile file) throws IOException {
+        Object filter = file.resolve(stream.dict.get("Filter"));
+        Object parms = file.resolve(stream.dict.get("DecodeParms"));
+        if (filter instanceof List) {
+            List<?> list = (List<?>) filter;
+            if (list.isEmpty()) {
+                filter = null;
+            } else if (list.size() == 1) {
+                filter = file.resolve(list.get(0));
+                if (parms instanceof List) {
+                    List<?> pl = (List<?>) parms;
+                    parms = pl.isEmpty() ? null : file.resolve(pl.get(0));
+                }
+            } else {
+                throw new IOException("不支持多重滤镜");
+            }
+        }
+        byte[] raw = toArray(stream.rawData());
+        if (filter == null) return raw;
+        String name = filter instanceof PdfName ? ((PdfName) filter).name : "";
+        if (!"FlateDecode".equals(name) && !"Fl".equals(name)) {
+            throw new IOException("不支持的滤镜 " + name);
+        }
+        byte[] inflated = inflate(raw);
+        if (parms instanceof PdfDict) {
+            PdfDict p = (PdfDict) parms;
+            int predictor = intOf(file.resolve(p.get("Predictor")), 1);
+            if (predictor >= 10) {
+                int colors = intOf(file.resolve(p.get("Colors")), 1);
+                int bpc = intOf(file.resolve(p.get("BitsPerComponent")), 8);
+                int columns = intOf(file.resolve(p.get("Columns")), 1);
+                return unpredictPng(inflated, colors, bpc, columns);
+            } else if (predictor != 1) {
+                throw new IOException("不支持的预测器 " + predictor);
+            }
+        }
+        return inflated;
+    }
+
+    static byte[] toArray(ByteBuffer b) {
+        byte[] out = new byte[b.remaining()];
+        b.duplicate().get(out);
+        return out;
+    }
+
+    static byte[] inflate(byte[] raw) throws IOException {
+        Inflater inf = new Inflater();
+        try {
+            inf.setInput(raw);
+            ByteArrayOutputStream out = new ByteArrayOutputStream(Math.max(64, raw.length * 3));
+            byte[] chunk = new byte[16 * 1024];
+            while (!inf.finished()) {
+                int n = inf.inflate(chunk);
+                if (n == 0) break; // 截断的数据（needsInput）：返回已解出的部分
+                out.write(chunk, 0, n);
+            }
+            return out.toByteArray();
+        } catch (DataFormatException e) {
+            throw new IOException("Flate 数据损坏: " + e.getMessage());
+        } finally {
+            inf.end();
+        }
+    }
+
+    private static byte[] unpredictPng(byte[] in, int colors, int bpc, int columns) throws IOException {
+        int bpp = Math.max(1, (colors * bpc + 7) / 8);
+        int rowLen = (columns * colors * bpc + 7) / 8;
+        int rows = in.length / (rowLen + 1);
+        byte[] out = new byte[rows * rowLen];
+        byte[] prev = new byte[rowLen];
+        int ip = 0;
+        for (int r = 0; r < rows; r++) {
+            int type = in[ip++] & 0xFF;
+            int base = r * rowLen;
+            for (int i = 0; i < rowLen; i++) {
+                int raw = in[ip++] & 0xFF;
+                int left = i >= bpp ? out[base + i - bpp] & 0xFF : 0;
+                int up = prev[i] & 0xFF;
+                int upLeft = i >= bpp ? prev[i - bpp] & 0xFF : 0;
+                int v;
+                switch (type) {
+                    case 0: v = raw; break;
+                    case 1: v = raw + left; break;
+                    case 2: v = raw + up; break;
+                    case 3: v = raw + ((left + up) >> 1); break;
+                    case 4: v = raw + paeth(left, up, upLeft); break;
+                    default: throw new IOException("PNG 预测类型错误 " + type);
+                }
+                out[base + i] = (byte) v;
+            }
+            System.arraycopy(out, base, prev, 0, rowLen);
+        }
+        return out;
+    }
+
+    private static int paeth(int a, int b, int c) {
+        int p = a + b - c;
+        int pa = Math.abs(p - a), pb = Math.abs(p - b), pc = Math.abs(p - c);
+        if (pa <= pb && pa <= pc) return a;
+        if (pb <= pc) return b;
+        return c;
+    }
+
+    static int intOf(Object o, int def) {
+        return o instanceof Number ? ((Number) o).intValue() : def;
+    }
+}
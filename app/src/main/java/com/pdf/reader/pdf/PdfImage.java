@@ -0,0 +1,26 @@
+package com.pdf.reader.pdf;
+
+/**
+ * 已编码好的图像 XObject 数据（data 为按 filter 压缩后的字节）。
+ */
+public final class PdfImage {
+
+    public final int width;
+    public final int height;
+    public final String colorSpace;      // DeviceRGB / DeviceGray
+    public final int bitsPerComponent;
+    public final String filter;          // FlateDecode / DCTDecode / CCITTFaxDecode，null 表示未压缩
+    public final PdfDict decodeParms;    // 可为 null
+    public final byte[] data;
+
+    public PdfImage(int width, int height, String colorSpace, int bitsPerComponent,
+                    String filter, PdfDict decodeParms, byte[] data) {
+        this.width = width;
+        this.height = height;
+        this.colorSpace = colorSpace;
+        this.bitsPerComponent = bitsPerComponent;
+        this.filter = filter;
+        this.decodeParms = decodeParms;
+        this.data = data;
+    }
+}
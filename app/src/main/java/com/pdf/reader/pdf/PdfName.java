@@ -0,0 +1,28 @@
+package com.pdf.reader.pdf;
+
+/**
+ * PDF 名称对象（/Name），保存已解码 #xx 转义后的原始字节（按 ISO-8859-1 映射为字符）。
+ */
+public final class PdfName {
+
+    public final String name;
+
+    public PdfName(String name) {
+        this.name = name;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        return o instanceof PdfName && ((PdfName) o).name.equals(name);
+    }
+
+    @Override
+    public int hashCode() {
+        return name.hashCode();
+    }
+
+    @Override
+    public String toString() {
+        return "/" + name;
+    }
+}
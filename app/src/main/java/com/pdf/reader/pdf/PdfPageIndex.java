@@ -0,0 +1,273 @@
+package com.pdf.reader.pdf;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 惰性页面索引：页数直接取页面树根的 /Count；第 i 页按各级 /Count 自顶向下定位，只解析路径上的节点，
+ * 可继承属性（MediaBox / CropBox / Rotate）在下降时顺带传递，不依赖 /Parent。
+ * 上万页的文档打开后即可得到页数，访问某一页的代价与树高成正比。
+ * <p>
+ * /Count 缺失或与实际子节点不符时，退回 {@link PdfFile#getPageRefs()} 的全量遍历。线程安全。
+ */
+public final class PdfPageIndex {
+
+    /** 单页的结构信息。盒子为 {llx, lly, urx, ury}（point）。 */
+    public static final class PageInfo {
+        public final PdfRef ref;
+        public final long offset;        // 页面对象的文件偏移，位于对象流中时为 -1
+        public final float[] mediaBox;
+        public final float[] cropBox;    // 未指定时等于 mediaBox
+        public final int rotate;         // 0 / 90 / 180 / 270
+
+        PageInfo(PdfRef ref, long offset, float[] mediaBox, float[] cropBox, int rotate) {
+            this.ref = ref;
+            this.offset = offset;
+            this.mediaBox = mediaBox;
+            this.cropBox = cropBox;
+            this.rotate = rotate;
+        }
+
+        /** 按 CropBox 与 /Rotate 计算的显示宽度。 */
+        public float getWidth() {
+            return (rotate % 180 == 0) ? Math.abs(cropBox[2] - cropBox[0]) : Math.abs(cropBox[3] - cropBox[1]);
+        }
+
+        public float getHeight() {
+            return (rotate % 180 == 0) ? Math.abs(cropBox[3] - cropBox[1]) : Math.abs(cropBox[2] - cropBox[0]);
+        }
+    }
+
+    // 缺省页面尺寸：Letter
+    private static final float[] DEFAULT_BOX = {0, 0, 612, 792};
+    private static final int MAX_DEPTH = 64;
+
+    /** 页面树的中间节点；inherited* 为传给子节点的继承值。 */
+    private static final class Node {
+        final List<?> kids;
+        final int count;
+        final Object inheritedMedia;
+        final Object inheritedCrop;
+        final Object inheritedRotate;
+        int[] starts; // 各子节点覆盖的第一个页序号（相对本节点），按需计算
+
+        Node(List<?> kids, int count, Object media, Object crop, Object rotate) {
+            this.kids = kids;
+            this.count = count;
+            this.inheritedMedia = media;
+            this.inheritedCrop = crop;
+            this.inheritedRotate = rotate;
+        }
+    }
+
+    private static final class Inconsistent extends Exception {
+        private static final long serialVersionUID = 1L;
+
+        Inconsistent(String message) {
+            super(message, null, false, false);
+        }
+    }
+
+    private final PdfFile file;
+    private final Node root;
+    private final Map<Integer, Node> nodes = new HashMap<>();
+    private final Map<Integer, PageInfo> pages = new HashMap<>();
+    private int pageCount;
+    private boolean flat; // /Count 不可信，改用全量遍历的结果
+
+    private PdfPageIndex(PdfFile file, Node root) {
+        this.file = file;
+        this.root = root;
+    }
+
+    /** 只读取目录与页面树根，不遍历页面。 */
+    public static PdfPageIndex open(PdfFile file) throws IOException {
+        PdfDict rootDict = file.resolveDict(file.getCatalog().get("Pages"));
+        Node root = rootDict != null ? node(file, rootDict, null) : null;
+        PdfPageIndex index = new PdfPageIndex(file, root);
+        if (root == null || root.count < 0) {
+            index.useFlat();
+        } else {
+            index.pageCount = root.count;
+        }
+        return index;
+    }
+
+    /**
+     * 页数取自 /Count，并顺带定位末页：/Count 与实际不符时索引就地改用全量遍历，返回的是可信的页数。
+     * 只需要页数的调用方用它代替 {@link PdfFile#getPageCount()}，免去遍历整棵页面树。
+     */
+    public static int countPages(PdfFile file) throws IOException {
+        PdfPageIndex index = open(file);
+        index.verify();
+        return index.getPageCount();
+    }
+
+    /** 按 /Count 定位末页以校验页面树，不符时就地改用全量遍历的结果。 */
+    public synchronized void verify() throws IOException {
+        if (flat || pageCount == 0 || pages.containsKey(pageCount - 1)) return;
+        try {
+            pages.put(pageCount - 1, locate(pageCount - 1));
+        } catch (Inconsistent e) {
+            useFlat();
+        }
+    }
+
+    public synchronized int getPageCount() {
+        return pageCount;
+    }
+
+    public synchronized PageInfo getPage(int index) throws IOException {
+        if (index < 0 || index >= pageCount) throw new IOException("页码越界: " + (index + 1));
+        PageInfo info = pages.get(index);
+        if (info != null) return info;
+        if (!flat) {
+            try {
+                info = locate(index);
+            } catch (Inconsistent e) {
+                useFlat();
+                if (index >= pageCount) throw new IOException("页码越界: " + (index + 1));
+            }
+        }
+        if (info == null) {
+            PdfRef ref = file.getPageRefs().get(index);
+            PdfDict page = file.getPage(index);
+            info = info(ref, page, file.getInherited(page, "MediaBox"),
+                    file.getInherited(page, "CropBox"), file.getInherited(page, "Rotate"));
+        }
+        pages.put(index, info);
+        return info;
+    }
+
+    private PageInfo locate(int index) throws IOException, Inconsistent {
+        Node n = root;
+        int local = index;
+        for (int depth = 0; depth < MAX_DEPTH; depth++) {
+            int k;
+            if (n.starts == null && n.count == n.kids.size()) {
+                // 常见的扁平树：每个子节点恰好一页，直接按下标取
+                k = local;
+            } else {
+                int[] starts = starts(n);
+                k = upperBound(starts, local) - 1;
+                if (k < 0) throw new Inconsistent("页面树计数不符");
+            }
+            Object kidRef = n.kids.get(k);
+            PdfDict kid = file.resolveDict(kidRef);
+            if (kid == null) throw new Inconsistent("页面树节点缺失");
+            int rel = local - (n.starts != null ? n.starts[k] : k);
+            if (!isTree(kid)) {
+                if (rel != 0 || !(kidRef instanceof PdfRef)) throw new Inconsistent("页面树计数不符");
+                return info((PdfRef) kidRef, kid, own(kid, "MediaBox", n.inheritedMedia),
+                        own(kid, "CropBox", n.inheritedCrop), own(kid, "Rotate", n.inheritedRotate));
+            }
+            if (!(kidRef instanceof PdfRef)) throw new Inconsistent("页面树节点不是间接对象");
+            Node child = child((PdfRef) kidRef, kid, n);
+            if (child.count < 0 || rel >= child.count) throw new Inconsistent("页面树计数不符");
+            if (n.starts == null && child.count != 1) {
+                // 扁平假设不成立：按实际 /Count 重新计算后再定位
+                starts(n);
+                continue;
+            }
+            n = child;
+            local = rel;
+        }
+        throw new Inconsistent("页面树过深");
+    }
+
+    private int[] starts(Node n) throws IOException, Inconsistent {
+        if (n.starts != null) return n.starts;
+        int[] s = new int[n.kids.size()];
+        int sum = 0;
+        for (int k = 0; k < s.length; k++) {
+            s[k] = sum;
+            Object kidRef = n.kids.get(k);
+            PdfDict kid = file.resolveDict(kidRef);
+            if (kid == null) continue;
+            if (!isTree(kid)) {
+                sum++;
+            } else {
+                if (!(kidRef instanceof PdfRef)) throw new Inconsistent("页面树节点不是间接对象");
+                int c = child((PdfRef) kidRef, kid, n).count;
+                if (c < 0) throw new Inconsistent("页面树缺少 /Count");
+                sum += c;
+            }
+        }
+        if (sum != n.count) throw new Inconsistent("页面树计数不符");
+        n.starts = s;
+        return s;
+    }
+
+    private Node child(PdfRef ref, PdfDict dict, Node parent) throws IOException {
+        Node c = nodes.get(ref.num);
+        if (c == null) {
+            c = node(file, dict, parent);
+            nodes.put(ref.num, c);
+        }
+        return c;
+    }
+
+    private static Node node(PdfFile file, PdfDict dict, Node parent) throws IOException {
+        Object kids = file.resolve(dict.get("Kids"));
+        Object count = file.resolve(dict.get("Count"));
+        int c = count instanceof Number ? ((Number) count).intValue() : -1;
+        List<?> list = kids instanceof List ? (List<?>) kids : Collections.emptyList();
+        if (c > 0 && list.isEmpty()) c = -1;
+        return new Node(list, c,
+                own(dict, "MediaBox", parent != null ? parent.inheritedMedia : null),
+                own(dict, "CropBox", parent != null ? parent.inheritedCrop : null),
+                own(dict, "Rotate", parent != null ? parent.inheritedRotate : null));
+    }
+
+    private static Object own(PdfDict dict, String key, Object inherited) {
+        Object v = dict.get(key);
+        return v != null ? v : inherited;
+    }
+
+    // 与 PdfFile 遍历页面树时的判定一致
+    private static boolean isTree(PdfDict d) {
+        String type = d.getName("Type");
+        return "Pages".equals(type) || (d.get("Kids") != null && !"Page".equals(type));
+    }
+
+    private PageInfo info(PdfRef ref, PdfDict page, Object media, Object crop, Object rotate) throws IOException {
+        float[] mb = box(media);
+        if (mb == null) mb = DEFAULT_BOX;
+        float[] cb = box(crop);
+        if (cb == null) cb = mb;
+        Object r = file.resolve(rotate);
+        int deg = r instanceof Number ? ((((Number) r).intValue() / 90 * 90) % 360 + 360) % 360 : 0;
+        return new PageInfo(ref, file.getObjectOffset(ref.num), mb, cb, deg);
+    }
+
+    private float[] box(Object v) throws IOException {
+        v = file.resolve(v);
+        if (!(v instanceof List) || ((List<?>) v).size() != 4) return null;
+        float[] b = new float[4];
+        for (int i = 0; i < 4; i++) {
+            Object n = file.resolve(((List<?>) v).get(i));
+            if (!(n instanceof Number)) return null;
+            b[i] = ((Number) n).floatValue();
+        }
+        return b;
+    }
+
+    private void useFlat() throws IOException {
+        flat = true;
+        pageCount = file.getPageCount();
+        pages.clear();
+    }
+
+    private static int upperBound(int[] a, int key) {
+        int lo = 0, hi = a.length;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (a[mid] <= key) lo = mid + 1;
+            else hi = mid;
+        }
+        return lo;
+    }
+}
@@ -0,0 +1,344 @@
+package com.pdf.reader.pdf;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * PDF 词法/语法解析器：在 ByteBuffer 上按绝对位置读取对象，不移动 buffer 自身的 position，
+ * 因此同一个映射区可以被多个解析器同时使用。
+ */
+final class PdfParser {
+
+    private final ByteBuffer buf;
+    private final int limit;
+    private int pos;
+
+    PdfParser(ByteBuffer buf, int pos) {
+        this.buf = buf;
+        this.limit = buf.limit();
+        this.pos = pos;
+    }
+
+    int position() {
+        return pos;
+    }
+
+    void seek(int pos) {
+        this.pos = pos;
+    }
+
+    int peek() {
+        return pos < limit ? buf.get(pos) & 0xFF : -1;
+    }
+
+    private int peekAt(int p) {
+        return p < limit ? buf.get(p) & 0xFF : -1;
+    }
+
+    static boolean isWhitespace(int c) {
+        return c == 0 || c == 9 || c == 10 || c == 12 || c == 13 || c == 32;
+    }
+
+    static boolean isDelimiter(int c) {
+        return c == '(' || c == ')' || c == '<' || c == '>' || c == '[' || c == ']'
+                || c == '{' || c == '}' || c == '/' || c == '%';
+    }
+
+    private static boolean isRegular(int c) {
+        return c >= 0 && !isWhitespace(c) && !isDelimiter(c);
+    }
+
+    void skipWhitespace() {
+        while (pos < limit) {
+            int c = buf.get(pos) & 0xFF;
+            if (isWhitespace(c)) {
+                pos++;
+            } else if (c == '%') {
+                while (pos < limit) {
+                    int d = buf.get(pos) & 0xFF;
+                    if (d == '\r' || d == '\n') break;
+                    pos++;
+                }
+            } else {
+                break;
+            }
+        }
+    }
+
+    /** 读取一个关键字（obj/endobj/stream/xref/trailer 等）；遇到分隔符时返回空串。 */
+    String readKeyword() {
+        skipWhitespace();
+        int start = pos;
+        while (isRegular(peek())) pos++;
+        return latin1(start, pos);
+    }
+
+    /** 若下一个记号是给定关键字则消费并返回 true，否则位置不变。 */
+    boolean tryKeyword(String kw) {
+        int save = pos;
+        if (kw.equals(readKeyword())) return true;
+        pos = save;
+        return false;
+    }
+
+    void expectKeyword(String kw) throws IOException {
+        int at = pos;
+        String got = readKeyword();
+        if (!kw.equals(got)) {
+            throw new IOException("期望 " + kw + "，实际为 '" + got + "'（偏移 " + at + "）");
+        }
+    }
+
+    long readLong() throws IOException {
+        skipWhitespace();
+        int start = pos;
+        if (peek() == '+' || peek() == '-') pos++;
+        while (peek() >= '0' && peek() <= '9') pos++;
+        try {
+            return Long.parseLong(latin1(start, pos));
+        } catch (NumberFormatException e) {
+            throw new IOException("期望整数（偏移 " + start + "）");
+        }
+    }
+
+    int readInt() throws IOException {
+        return (int) readLong();
+    }
+
+    /**
+     * 读取一个对象。数字后紧跟 "G R" 时识别为间接引用；PDF null 返回 Java null。
+     */
+    Object readObject() throws IOException {
+        skipWhitespace();
+        int c = peek();
+        switch (c) {
+            case -1:
+                throw new IOException("意外的文件结尾");
+            case '/':
+                return readName();
+            case '(':
+                return readLiteralString();
+            case '<':
+                if (peekAt(pos + 1) == '<') return readDict();
+                return readHexString();
+            case '[':
+                return readArray();
+            default:
+                break;
+        }
+        if ((c >= '0' && c <= '9') || c == '+' || c == '-' || c == '.') {
+            return readNumberOrRef();
+        }
+        int at = pos;
+        String kw = readKeyword();
+        switch (kw) {
+            case "true":
+                return Boolean.TRUE;
+            case "false":
+                return Boolean.FALSE;
+            case "null":
+                return null;
+            default:
+                throw new IOException("无法识别的记号 '" + kw + "'（偏移 " + at + "）");
+        }
+    }
+
+    private Object readNumberOrRef() throws IOException {
+        int start = pos;
+        boolean real = false;
+        while (true) {
+            int c = peek();
+            if (c == '.') real = true;
+            else if (!((c >= '0' && c <= '9') || c == '+' || c == '-')) break;
+            pos++;
+        }
+        String tok = latin1(start, pos);
+        if (!real) {
+            long v;
+            try {
+                v = Long.parseLong(tok);
+            } catch (NumberFormatException e) {
+                return 0L; // 类似 "--1" 的畸形数字按 0 处理，与常见阅读器一致
+            }
+            if (v >= 0 && tok.charAt(0) != '+' && tok.charAt(0) != '-') {
+                Object ref = tryReadRefTail((int) v);
+                if (ref != null) return ref;
+            }
+            return v;
+        }
+        try {
+            return Double.parseDouble(tok);
+        } catch (NumberFormatException e) {
+            return 0.0;
+        }
+    }
+
+    private PdfRef tryReadRefTail(int num) {
+        int save = pos;
+        skipWhitespace();
+        int genStart = pos;
+        while (peek() >= '0' && peek() <= '9') pos++;
+        if (pos > genStart && pos - genStart <= 5) {
+            int gen = Integer.parseInt(latin1(genStart, pos));
+            skipWhitespace();
+            if (peek() == 'R' && !isRegular(peekAt(pos + 1))) {
+                pos++;
+                return new PdfRef(num, gen);
+            }
+        }
+        pos = save;
+        return null;
+    }
+
+    private PdfName readName() {
+        pos++; // '/'
+        ByteArrayOutputStream out = new ByteArrayOutputStream(16);
+        while (isRegular(peek())) {
+            int c = buf.get(pos++) & 0xFF;
+            if (c == '#' && isHex(peek()) && isHex(peekAt(pos + 1))) {
+                c = (hexVal(buf.get(pos) & 0xFF) << 4) | hexVal(buf.get(pos + 1) & 0xFF);
+                pos += 2;
+            }
+            out.write(c);
+        }
+        return new PdfName(new String(out.toByteArray(), StandardCharsets.ISO_8859_1));
+    }
+
+    private PdfString readLiteralString() throws IOException {
+        pos++; // '('
+        ByteArrayOutputStream out = new ByteArrayOutputStream(32);
+        int depth = 1;
+        while (true) {
+            if (pos >= limit) throw new IOException("字符串未闭合");
+            int c = buf.get(pos++) & 0xFF;
+            if (c == '\\') {
+                int e = peek();
+                pos++;
+                switch (e) {
+                    case 'n': out.write('\n'); break;
+                    case 'r': out.write('\r'); break;
+                    case 't': out.write('\t'); break;
+                    case 'b': out.write('\b'); break;
+                    case 'f': out.write('\f'); break;
+                    case '\r':
+                        if (peek() == '\n') pos++;
+                        break;
+                    case '\n':
+                        break;
+                    default:
+                        if (e >= '0' && e <= '7') {
+                            int v = e - '0';
+                            for (int i = 0; i < 2 && peek() >= '0' && peek() <= '7'; i++) {
+                                v = v * 8 + (buf.get(pos++) - '0');
+                            }
+                            out.write(v & 0xFF);
+                        } else if (e >= 0) {
+                            out.write(e); // \( \) \\ 以及未定义转义
+                        }
+                }
+            } else if (c == '(') {
+                depth++;
+                out.write(c);
+            } else if (c == ')') {
+                if (--depth == 0) break;
+                out.write(c);
+            } else {
+                out.write(c);
+            }
+        }
+        return new PdfString(out.toByteArray(), false);
+    }
+
+    private PdfString readHexString() throws IOException {
+        pos++; // '<'
+        ByteArrayOutputStream out = new ByteArrayOutputStream(32);
+        int hi = -1;
+        while (true) {
+            if (pos >= limit) throw new IOException("十六进制字符串未闭合");
+            int c = buf.get(pos++) & 0xFF;
+            if (c == '>') break;
+            if (!isHex(c)) continue;
+            if (hi < 0) {
+                hi = hexVal(c);
+            } else {
+                out.write((hi << 4) | hexVal(c));
+                hi = -1;
+            }
+        }
+        if (hi >= 0) out.write(hi << 4);
+        return new PdfString(out.toByteArray(), true);
+    }
+
+    private List<Object> readArray() throws IOException {
+        pos++; // '['
+        List<Object> list = new ArrayList<>();
+        while (true) {
+            skipWhitespace();
+            int c = peek();
+            if (c == ']') {
+                pos++;
+                return list;
+            }
+            if (c == -1) throw new IOException("数组未闭合");
+            list.add(readObject());
+        }
+    }
+
+    private PdfDict readDict() throws IOException {
+        pos += 2; // '<<'
+        PdfDict dict = new PdfDict();
+        while (true) {
+            skipWhitespace();
+            int c = peek();
+            if (c == '>' && peekAt(pos + 1) == '>') {
+                pos += 2;
+                return dict;
+            }
+            if (c != '/') {
+                if (c == -1) throw new IOException("字典未闭合");
+                // 容错：跳过不是名称的键（损坏文件中常见）
+                readObject();
+                continue;
+            }
+            String key = readName().name;
+            skipWhitespace();
+            if (peek() == '>' && peekAt(pos + 1) == '>') {
+                continue; // 缺值的键
+            }
+            dict.put(key, readObject());
+        }
+    }
+
+    /**
+     * 定位 "stream" 关键字之后的数据起点：关键字后应跟 CRLF 或 LF（兼容单独的 CR）。
+     */
+    int streamDataStart() {
+        if (peek() == '\r') {
+            pos++;
+            if (peek() == '\n') pos++;
+        } else if (peek() == '\n') {
+            pos++;
+        }
+        return pos;
+    }
+
+    private String latin1(int from, int to) {
+        byte[] b = new byte[to - from];
+        for (int i = 0; i < b.length; i++) b[i] = buf.get(from + i);
+        return new String(b, StandardCharsets.ISO_8859_1);
+    }
+
+    private static boolean isHex(int c) {
+        return (c >= '0' && c <= '9') || (c >= 'a' && c <= 'f') || (c >= 'A' && c <= 'F');
+    }
+
+    private static int hexVal(int c) {
+        if (c <= '9') return c - '0';
+        if (c <= 'F') return c - 'A' + 10;
+        return c - 'a' + 10;
+    }
+}
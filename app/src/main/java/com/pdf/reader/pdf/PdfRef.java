@@ -0,0 +1,32 @@
+package com.pdf.reader.pdf;
+
+/**
+ * 间接引用（N G R）。
+ */
+public final class PdfRef {
+
+    public final int num;
+    public final int gen;
+
+    public PdfRef(int num, int gen) {
+        this.num = num;
+        this.gen = gen;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (!(o instanceof PdfRef)) return false;
+        PdfRef r = (PdfRef) o;
+        return r.num == num && r.gen == gen;
+    }
+
+    @Override
+    public int hashCode() {
+        return num * 31 + gen;
+    }
+
+    @Override
+    public String toString() {
+        return num + " " + gen + " R";
+    }
+}
@@ -0,0 +1,26 @@
+package com.pdf.reader.pdf;
+
+import java.nio.ByteBuffer;
+
+/**
+ * 流对象：字典 + 未解码的原始数据（通常是源文件映射区上的切片，不复制）。
+ */
+public final class PdfStream {
+
+    public final PdfDict dict;
+    private final ByteBuffer data;
+
+    public PdfStream(PdfDict dict, ByteBuffer data) {
+        this.dict = dict;
+        this.data = data;
+    }
+
+    /** 返回原始（仍为编码状态）数据的只读视图，position=0。 */
+    public ByteBuffer rawData() {
+        return data.duplicate();
+    }
+
+    public int rawLength() {
+        return data.remaining();
+    }
+}
@@ -0,0 +1,15 @@
+package com.pdf.reader.pdf;
+
+/**
+ * 字符串对象；bytes 为转义解码后的原始字节，hex 记录原文是否为 &lt;...&gt; 形式。
+ */
+public final class PdfString {
+
+    public final byte[] bytes;
+    public final boolean hex;
+
+    public PdfString(byte[] bytes, boolean hex) {
+        this.bytes = bytes;
+        this.hex = hex;
+    }
+}
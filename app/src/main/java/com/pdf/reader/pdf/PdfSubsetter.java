@@ -0,0 +1,386 @@
+package com.pdf.reader.pdf;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.function.BooleanSupplier;
+import java.util.zip.DeflaterOutputStream;
+
+/**
+ * 无损页面子集：只拷贝选中的页面对象及其引用到的资源（字体/图像/内容流原样复制，不解码、不渲染），
+ * 重新编号后写成一个新的 PDF。
+ * <p>
+ * 分两步：{@link #plan} 解析并收集全部对象（可能因文件结构问题抛出 IOException，此时尚未写出任何字节，
+ * 调用方可以安全回退到其他方案）；{@link #writeTo} 只做顺序输出。
+ * <p>
+ * {@link #impose} 用同一套对象收集做矢量拼版：每个源页面转为一个 Form XObject（内容流与资源原样引用），
+ * 按 {@link Imposition} 缩放放置到新的纸张页面上，不栅格化，输出大小与源文件相当。
+ */
+public final class PdfSubsetter {
+
+    private static final Set<String> INHERITABLE = new HashSet<>(Arrays.asList("Resources", "MediaBox", "CropBox", "Rotate"));
+    // 页面字典中与打印无关、且会把其他页面牵连进来的键
+    private static final Set<String> DROPPED_PAGE_KEYS = new HashSet<>(Arrays.asList("Parent", "B", "Thumb"));
+
+    private static final int CATALOG_NUM = 1;
+    private static final int PAGES_NUM = 2;
+    // 对象头、字典与 xref 条目的平均开销
+    private static final int OBJECT_OVERHEAD = 120;
+
+    private static final class Pending {
+        final int newNum;
+        final Object source;
+
+        Pending(int newNum, Object source) {
+            this.newNum = newNum;
+            this.source = source;
+        }
+    }
+
+    private final PdfFile src;
+    private final Map<Integer, Integer> renumber = new HashMap<>();
+    private final Set<Integer> allPages = new HashSet<>();
+    private final List<Object> objects = new ArrayList<>(); // 下标 = 新对象号 - 1
+    private final ArrayDeque<Pending> queue = new ArrayDeque<>();
+    private final PdfDict trailer = new PdfDict();
+    private int pageCount;
+
+    private PdfSubsetter(PdfFile src) {
+        this.src = src;
+    }
+
+    /**
+     * 收集指定页面（0 基，按给定顺序输出，重复项忽略）及其依赖对象。
+     */
+    public static PdfSubsetter plan(PdfFile src, int[] pageIndices, BooleanSupplier canceled) throws IOException {
+        if (src.isEncrypted()) throw new IOException("加密文档不支持无损子集");
+        PdfSubsetter s = new PdfSubsetter(src);
+        s.collect(pageIndices, canceled);
+        return s;
+    }
+
+    /**
+     * 拼版：pageIndices 为参与拼版的源页面（0 基），{@link Imposition.Slot#page} 是其中的下标。
+     * 页面上的注释不随 Form XObject 输出。
+     */
+    public static PdfSubsetter impose(PdfFile src, Imposition imposition, int[] pageIndices,
+                                      BooleanSupplier canceled) throws IOException {
+        if (src.isEncrypted()) throw new IOException("加密文档不支持拼版");
+        PdfSubsetter s = new PdfSubsetter(src);
+        s.collectImposed(imposition, pageIndices, canceled);
+        return s;
+    }
+
+    public int getPageCount() {
+        return pageCount;
+    }
+
+    /** 写出前估算输出大小：流数据原样拷贝，其余对象按每个约 {@value #OBJECT_OVERHEAD} 字节计。 */
+    public long estimateSize() {
+        long size = 0;
+        for (Object o : objects) {
+            size += OBJECT_OVERHEAD;
+            if (o instanceof PdfStream) size += ((PdfStream) o).rawLength();
+        }
+        return size;
+    }
+
+    /** 写出子集文档，返回写出的字节数。输出流不会被关闭。 */
+    public long writeTo(OutputStream out, BooleanSupplier canceled) throws IOException {
+        PdfWriter w = new PdfWriter(out);
+        w.writeHeader(src.getVersion());
+        for (int i = 0; i < objects.size(); i++) w.reserve();
+        for (int i = 0; i < objects.size(); i++) {
+            if (canceled.getAsBoolean()) throw new CancellationException();
+            Object o = objects.get(i);
+            if (o instanceof PdfStream) {
+                PdfStream s = (PdfStream) o;
+                w.writeStream(i + 1, s.dict, s.rawData());
+            } else {
+                w.writeObject(i + 1, o);
+            }
+        }
+        w.finish(trailer);
+        return w.bytesWritten();
+    }
+
+    private void collect(int[] pageIndices, BooleanSupplier canceled) throws IOException {
+        List<PdfRef> refs = src.getPageRefs();
+        for (PdfRef r : refs) allPages.add(r.num);
+
+        alloc(); // 1: Catalog
+        alloc(); // 2: Pages
+
+        List<Object> kids = new ArrayList<>();
+        List<int[]> selected = new ArrayList<>(); // {源页序号, 新对象号}
+        for (int idx : pageIndices) {
+            if (idx < 0 || idx >= refs.size()) throw new IOException("页码越界: " + (idx + 1));
+            PdfRef ref = refs.get(idx);
+            if (renumber.containsKey(ref.num)) continue;
+            int num = alloc();
+            renumber.put(ref.num, num);
+            kids.add(new PdfRef(num, 0));
+            selected.add(new int[]{idx, num});
+        }
+        for (int[] sel : selected) {
+            if (canceled.getAsBoolean()) throw new CancellationException();
+            PdfDict page = src.getPage(sel[0]);
+            PdfDict copy = new PdfDict();
+            for (Map.Entry<String, Object> e : page.entrySet()) {
+                if (DROPPED_PAGE_KEYS.contains(e.getKey())) continue;
+                copy.put(e.getKey(), remap(e.getValue()));
+            }
+            for (String key : INHERITABLE) {
+                if (!copy.containsKey(key)) copy.put(key, remap(src.getInherited(page, key)));
+            }
+            copy.put("Parent", new PdfRef(PAGES_NUM, 0));
+            objects.set(sel[1] - 1, copy);
+            drain(canceled);
+        }
+        finishTree(kids, canceled);
+    }
+
+    /** 源页面转成的 Form XObject：对象号、可见区域（BBox）与页面旋转角度。 */
+    private static final class Form {
+        final int num;
+        final float[] box;
+        final int rotate;
+
+        Form(int num, float[] box, int rotate) {
+            this.num = num;
+            this.box = box;
+            this.rotate = rotate;
+        }
+    }
+
+    private void collectImposed(Imposition imposition, int[] pageIndices, BooleanSupplier canceled) throws IOException {
+        List<PdfRef> refs = src.getPageRefs();
+        for (PdfRef r : refs) allPages.add(r.num);
+
+        alloc(); // 1: Catalog
+        alloc(); // 2: Pages
+
+        Map<Integer, Form> forms = new HashMap<>();
+        List<Object> kids = new ArrayList<>();
+        for (int s = 0; s < imposition.getSheetCount(); s++) {
+            if (canceled.getAsBoolean()) throw new CancellationException();
+            PdfDict xobjects = new PdfDict();
+            StringBuilder content = new StringBuilder(128);
+            for (Imposition.Slot slot : imposition.getSheet(s)) {
+                if (slot.page < 0) continue;
+                int idx = pageIndices[slot.page];
+                if (idx < 0 || idx >= refs.size()) throw new IOException("页码越界: " + (idx + 1));
+                Form form = forms.get(idx);
+                if (form == null) {
+                    form = toForm(idx);
+                    forms.put(idx, form);
+                    drain(canceled);
+                }
+                String name = "P" + xobjects.size();
+                xobjects.put(name, new PdfRef(form.num, 0));
+                content.append("q ").append(placement(form, slot)).append(" cm /").append(name).append(" Do Q\n");
+            }
+            int contentNum = alloc();
+            objects.set(contentNum - 1, new PdfStream(new PdfDict(),
+                    ByteBuffer.wrap(content.toString().getBytes(StandardCharsets.ISO_8859_1))));
+
+            PdfDict resources = new PdfDict();
+            resources.put("XObject", xobjects);
+            PdfDict page = new PdfDict();
+            page.put("Type", new PdfName("Page"));
+            page.put("Parent", new PdfRef(PAGES_NUM, 0));
+            List<Object> mediaBox = new ArrayList<>();
+            mediaBox.add(0L);
+            mediaBox.add(0L);
+            mediaBox.add((double) imposition.sheetWidth);
+            mediaBox.add((double) imposition.sheetHeight);
+            page.put("MediaBox", mediaBox);
+            page.put("Resources", resources);
+            page.put("Contents", new PdfRef(contentNum, 0));
+            int pageNum = alloc();
+            objects.set(pageNum - 1, page);
+            kids.add(new PdfRef(pageNum, 0));
+        }
+        finishTree(kids, canceled);
+    }
+
+    // 页面 → Form XObject：BBox 取 CropBox（与 MediaBox 求交），单个内容流原样引用，多个内容流解码拼接后重新压缩
+    private Form toForm(int idx) throws IOException {
+        PdfDict page = src.getPage(idx);
+        float[] box = rect(src.resolve(src.getInherited(page, "MediaBox")));
+        if (box == null) box = new float[]{0, 0, 612, 792};
+        float[] crop = rect(src.resolve(src.getInherited(page, "CropBox")));
+        if (crop != null) {
+            float[] b = {Math.max(box[0], crop[0]), Math.max(box[1], crop[1]),
+                    Math.min(box[2], crop[2]), Math.min(box[3], crop[3])};
+            if (b[2] > b[0] && b[3] > b[1]) box = b;
+        }
+        int rotate = ((PdfFilters.intOf(src.resolve(src.getInherited(page, "Rotate")), 0) / 90 % 4) + 4) % 4 * 90;
+
+        PdfDict dict = new PdfDict();
+        dict.put("Type", new PdfName("XObject"));
+        dict.put("Subtype", new PdfName("Form"));
+        List<Object> bbox = new ArrayList<>();
+        for (float v : box) bbox.add((double) v);
+        dict.put("BBox", bbox);
+        dict.put("Resources", remap(src.getInherited(page, "Resources")));
+        dict.put("Group", remap(page.get("Group")));
+
+        ByteBuffer data;
+        Object contents = src.resolve(page.get("Contents"));
+        if (contents instanceof PdfStream) {
+            PdfStream cs = (PdfStream) contents;
+            dict.put("Filter", remap(cs.dict.get("Filter")));
+            dict.put("DecodeParms", remap(cs.dict.get("DecodeParms")));
+            data = cs.rawData();
+        } else if (contents instanceof List) {
+            ByteArrayOutputStream joined = new ByteArrayOutputStream();
+            try (DeflaterOutputStream z = new DeflaterOutputStream(joined)) {
+                for (Object o : (List<?>) contents) {
+                    Object part = src.resolve(o);
+                    if (!(part instanceof PdfStream)) continue;
+                    z.write(src.decodeStream((PdfStream) part));
+                    z.write('\n'); // 内容流之间按规范视为以空白分隔
+                }
+            }
+            dict.put("Filter", new PdfName("FlateDecode"));
+            data = ByteBuffer.wrap(joined.toByteArray());
+        } else {
+            data = ByteBuffer.allocate(0);
+        }
+        int num = alloc();
+        objects.set(num - 1, new PdfStream(dict, data));
+        return new Form(num, box, rotate);
+    }
+
+    // 把 Form 等比缩放、居中放入格子，并按 /Rotate 顺时针旋转；返回 cm 的六个参数
+    private static String placement(Form f, Imposition.Slot slot) {
+        float x0 = f.box[0], y0 = f.box[1];
+        float w = f.box[2] - x0, h = f.box[3] - y0;
+        boolean quarter = f.rotate == 90 || f.rotate == 270;
+        float dw = quarter ? h : w, dh = quarter ? w : h;
+        float sc = Math.min(slot.width / dw, slot.height / dh);
+        float ox = slot.x + (slot.width - dw * sc) / 2f;
+        float oy = slot.y + (slot.height - dh * sc) / 2f;
+        float a, b, c, d, e, g;
+        switch (f.rotate) {
+            case 90:
+                a = 0; b = -sc; c = sc; d = 0; e = ox - sc * y0; g = oy + sc * (w + x0);
+                break;
+            case 180:
+                a = -sc; b = 0; c = 0; d = -sc; e = ox + sc * (w + x0); g = oy + sc * (h + y0);
+                break;
+            case 270:
+                a = 0; b = sc; c = -sc; d = 0; e = ox + sc * (h + y0); g = oy - sc * x0;
+                break;
+            default:
+                a = sc; b = 0; c = 0; d = sc; e = ox - sc * x0; g = oy - sc * y0;
+        }
+        return PdfWriter.formatReal(a) + ' ' + PdfWriter.formatReal(b) + ' ' + PdfWriter.formatReal(c) + ' '
+                + PdfWriter.formatReal(d) + ' ' + PdfWriter.formatReal(e) + ' ' + PdfWriter.formatReal(g);
+    }
+
+    // [llx lly urx ury]，规范化为左下、右上；无效时返回 null
+    private float[] rect(Object o) throws IOException {
+        if (!(o instanceof List) || ((List<?>) o).size() != 4) return null;
+        float[] r = new float[4];
+        for (int i = 0; i < 4; i++) {
+            Object v = src.resolve(((List<?>) o).get(i));
+            if (!(v instanceof Number)) return null;
+            r[i] = ((Number) v).floatValue();
+        }
+        return new float[]{Math.min(r[0], r[2]), Math.min(r[1], r[3]), Math.max(r[0], r[2]), Math.max(r[1], r[3])};
+    }
+
+    private void finishTree(List<Object> kids, BooleanSupplier canceled) throws IOException {
+        pageCount = kids.size();
+
+        PdfDict catalog = new PdfDict();
+        catalog.put("Type", new PdfName("Catalog"));
+        catalog.put("Pages", new PdfRef(PAGES_NUM, 0));
+        objects.set(CATALOG_NUM - 1, catalog);
+
+        PdfDict pages = new PdfDict();
+        pages.put("Type", new PdfName("Pages"));
+        pages.put("Kids", kids);
+        pages.put("Count", (long) kids.size());
+        objects.set(PAGES_NUM - 1, pages);
+
+        PdfDict srcTrailer = src.getTrailer();
+        trailer.put("Root", new PdfRef(CATALOG_NUM, 0));
+        trailer.put("Info", remap(srcTrailer.get("Info")));
+        trailer.put("ID", remap(srcTrailer.get("ID")));
+        drain(canceled);
+    }
+
+    private void drain(BooleanSupplier canceled) throws IOException {
+        Pending p;
+        int n = 0;
+        while ((p = queue.poll()) != null) {
+            if ((++n & 63) == 0 && canceled.getAsBoolean()) throw new CancellationException();
+            objects.set(p.newNum - 1, remap(p.source));
+        }
+    }
+
+    private int alloc() {
+        objects.add(null);
+        return objects.size();
+    }
+
+    /**
+     * 深拷贝并把引用改写为新对象号。指向未选中页面、页面树节点或文档目录的引用置为 null，
+     * 避免链接/注释把整本书牵连进来。
+     */
+    private Object remap(Object v) throws IOException {
+        if (v instanceof PdfRef) {
+            PdfRef r = (PdfRef) v;
+            Integer mapped = renumber.get(r.num);
+            if (mapped != null) return new PdfRef(mapped, 0);
+            if (allPages.contains(r.num)) return null;
+            Object target = src.getObject(r.num);
+            if (target == null) return null;
+            if (target instanceof PdfDict) {
+                String type = ((PdfDict) target).getName("Type");
+                if ("Pages".equals(type) || "Page".equals(type) || "Catalog".equals(type)) return null;
+            }
+            int num = alloc();
+            renumber.put(r.num, num);
+            queue.add(new Pending(num, target));
+            return new PdfRef(num, 0);
+        }
+        if (v instanceof PdfDict) {
+            PdfDict out = new PdfDict();
+            for (Map.Entry<String, Object> e : ((PdfDict) v).entrySet()) {
+                out.put(e.getKey(), remap(e.getValue()));
+            }
+            return out;
+        }
+        if (v instanceof List) {
+            List<?> in = (List<?>) v;
+            List<Object> out = new ArrayList<>(in.size());
+            for (Object o : in) out.add(remap(o));
+            return out;
+        }
+        if (v instanceof PdfStream) {
+            PdfStream s = (PdfStream) v;
+            PdfDict dict = new PdfDict();
+            for (Map.Entry<String, Object> e : s.dict.entrySet()) {
+                // /Length 由写出端按实际长度重写，间接的长度对象无需拷贝
+                if (!"Length".equals(e.getKey())) dict.put(e.getKey(), remap(e.getValue()));
+            }
+            return new PdfStream(dict, s.rawData());
+        }
+        return v;
+    }
+}
@@ -0,0 +1,236 @@
+package com.pdf.reader.pdf;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 顺序写出 PDF：对象一写完即落到输出流，最后写传统 xref 表与 trailer。
+ * 对象号由 {@link #reserve()} 分配，可以先引用、后写出；结束时未写出的对象号记为空闲。
+ */
+public final class PdfWriter {
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final OutputStream out;
+    private final byte[] buffer = new byte[BUFFER_SIZE];
+    private int count;
+    private long written;
+    private final List<Long> offsets = new ArrayList<>(); // 下标 = 对象号 - 1，-1 表示尚未写出
+
+    public PdfWriter(OutputStream out) {
+        this.out = out;
+    }
+
+    public void writeHeader(String version) throws IOException {
+        writeAscii("%PDF-" + version + "\n");
+        // 二进制注释，提示传输层按二进制处理
+        write(new byte[]{'%', (byte) 0xE2, (byte) 0xE3, (byte) 0xCF, (byte) 0xD3, '\n'}, 0, 6);
+    }
+
+    /** 分配一个新的对象号。 */
+    public int reserve() {
+        offsets.add(-1L);
+        return offsets.size();
+    }
+
+    public void writeObject(int num, Object obj) throws IOException {
+        beginObject(num);
+        writeValue(obj);
+        writeAscii("\nendobj\n");
+    }
+
+    /** 写出流对象；/Length 按实际数据长度改写为直接值。 */
+    public void writeStream(int num, PdfDict dict, ByteBuffer data) throws IOException {
+        ByteBuffer d = data.duplicate();
+        dict.put("Length", (long) d.remaining());
+        beginObject(num);
+        writeValue(dict);
+        writeAscii("\nstream\n");
+        if (d.hasArray()) {
+            write(d.array(), d.arrayOffset() + d.position(), d.remaining());
+        } else {
+            byte[] chunk = new byte[Math.min(BUFFER_SIZE, Math.max(1, d.remaining()))];
+            while (d.hasRemaining()) {
+                int n = Math.min(chunk.length, d.remaining());
+                d.get(chunk, 0, n);
+                write(chunk, 0, n);
+            }
+        }
+        writeAscii("\nendstream\nendobj\n");
+    }
+
+    public void writeStream(int num, PdfDict dict, byte[] data) throws IOException {
+        writeStream(num, dict, ByteBuffer.wrap(data));
+    }
+
+    /**
+     * 写出 xref 表、trailer 与 startxref 并冲刷输出流（不关闭）。
+     * trailer 中的 /Size 由本方法填写。
+     */
+    public void finish(PdfDict trailer) throws IOException {
+        long xrefOffset = written + count;
+        int size = offsets.size() + 1;
+        StringBuilder sb = new StringBuilder(32 + size * 20);
+        sb.append("xref\n0 ").append(size).append('\n');
+        sb.append("0000000000 65535 f\r\n");
+        for (Long off : offsets) {
+            if (off < 0) {
+                sb.append("0000000000 00000 f\r\n");
+            } else {
+                String s = Long.toString(off);
+                for (int i = s.length(); i < 10; i++) sb.append('0');
+                sb.append(s).append(" 00000 n\r\n");
+            }
+            if (sb.length() >= BUFFER_SIZE) {
+                writeAscii(sb.toString());
+                sb.setLength(0);
+            }
+        }
+        writeAscii(sb.toString());
+        trailer.put("Size", (long) size);
+        writeAscii("trailer\n");
+        writeValue(trailer);
+        writeAscii("\nstartxref\n" + xrefOffset + "\n%%EOF\n");
+        flush();
+    }
+
+    /** 已写出的字节数（含缓冲区中未冲刷部分）。 */
+    public long bytesWritten() {
+        return written + count;
+    }
+
+    public void flush() throws IOException {
+        flushBuffer();
+        out.flush();
+    }
+
+    private void beginObject(int num) throws IOException {
+        offsets.set(num - 1, written + count);
+        writeAscii(num + " 0 obj\n");
+    }
+
+    // ---------------------------------------------------------------- 序列化
+
+    private void writeValue(Object v) throws IOException {
+        if (v == null) {
+            writeAscii("null");
+        } else if (v instanceof PdfName) {
+            writeName(((PdfName) v).name);
+        } else if (v instanceof PdfRef) {
+            PdfRef r = (PdfRef) v;
+            writeAscii(r.num + " " + r.gen + " R");
+        } else if (v instanceof Long || v instanceof Integer) {
+            writeAscii(v.toString());
+        } else if (v instanceof Number) {
+            writeAscii(formatReal(((Number) v).doubleValue()));
+        } else if (v instanceof Boolean) {
+            writeAscii(v.toString());
+        } else if (v instanceof PdfString) {
+            writeString((PdfString) v);
+        } else if (v instanceof PdfDict) {
+            writeAscii("<<");
+            for (Map.Entry<String, Object> e : ((PdfDict) v).entrySet()) {
+                writeName(e.getKey());
+                writeByte(' ');
+                writeValue(e.getValue());
+            }
+            writeAscii(">>");
+        } else if (v instanceof List) {
+            writeByte('[');
+            boolean first = true;
+            for (Object o : (List<?>) v) {
+                if (!first) writeByte(' ');
+                first = false;
+                writeValue(o);
+            }
+            writeByte(']');
+        } else {
+            throw new IOException("无法序列化的对象类型: " + v.getClass().getName());
+        }
+    }
+
+    static String formatReal(double d) {
+        if (Double.isNaN(d) || Double.isInfinite(d)) return "0";
+        if (d == Math.rint(d) && Math.abs(d) < 1e15) return Long.toString((long) d);
+        BigDecimal bd = BigDecimal.valueOf(d);
+        if (bd.scale() > 6) bd = bd.setScale(6, java.math.RoundingMode.HALF_UP);
+        return bd.stripTrailingZeros().toPlainString();
+    }
+
+    private void writeName(String name) throws IOException {
+        writeByte('/');
+        for (int i = 0; i < name.length(); i++) {
+            int c = name.charAt(i) & 0xFF;
+            if (c < 0x21 || c > 0x7E || c == '#' || PdfParser.isDelimiter(c)) {
+                writeByte('#');
+                writeByte(Character.forDigit(c >> 4, 16));
+                writeByte(Character.forDigit(c & 15, 16));
+            } else {
+                writeByte(c);
+            }
+        }
+    }
+
+    private void writeString(PdfString s) throws IOException {
+        if (s.hex) {
+            writeByte('<');
+            for (byte b : s.bytes) {
+                writeByte(Character.forDigit((b >> 4) & 15, 16));
+                writeByte(Character.forDigit(b & 15, 16));
+            }
+            writeByte('>');
+            return;
+        }
+        writeByte('(');
+        for (byte b : s.bytes) {
+            int c = b & 0xFF;
+            if (c == '(' || c == ')' || c == '\\') {
+                writeByte('\\');
+                writeByte(c);
+            } else if (c == '\r') {
+                writeAscii("\\r");
+            } else {
+                writeByte(c);
+            }
+        }
+        writeByte(')');
+    }
+
+    // ---------------------------------------------------------------- 缓冲输出
+
+    private void writeAscii(String s) throws IOException {
+        byte[] b = s.getBytes(StandardCharsets.ISO_8859_1);
+        write(b, 0, b.length);
+    }
+
+    private void writeByte(int b) throws IOException {
+        if (count == buffer.length) flushBuffer();
+        buffer[count++] = (byte) b;
+    }
+
+    private void write(byte[] b, int off, int len) throws IOException {
+        if (len >= buffer.length) {
+            flushBuffer();
+            out.write(b, off, len);
+            written += len;
+            return;
+        }
+        if (len > buffer.length - count) flushBuffer();
+        System.arraycopy(b, off, buffer, count, len);
+        count += len;
+    }
+
+    private void flushBuffer() throws IOException {
+        if (count > 0) {
+            out.write(buffer, 0, count);
+            written += count;
+            count = 0;
+        }
+    }
+}
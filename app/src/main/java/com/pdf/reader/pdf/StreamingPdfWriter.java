@@ -0,0 +1,126 @@
+package com.pdf.reader.pdf;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 增量输出的图像型 PDF：每页的图像与内容流在 {@link #addPage} 时立即写出并冲刷，
+ * 只在内存中保留页面对象号；页面树、目录与 xref 在 {@link #finish} 时最后写出。
+ * 内存占用与页数无关，打印机在第一页完成后即可开始接收数据。
+ */
+public final class StreamingPdfWriter {
+
+    /** 图像在页面上的位置（PDF 坐标，原点在左下角，单位 point）。 */
+    public static final class Placement {
+        public final PdfImage image;
+        public final float x;
+        public final float y;
+        public final float width;
+        public final float height;
+
+        public Placement(PdfImage image, float x, float y, float width, float height) {
+            this.image = image;
+            this.x = x;
+            this.y = y;
+            this.width = width;
+            this.height = height;
+        }
+    }
+
+    private final PdfWriter writer;
+    private final int catalogNum;
+    private final int pagesNum;
+    private final List<Object> kids = new ArrayList<>();
+
+    public StreamingPdfWriter(OutputStream out) throws IOException {
+        writer = new PdfWriter(out);
+        writer.writeHeader("1.4");
+        catalogNum = writer.reserve();
+        pagesNum = writer.reserve();
+        writer.flush();
+    }
+
+    /** 写出一页并冲刷到输出流。 */
+    public void addPage(float widthPts, float heightPts, List<Placement> images) throws IOException {
+        PdfDict xobjects = new PdfDict();
+        StringBuilder content = new StringBuilder(images.size() * 64);
+        for (int i = 0; i < images.size(); i++) {
+            Placement p = images.get(i);
+            int num = writer.reserve();
+            writer.writeStream(num, imageDict(p.image), p.image.data);
+            xobjects.put("Im" + i, new PdfRef(num, 0));
+            content.append("q ")
+                    .append(PdfWriter.formatReal(p.width)).append(" 0 0 ")
+                    .append(PdfWriter.formatReal(p.height)).append(' ')
+                    .append(PdfWriter.formatReal(p.x)).append(' ')
+                    .append(PdfWriter.formatReal(p.y)).append(" cm /Im").append(i).append(" Do Q\n");
+        }
+        int contentNum = writer.reserve();
+        writer.writeStream(contentNum, new PdfDict(), content.toString().getBytes(StandardCharsets.ISO_8859_1));
+
+        PdfDict resources = new PdfDict();
+        resources.put("XObject", xobjects);
+        PdfDict page = new PdfDict();
+        page.put("Type", new PdfName("Page"));
+        page.put("Parent", new PdfRef(pagesNum, 0));
+        page.put("MediaBox", box(widthPts, heightPts));
+        page.put("Resources", resources);
+        page.put("Contents", new PdfRef(contentNum, 0));
+        int pageNum = writer.reserve();
+        writer.writeObject(pageNum, page);
+        kids.add(new PdfRef(pageNum, 0));
+        writer.flush();
+    }
+
+    public int getPageCount() {
+        return kids.size();
+    }
+
+    public long bytesWritten() {
+        return writer.bytesWritten();
+    }
+
+    /** 写出页面树、目录、xref 与 trailer，返回总字节数。输出流不会被关闭。 */
+    public long finish() throws IOException {
+        PdfDict pages = new PdfDict();
+        pages.put("Type", new PdfName("Pages"));
+        pages.put("Kids", kids);
+        pages.put("Count", (long) kids.size());
+        writer.writeObject(pagesNum, pages);
+
+        PdfDict catalog = new PdfDict();
+        catalog.put("Type", new PdfName("Catalog"));
+        catalog.put("Pages", new PdfRef(pagesNum, 0));
+        writer.writeObject(catalogNum, catalog);
+
+        PdfDict trailer = new PdfDict();
+        trailer.put("Root", new PdfRef(catalogNum, 0));
+        writer.finish(trailer);
+        return writer.bytesWritten();
+    }
+
+    private static PdfDict imageDict(PdfImage img) {
+        PdfDict d = new PdfDict();
+        d.put("Type", new PdfName("XObject"));
+        d.put("Subtype", new PdfName("Image"));
+        d.put("Width", (long) img.width);
+        d.put("Height", (long) img.height);
+        d.put("ColorSpace", new PdfName(img.colorSpace));
+        d.put("BitsPerComponent", (long) img.bitsPerComponent);
+        if (img.filter != null) d.put("Filter", new PdfName(img.filter));
+        if (img.decodeParms != null) d.put("DecodeParms", img.decodeParms);
+        return d;
+    }
+
+    private static List<Object> box(float w, float h) {
+        List<Object> b = new ArrayList<>(4);
+        b.add(0L);
+        b.add(0L);
+        b.add((double) w);
+        b.add((double) h);
+        return b;
+    }
+}
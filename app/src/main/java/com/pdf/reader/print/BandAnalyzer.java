@@ -0,0 +1,60 @@
+package com.pdf.reader.print;
+
+import android.graphics.Bitmap;
+
+/**
+ * AUTO 策略下的内容分析：在全分辨率条带上隔行采样，按彩色占比、亮度直方图判断适合的编码格式。
+ * <ul>
+ *   <li>无墨迹：返回 null，由调用方沿用当前格式；</li>
+ *   <li>灰度且中间调很少（文字/扫描线稿）：CCITT G4；</li>
+ *   <li>灰度、层次少：Flate 灰度；层次丰富（灰度照片）：JPEG；</li>
+ *   <li>彩色：颜色数少用 Flate RGB，否则 JPEG。</li>
+ * </ul>
+ * 黑白打印时忽略色彩，只按亮度判断。
+ */
+final class BandAnalyzer {
+
+    private static final int ROW_STEP = 4;
+    private static final int DARK = 80;
+    private static final int LIGHT = 176;
+    private static final int CHROMA = 32;
+
+    private BandAnalyzer() {}
+
+    static BandEncoder.Format classify(Bitmap bitmap, int rows, boolean grayOnly) {
+        int w = bitmap.getWidth();
+        int[] line = new int[w];
+        int[] lumaHist = new int[64];
+        boolean[] colors = new boolean[4096]; // 每通道 4 位量化
+        long samples = 0, dark = 0, mid = 0, chromatic = 0;
+
+        for (int y = 0; y < rows; y += ROW_STEP) {
+            bitmap.getPixels(line, 0, w, 0, y, w, 1);
+            for (int x = 0; x < w; x++) {
+                int c = line[x];
+                int r = (c >> 16) & 0xFF, g = (c >> 8) & 0xFF, b = c & 0xFF;
+                int l = BandEncoder.luma(c);
+                samples++;
+                if (l < DARK) dark++;
+                else if (l < LIGHT) mid++;
+                if (Math.max(r, Math.max(g, b)) - Math.min(r, Math.min(g, b)) > CHROMA) chromatic++;
+                lumaHist[l >> 2]++;
+                colors[((r >> 4) << 8) | ((g >> 4) << 4) | (b >> 4)] = true;
+            }
+        }
+
+        long ink = dark + mid;
+        if (samples == 0 || ink * 2000 < samples) return null;
+
+        if (!grayOnly && chromatic * 500 > samples) {
+            int distinct = 0;
+            for (boolean used : colors) if (used) distinct++;
+            return distinct > 256 ? BandEncoder.Format.JPEG : BandEncoder.Format.FLATE_RGB;
+        }
+        // 抗锯齿边缘也会产生中间调，因此按“中间调占墨迹的比例”判断是否为二值内容
+        if (mid * 100 < ink * 45) return BandEncoder.Format.CCITT_G4;
+        int levels = 0;
+        for (int n : lumaHist) if (n * 1000L > samples) levels++;
+        return levels > 24 ? BandEncoder.Format.JPEG : BandEncoder.Format.FLATE_GRAY;
+    }
+}
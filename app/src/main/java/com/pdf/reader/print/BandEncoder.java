@@ -0,0 +1,136 @@
+package com.pdf.reader.print;
+
+import android.graphics.Bitmap;
+
+import com.pdf.reader.pdf.CcittG4Encoder;
+import com.pdf.reader.pdf.PdfDict;
+import com.pdf.reader.pdf.PdfImage;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+
+/**
+ * 把渲染好的条带位图编码成 PDF 图像数据（在渲染线程上执行，编码后位图即可归还）。
+ * 同时按编码格式累计页数与字节数，供打印结束时输出日志。
+ */
+final class BandEncoder {
+
+    /** 具体编码格式，按“保留信息量”从低到高排列。 */
+    enum Format { CCITT_G4, FLATE_GRAY, FLATE_RGB, JPEG }
+
+    private static final int JPEG_QUALITY = 85;
+
+    private final AtomicIntegerArray pages = new AtomicIntegerArray(Format.values().length);
+    private final AtomicLongArray bytes = new AtomicLongArray(Format.values().length);
+
+    /** 编码位图的前 rows 行。 */
+    PdfImage encode(Bitmap bitmap, int rows, Format format) throws IOException {
+        PdfImage img;
+        switch (format) {
+            case CCITT_G4:
+                img = encodeG4(bitmap, rows);
+                break;
+            case FLATE_GRAY:
+                img = encodeFlate(bitmap, rows, true);
+                break;
+            case JPEG:
+                img = encodeJpeg(bitmap, rows);
+                break;
+            default:
+                img = encodeFlate(bitmap, rows, false);
+                break;
+        }
+        bytes.addAndGet(format.ordinal(), img.data.length);
+        return img;
+    }
+
+    /** 记录一页最终采用的格式。 */
+    void pageDone(Format format) {
+        pages.incrementAndGet(format.ordinal());
+    }
+
+    /** 形如 “CCITT_G4 12 页/1.3MB, JPEG 2 页/0.8MB” 的统计。 */
+    String summary() {
+        StringBuilder sb = new StringBuilder();
+        for (Format f : Format.values()) {
+            int n = pages.get(f.ordinal());
+            if (n == 0) continue;
+            if (sb.length() > 0) sb.append(", ");
+            sb.append(f).append(' ').append(n).append(" 页/")
+                    .append(String.format(Locale.ROOT, "%.1fMB", bytes.get(f.ordinal()) / 1048576.0));
+        }
+        return sb.toString();
+    }
+
+    private static PdfImage encodeFlate(Bitmap bitmap, int rows, boolean gray) throws IOException {
+        int w = bitmap.getWidth();
+        int[] line = new int[w];
+        byte[] out = new byte[gray ? w : w * 3];
+        ByteArrayOutputStream data = new ByteArrayOutputStream(w * rows / 2 + 64);
+        Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+        try (DeflaterOutputStream z = new DeflaterOutputStream(data, deflater, 64 * 1024)) {
+            for (int y = 0; y < rows; y++) {
+                bitmap.getPixels(line, 0, w, 0, y, w, 1);
+                if (gray) {
+                    for (int x = 0; x < w; x++) out[x] = (byte) luma(line[x]);
+                } else {
+                    for (int x = 0, j = 0; x < w; x++) {
+                        int c = line[x];
+                        out[j++] = (byte) (c >> 16);
+                        out[j++] = (byte) (c >> 8);
+                        out[j++] = (byte) c;
+                    }
+                }
+                z.write(out);
+            }
+        } finally {
+            deflater.end();
+        }
+        return new PdfImage(w, rows, gray ? "DeviceGray" : "DeviceRGB", 8, "FlateDecode", null, data.toByteArray());
+    }
+
+    private static PdfImage encodeJpeg(Bitmap bitmap, int rows) throws IOException {
+        int w = bitmap.getWidth();
+        // 末尾不满一条带时只压缩有效行
+        Bitmap src = rows == bitmap.getHeight() ? bitmap : Bitmap.createBitmap(bitmap, 0, 0, w, rows);
+        ByteArrayOutputStream data = new ByteArrayOutputStream(w * rows / 4 + 1024);
+        try {
+            if (!src.compress(Bitmap.CompressFormat.JPEG, JPEG_QUALITY, data)) {
+                throw new IOException("JPEG 编码失败");
+            }
+        } finally {
+            if (src != bitmap) src.recycle();
+        }
+        return new PdfImage(w, rows, "DeviceRGB", 8, "DCTDecode", null, data.toByteArray());
+    }
+
+    private static PdfImage encodeG4(Bitmap bitmap, int rows) {
+        int w = bitmap.getWidth();
+        int rowBytes = (w + 7) / 8;
+        int[] line = new int[w];
+        byte[] packed = new byte[rowBytes * rows];
+        for (int y = 0; y < rows; y++) {
+            bitmap.getPixels(line, 0, w, 0, y, w, 1);
+            int base = y * rowBytes;
+            for (int x = 0; x < w; x++) {
+                if (luma(line[x]) < 128) packed[base + (x >> 3)] |= (byte) (0x80 >> (x & 7));
+            }
+        }
+        PdfDict parms = new PdfDict();
+        parms.put("K", -1L);
+        parms.put("Columns", (long) w);
+        parms.put("Rows", (long) rows);
+        // 不设 /BlackIs1：解码后 0 = 黑，与 DeviceGray 1 位的含义一致
+        return new PdfImage(w, rows, "DeviceGray", 1, "CCITTFaxDecode", parms,
+                CcittG4Encoder.encode(packed, w, rows));
+    }
+
+    static int luma(int c) {
+        return (((c >> 16) & 0xFF) * 77 + ((c >> 8) & 0xFF) * 150 + (c & 0xFF) * 29) >> 8;
+    }
+}
@@ -0,0 +1,132 @@
+package com.pdf.reader.print;
+
+import android.graphics.Bitmap;
+import android.graphics.Color;
+import android.graphics.Matrix;
+import android.graphics.pdf.PdfRenderer;
+import android.os.CancellationSignal;
+
+import com.pdf.reader.pdf.StreamingPdfWriter;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+
+/**
+ * 分带渲染：把源页面按水平条带逐条渲染（PdfRenderer.Page.render + 平移矩阵），每条渲染完立即编码并归还位图。
+ * 单条带位图的大小由条带预算决定，与 DPI 无关，因此 400~600 DPI 也不会整页分配位图；
+ * 渲染结果只保留压缩后的图像数据。
+ * <p>
+ * AUTO 策略下每条带先做内容分析再编码；一页内格式只升不降（G4 → Flate 灰度 → Flate RGB → JPEG），
+ * 页首的空白条带按当前格式（初始为 G4）编码，空白内容在各格式下都是无损的。
+ * 黑白打印时只输出 G4 或 Flate 灰度：PdfRenderer 只能渲染到 ARGB_8888，渲染条带仍是 32 位，
+ * 但编码后每像素只保留 1 或 8 位，驻留内存与假脱机文件随之缩小。
+ */
+final class BandedPageRenderer {
+
+    /** 默认条带预算：8MB，A4 600 DPI 时约 400 行一条。 */
+    static final long DEFAULT_BAND_BUDGET_BYTES = 8L * 1024 * 1024;
+
+    /** 一页的渲染结果：已编码的条带图像及其在目标页上的位置（PDF 坐标）。 */
+    static final class RenderedPage {
+        final List<StreamingPdfWriter.Placement> images = new ArrayList<>();
+        BandEncoder.Format format;
+        /** 取自 {@link PageDiskCache}，无需再存回。 */
+        boolean fromDisk;
+
+        /** 压缩后数据的总字节数。 */
+        long byteSize() {
+            long n = 0;
+            for (StreamingPdfWriter.Placement p : images) n += p.image.data.length;
+            return n;
+        }
+    }
+
+    private final BitmapPool pool;
+    private final BandEncoder encoder;
+    private final long bandBudgetBytes;
+    private final RasterEncoding policy;
+
+    BandedPageRenderer(BitmapPool pool, BandEncoder encoder, long bandBudgetBytes, RasterEncoding policy) {
+        this.pool = pool;
+        this.encoder = encoder;
+        this.bandBudgetBytes = Math.max(64 * 1024, bandBudgetBytes);
+        this.policy = policy;
+    }
+
+    /**
+     * 将源页面等比缩放、居中放入目标页的可打印区域，按 setup 的 DPI 逐条带栅格化并编码。
+     */
+    RenderedPage rasterize(PdfRenderer.Page src, PageSetup setup,
+                           CancellationSignal cancellationSignal) throws IOException {
+        float srcW = src.getWidth();
+        float srcH = src.getHeight();
+        float boxW = setup.content.width();
+        float boxH = setup.content.height();
+        float fit = Math.min(boxW / srcW, boxH / srcH);
+        float fitW = srcW * fit;
+        float fitH = srcH * fit;
+        float left = setup.content.left + (boxW - fitW) / 2f;
+        float top = setup.content.top + (boxH - fitH) / 2f;
+        float pageHeight = setup.pageHeight;
+        int dpi = setup.dpi;
+
+        int imgW = Math.max(1, Math.round(fitW / 72f * dpi));
+        int imgH = Math.max(1, Math.round(fitH / 72f * dpi));
+        int bandH = (int) Math.max(1, Math.min(imgH, bandBudgetBytes / (imgW * 4L)));
+        float ptsPerPx = 72f / dpi;
+
+        RenderedPage page = new RenderedPage();
+        page.format = restrict(fixedFormat(policy), setup.monochrome);
+        Matrix m = new Matrix();
+        Bitmap band = pool.acquire(imgW, bandH, Bitmap.Config.ARGB_8888);
+        try {
+            for (int y = 0; y < imgH; y += bandH) {
+                if (cancellationSignal.isCanceled()) throw new CancellationException();
+                int h = Math.min(bandH, imgH - y);
+                if (y > 0) band.eraseColor(Color.WHITE);
+
+                // 页面坐标（point）→ 整页像素坐标，再上移 y 行，只落在本条带内的部分会被绘制
+                m.setScale(imgW / srcW, imgH / srcH);
+                m.postTranslate(0, -y);
+                src.render(band, null, m, PdfRenderer.Page.RENDER_MODE_FOR_PRINT);
+
+                if (policy == RasterEncoding.AUTO) {
+                    BandEncoder.Format f = BandAnalyzer.classify(band, h, setup.monochrome);
+                    if (f != null) f = restrict(f, setup.monochrome);
+                    if (f != null && f.ordinal() > page.format.ordinal()) page.format = f;
+                }
+
+                float bandTop = top + y * ptsPerPx;
+                float bandHeight = h * ptsPerPx;
+                page.images.add(new StreamingPdfWriter.Placement(encoder.encode(band, h, page.format),
+                        left, pageHeight - bandTop - bandHeight, fitW, bandHeight));
+            }
+        } finally {
+            pool.release(band);
+        }
+        encoder.pageDone(page.format);
+        return page;
+    }
+
+    // 黑白打印：彩色格式一律降为 8 位灰度
+    private static BandEncoder.Format restrict(BandEncoder.Format f, boolean monochrome) {
+        if (monochrome && (f == BandEncoder.Format.JPEG || f == BandEncoder.Format.FLATE_RGB)) {
+            return BandEncoder.Format.FLATE_GRAY;
+        }
+        return f;
+    }
+
+    private static BandEncoder.Format fixedFormat(RasterEncoding policy) {
+        switch (policy) {
+            case JPEG:
+                return BandEncoder.Format.JPEG;
+            case FLATE:
+                return BandEncoder.Format.FLATE_RGB;
+            default:
+                // CCITT_G4；AUTO 也从最省的格式起步
+                return BandEncoder.Format.CCITT_G4;
+        }
+    }
+}
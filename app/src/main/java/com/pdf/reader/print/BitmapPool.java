@@ -0,0 +1,98 @@
+package com.pdf.reader.print;
+
+import android.graphics.Bitmap;
+import android.graphics.Color;
+
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+
+/**
+ * 按尺寸与 Bitmap.Config 复用页面位图，避免逐页分配/回收十几 MB 的缓冲区造成 GC 抖动。
+ * 借出时统一擦成白色（PdfRenderer 只绘制页面内容，不负责底色）。空闲位图总数有上限，超出即回收。
+ */
+public final class BitmapPool {
+
+    private final int maxIdle;
+    private final Map<String, ArrayDeque<Bitmap>> idle = new HashMap<>();
+    private int idleCount;
+    private int hits;
+    private int misses;
+    // 本池分配且尚未回收的位图总字节数（含借出中的），及其峰值
+    private long liveBytes;
+    private long peakBytes;
+
+    public BitmapPool(int maxIdle) {
+        this.maxIdle = Math.max(1, maxIdle);
+    }
+
+    public synchronized Bitmap acquire(int width, int height, Bitmap.Config config) {
+        ArrayDeque<Bitmap> q = idle.get(key(width, height, config));
+        Bitmap b = (q != null) ? q.pollLast() : null;
+        if (b != null) {
+            idleCount--;
+            hits++;
+            b.eraseColor(Color.WHITE);
+            return b;
+        }
+        misses++;
+        b = Bitmap.createBitmap(width, height, config);
+        liveBytes += b.getAllocationByteCount();
+        peakBytes = Math.max(peakBytes, liveBytes);
+        b.eraseColor(Color.WHITE);
+        return b;
+    }
+
+    public synchronized void release(Bitmap bitmap) {
+        if (bitmap == null || bitmap.isRecycled()) return;
+        if (idleCount >= maxIdle) evictOne();
+        idle.computeIfAbsent(key(bitmap.getWidth(), bitmap.getHeight(), bitmap.getConfig()), k -> new ArrayDeque<>())
+                .addLast(bitmap);
+        idleCount++;
+    }
+
+    /** 回收所有空闲位图（任务结束时调用）。 */
+    public synchronized void clear() {
+        for (ArrayDeque<Bitmap> q : idle.values()) {
+            for (Bitmap b : q) recycle(b);
+        }
+        idle.clear();
+        idleCount = 0;
+    }
+
+    public synchronized int getHitCount() {
+        return hits;
+    }
+
+    public synchronized int getMissCount() {
+        return misses;
+    }
+
+    public synchronized long getPeakBytes() {
+        return peakBytes;
+    }
+
+    private void recycle(Bitmap b) {
+        liveBytes -= b.getAllocationByteCount();
+        b.recycle();
+    }
+
+    private void evictOne() {
+        Iterator<ArrayDeque<Bitmap>> it = idle.values().iterator();
+        while (it.hasNext()) {
+            ArrayDeque<Bitmap> q = it.next();
+            Bitmap b = q.pollFirst();
+            if (q.isEmpty()) it.remove();
+            if (b != null) {
+                recycle(b);
+                idleCount--;
+                return;
+            }
+        }
+    }
+
+    private static String key(int width, int height, Bitmap.Config config) {
+        return width + "x" + height + ":" + config;
+    }
+}
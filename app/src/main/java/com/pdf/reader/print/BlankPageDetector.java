@@ -0,0 +1,174 @@
+package com.pdf.reader.print;
+
+import android.content.ContentResolver;
+import android.graphics.Bitmap;
+import android.graphics.Color;
+import android.graphics.pdf.PdfRenderer;
+import android.net.Uri;
+import android.os.CancellationSignal;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.ParcelFileDescriptor;
+import android.os.SystemClock;
+import android.util.Log;
+import android.util.LruCache;
+
+import com.pdf.reader.doc.DocumentFingerprint;
+import com.pdf.reader.util.BackgroundExecutors;
+
+import java.io.IOException;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.function.Consumer;
+
+/**
+ * 空白页检测：每页渲染一张长边 {@value #THUMB_LONG_SIDE} 像素的缩略图，按亮度直方图估计纸色，
+ * 统计明显深于纸色的像素占比（墨迹覆盖率），低于阈值即视为空白。
+ * 扫描件的纸张常偏黄偏灰，故以直方图亮部的峰值作为纸色，而不是固定的白色；
+ * 四周各 {@value #EDGE_PERCENT}% 不计，避开扫描仪留下的黑边与装订阴影。
+ * <p>
+ * 缩略图像素数约为 200 DPI 整页的千分之一，且无需编码；结果（每页覆盖率）按文档指纹缓存，
+ * 阈值在查询时才应用，改阈值不必重新分析。
+ */
+public final class BlankPageDetector {
+
+    private static final String TAG = "BlankPages";
+    private static final int THUMB_LONG_SIDE = 128;
+    private static final int EDGE_PERCENT = 6;
+    // 比纸色暗这么多级才算墨迹，扫描噪点与纸张纹理不计入
+    private static final int INK_DELTA = 64;
+
+    /** 默认阈值：墨迹覆盖率低于 0.3% 视为空白（页码、污点之类）。 */
+    public static final float DEFAULT_THRESHOLD = 0.003f;
+
+    private static final BlankPageDetector INSTANCE = new BlankPageDetector();
+
+    public static BlankPageDetector getInstance() {
+        return INSTANCE;
+    }
+
+    /** 一个文档的分析结果：每页的墨迹覆盖率（0~1）。 */
+    public static final class Result {
+        private final float[] coverage;
+
+        Result(float[] coverage) {
+            this.coverage = coverage;
+        }
+
+        public int getPageCount() {
+            return coverage.length;
+        }
+
+        public float getCoverage(int page) {
+            return coverage[page];
+        }
+
+        public boolean isBlank(int page, float threshold) {
+            return coverage[page] < threshold;
+        }
+
+        /** 空白页的 0 基序号，升序。 */
+        public int[] blankPages(float threshold) {
+            int n = 0;
+            for (float c : coverage) if (c < threshold) n++;
+            int[] out = new int[n];
+            n = 0;
+            for (int i = 0; i < coverage.length; i++) if (coverage[i] < threshold) out[n++] = i;
+            return out;
+        }
+    }
+
+    // 页数多时分析需要数秒，与指纹计算一样放在后台优先级的单线程上
+    private static final ThreadPoolExecutor EXECUTOR = BackgroundExecutors.serial("blank-pages");
+
+    private final LruCache<String, Result> cache = new LruCache<>(16);
+    private final Handler main = new Handler(Looper.getMainLooper());
+
+    private BlankPageDetector() {}
+
+    /** 取分析结果；同一文档（按内容指纹）只分析一次。取消时抛出 CancellationException。 */
+    public Result analyze(ContentResolver resolver, Uri uri, CancellationSignal signal) throws IOException {
+        String key = DocumentFingerprint.getInstance().getId(resolver, uri);
+        Result r = cache.get(key);
+        if (r != null) return r;
+        long start = SystemClock.elapsedRealtime();
+        r = new Result(measure(resolver, uri, signal));
+        cache.put(key, r);
+        Log.i(TAG, "分析 " + r.getPageCount() + " 页，空白 " + r.blankPages(DEFAULT_THRESHOLD).length
+                + " 页，用时 " + (SystemClock.elapsedRealtime() - start) + " ms");
+        return r;
+    }
+
+    /** 在后台分析并在主线程回调；失败时回调 null。 */
+    public void analyzeAsync(ContentResolver resolver, Uri uri, Consumer<Result> onResult) {
+        EXECUTOR.execute(() -> {
+            Result r;
+            try {
+                r = analyze(resolver, uri, new CancellationSignal());
+            } catch (IOException | RuntimeException e) {
+                Log.w(TAG, "空白页分析失败: " + e.getMessage());
+                r = null;
+            }
+            Result result = r;
+            main.post(() -> onResult.accept(result));
+        });
+    }
+
+    private static float[] measure(ContentResolver resolver, Uri uri, CancellationSignal signal) throws IOException {
+        try (ParcelFileDescriptor pfd = resolver.openFileDescriptor(uri, "r")) {
+            if (pfd == null) throw new IOException("无法打开 PDF");
+            try (PdfRenderer renderer = new PdfRenderer(pfd)) {
+                float[] coverage = new float[renderer.getPageCount()];
+                Bitmap thumb = null;
+                int[] pixels = null;
+                try {
+                    for (int i = 0; i < coverage.length; i++) {
+                        if (signal.isCanceled()) throw new CancellationException();
+                        try (PdfRenderer.Page page = renderer.openPage(i)) {
+                            float scale = (float) THUMB_LONG_SIDE / Math.max(page.getWidth(), page.getHeight());
+                            int w = Math.max(1, Math.round(page.getWidth() * scale));
+                            int h = Math.max(1, Math.round(page.getHeight() * scale));
+                            if (thumb == null || thumb.getWidth() != w || thumb.getHeight() != h) {
+                                if (thumb != null) thumb.recycle();
+                                thumb = Bitmap.createBitmap(w, h, Bitmap.Config.ARGB_8888);
+                                pixels = new int[w * h];
+                            }
+                            thumb.eraseColor(Color.WHITE);
+                            page.render(thumb, null, null, PdfRenderer.Page.RENDER_MODE_FOR_DISPLAY);
+                        }
+                        thumb.getPixels(pixels, 0, thumb.getWidth(), 0, 0, thumb.getWidth(), thumb.getHeight());
+                        coverage[i] = inkCoverage(pixels, thumb.getWidth(), thumb.getHeight());
+                    }
+                } finally {
+                    if (thumb != null) thumb.recycle();
+                }
+                return coverage;
+            }
+        }
+    }
+
+    static float inkCoverage(int[] pixels, int w, int h) {
+        int x0 = w * EDGE_PERCENT / 100, x1 = w - x0;
+        int y0 = h * EDGE_PERCENT / 100, y1 = h - y0;
+        int[] hist = new int[256];
+        int total = 0;
+        for (int y = y0; y < y1; y++) {
+            for (int x = x0; x < x1; x++) {
+                hist[BandEncoder.luma(pixels[y * w + x])]++;
+                total++;
+            }
+        }
+        if (total == 0) return 0;
+        // 纸色：亮部（128 以上）的直方图峰值；整页都很暗时按 255 处理，结果必然不是空白
+        int paper = 255;
+        for (int l = 128, best = 0; l < 256; l++) {
+            if (hist[l] > best) {
+                best = hist[l];
+                paper = l;
+            }
+        }
+        int ink = 0;
+        for (int l = 0; l < paper - INK_DELTA; l++) ink += hist[l];
+        return (float) ink / total;
+    }
+}
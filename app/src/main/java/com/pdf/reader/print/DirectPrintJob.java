@@ -0,0 +1,126 @@
+package com.pdf.reader.print;
+
+import android.os.CancellationSignal;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
+import android.print.PageRange;
+import android.util.Log;
+
+import com.pdf.reader.net.DirectPrintClient;
+import com.pdf.reader.net.LinkProbe;
+import com.pdf.reader.util.BackgroundExecutors;
+
+import java.io.IOException;
+import java.util.Locale;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ThreadPoolExecutor;
+
+/**
+ * 直连打印任务：按 {@link SelectivePdfPrintAdapter} 的页码模式与空白页设置生成文档（矢量子集优先，
+ * 不可用时渲染），边生成边经 {@link DirectPrintClient} 发给打印机，全程不落盘。
+ * 先用 IPP 查询打印机是否接受 PDF；631 端口不通时改走 9100 原始端口。
+ * 发送前测一次链路（有未过期的结果时直接取用），据此选择矢量子集、栅格或降 DPI 栅格。
+ * 没有打印对话框，纸张按 A4、无边距处理。进度与结果在主线程回调。
+ */
+public final class DirectPrintJob {
+
+    private static final String TAG = "DirectPrint";
+
+    public interface Listener {
+        /** 已发送给打印机的字节数。 */
+        void onProgress(long bytesSent);
+
+        /** 任务结束：error 为 null 表示成功，取消时为“已取消”。 */
+        void onFinished(String error);
+    }
+
+    private static final ThreadPoolExecutor EXECUTOR = BackgroundExecutors.serial("direct-print");
+
+    private static final Handler MAIN = new Handler(Looper.getMainLooper());
+
+    private DirectPrintJob() {}
+
+    /** 开始发送，返回的 CancellationSignal 用于中途取消。 */
+    public static CancellationSignal start(SelectivePdfPrintAdapter source, DirectPrintClient client,
+                                           String jobName, Listener listener) {
+        CancellationSignal signal = new CancellationSignal();
+        // 不经打印框架，自己配对调用 onStart / onFinish，发送期间保留暂存副本
+        source.onStart();
+        EXECUTOR.execute(() -> {
+            String error;
+            try {
+                run(source, client, jobName, signal, listener);
+                error = null;
+            } catch (CancellationException e) {
+                error = "已取消";
+            } catch (PrintTaskRunner.Failure e) {
+                error = e.getMessage();
+            } catch (Exception e) {
+                error = signal.isCanceled() ? "已取消" : "直连打印失败: " + e.getMessage();
+            }
+            String result = error;
+            MAIN.post(() -> {
+                source.onFinish();
+                listener.onFinished(result);
+            });
+        });
+        return signal;
+    }
+
+    private static void run(SelectivePdfPrintAdapter source, DirectPrintClient client, String jobName,
+                            CancellationSignal signal, Listener listener) throws Exception {
+        long startMs = SystemClock.elapsedRealtime();
+        DirectPrintClient.Protocol protocol = chooseProtocol(client);
+        PageSetup setup = source.defaultSetup();
+        LinkProbe.Result link = probeLink(client);
+        PrintMetrics.Job metrics = PrintMetrics.getInstance().newJob(jobName + "（直连 " + protocol + "）");
+        DirectPrintClient.Body body = out -> source.write(new PageRange[0], out, signal, setup, false, metrics, link);
+        try {
+            if (protocol == DirectPrintClient.Protocol.IPP) {
+                int jobId = client.printIpp(jobName, "pdf-reader", DirectPrintClient.PDF, body,
+                        bytes -> MAIN.post(() -> listener.onProgress(bytes)), signal);
+                Log.i(TAG, "IPP 作业 " + jobId + " 已提交");
+            } else {
+                client.printRaw(body, bytes -> MAIN.post(() -> listener.onProgress(bytes)), signal);
+            }
+            metrics.finish(PrintMetrics.Outcome.FINISHED, null, 0);
+        } catch (CancellationException e) {
+            metrics.finish(PrintMetrics.Outcome.CANCELLED, null, 0);
+            throw e;
+        } catch (Exception e) {
+            metrics.finish(PrintMetrics.Outcome.FAILED, e.getMessage(), 0);
+            throw e;
+        }
+        Log.i(TAG, String.format(Locale.ROOT, "%s 直连 %s 完成，用时 %d ms", client.getHost(), protocol,
+                SystemClock.elapsedRealtime() - startMs));
+    }
+
+    // 测速失败（打印机不接受测速请求、只开了 9100 端口……）时按默认路径输出
+    private static LinkProbe.Result probeLink(DirectPrintClient client) {
+        try {
+            return LinkProbe.getInstance().getOrMeasure(client);
+        } catch (IOException e) {
+            Log.w(TAG, client.getHost() + " 测速失败，按默认路径输出: " + e.getMessage());
+            return null;
+        }
+    }
+
+    // IPP 能报告打印机状态与作业 ID，优先使用；打印机没开 IPP 时回退到 9100
+    private static DirectPrintClient.Protocol chooseProtocol(DirectPrintClient client) throws PrintTaskRunner.Failure {
+        DirectPrintClient.PrinterInfo info;
+        try {
+            info = client.getPrinterInfo();
+        } catch (IOException e) {
+            Log.w(TAG, client.getHost() + " 的 IPP 不可用，改用 9100 端口: " + e.getMessage());
+            return DirectPrintClient.Protocol.RAW;
+        }
+        Log.i(TAG, client.getHost() + "：" + info.makeAndModel + "，状态 " + info.state + " " + info.stateReasons
+                + "，格式 " + info.documentFormats);
+        if (!info.acceptingJobs) throw new PrintTaskRunner.Failure("打印机暂不接受作业：" + info.stateReasons);
+        if (!info.supportsPdf()) {
+            throw new PrintTaskRunner.Failure("打印机不接受 PDF，请改用系统打印服务（支持的格式：" + info.documentFormats + "）");
+        }
+        return DirectPrintClient.Protocol.IPP;
+    }
+}
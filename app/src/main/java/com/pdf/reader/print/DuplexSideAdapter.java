@@ -0,0 +1,89 @@
+package com.pdf.reader.print;
+
+import android.content.Context;
+import android.net.Uri;
+import android.os.CancellationSignal;
+import android.os.ParcelFileDescriptor;
+import android.print.PageRange;
+import android.print.PrintAttributes;
+import android.print.PrintDocumentAdapter;
+import android.print.PrintDocumentInfo;
+
+import com.pdf.reader.doc.DocumentMetadataCache;
+import com.pdf.reader.pdf.PdfFile;
+import com.pdf.reader.pdf.PdfSubsetter;
+import com.pdf.reader.util.ChannelCopier;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.nio.channels.FileChannel;
+
+/**
+ * 手动双面任务中某一面的打印适配器：输出 {@link ManualDuplexJob} 写好的假脱机文件。
+ * 整面打印时直接通道拷贝；打印对话框只选了部分页时，从假脱机文件再取无损子集。
+ */
+final class DuplexSideAdapter extends PrintDocumentAdapter {
+
+    private final Context context;
+    private final ManualDuplexJob job;
+    private final Uri pdfUri;
+    private final ManualDuplexJob.Side side;
+    private final String jobName;
+
+    private final PrintTaskRunner runner = new PrintTaskRunner();
+    private volatile int pageCount = 0;
+    private volatile PrintAttributes attributes;
+
+    DuplexSideAdapter(Context context, ManualDuplexJob job, Uri pdfUri, ManualDuplexJob.Side side, String jobName) {
+        this.context = context;
+        this.job = job;
+        this.pdfUri = pdfUri;
+        this.side = side;
+        this.jobName = jobName;
+    }
+
+    @Override
+    public void onLayout(PrintAttributes oldAttributes, PrintAttributes newAttributes,
+                         CancellationSignal cancellationSignal,
+                         LayoutResultCallback callback, android.os.Bundle extras) {
+        attributes = newAttributes;
+        runner.layout(cancellationSignal, callback, "分析 PDF 失败: ", () -> {
+            int total = DocumentMetadataCache.getInstance().get(context.getContentResolver(), pdfUri).pageCount;
+            pageCount = side == ManualDuplexJob.Side.FRONT ? (total + 1) / 2 : total / 2;
+            return new PrintDocumentInfo.Builder(jobName)
+                    .setContentType(PrintDocumentInfo.CONTENT_TYPE_DOCUMENT)
+                    .setPageCount(pageCount)
+                    .build();
+        });
+    }
+
+    @Override
+    public void onWrite(PageRange[] pages, ParcelFileDescriptor destination,
+                        CancellationSignal cancellationSignal, WriteResultCallback callback) {
+        PageSetup setup = PageSetup.from(attributes, SelectivePdfPrintAdapter.DEFAULT_RENDER_DPI);
+        PrintMetrics.Job metrics = PrintMetrics.getInstance().newJob(jobName);
+        runner.write(cancellationSignal, callback, "写入失败: ", metrics, () -> {
+            metrics.identify(context.getContentResolver(), pdfUri);
+            // 正面的第一次写出（含预览）会同时生成两面的假脱机文件
+            File spool = job.spool(side, setup, cancellationSignal, metrics);
+            int[] wanted = PageRanges.toIndices(pages, pageCount);
+            if (wanted.length == 0) throw new PrintTaskRunner.Failure("所选页码超出范围");
+            if (wanted.length == pageCount) {
+                try (FileInputStream in = new FileInputStream(spool);
+                     FileChannel src = in.getChannel();
+                     FileOutputStream out = new FileOutputStream(destination.getFileDescriptor());
+                     FileChannel dst = out.getChannel();
+                     PrintMetrics.Section ignored = metrics.time(PrintMetrics.Stage.WRITE)) {
+                    metrics.addBytes(ChannelCopier.copy(src, dst, cancellationSignal::isCanceled));
+                }
+            } else {
+                PdfFile pdf = SubsetPrinter.open(context.getContentResolver(), Uri.fromFile(spool), metrics);
+                SubsetPrinter.write(PdfSubsetter.plan(pdf, wanted, cancellationSignal::isCanceled),
+                        destination, cancellationSignal, metrics);
+            }
+            metrics.addPages(wanted.length);
+            return PageRanges.fromIndices(wanted);
+        });
+    }
+}
@@ -0,0 +1,122 @@
+package com.pdf.reader.print;
+
+import android.content.Context;
+import android.net.Uri;
+import android.os.CancellationSignal;
+import android.os.ParcelFileDescriptor;
+import android.os.SystemClock;
+import android.print.PageRange;
+import android.print.PrintAttributes;
+import android.print.PrintDocumentAdapter;
+import android.print.PrintDocumentInfo;
+import android.util.Log;
+
+import com.pdf.reader.doc.DocumentMetadataCache;
+import com.pdf.reader.doc.DocumentStaging;
+import com.pdf.reader.pdf.Imposition;
+import com.pdf.reader.pdf.PdfFile;
+import com.pdf.reader.pdf.PdfPageIndex;
+import com.pdf.reader.pdf.PdfSubsetter;
+
+import java.io.IOException;
+
+/**
+ * 拼版打印：2 合 1、4 合 1 与小册子（骑马订，可右翻）。源页面作为 Form XObject 缩放放置到新纸张上，
+ * 不栅格化，500 页的书几秒内完成，输出大小与源文件相当。
+ * 纸张尺寸与边距取自打印对话框；打印对话框中的页码指拼版后的纸张页。
+ * 加密或结构无法解析的文档不支持拼版。
+ */
+public class ImposedPdfPrintAdapter extends PrintDocumentAdapter {
+
+    private static final String TAG = "ImposedPrint";
+
+    private final Context context;
+    private final Uri pdfUri;
+    private final String jobName;
+    private final Imposition.Layout layout;
+    private final Imposition.Binding binding;
+
+    private final PrintTaskRunner runner = new PrintTaskRunner();
+    private volatile PrintAttributes attributes;
+    private int sheetsPerSignature = 0;
+
+    public ImposedPdfPrintAdapter(Context context, Uri pdfUri, String jobName,
+                                  Imposition.Layout layout, Imposition.Binding binding) {
+        this.context = context.getApplicationContext();
+        this.pdfUri = pdfUri;
+        this.jobName = jobName;
+        this.layout = layout;
+        this.binding = binding;
+    }
+
+    /** 小册子每帖的纸张数（每张 4 页）；0 表示整本一帖（默认）。页数多时分帖，对折后才不会太厚。 */
+    public void setSheetsPerSignature(int sheets) {
+        this.sheetsPerSignature = Math.max(0, sheets);
+    }
+
+    // 每次 onWrite 都重新打开 pdfUri，对话框关闭前保留暂存副本
+    @Override
+    public void onStart() {
+        DocumentStaging.get(context).retain(pdfUri);
+    }
+
+    @Override
+    public void onFinish() {
+        DocumentStaging.get(context).release(pdfUri);
+    }
+
+    @Override
+    public void onLayout(PrintAttributes oldAttributes, PrintAttributes newAttributes,
+                         CancellationSignal cancellationSignal,
+                         LayoutResultCallback callback, android.os.Bundle extras) {
+        attributes = newAttributes;
+        PageSetup setup = PageSetup.from(newAttributes, SelectivePdfPrintAdapter.DEFAULT_RENDER_DPI);
+        runner.layout(cancellationSignal, callback, "分析 PDF 失败: ", () -> {
+            int pages = DocumentMetadataCache.getInstance().get(context.getContentResolver(), pdfUri).pageCount;
+            return new PrintDocumentInfo.Builder(jobName)
+                    .setContentType(PrintDocumentInfo.CONTENT_TYPE_DOCUMENT)
+                    .setPageCount(plan(pages, setup).getSheetCount())
+                    .build();
+        });
+    }
+
+    @Override
+    public void onWrite(PageRange[] pages, ParcelFileDescriptor destination,
+                        CancellationSignal cancellationSignal, WriteResultCallback callback) {
+        PageSetup setup = PageSetup.from(attributes, SelectivePdfPrintAdapter.DEFAULT_RENDER_DPI);
+        PrintMetrics.Job metrics = PrintMetrics.getInstance().newJob(jobName);
+        runner.write(cancellationSignal, callback, "拼版失败: ", metrics, () -> {
+            long startMs = SystemClock.elapsedRealtime();
+            metrics.identify(context.getContentResolver(), pdfUri);
+            PdfFile pdf;
+            try {
+                pdf = SubsetPrinter.open(context.getContentResolver(), pdfUri, metrics);
+                if (pdf.isEncrypted()) throw new PrintTaskRunner.Failure("加密文档不支持拼版");
+            } catch (IOException e) {
+                throw new PrintTaskRunner.Failure("文档结构无法解析，不支持拼版");
+            }
+            int total = PdfPageIndex.countPages(pdf);
+            Imposition full = plan(total, setup);
+            int[] wanted = PageRanges.toIndices(pages, full.getSheetCount());
+            if (wanted.length == 0) throw new PrintTaskRunner.Failure("所选页码超出范围");
+            PdfSubsetter imposed;
+            try (PrintMetrics.Section ignored = metrics.time(PrintMetrics.Stage.PARSE)) {
+                imposed = PdfSubsetter.impose(pdf, full.select(wanted), PageRanges.all(total),
+                        cancellationSignal::isCanceled);
+            }
+            metrics.setPath("拼版");
+            SubsetPrinter.write(imposed, destination, cancellationSignal, metrics);
+            metrics.addPages(wanted.length);
+            Log.i(TAG, layout + " 拼版 " + total + " 页 → " + wanted.length + " 面，用时 "
+                    + (SystemClock.elapsedRealtime() - startMs) + " ms");
+            return PageRanges.fromIndices(wanted);
+        });
+    }
+
+    // 纸张取对话框协商的尺寸，四周留白取各边最小边距中的最大者
+    private Imposition plan(int pages, PageSetup setup) {
+        float margin = Math.max(Math.max(setup.content.left, setup.content.top),
+                Math.max(setup.pageWidth - setup.content.right, setup.pageHeight - setup.content.bottom));
+        return Imposition.create(layout, binding, pages, setup.pageWidth, setup.pageHeight, margin, sheetsPerSignature);
+    }
+}
@@ -0,0 +1,249 @@
+package com.pdf.reader.print;
+
+import android.content.Context;
+import android.net.Uri;
+import android.os.CancellationSignal;
+import android.os.ParcelFileDescriptor;
+import android.os.SystemClock;
+import android.print.PrintDocumentAdapter;
+import android.util.Log;
+
+import com.pdf.reader.doc.DocumentFingerprint;
+import com.pdf.reader.doc.DocumentStaging;
+import com.pdf.reader.pdf.PdfFile;
+import com.pdf.reader.pdf.PdfPageIndex;
+import com.pdf.reader.pdf.PdfSubsetter;
+import com.pdf.reader.pdf.StreamingPdfWriter;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.concurrent.CancellationException;
+import java.util.function.IntConsumer;
+
+/**
+ * 手动双面打印：一次遍历文档，同时写出正面（奇数页，顺序）与背面（偶数页，默认倒序）两个假脱机文件，
+ * 分别由 {@link #adapter(Side, String)} 返回的适配器送往打印机。正面打印时两份文件即已就绪，
+ * 用户翻面后背面直接拷贝输出，不再打开、解析或渲染源文档。
+ * <p>
+ * 矢量路径只解析一次源 PDF，由同一个 PdfFile 规划两个子集；渲染路径按“正面一页、背面一页”交替的顺序
+ * 提交给 {@link ParallelPageRenderer}，每个源页只渲染一次，两个写出器各自按所需顺序收到页面。
+ * 渲染页同样读写 {@link PageDiskCache}。
+ * <p>
+ * 总页数为奇数时末页没有背面：翻面前需取出正面的最后一张（见 {@link #hasUnpairedLastSheet()}）。
+ */
+public final class ManualDuplexJob {
+
+    public enum Side { FRONT, BACK }
+
+    private static final String TAG = "ManualDuplex";
+    private static final String DIR = "duplex";
+
+    private final Context context;
+    private final Uri pdfUri;
+    private volatile boolean reverseBack = true;
+
+    // 只由 spool() 在锁内写入；volatile 供主线程查询状态、释放时不必等待正在进行的渲染
+    private volatile File frontSpool;
+    private volatile File backSpool;
+    private boolean spoolReversed;
+    private volatile String spoolKey;
+    private volatile int sourcePages;
+    private volatile boolean released;
+
+    public ManualDuplexJob(Context context, Uri pdfUri) {
+        this.context = context.getApplicationContext();
+        this.pdfUri = pdfUri;
+        // 翻面可能隔很久，其间暂存副本不能被淘汰
+        DocumentStaging.get(this.context).retain(pdfUri);
+    }
+
+    /** 背面是否倒序输出（默认是）：出纸面朝上的打印机翻面后最先进纸的是最后一张。改动后假脱机文件会重新生成。 */
+    public void setReverseBackSide(boolean reverse) {
+        this.reverseBack = reverse;
+    }
+
+    /** 某一面的打印适配器；两面共用本任务的假脱机文件。 */
+    public PrintDocumentAdapter adapter(Side side, String jobName) {
+        return new DuplexSideAdapter(context, this, pdfUri, side, jobName);
+    }
+
+    /** 两份假脱机文件是否都已写好。 */
+    public boolean isReady() {
+        return spoolKey != null;
+    }
+
+    /** 源文档页数为奇数：正面最后一张没有对应的背面。仅在假脱机文件就绪后有意义。 */
+    public boolean hasUnpairedLastSheet() {
+        return spoolKey != null && sourcePages % 2 == 1;
+    }
+
+    /** 删除假脱机文件；任务结束或放弃时调用。正在生成的文件在生成结束后删除，调用方不会被阻塞。 */
+    public void release() {
+        if (released) return;
+        released = true;
+        DocumentStaging.get(context).release(pdfUri);
+        File f = frontSpool, b = backSpool;
+        if (f != null) f.delete();
+        if (b != null) b.delete();
+    }
+
+    /**
+     * 确保两份假脱机文件就绪并返回指定面的文件。矢量子集与页面设置无关，一次写好后一直有效；
+     * 渲染输出与页面设置相关，设置变化时重新生成（已渲染过的页可从磁盘缓存取回）。
+     */
+    synchronized File spool(Side side, PageSetup setup, CancellationSignal signal,
+                            PrintMetrics.Job metrics) throws Exception {
+        if (released) throw new PrintTaskRunner.Failure("双面打印任务已结束，请重新开始");
+        boolean reverse = reverseBack;
+        String key = spoolKey;
+        if (key != null && spoolReversed == reverse && (key.isEmpty() || key.equals(setup.cacheKey()))) {
+            metrics.setPath("假脱机文件已就绪");
+            return side == Side.FRONT ? frontSpool : backSpool;
+        }
+        discard();
+        File dir = new File(context.getCacheDir(), DIR);
+        if (!dir.isDirectory() && !dir.mkdirs()) throw new IOException("无法创建 " + dir);
+        File front = File.createTempFile("front", ".pdf", dir);
+        File back = File.createTempFile("back", ".pdf", dir);
+        long startMs = SystemClock.elapsedRealtime();
+        try {
+            try {
+                PdfFile pdf = SubsetPrinter.open(context.getContentResolver(), pdfUri, metrics);
+                sourcePages = PdfPageIndex.countPages(pdf);
+                try (PrintMetrics.Section ignored = metrics.time(PrintMetrics.Stage.WRITE)) {
+                    writeSubset(pdf, sides(sourcePages, 0, false), front, signal);
+                    writeSubset(pdf, sides(sourcePages, 1, reverse), back, signal);
+                }
+                metrics.setPath("双面矢量子集");
+                key = "";
+            } catch (CancellationException e) {
+                throw e;
+            } catch (Exception e) {
+                Log.w(TAG, "矢量子集不可用，回退为渲染输出: " + e.getMessage());
+                metrics.setPath("双面栅格");
+                writeRaster(setup, reverse, front, back, signal, metrics);
+                key = setup.cacheKey();
+            }
+            frontSpool = front;
+            backSpool = back;
+            spoolReversed = reverse;
+            spoolKey = key;
+            if (released) {
+                release();
+                throw new PrintTaskRunner.Failure("双面打印任务已结束，请重新开始");
+            }
+            Log.i(TAG, "双面假脱机文件就绪：" + sourcePages + " 页，正面 " + front.length() + " 字节，背面 "
+                    + back.length() + " 字节，用时 " + (SystemClock.elapsedRealtime() - startMs) + " ms");
+            return side == Side.FRONT ? frontSpool : backSpool;
+        } catch (Exception e) {
+            front.delete();
+            back.delete();
+            throw e;
+        }
+    }
+
+    private void discard() {
+        if (frontSpool != null) frontSpool.delete();
+        if (backSpool != null) backSpool.delete();
+        frontSpool = backSpool = null;
+        spoolKey = null;
+    }
+
+    private static void writeSubset(PdfFile pdf, int[] pages, File file, CancellationSignal signal) throws IOException {
+        PdfSubsetter subset = PdfSubsetter.plan(pdf, pages, signal::isCanceled);
+        try (OutputStream out = new FileOutputStream(file)) {
+            subset.writeTo(out, signal::isCanceled);
+        }
+    }
+
+    private void writeRaster(PageSetup requested, boolean reverse, File front, File back, CancellationSignal signal,
+                             PrintMetrics.Job metrics) throws Exception {
+        int workers = Math.max(1, Math.min(4, Runtime.getRuntime().availableProcessors()));
+        MemoryGovernor governor = MemoryGovernor.get(context);
+        MemoryGovernor.Plan plan = governor.plan(requested.dpi, workers, workers + 1,
+                BandedPageRenderer.DEFAULT_BAND_BUDGET_BYTES);
+        PageSetup setup = plan.dpi == requested.dpi ? requested : requested.withDpi(plan.dpi);
+        BitmapPool pool = new BitmapPool(plan.workers);
+        BandEncoder encoder = new BandEncoder();
+        BandedPageRenderer bander = new BandedPageRenderer(pool, encoder, plan.bandBudgetBytes, RasterEncoding.AUTO);
+        IntConsumer onPressure = null;
+        String docId = documentId();
+        PageDiskCache disk = docId != null ? PageDiskCache.get(context) : null;
+        ParcelFileDescriptor opened;
+        try (PrintMetrics.Section ignored = metrics.time(PrintMetrics.Stage.OPEN)) {
+            opened = context.getContentResolver().openFileDescriptor(pdfUri, "r");
+        }
+        try (ParcelFileDescriptor pfd = opened;
+             FileOutputStream frontOut = new FileOutputStream(front);
+             FileOutputStream backOut = new FileOutputStream(back)) {
+
+            if (pfd == null) throw new PrintTaskRunner.Failure("无法打开 PDF");
+
+            try (ParallelPageRenderer pipeline = new ParallelPageRenderer(pfd, plan.workers, plan.maxInFlight, bander, metrics)) {
+                // 告急时在途页数降到 1，压力回落后恢复
+                onPressure = level -> {
+                    pipeline.setMaxInFlight(level >= 2 ? 1 : plan.maxInFlight);
+                    if (level >= 2) pool.clear();
+                };
+                governor.addListener(onPressure);
+                pipeline.setOutOfMemoryHandler(() -> {
+                    pool.clear();
+                    pipeline.setMaxInFlight(1);
+                    governor.onOutOfMemory();
+                });
+                sourcePages = pipeline.getPageCount();
+                int[] odd = sides(sourcePages, 0, false);
+                int[] even = sides(sourcePages, 1, reverse);
+                // 正反两面交替提交，两个写出器同时推进，在途页与内存占用不随文档变大
+                int[] order = new int[odd.length + even.length];
+                int n = 0;
+                for (int i = 0; i < odd.length; i++) {
+                    order[n++] = odd[i];
+                    if (i < even.length) order[n++] = even[i];
+                }
+                StreamingPdfWriter frontWriter = new StreamingPdfWriter(frontOut);
+                StreamingPdfWriter backWriter = new StreamingPdfWriter(backOut);
+                pipeline.run(order, setup, signal,
+                        disk != null ? src -> disk.load(PageDiskCache.key(docId, src, setup, RasterEncoding.AUTO)) : null,
+                        (k, sourcePage, page) -> {
+                            StreamingPdfWriter w = sourcePage % 2 == 0 ? frontWriter : backWriter;
+                            try (PrintMetrics.Section ignored = metrics.time(PrintMetrics.Stage.WRITE)) {
+                                w.addPage(setup.pageWidth, setup.pageHeight, page.images);
+                            }
+                            if (disk != null && !page.fromDisk) {
+                                disk.store(PageDiskCache.key(docId, sourcePage, setup, RasterEncoding.AUTO), page);
+                            }
+                        });
+                try (PrintMetrics.Section ignored = metrics.time(PrintMetrics.Stage.WRITE)) {
+                    frontWriter.finish();
+                    backWriter.finish();
+                }
+                Log.i(TAG, "渲染 " + order.length + " 页（" + setup.dpi + " DPI），" + encoder.summary());
+            }
+        } finally {
+            if (onPressure != null) governor.removeListener(onPressure);
+            metrics.recordBitmapBytes(pool.getPeakBytes());
+            pool.clear();
+        }
+    }
+
+    private String documentId() {
+        try {
+            return DocumentFingerprint.getInstance().getId(context.getContentResolver(), pdfUri);
+        } catch (IOException | RuntimeException e) {
+            Log.w(TAG, "无法计算文档指纹，跳过磁盘缓存: " + e.getMessage());
+            return null;
+        }
+    }
+
+    // first = 0 取第 1、3、5… 页，1 取第 2、4、6… 页（0 基序号）
+    private static int[] sides(int total, int first, boolean reverse) {
+        int[] picks = new int[Math.max(0, (total - first + 1) / 2)];
+        for (int k = 0; k < picks.length; k++) {
+            picks[reverse ? picks.length - 1 - k : k] = first + 2 * k;
+        }
+        return picks;
+    }
+}
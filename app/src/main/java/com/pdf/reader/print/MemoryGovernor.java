@@ -0,0 +1,185 @@
+package com.pdf.reader.print;
+
+import android.app.ActivityManager;
+import android.content.ComponentCallbacks2;
+import android.content.Context;
+import android.content.res.Configuration;
+import android.os.Build;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
+import android.util.Log;
+
+import java.util.Locale;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.IntConsumer;
+
+/**
+ * 渲染路径的内存预算：按设备的堆上限（ActivityManager 内存等级）与系统可用内存估算本次任务可用的字节数，
+ * 据此决定 DPI、条带预算、渲染线程数与在途页数；收到 onTrimMemory / onLowMemory 时逐级收紧，
+ * 并通知正在进行的任务降低在途页数、释放缓存；压力保持一段时间无新回调后回落，再通知任务恢复。
+ * <p>
+ * 位图像素（Android 8.0 起）分配在 native 堆，受系统可用内存约束；编码缓冲与压缩结果在 Java 堆，
+ * 受内存等级约束，因此预算取两者中较紧的一方。PdfRenderer 只能渲染到 ARGB_8888，像素格式无法调整，
+ * 压低内存的手段是缩小条带与在途页数，最后才降低 DPI。
+ * <p>
+ * 每次决策都以 {@value #TAG} 为标签记录设备型号、内存等级、可用内存、压力级别与结果，便于按机型调参。
+ */
+public final class MemoryGovernor implements ComponentCallbacks2 {
+
+    private static final String TAG = "MemoryGovernor";
+    private static final long MB = 1024L * 1024;
+    private static final long MIN_BUDGET = 6 * MB;
+    private static final long MIN_BAND = MB;
+    private static final long MAX_BAND = 32 * MB;
+    private static final int MIN_DPI = 100;
+    // 压力级别在最后一次收到回调后保持这么久，之后按正常预算决策
+    private static final long PRESSURE_HOLD_MS = 60_000;
+
+    /** 一次渲染任务的资源配置。 */
+    static final class Plan {
+        final int dpi;
+        final long bandBudgetBytes;
+        final int workers;
+        final int maxInFlight;
+        final long budgetBytes;
+        final int pressure;
+
+        Plan(int dpi, long bandBudgetBytes, int workers, int maxInFlight, long budgetBytes, int pressure) {
+            this.dpi = dpi;
+            this.bandBudgetBytes = bandBudgetBytes;
+            this.workers = workers;
+            this.maxInFlight = maxInFlight;
+            this.budgetBytes = budgetBytes;
+            this.pressure = pressure;
+        }
+
+        @Override
+        public String toString() {
+            return String.format(Locale.ROOT, "%d DPI，条带 %d MB，%d 线程，在途 %d 页（预算 %d MB，压力 %d）",
+                    dpi, bandBudgetBytes / MB, workers, maxInFlight, budgetBytes / MB, pressure);
+        }
+    }
+
+    private static MemoryGovernor instance;
+
+    public static synchronized MemoryGovernor get(Context context) {
+        if (instance == null) {
+            Context app = context.getApplicationContext();
+            instance = new MemoryGovernor((ActivityManager) app.getSystemService(Context.ACTIVITY_SERVICE));
+            app.registerComponentCallbacks(instance);
+        }
+        return instance;
+    }
+
+    private final ActivityManager activityManager;
+    private final CopyOnWriteArrayList<IntConsumer> listeners = new CopyOnWriteArrayList<>();
+    private final Handler main = new Handler(Looper.getMainLooper());
+    private final Runnable decay = this::currentPressure;
+    private int pressure;
+    private long pressureAt;
+
+    private MemoryGovernor(ActivityManager activityManager) {
+        this.activityManager = activityManager;
+    }
+
+    /**
+     * 在请求值的基础上按内存预算决定本次任务的配置。DPI、线程数、在途页数只会下调；
+     * 条带预算以请求值为起点，内存充裕时最多放大到 4 倍（条带越少，每页重复解析内容流的次数越少）。
+     */
+    Plan plan(int dpi, int workers, int maxInFlight, long bandBytes) {
+        ActivityManager.MemoryInfo mi = new ActivityManager.MemoryInfo();
+        activityManager.getMemoryInfo(mi);
+        long heap = activityManager.getMemoryClass() * MB;
+        long nativeFree = Math.max(0, mi.availMem - mi.threshold);
+        int level = currentPressure();
+
+        long budget = Math.min(heap / 2, nativeFree / 4);
+        if (activityManager.isLowRamDevice() || mi.lowMemory) budget /= 2;
+        budget = Math.max(MIN_BUDGET, budget >> level);
+
+        workers = Math.max(1, workers);
+        maxInFlight = Math.max(workers, maxInFlight);
+        long band = Math.max(MIN_BAND, Math.min(bandBytes * 4, budget / 2 / workers));
+        // 依次收缩：条带 → 在途页数 → 线程数 → DPI
+        while (need(dpi, workers, maxInFlight, band) > budget) {
+            if (band > MIN_BAND) band = Math.max(MIN_BAND, band / 2);
+            else if (maxInFlight > workers) maxInFlight--;
+            else if (workers > 1) maxInFlight = --workers;
+            else if (dpi > MIN_DPI) dpi = Math.max(MIN_DPI, dpi * 4 / 5);
+            else break;
+        }
+        band = Math.min(MAX_BAND, band);
+
+        Plan plan = new Plan(dpi, band, workers, maxInFlight, budget, level);
+        Log.i(TAG, String.format(Locale.ROOT, "%s %s：内存等级 %d MB，可用 %d MB，低内存 %b → %s",
+                Build.MANUFACTURER, Build.MODEL, heap / MB, mi.availMem / MB, mi.lowMemory, plan));
+        return plan;
+    }
+
+    /** 当前压力级别：0 正常，1~3 逐级收紧。保持期已过时回落到 0 并通知订阅者。 */
+    int currentPressure() {
+        synchronized (this) {
+            if (pressure == 0 || SystemClock.elapsedRealtime() - pressureAt < PRESSURE_HOLD_MS) return pressure;
+            pressure = 0;
+        }
+        Log.i(TAG, PRESSURE_HOLD_MS / 1000 + " 秒内没有新的内存告警，压力回落到 0，通知 " + listeners.size() + " 个进行中的任务");
+        for (IntConsumer l : listeners) l.accept(0);
+        return 0;
+    }
+
+    /** 进行中的任务订阅压力变化（参数为新的级别，回落时为 0），任务结束时取消订阅。 */
+    void addListener(IntConsumer listener) {
+        listeners.add(listener);
+    }
+
+    void removeListener(IntConsumer listener) {
+        listeners.remove(listener);
+    }
+
+    /** 渲染时分配失败：直接升到最高压力级别。 */
+    void onOutOfMemory() {
+        raise(3, "OutOfMemoryError");
+    }
+
+    @Override
+    public void onTrimMemory(int level) {
+        if (level >= TRIM_MEMORY_MODERATE || level == TRIM_MEMORY_RUNNING_CRITICAL) {
+            raise(3, "onTrimMemory " + level);
+        } else if (level == TRIM_MEMORY_RUNNING_LOW) {
+            raise(2, "onTrimMemory " + level);
+        } else if (level == TRIM_MEMORY_RUNNING_MODERATE || level == TRIM_MEMORY_BACKGROUND) {
+            raise(1, "onTrimMemory " + level);
+        }
+        // UI_HIDDEN 只表示界面不可见，打印任务仍在进行，不必收紧
+    }
+
+    @Override
+    public void onLowMemory() {
+        raise(3, "onLowMemory");
+    }
+
+    @Override
+    public void onConfigurationChanged(Configuration newConfig) {
+    }
+
+    private void raise(int level, String cause) {
+        currentPressure();
+        synchronized (this) {
+            pressureAt = SystemClock.elapsedRealtime();
+            // 每次告警都顺延保持期，到期时由主线程检查回落（elapsedRealtime 不慢于 uptime，不会提前）
+            main.removeCallbacks(decay);
+            main.postDelayed(decay, PRESSURE_HOLD_MS);
+            if (level <= pressure) return;
+            pressure = level;
+        }
+        Log.w(TAG, cause + "：压力升至 " + level + "，通知 " + listeners.size() + " 个进行中的任务");
+        for (IntConsumer l : listeners) l.accept(level);
+    }
+
+    // 估算峰值占用：每个线程一块 ARGB 条带 + 约 1/4 条带的编码缓冲；每个在途页按 DPI 估算压缩后大小
+    private static long need(int dpi, int workers, int maxInFlight, long band) {
+        long pagePixels = (long) (96.7 * dpi * dpi); // A4
+        return workers * (band + band / 4) + maxInFlight * (pagePixels / 4);
+    }
+}
@@ -0,0 +1,251 @@
+package com.pdf.reader.print;
+
+import android.content.Context;
+import android.util.Log;
+
+import com.pdf.reader.pdf.PdfDict;
+import com.pdf.reader.pdf.PdfImage;
+import com.pdf.reader.pdf.StreamingPdfWriter;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 渲染页的磁盘缓存：位于 cacheDir/pages，每页一个文件，保存已编码（G4/Flate/JPEG）的条带图像及其位置。
+ * 键见 {@link #key}（文档指纹 + 源页序号 + 页面设置 + 编码策略），文件名取其 SHA-1。
+ * 命中时直接把压缩数据交给 {@link StreamingPdfWriter}，不经过 PdfRenderer 与编码器。
+ * <p>
+ * 按总字节数做 LRU 淘汰：进程内用访问有序的表记账，跨进程以文件修改时间作为最近使用时间，
+ * 首次访问时扫描目录重建。写入先落临时文件再改名，进程中途被杀也不会留下半个条目；
+ * 读不出来的文件视为未命中并删除。
+ */
+final class PageDiskCache {
+
+    private static final String TAG = "PageDiskCache";
+    private static final String DIR = "pages";
+    private static final int MAGIC = 0x50474331; // "PGC1"
+    /** 默认容量：256MB，200 DPI 文字页约数十 KB，足够容纳几本常印的书。 */
+    static final long DEFAULT_MAX_BYTES = 256L * 1024 * 1024;
+
+    private static PageDiskCache instance;
+
+    static synchronized PageDiskCache get(Context context) {
+        if (instance == null) {
+            instance = new PageDiskCache(new File(context.getCacheDir(), DIR), DEFAULT_MAX_BYTES);
+        }
+        return instance;
+    }
+
+    private final File dir;
+    private final long maxBytes;
+    // 文件名 → 字节数，访问有序；null 表示尚未扫描目录
+    private LinkedHashMap<String, Long> index;
+    private long totalBytes;
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    private PageDiskCache(File dir, long maxBytes) {
+        this.dir = dir;
+        this.maxBytes = maxBytes;
+    }
+
+    /** 缓存键：文档指纹 + 源页序号（0 基）+ 页面设置 + 编码策略。 */
+    static String key(String docId, int sourcePage, PageSetup setup, RasterEncoding encoding) {
+        return docId + ":" + sourcePage + ":" + setup.cacheKey() + ":" + encoding;
+    }
+
+    /** 取缓存的渲染页；未命中或文件损坏时返回 null。 */
+    BandedPageRenderer.RenderedPage load(String key) {
+        String name = fileName(key);
+        synchronized (this) {
+            if (ensureIndex().get(name) == null) {
+                misses.incrementAndGet();
+                return null;
+            }
+        }
+        File f = new File(dir, name);
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(f)))) {
+            BandedPageRenderer.RenderedPage page = read(in);
+            f.setLastModified(System.currentTimeMillis());
+            hits.incrementAndGet();
+            return page;
+        } catch (IOException | RuntimeException e) {
+            Log.w(TAG, "缓存文件损坏，已丢弃: " + e.getMessage());
+            remove(name);
+            misses.incrementAndGet();
+            return null;
+        }
+    }
+
+    /** 存入渲染页；写失败（磁盘满等）只记日志，不影响打印。 */
+    void store(String key, BandedPageRenderer.RenderedPage page) {
+        long size = page.byteSize();
+        if (size > maxBytes / 8) return; // 单页过大（超高 DPI 彩图）不值得占用缓存
+        String name = fileName(key);
+        File tmp = new File(dir, name + ".tmp");
+        File f = new File(dir, name);
+        try {
+            if (!dir.isDirectory() && !dir.mkdirs()) throw new IOException("无法创建 " + dir);
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmp)))) {
+                write(out, page);
+            }
+            if (!tmp.renameTo(f)) throw new IOException("重命名失败");
+        } catch (IOException | RuntimeException e) {
+            Log.w(TAG, "写入缓存失败: " + e.getMessage());
+            tmp.delete();
+            return;
+        }
+        synchronized (this) {
+            Long old = ensureIndex().put(name, f.length());
+            totalBytes += f.length() - (old != null ? old : 0);
+            trim();
+        }
+    }
+
+    /** 清空缓存。 */
+    synchronized void clear() {
+        File[] files = dir.listFiles();
+        if (files != null) for (File f : files) f.delete();
+        index = new LinkedHashMap<>(16, 0.75f, true);
+        totalBytes = 0;
+    }
+
+    synchronized long sizeBytes() {
+        ensureIndex();
+        return totalBytes;
+    }
+
+    String getStats() {
+        return "命中 " + hits.get() + " / 未命中 " + misses.get() + "，占用 " + sizeBytes() / 1024 + " KB";
+    }
+
+    private synchronized void remove(String name) {
+        Long old = ensureIndex().remove(name);
+        if (old != null) totalBytes -= old;
+        new File(dir, name).delete();
+    }
+
+    private void trim() {
+        Iterator<Map.Entry<String, Long>> it = index.entrySet().iterator();
+        while (totalBytes > maxBytes && it.hasNext()) {
+            Map.Entry<String, Long> e = it.next();
+            new File(dir, e.getKey()).delete();
+            totalBytes -= e.getValue();
+            it.remove();
+        }
+    }
+
+    // 首次访问时按修改时间从旧到新重建访问顺序，顺带清理上次残留的临时文件
+    private LinkedHashMap<String, Long> ensureIndex() {
+        if (index != null) return index;
+        index = new LinkedHashMap<>(16, 0.75f, true);
+        totalBytes = 0;
+        File[] files = dir.listFiles();
+        if (files != null) {
+            Arrays.sort(files, Comparator.comparingLong(File::lastModified));
+            for (File f : files) {
+                if (f.getName().endsWith(".tmp")) {
+                    f.delete();
+                    continue;
+                }
+                index.put(f.getName(), f.length());
+                totalBytes += f.length();
+            }
+        }
+        trim();
+        return index;
+    }
+
+    private static void write(DataOutputStream out, BandedPageRenderer.RenderedPage page) throws IOException {
+        out.writeInt(MAGIC);
+        out.writeUTF(page.format.name());
+        out.writeInt(page.images.size());
+        for (StreamingPdfWriter.Placement p : page.images) {
+            out.writeFloat(p.x);
+            out.writeFloat(p.y);
+            out.writeFloat(p.width);
+            out.writeFloat(p.height);
+            PdfImage img = p.image;
+            out.writeInt(img.width);
+            out.writeInt(img.height);
+            out.writeUTF(img.colorSpace);
+            out.writeInt(img.bitsPerComponent);
+            out.writeUTF(img.filter != null ? img.filter : "");
+            // 编码器产生的 DecodeParms 只含整数与布尔值
+            int n = img.decodeParms != null ? img.decodeParms.size() : -1;
+            out.writeInt(n);
+            if (n > 0) {
+                for (Map.Entry<String, Object> e : img.decodeParms.entrySet()) {
+                    out.writeUTF(e.getKey());
+                    Object v = e.getValue();
+                    if (v instanceof Long) {
+                        out.writeByte('L');
+                        out.writeLong((Long) v);
+                    } else if (v instanceof Boolean) {
+                        out.writeByte('B');
+                        out.writeBoolean((Boolean) v);
+                    } else {
+                        throw new IOException("不支持的 DecodeParms 值: " + e.getKey());
+                    }
+                }
+            }
+            out.writeInt(img.data.length);
+            out.write(img.data);
+        }
+    }
+
+    private static BandedPageRenderer.RenderedPage read(DataInputStream in) throws IOException {
+        if (in.readInt() != MAGIC) throw new IOException("格式不符");
+        BandedPageRenderer.RenderedPage page = new BandedPageRenderer.RenderedPage();
+        page.format = BandEncoder.Format.valueOf(in.readUTF());
+        int count = in.readInt();
+        for (int i = 0; i < count; i++) {
+            float x = in.readFloat(), y = in.readFloat(), w = in.readFloat(), h = in.readFloat();
+            int width = in.readInt(), height = in.readInt();
+            String colorSpace = in.readUTF();
+            int bpc = in.readInt();
+            String filter = in.readUTF();
+            int n = in.readInt();
+            PdfDict parms = n >= 0 ? new PdfDict() : null;
+            for (int k = 0; k < n; k++) {
+                String key = in.readUTF();
+                int type = in.readByte();
+                if (type == 'L') parms.put(key, in.readLong());
+                else if (type == 'B') parms.put(key, in.readBoolean());
+                else throw new IOException("格式不符");
+            }
+            byte[] data = new byte[in.readInt()];
+            in.readFully(data);
+            page.images.add(new StreamingPdfWriter.Placement(new PdfImage(width, height, colorSpace, bpc,
+                    filter.isEmpty() ? null : filter, parms, data), x, y, w, h));
+        }
+        page.fromDisk = true;
+        return page;
+    }
+
+    private static String fileName(String key) {
+        try {
+            byte[] d = MessageDigest.getInstance("SHA-1").digest(key.getBytes(StandardCharsets.UTF_8));
+            StringBuilder sb = new StringBuilder(d.length * 2);
+            for (byte b : d) sb.append(Character.forDigit((b >> 4) & 15, 16)).append(Character.forDigit(b & 15, 16));
+            return sb.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,64 @@
+package com.pdf.reader.print;
+
+import android.print.PageRange;
+
+import java.util.Arrays;
+
+/**
+ * PageRange[] 与页序号数组之间的换算。页序号均为 0 基，指向适配器声明的文档（即输出文档）中的页。
+ */
+final class PageRanges {
+    private PageRanges() {}
+
+    /** 展开为升序、去重、限定在 [0, count) 内的页序号；ranges 为空视为全部。 */
+    static int[] toIndices(PageRange[] ranges, int count) {
+        if (ranges == null || ranges.length == 0) return all(count);
+        boolean[] picked = new boolean[count];
+        int n = 0;
+        for (PageRange r : ranges) {
+            int start = Math.max(0, r.getStart());
+            int end = Math.min(count - 1, r.getEnd());
+            for (int i = start; i <= end; i++) {
+                if (!picked[i]) {
+                    picked[i] = true;
+                    n++;
+                }
+            }
+        }
+        int[] out = new int[n];
+        for (int i = 0, k = 0; i < count; i++) {
+            if (picked[i]) out[k++] = i;
+        }
+        return out;
+    }
+
+    static boolean coversAll(PageRange[] ranges, int count) {
+        return toIndices(ranges, count).length == count;
+    }
+
+    /** 把升序页序号压缩成连续区间，用于 onWriteFinished 如实报告写出的页。 */
+    static PageRange[] fromIndices(int[] sorted) {
+        PageRange[] tmp = new PageRange[sorted.length];
+        int n = 0;
+        for (int i = 0; i < sorted.length; ) {
+            int j = i;
+            while (j + 1 < sorted.length && sorted[j + 1] == sorted[j] + 1) j++;
+            tmp[n++] = new PageRange(sorted[i], sorted[j]);
+            i = j + 1;
+        }
+        return Arrays.copyOf(tmp, n);
+    }
+
+    /** 按输出页序号从候选源页中取出对应的源页序号。 */
+    static int[] pick(int[] sourcePages, int[] outputIndices) {
+        int[] out = new int[outputIndices.length];
+        for (int k = 0; k < out.length; k++) out[k] = sourcePages[outputIndices[k]];
+        return out;
+    }
+
+    static int[] all(int count) {
+        int[] out = new int[Math.max(0, count)];
+        for (int i = 0; i < out.length; i++) out[i] = i;
+        return out;
+    }
+}
@@ -0,0 +1,68 @@
+package com.pdf.reader.print;
+
+import android.graphics.RectF;
+import android.print.PrintAttributes;
+
+/**
+ * 渲染路径的输出页设置：纸张尺寸、可打印区域（扣除边距）、DPI 与是否黑白，均取自打印对话框协商出的
+ * PrintAttributes；个别机型缺项时按 A4 / 彩色 / 无边距回退。尺寸单位为 point，content 以左上角为原点。
+ */
+final class PageSetup {
+
+    final float pageWidth;
+    final float pageHeight;
+    final RectF content;
+    final int dpi;
+    final boolean monochrome;
+
+    private PageSetup(float pageWidth, float pageHeight, RectF content, int dpi, boolean monochrome) {
+        this.pageWidth = pageWidth;
+        this.pageHeight = pageHeight;
+        this.content = content;
+        this.dpi = dpi;
+        this.monochrome = monochrome;
+    }
+
+    /**
+     * @param maxDpi 渲染分辨率上限：打印机报告的分辨率高于它时按上限渲染，未报告时直接使用
+     */
+    static PageSetup from(PrintAttributes attrs, int maxDpi) {
+        PrintAttributes.MediaSize media = attrs != null ? attrs.getMediaSize() : null;
+        if (media == null) media = PrintAttributes.MediaSize.ISO_A4;
+        float w = milsToPts(media.getWidthMils());
+        float h = milsToPts(media.getHeightMils());
+
+        PrintAttributes.Margins m = attrs != null ? attrs.getMinMargins() : null;
+        RectF content = new RectF(0, 0, w, h);
+        if (m != null) {
+            float l = milsToPts(m.getLeftMils()), t = milsToPts(m.getTopMils());
+            float r = milsToPts(m.getRightMils()), b = milsToPts(m.getBottomMils());
+            // 边距异常（占满整页）时忽略
+            if (l + r < w && t + b < h) content.set(l, t, w - r, h - b);
+        }
+
+        PrintAttributes.Resolution res = attrs != null ? attrs.getResolution() : null;
+        int dpi = maxDpi;
+        if (res != null) {
+            int printer = Math.min(res.getHorizontalDpi(), res.getVerticalDpi());
+            if (printer > 0) dpi = Math.max(72, Math.min(maxDpi, printer));
+        }
+
+        boolean mono = attrs != null && attrs.getColorMode() == PrintAttributes.COLOR_MODE_MONOCHROME;
+        return new PageSetup(w, h, content, dpi, mono);
+    }
+
+    PageSetup withDpi(int newDpi) {
+        return new PageSetup(pageWidth, pageHeight, content, newDpi, monochrome);
+    }
+
+    /** 渲染结果的缓存键后缀：同一源页在相同设置下的渲染结果相同。 */
+    String cacheKey() {
+        return dpi + ":" + pageWidth + "x" + pageHeight + ":" + content.left + "," + content.top + ","
+                + content.right + "," + content.bottom + (monochrome ? ":m" : ":c");
+    }
+
+    private static float milsToPts(int mils) {
+        return mils * 72f / 1000f;
+    }
+}
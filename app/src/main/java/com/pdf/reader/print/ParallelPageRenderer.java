@@ -0,0 +1,210 @@
+package com.pdf.reader.print;
+
+import android.graphics.pdf.PdfRenderer;
+import android.os.CancellationSignal;
+import android.os.ParcelFileDescriptor;
+import android.os.Process;
+import android.util.Log;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.IntFunction;
+
+/**
+ * 并行栅格化流水线：每个工作线程持有一个独立的 PdfRenderer（基于 dup 出来的文件描述符，
+ * 因为单个 PdfRenderer 同一时刻只能打开一页），渲染与编码都在工作线程上完成，
+ * 结果由调用线程按页序交给 {@link PageSink}。
+ * 同一时刻最多 maxInFlight 页处于“渲染中或待输出”，待输出的页只占用压缩后的数据；
+ * 内存紧张时可随时调低该上限（{@link #setMaxInFlight}）。渲染中分配位图失败时先调用内存不足回调
+ * （释放缓存、收紧预算），再重试该页一次。
+ */
+final class ParallelPageRenderer implements Closeable {
+
+    private static final String TAG = "ParallelRender";
+
+    interface PageSink {
+        /** 在调用 {@link #run} 的线程上按输出顺序回调。 */
+        void accept(int index, int sourcePage, BandedPageRenderer.RenderedPage page) throws IOException;
+    }
+
+    private final BandedPageRenderer bander;
+    private final PrintMetrics.Job metrics;
+    private volatile int maxInFlight;
+    private volatile Runnable onOutOfMemory;
+    private final BlockingQueue<PdfRenderer> renderers;
+    private final List<PdfRenderer> all = new ArrayList<>();
+    private final ExecutorService executor;
+
+    ParallelPageRenderer(ParcelFileDescriptor source, int workers, int maxInFlight,
+                         BandedPageRenderer bander, PrintMetrics.Job metrics) throws IOException {
+        this.bander = bander;
+        this.metrics = metrics;
+        this.maxInFlight = Math.max(1, maxInFlight);
+        int n = Math.max(1, workers);
+        this.renderers = new ArrayBlockingQueue<>(n);
+        try {
+            for (int i = 0; i < n; i++) {
+                try (PrintMetrics.Section ignored = metrics.time(PrintMetrics.Stage.RENDERER)) {
+                    PdfRenderer r = new PdfRenderer(source.dup());
+                    all.add(r);
+                    renderers.add(r);
+                }
+            }
+        } catch (IOException | RuntimeException e) {
+            for (PdfRenderer r : all) r.close();
+            throw e;
+        }
+        AtomicInteger seq = new AtomicInteger();
+        this.executor = Executors.newFixedThreadPool(n, r -> {
+            Thread t = new Thread(() -> {
+                Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+                r.run();
+            }, "print-render-" + seq.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    /** 调整在途页数上限，对尚未提交的页立即生效。 */
+    void setMaxInFlight(int n) {
+        this.maxInFlight = Math.max(1, n);
+    }
+
+    void setOutOfMemoryHandler(Runnable handler) {
+        this.onOutOfMemory = handler;
+    }
+
+    int getPageCount() {
+        return all.get(0).getPageCount();
+    }
+
+    /**
+     * 渲染 sourcePages（源页序号，按输出顺序），逐页交给 sink。取消时抛出 CancellationException。
+     * cached 不为 null 时先按源页序号查询已有结果，命中的页不再渲染。
+     */
+    void run(int[] sourcePages, PageSetup setup, CancellationSignal cancellationSignal, IntFunction<BandedPageRenderer.RenderedPage> cached,
+             PageSink sink) throws IOException {
+        @SuppressWarnings("unchecked")
+        Future<BandedPageRenderer.RenderedPage>[] futures = new Future[sourcePages.length];
+        int next = 0;
+        try {
+            for (int k = 0; k < sourcePages.length; k++) {
+                // 滑动窗口：提前提交至多 maxInFlight 页
+                while (next < sourcePages.length && next < k + maxInFlight) {
+                    final int src = sourcePages[next];
+                    BandedPageRenderer.RenderedPage hit = cached != null ? cached.apply(src) : null;
+                    futures[next++] = hit != null
+                            ? CompletableFuture.completedFuture(hit)
+                            : executor.submit(() -> renderOne(src, setup, cancellationSignal));
+                }
+                BandedPageRenderer.RenderedPage page = await(futures[k], cancellationSignal);
+                futures[k] = null;
+                sink.accept(k, sourcePages[k], page);
+            }
+        } finally {
+            // 未被消费的页直接丢弃：渲染结果只含压缩数据，位图在渲染线程上已归还
+            for (Future<BandedPageRenderer.RenderedPage> f : futures) {
+                if (f != null) f.cancel(false);
+            }
+        }
+    }
+
+    private BandedPageRenderer.RenderedPage renderOne(int index, PageSetup setup,
+                                                      CancellationSignal cancellationSignal)
+            throws InterruptedException, IOException {
+        if (cancellationSignal.isCanceled()) throw new CancellationException();
+        PdfRenderer r = renderers.take();
+        try (PrintMetrics.Section ignored = metrics.time(PrintMetrics.Stage.RENDER);
+             PdfRenderer.Page page = r.openPage(index)) {
+            try {
+                return bander.rasterize(page, setup, cancellationSignal);
+            } catch (OutOfMemoryError e) {
+                Runnable handler = onOutOfMemory;
+                if (handler == null) throw e;
+                Log.w(TAG, "第 " + (index + 1) + " 页渲染时内存不足，释放缓存后重试");
+                handler.run();
+                try {
+                    return bander.rasterize(page, setup, cancellationSignal);
+                } catch (OutOfMemoryError again) {
+                    throw new IOException("内存不足，请降低打印分辨率后重试");
+                }
+            }
+        } finally {
+            renderers.add(r);
+        }
+    }
+
+    private static BandedPageRenderer.RenderedPage await(Future<BandedPageRenderer.RenderedPage> f,
+                                                         CancellationSignal cancellationSignal) throws IOException {
+        while (true) {
+            if (cancellationSignal.isCanceled()) throw new CancellationException();
+            try {
+                return f.get(100, TimeUnit.MILLISECONDS);
+            } catch (TimeoutException ignored) {
+                // 继续轮询取消信号
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new CancellationException();
+            } catch (ExecutionException e) {
+                Throwable c = e.getCause();
+                if (c instanceof CancellationException) throw (CancellationException) c;
+                if (c instanceof IOException) throw (IOException) c;
+                throw new IOException("渲染失败: " + c, c);
+            }
+        }
+    }
+
+    /**
+     * 停止工作线程并关闭全部 PdfRenderer。调用线程可能已被中断（取消运行中的任务即中断打印线程），
+     * 这里先清掉中断标记再等待，返回前恢复，保证 PdfRenderer 与 dup 出来的描述符不会因中断泄漏。
+     */
+    @Override
+    public void close() {
+        executor.shutdownNow();
+        boolean interrupted = Thread.interrupted();
+        try {
+            // native 渲染调用无法中断，必须等工作线程退出后才能关闭 PdfRenderer；
+            // 等待期间再被中断也继续等到期限，中断标记在返回前恢复
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+            boolean terminated = false;
+            while (!terminated) {
+                long left = deadline - System.nanoTime();
+                if (left <= 0) break;
+                try {
+                    terminated = executor.awaitTermination(left, TimeUnit.NANOSECONDS);
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+            if (terminated) {
+                for (PdfRenderer r : all) r.close();
+                return;
+            }
+            Log.w(TAG, "渲染线程未能及时退出，转到后台等待后再关闭 PdfRenderer");
+            Thread t = new Thread(() -> {
+                try {
+                    executor.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+                    for (PdfRenderer r : all) r.close();
+                } catch (InterruptedException ignored) {
+                }
+            }, "print-render-close");
+            t.setDaemon(true);
+            t.start();
+        } finally {
+            if (interrupted) Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -5,25 +5,47 @@ import android.content.Context;
 import android.net.Uri;
 import android.os.CancellationSignal;
 import android.os.ParcelFileDescriptor;
+import android.os.SystemClock;
 import android.print.PageRange;
 import android.print.PrintAttributes;
 import android.print.PrintDocumentAdapter;
 import android.print.PrintDocumentInfo;
+import android.util.Log;
 
+import com.pdf.reader.doc.DocumentMetadataCache;
+import com.pdf.reader.doc.DocumentStaging;
+import com.pdf.reader.pdf.PdfFile;
+import com.pdf.reader.pdf.PdfPageIndex;
+import com.pdf.reader.pdf.PdfSubsetter;
+import com.pdf.reader.util.ChannelCopier;
+
+import java.io.FileNotFoundException;
 import java.io.FileOutputStream;
+import java.io.IOException;
 import java.io.InputStream;
-import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.util.Locale;
+import java.util.concurrent.CancellationException;
 
 /**
  * 全部页面直传原始 PDF，保证质量（不渲染）。
+ * 用户在打印对话框中只选了部分页码时，改为无损子集输出，只发送所选页面。
+ * 解析与写出都在 {@link PrintTaskRunner} 的后台线程上执行，主线程只负责提交。
  */
 public class PdfPrintAdapter extends PrintDocumentAdapter {
 
+    private static final String TAG = "PdfPrint";
+
     private final Context context;
     private final ContentResolver resolver;
     private final Uri pdfUri;
     private final String jobName;
 
+    private final PrintTaskRunner runner = new PrintTaskRunner();
+    private volatile int pageCount = PrintDocumentInfo.PAGE_COUNT_UNKNOWN;
+
     public PdfPrintAdapter(Context context, ContentResolver resolver, Uri pdfUri, String jobName) {
         this.context = context;
         this.resolver = resolver;
@@ -31,44 +53,118 @@ public class PdfPrintAdapter extends PrintDocumentAdapter {
         this.jobName = jobName;
     }
 
+    // 对话框打开期间保留暂存副本，免得被新选的文档挤出缓存
+    @Override
+    public void onStart() {
+        DocumentStaging.get(context).retain(pdfUri);
+    }
+
+    @Override
+    public void onFinish() {
+        DocumentStaging.get(context).release(pdfUri);
+    }
+
     @Override
     public void onLayout(PrintAttributes oldAttributes, PrintAttributes newAttributes,
                          CancellationSignal cancellationSignal,
                          LayoutResultCallback callback, android.os.Bundle extras) {
-        if (cancellationSignal.isCanceled()) {
-            callback.onLayoutCancelled();
-            return;
-        }
-        PrintDocumentInfo info = new PrintDocumentInfo.Builder(jobName)
-                .setContentType(PrintDocumentInfo.CONTENT_TYPE_DOCUMENT)
-                .build();
-        callback.onLayoutFinished(info, true);
+        runner.layout(cancellationSignal, callback, "分析 PDF 失败: ", () -> {
+            // 读出页数，打印对话框才能提供页码范围选择；解析失败时保持“未知”，仍可整本直传。
+            // 改纸张/方向等触发的重复 layout 命中元数据缓存，不再重新解析
+            try {
+                pageCount = DocumentMetadataCache.getInstance().get(resolver, pdfUri).pageCount;
+            } catch (Exception e) {
+                pageCount = PrintDocumentInfo.PAGE_COUNT_UNKNOWN;
+            }
+            return new PrintDocumentInfo.Builder(jobName)
+                    .setContentType(PrintDocumentInfo.CONTENT_TYPE_DOCUMENT)
+                    .setPageCount(pageCount)
+                    .build();
+        });
     }
 
     @Override
     public void onWrite(PageRange[] pages, ParcelFileDescriptor destination,
                         CancellationSignal cancellationSignal, WriteResultCallback callback) {
-        try (InputStream in = resolver.openInputStream(pdfUri);
-             OutputStream out = new FileOutputStream(destination.getFileDescriptor())) {
-
-            if (in == null) {
-                callback.onWriteFailed("无法打开 PDF");
-                return;
+        PrintMetrics.Job metrics = PrintMetrics.getInstance().newJob(jobName);
+        runner.write(cancellationSignal, callback, "写入失败: ", metrics, () -> {
+            metrics.identify(resolver, pdfUri);
+            if (pageCount > 0 && !PageRanges.coversAll(pages, pageCount)) {
+                PageRange[] written = writeSubset(pages, destination, cancellationSignal, metrics);
+                if (written != null) return written;
             }
+            return writePassthrough(destination, cancellationSignal, metrics);
+        });
+    }
 
-            byte[] buffer = new byte[8192];
-            int read;
-            while ((read = in.read(buffer)) != -1) {
-                if (cancellationSignal.isCanceled()) {
-                    callback.onWriteCancelled();
-                    return;
-                }
-                out.write(buffer, 0, read);
-            }
-            out.flush();
-            callback.onWriteFinished(new PageRange[]{PageRange.ALL_PAGES});
+    /**
+     * 只写出请求的页，返回写出的页码。返回 null 表示无法做子集（加密/解析失败），此时尚未写入任何字节，
+     * 由调用方回退为整本直传（系统会从中挑出所需页面）。
+     */
+    private PageRange[] writeSubset(PageRange[] pages, ParcelFileDescriptor destination,
+                                    CancellationSignal cancellationSignal, PrintMetrics.Job metrics) throws Exception {
+        PdfSubsetter subset;
+        int[] wanted;
+        try {
+            PdfFile pdf = SubsetPrinter.open(resolver, pdfUri, metrics);
+            wanted = PageRanges.toIndices(pages, PdfPageIndex.countPages(pdf));
+            if (wanted.length == 0) throw new PrintTaskRunner.Failure("所选页码超出范围");
+            subset = PdfSubsetter.plan(pdf, wanted, cancellationSignal::isCanceled);
+        } catch (CancellationException | PrintTaskRunner.Failure e) {
+            throw e;
         } catch (Exception e) {
-            callback.onWriteFailed("写入失败: " + e.getMessage());
+            Log.w(TAG, "无法按页码子集输出，改为整本直传: " + e.getMessage());
+            return null;
+        }
+        metrics.setPath("矢量子集");
+        SubsetPrinter.write(subset, destination, cancellationSignal, metrics);
+        metrics.addPages(wanted.length);
+        return PageRanges.fromIndices(wanted);
+    }
+
+    /**
+     * 整本直传：源为可定位文件时用 FileChannel.transferTo 分块零拷贝，否则用大块直接缓冲区循环；
+     * 完成后在日志中给出实际吞吐。
+     */
+    private PageRange[] writePassthrough(ParcelFileDescriptor destination,
+                                         CancellationSignal cancellationSignal,
+                                         PrintMetrics.Job metrics) throws IOException {
+        long startMs = SystemClock.elapsedRealtime();
+        metrics.setPath("直传");
+        ReadableByteChannel source;
+        try (PrintMetrics.Section ignored = metrics.time(PrintMetrics.Stage.OPEN)) {
+            source = openSourceChannel();
+        }
+        try (ReadableByteChannel in = source;
+             FileOutputStream out = new FileOutputStream(destination.getFileDescriptor());
+             FileChannel outChannel = out.getChannel()) {
+
+            long bytes;
+            try (PrintMetrics.Section ignored = metrics.time(PrintMetrics.Stage.WRITE)) {
+                bytes = ChannelCopier.copy(in, outChannel, cancellationSignal::isCanceled);
+            }
+            metrics.addBytes(bytes);
+            metrics.addPages(Math.max(0, pageCount));
+            long ms = Math.max(1, SystemClock.elapsedRealtime() - startMs);
+            Log.i(TAG, String.format(Locale.ROOT, "直传 %d 字节，用时 %d ms，%.0f 字节/秒",
+                    bytes, ms, bytes * 1000.0 / ms));
+            return pageCount > 0
+                    ? new PageRange[]{new PageRange(0, pageCount - 1)}
+                    : new PageRange[]{PageRange.ALL_PAGES};
+        }
+    }
+
+    // 优先取文件描述符（可零拷贝）；个别只提供流的文档提供方回退到 InputStream
+    private ReadableByteChannel openSourceChannel() throws IOException {
+        ParcelFileDescriptor pfd = null;
+        try {
+            pfd = resolver.openFileDescriptor(pdfUri, "r");
+        } catch (FileNotFoundException ignored) { }
+        if (pfd != null) {
+            return new ParcelFileDescriptor.AutoCloseInputStream(pfd).getChannel();
         }
+        InputStream in = resolver.openInputStream(pdfUri);
+        if (in == null) throw new IOException("无法打开 PDF");
+        return Channels.newChannel(in);
     }
 }
@@ -0,0 +1,345 @@
+package com.pdf.reader.print;
+
+import android.content.ContentResolver;
+import android.net.Uri;
+import android.os.Build;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
+import android.os.Trace;
+import android.util.Log;
+
+import com.pdf.reader.doc.DocumentFingerprint;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * 打印流水线的性能记录。每次 onWrite 对应一个 {@link Job}：各阶段（打开文档、解析结构、创建 PdfRenderer、
+ * 渲染编码、写出假脱机）按调用计时并计入耗时直方图，同时打 {@link Trace} 区段，在 Perfetto / systrace 中可见；
+ * 任务结束时汇总页数、每秒页数、写出字节、位图峰值占用与取消响应延迟。
+ * <p>
+ * 最近 {@value #MAX_JOBS} 个任务保留在内存中，结束时在主线程通知订阅方；{@link #toJson()} 导出全部记录供离线对比。
+ * 每条记录带文档的内容指纹，同一本书经不同 URI 打开的多次打印可以归并对比。
+ */
+public final class PrintMetrics {
+
+    private static final String TAG = "PrintMetrics";
+
+    private static final int MAX_JOBS = 20;
+    // 直方图桶上界（毫秒），最后一个桶收纳更慢的调用
+    private static final long[] BUCKET_BOUNDS_MS = {1, 2, 5, 10, 20, 50, 100, 200, 500, 1000, 2000, 5000, 10000};
+
+    public enum Stage {
+        OPEN("打开文档"),
+        PARSE("解析结构"),
+        RENDERER("创建渲染器"),
+        RENDER("渲染编码"),
+        WRITE("写出");
+
+        final String label;
+        final String traceName;
+
+        Stage(String label) {
+            this.label = label;
+            this.traceName = "print:" + name().toLowerCase(Locale.ROOT);
+        }
+    }
+
+    public enum Outcome { FINISHED, CANCELLED, FAILED }
+
+    private static final PrintMetrics INSTANCE = new PrintMetrics();
+
+    public static PrintMetrics getInstance() {
+        return INSTANCE;
+    }
+
+    private final ArrayDeque<Job> recent = new ArrayDeque<>(); // guarded by this
+    private final CopyOnWriteArrayList<Consumer<Job>> listeners = new CopyOnWriteArrayList<>();
+    private final Handler main = new Handler(Looper.getMainLooper());
+
+    private PrintMetrics() {}
+
+    /** 开始记录一个写出任务；由 {@link PrintTaskRunner} 在任务结束时收尾。 */
+    Job newJob(String name) {
+        return new Job(name);
+    }
+
+    /** 订阅任务结束事件，在主线程回调。 */
+    public void addListener(Consumer<Job> listener) {
+        listeners.add(listener);
+    }
+
+    public void removeListener(Consumer<Job> listener) {
+        listeners.remove(listener);
+    }
+
+    /** 最近的任务，按结束时间从早到晚。 */
+    public synchronized List<Job> getRecentJobs() {
+        return new ArrayList<>(recent);
+    }
+
+    public String toJson() throws JSONException {
+        JSONArray jobs = new JSONArray();
+        for (Job job : getRecentJobs()) jobs.put(job.toJson());
+        JSONArray bounds = new JSONArray();
+        for (long b : BUCKET_BOUNDS_MS) bounds.put(b);
+        return new JSONObject()
+                .put("device", Build.MANUFACTURER + " " + Build.MODEL)
+                .put("sdk", Build.VERSION.SDK_INT)
+                .put("bucketBoundsMs", bounds)
+                .put("jobs", jobs)
+                .toString(2);
+    }
+
+    private void finished(Job job) {
+        synchronized (this) {
+            if (recent.size() >= MAX_JOBS) recent.pollFirst();
+            recent.addLast(job);
+        }
+        main.post(() -> {
+            for (Consumer<Job> l : listeners) l.accept(job);
+        });
+    }
+
+    /** 一个阶段的耗时分布。 */
+    private static final class Histogram {
+        private final long[] buckets = new long[BUCKET_BOUNDS_MS.length + 1];
+        private long count;
+        private long totalNanos;
+        private long maxNanos;
+
+        synchronized boolean isEmpty() {
+            return count == 0;
+        }
+
+        synchronized void add(long nanos) {
+            long ms = nanos / 1_000_000;
+            int i = 0;
+            while (i < BUCKET_BOUNDS_MS.length && ms >= BUCKET_BOUNDS_MS[i]) i++;
+            buckets[i]++;
+            count++;
+            totalNanos += nanos;
+            maxNanos = Math.max(maxNanos, nanos);
+        }
+
+        // 分位数取所在桶的上界，最后一个桶取最大值
+        synchronized long percentileMs(double p) {
+            long rank = (long) Math.ceil(count * p), seen = 0;
+            for (int i = 0; i < buckets.length; i++) {
+                seen += buckets[i];
+                if (seen >= rank && seen > 0) {
+                    return i < BUCKET_BOUNDS_MS.length ? BUCKET_BOUNDS_MS[i] : maxNanos / 1_000_000;
+                }
+            }
+            return 0;
+        }
+
+        synchronized JSONObject toJson() throws JSONException {
+            JSONArray b = new JSONArray();
+            for (long n : buckets) b.put(n);
+            return new JSONObject()
+                    .put("count", count)
+                    .put("totalMs", totalNanos / 1_000_000)
+                    .put("maxMs", maxNanos / 1_000_000)
+                    .put("p50Ms", percentileMs(0.5))
+                    .put("p95Ms", percentileMs(0.95))
+                    .put("buckets", b);
+        }
+    }
+
+    /** 计时区段，配合 try-with-resources 使用；必须在开始的线程上关闭（Trace 区段按线程配对）。 */
+    public static final class Section implements AutoCloseable {
+        private final Histogram histogram;
+        private final long start;
+
+        private Section(Stage stage, Histogram histogram) {
+            this.histogram = histogram;
+            Trace.beginSection(stage.traceName);
+            this.start = SystemClock.elapsedRealtimeNanos();
+        }
+
+        @Override
+        public void close() {
+            histogram.add(SystemClock.elapsedRealtimeNanos() - start);
+            Trace.endSection();
+        }
+    }
+
+    /** 一次写出任务的记录。计时与计数方法可在任意线程调用。 */
+    public static final class Job {
+        private final String name;
+        private final long startedAt = System.currentTimeMillis();
+        private final long startNanos = SystemClock.elapsedRealtimeNanos();
+        private final Histogram[] stages = new Histogram[Stage.values().length];
+        private final AtomicInteger pages = new AtomicInteger();
+        private final AtomicLong bytes = new AtomicLong();
+        private final AtomicLong peakBitmapBytes = new AtomicLong();
+        private final AtomicBoolean done = new AtomicBoolean();
+        private volatile String path = "";
+        private volatile String documentId;
+        private volatile String documentSha256;
+        private volatile Outcome outcome;
+        private volatile String message;
+        private volatile long durationNanos;
+        private volatile long cancelLatencyNanos = -1;
+
+        private Job(String name) {
+            this.name = name;
+            for (int i = 0; i < stages.length; i++) stages[i] = new Histogram();
+        }
+
+        Section time(Stage stage) {
+            return new Section(stage, stages[stage.ordinal()]);
+        }
+
+        /** 实际走的输出路径（直传、矢量子集、栅格……），便于对比同一文档不同路径的耗时。 */
+        void setPath(String path) {
+            this.path = path;
+        }
+
+        /**
+         * 记下文档的快速指纹与（已在后台算好时的）全量 SHA-256。指纹按 URI 缓存，选中文档时已算过，
+         * 这里通常不读文件；须在后台线程调用。
+         */
+        void identify(ContentResolver resolver, Uri uri) {
+            DocumentFingerprint fingerprint = DocumentFingerprint.getInstance();
+            try {
+                documentId = fingerprint.getId(resolver, uri);
+                documentSha256 = fingerprint.getFullHash(resolver, uri);
+            } catch (IOException | RuntimeException e) {
+                Log.w(TAG, "无法计算文档指纹，记录不带文档 ID: " + e.getMessage());
+            }
+        }
+
+        void addPages(int n) {
+            pages.addAndGet(n);
+        }
+
+        void addBytes(long n) {
+            bytes.addAndGet(n);
+        }
+
+        void recordBitmapBytes(long peak) {
+            peakBitmapBytes.accumulateAndGet(peak, Math::max);
+        }
+
+        /** 某阶段迄今的累计耗时（各线程相加）。 */
+        long totalNanos(Stage stage) {
+            Histogram h = stages[stage.ordinal()];
+            synchronized (h) {
+                return h.totalNanos;
+            }
+        }
+
+        /**
+         * 任务结束（回调已交给主线程）时调用，只生效一次。
+         * cancelRequestedNanos 为收到取消信号的时刻（elapsedRealtimeNanos），未取消为 0。
+         */
+        void finish(Outcome outcome, String message, long cancelRequestedNanos) {
+            if (!done.compareAndSet(false, true)) return;
+            long now = SystemClock.elapsedRealtimeNanos();
+            this.outcome = outcome;
+            this.message = message;
+            this.durationNanos = now - startNanos;
+            if (outcome == Outcome.CANCELLED && cancelRequestedNanos > 0) {
+                cancelLatencyNanos = Math.max(0, now - cancelRequestedNanos);
+            }
+            INSTANCE.finished(this);
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        /** 文档的内容指纹；无法计算时为 null。 */
+        public String getDocumentId() {
+            return documentId;
+        }
+
+        public Outcome getOutcome() {
+            return outcome;
+        }
+
+        public long getDurationMs() {
+            return durationNanos / 1_000_000;
+        }
+
+        public int getPageCount() {
+            return pages.get();
+        }
+
+        public double getPagesPerSecond() {
+            return durationNanos > 0 ? pages.get() * 1e9 / durationNanos : 0;
+        }
+
+        /** 给用户看的一段摘要：总体数字与耗时最多的几个阶段。 */
+        public String summary() {
+            StringBuilder sb = new StringBuilder();
+            sb.append(String.format(Locale.CHINA, "%s：%s，%d 页，用时 %.1f 秒（%.1f 页/秒），写出 %.1f MB",
+                    name, outcomeLabel(), pages.get(), durationNanos / 1e9, getPagesPerSecond(),
+                    bytes.get() / 1048576.0));
+            if (!path.isEmpty()) sb.append("，").append(path);
+            if (peakBitmapBytes.get() > 0) {
+                sb.append(String.format(Locale.CHINA, "，位图峰值 %.1f MB", peakBitmapBytes.get() / 1048576.0));
+            }
+            if (cancelLatencyNanos >= 0) {
+                sb.append(String.format(Locale.CHINA, "，取消响应 %d ms", cancelLatencyNanos / 1_000_000));
+            }
+            for (Stage s : Stage.values()) {
+                Histogram h = stages[s.ordinal()];
+                synchronized (h) {
+                    if (h.count == 0) continue;
+                    sb.append(String.format(Locale.CHINA, "\n  %s：%d 次，共 %d ms，最长 %d ms",
+                            s.label, h.count, h.totalNanos / 1_000_000, h.maxNanos / 1_000_000));
+                    if (h.count > 1) sb.append("，P95 ≤ ").append(h.percentileMs(0.95)).append(" ms");
+                }
+            }
+            return sb.toString();
+        }
+
+        JSONObject toJson() throws JSONException {
+            JSONObject st = new JSONObject();
+            for (Stage s : Stage.values()) {
+                Histogram h = stages[s.ordinal()];
+                // 导出时任务可能仍在进行，计数须在直方图的锁内读取
+                if (!h.isEmpty()) st.put(s.name().toLowerCase(Locale.ROOT), h.toJson());
+            }
+            JSONObject o = new JSONObject()
+                    .put("name", name)
+                    .put("startedAt", startedAt)
+                    .put("outcome", outcome != null ? outcome.name().toLowerCase(Locale.ROOT) : "running")
+                    .put("path", path)
+                    .put("durationMs", getDurationMs())
+                    .put("pages", pages.get())
+                    .put("pagesPerSecond", Math.round(getPagesPerSecond() * 100) / 100.0)
+                    .put("bytesWritten", bytes.get())
+                    .put("peakBitmapBytes", peakBitmapBytes.get())
+                    .put("stages", st);
+            if (documentId != null) o.put("documentId", documentId);
+            if (documentSha256 != null) o.put("documentSha256", documentSha256);
+            if (cancelLatencyNanos >= 0) o.put("cancelLatencyMs", cancelLatencyNanos / 1_000_000);
+            if (message != null) o.put("message", message);
+            return o;
+        }
+
+        private String outcomeLabel() {
+            Outcome o = outcome;
+            if (o == Outcome.CANCELLED) return "已取消";
+            if (o == Outcome.FAILED) return "失败（" + message + "）";
+            return "完成";
+        }
+    }
+}
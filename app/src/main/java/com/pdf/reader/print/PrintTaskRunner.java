@@ -0,0 +1,177 @@
+package com.pdf.reader.print;
+
+import android.os.CancellationSignal;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
+import android.print.PageRange;
+import android.print.PrintDocumentAdapter.LayoutResultCallback;
+import android.print.PrintDocumentAdapter.WriteResultCallback;
+import android.print.PrintDocumentInfo;
+
+import com.pdf.reader.util.BackgroundExecutors;
+
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * 打印适配器的异步执行层：onLayout/onWrite 的实际工作在专用的后台线程上按提交顺序执行，
+ * 结果回调一律切回主线程，主线程上只做提交。
+ * <ul>
+ *   <li>取消：通过 CancellationSignal.setOnCancelListener 立即响应——尚未开始的任务直接出队并报告取消，
+ *       运行中的任务被中断（阻塞等待与可中断通道随即退出）。任务的收尾因此要在线程已中断时照常完成：
+ *       资源用 try-with-resources 释放，需要等待其他线程的收尾先清中断标记、结束后再恢复
+ *       （见 {@link ParallelPageRenderer#close}）；</li>
+ *   <li>合并：短时间内连续到来的多次 layout 只执行最后一次，被顶替的立即报告取消。</li>
+ * </ul>
+ * 每次调用的回调保证只触发一次；写出任务的 {@link PrintMetrics.Job} 随回调一起收尾。
+ */
+final class PrintTaskRunner {
+
+    interface LayoutTask {
+        PrintDocumentInfo run() throws Exception;
+    }
+
+    interface WriteTask {
+        /** 返回实际写出的页。 */
+        PageRange[] run() throws Exception;
+    }
+
+    /** 直接展示给用户的失败信息，不加前缀。 */
+    static final class Failure extends Exception {
+        Failure(String message) {
+            super(message);
+        }
+    }
+
+    // 所有打印任务共用一个线程：layout 与 write 天然按框架调用顺序串行，空闲 30 秒后线程退出
+    private static final ThreadPoolExecutor EXECUTOR = BackgroundExecutors.serial("print-task");
+
+    private final Handler main = new Handler(Looper.getMainLooper());
+    private Job pendingLayout; // guarded by this
+
+    void layout(CancellationSignal signal, LayoutResultCallback callback, String failurePrefix, LayoutTask task) {
+        Job job = new Job(signal, failurePrefix) {
+            @Override
+            void execute() throws Exception {
+                PrintDocumentInfo info = task.run();
+                if (signal.isCanceled()) cancelled();
+                else report(() -> callback.onLayoutFinished(info, true));
+            }
+
+            @Override
+            void cancelled() {
+                report(callback::onLayoutCancelled);
+            }
+
+            @Override
+            void failed(String message) {
+                report(() -> callback.onLayoutFailed(message));
+            }
+        };
+        synchronized (this) {
+            // 还在排队的上一次 layout 已经过时，直接顶替
+            Job previous = pendingLayout;
+            if (previous != null && previous.claim()) {
+                previous.future.cancel(false);
+                previous.cancelled();
+            }
+            pendingLayout = job;
+        }
+        submit(job);
+    }
+
+    /** metrics 在回调交给主线程时收尾：结果、总耗时，以及取消时从收到信号到报告取消的延迟。 */
+    void write(CancellationSignal signal, WriteResultCallback callback, String failurePrefix,
+               PrintMetrics.Job metrics, WriteTask task) {
+        submit(new Job(signal, failurePrefix) {
+            @Override
+            void execute() throws Exception {
+                PageRange[] written = task.run();
+                if (signal.isCanceled()) cancelled();
+                else if (report(() -> callback.onWriteFinished(written))) {
+                    metrics.finish(PrintMetrics.Outcome.FINISHED, null, 0);
+                }
+            }
+
+            @Override
+            void cancelled() {
+                if (report(callback::onWriteCancelled)) {
+                    metrics.finish(PrintMetrics.Outcome.CANCELLED, null, cancelRequestedNanos);
+                }
+            }
+
+            @Override
+            void failed(String message) {
+                if (report(() -> callback.onWriteFailed(message))) {
+                    metrics.finish(PrintMetrics.Outcome.FAILED, message, 0);
+                }
+            }
+        });
+    }
+
+    private void submit(Job job) {
+        job.future = EXECUTOR.submit(job);
+        job.signal.setOnCancelListener(() -> {
+            job.cancelRequestedNanos = SystemClock.elapsedRealtimeNanos();
+            if (job.claim()) {
+                job.future.cancel(false);
+                job.cancelled();
+            } else {
+                // 中断打断阻塞等待；任务的收尾不受中断影响，PdfRenderer 等照常关闭
+                job.future.cancel(true);
+            }
+        });
+    }
+
+    private abstract class Job implements Runnable {
+        final CancellationSignal signal;
+        final String failurePrefix;
+        final AtomicBoolean claimed = new AtomicBoolean();
+        final AtomicBoolean reported = new AtomicBoolean();
+        volatile Future<?> future;
+        volatile long cancelRequestedNanos;
+
+        Job(CancellationSignal signal, String failurePrefix) {
+            this.signal = signal;
+            this.failurePrefix = failurePrefix;
+        }
+
+        abstract void execute() throws Exception;
+
+        abstract void cancelled();
+
+        abstract void failed(String message);
+
+        /** 抢占执行权：工作线程开始执行、取消与合并三者只有一方能成功。 */
+        boolean claim() {
+            return claimed.compareAndSet(false, true);
+        }
+
+        /** 返回 false 表示结果已报告过，本次被忽略。 */
+        boolean report(Runnable r) {
+            if (!reported.compareAndSet(false, true)) return false;
+            main.post(r);
+            return true;
+        }
+
+        @Override
+        public void run() {
+            if (!claim()) return;
+            synchronized (PrintTaskRunner.this) {
+                if (pendingLayout == this) pendingLayout = null;
+            }
+            try {
+                if (signal.isCanceled()) cancelled();
+                else execute();
+            } catch (Failure e) {
+                failed(e.getMessage());
+            } catch (Throwable e) {
+                if (signal.isCanceled() || e instanceof CancellationException) cancelled();
+                else failed(failurePrefix + e.getMessage());
+            }
+        }
+    }
+}
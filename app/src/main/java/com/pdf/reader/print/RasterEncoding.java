@@ -0,0 +1,15 @@
+package com.pdf.reader.print;
+
+/**
+ * 渲染路径输出图像的压缩方式。
+ */
+public enum RasterEncoding {
+    /** 按内容自动选择：黑白文字用 CCITT G4，灰度/彩色线稿用 Flate，照片类用 JPEG。 */
+    AUTO,
+    /** 全部用 JPEG（DCTDecode），体积小，有损。 */
+    JPEG,
+    /** 全部用 Flate 压缩的 RGB，无损，体积最大。 */
+    FLATE,
+    /** 全部二值化后用 CCITT G4，适合黑白文字稿，灰度/彩色内容会丢失层次。 */
+    CCITT_G4
+}
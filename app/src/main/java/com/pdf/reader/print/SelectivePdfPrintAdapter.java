@@ -1,37 +1,73 @@
 package com.pdf.reader.print;
 
 import android.content.Context;
-import android.graphics.Bitmap;
-import android.graphics.Canvas;
-import android.graphics.Matrix;
-import android.graphics.pdf.PdfRenderer;
 import android.os.CancellationSignal;
 import android.os.ParcelFileDescriptor;
+import android.os.SystemClock;
 import android.print.PageRange;
 import android.print.PrintAttributes;
 import android.print.PrintDocumentAdapter;
 import android.print.PrintDocumentInfo;
-import android.print.pdf.PrintedPdfDocument;
 import android.net.Uri;
+import android.util.Log;
+import android.util.LruCache;
+
+import com.pdf.reader.doc.DocumentFingerprint;
+import com.pdf.reader.doc.DocumentMetadataCache;
+import com.pdf.reader.doc.DocumentStaging;
+import com.pdf.reader.net.DirectPrintClient;
+import com.pdf.reader.net.LinkProbe;
+import com.pdf.reader.pdf.PdfFile;
+import com.pdf.reader.pdf.PdfPageIndex;
+import com.pdf.reader.pdf.PdfSubsetter;
+import com.pdf.reader.pdf.StreamingPdfWriter;
 
 import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.concurrent.CancellationException;
+import java.util.function.IntConsumer;
 
 /**
- * 仅奇数页/仅偶数页打印：用 PdfRenderer 渲染到 PrintedPdfDocument，再输出。
- * 注意：为兼顾内存与质量，默认按 200 DPI 渲染；若需要更高质量可调高 DPI。
+ * 仅奇数页/仅偶数页打印（{@link Mode#ALL} 输出全部页，用于配合跳过空白页）。
+ * 优先输出无损的矢量子集，不可用或链路太慢时改为渲染成图像页；工作都在 {@link PrintTaskRunner} 的后台线程上执行。
  */
 public class SelectivePdfPrintAdapter extends PrintDocumentAdapter {
 
-    public enum Mode { ODD, EVEN }
+    public enum Mode { ODD, EVEN, ALL }
 
-    private static final int RENDER_DPI = 200;
+    private static final String TAG = "SelectivePrint";
+    static final int DEFAULT_RENDER_DPI = 200;
+    private static final int PREVIEW_MAX_DPI = 72;
+    private static final int PREVIEW_MIN_DPI = 48;
+    private static final int PREVIEW_CACHE_BYTES = 16 * 1024 * 1024;
 
     private final Context context;
     private final Uri pdfUri;
     private final String jobName;
     private final Mode mode;
 
-    private int pageCount = 0;
+    private final PrintTaskRunner runner = new PrintTaskRunner();
+    private volatile int pageCount = 0;
+    private volatile boolean preview;
+    private volatile PrintAttributes attributes;
+    // 预览页缓存：键为 源页序号 + 页面设置，按压缩后字节数计容量
+    private final LruCache<String, BandedPageRenderer.RenderedPage> previewCache =
+            new LruCache<String, BandedPageRenderer.RenderedPage>(PREVIEW_CACHE_BYTES) {
+                @Override
+                protected int sizeOf(String key, BandedPageRenderer.RenderedPage page) {
+                    return (int) Math.min(Integer.MAX_VALUE, page.byteSize());
+                }
+            };
+    private int renderDpi = DEFAULT_RENDER_DPI;
+    private long bandBudgetBytes = BandedPageRenderer.DEFAULT_BAND_BUDGET_BYTES;
+    private int renderWorkers = Math.max(1, Math.min(4, Runtime.getRuntime().availableProcessors()));
+    private int maxInFlight = renderWorkers + 1;
+    private RasterEncoding rasterEncoding = RasterEncoding.AUTO;
+    private boolean diskCacheEnabled = true;
+    private volatile boolean skipBlankPages;
+    private volatile float blankThreshold = BlankPageDetector.DEFAULT_THRESHOLD;
 
     public SelectivePdfPrintAdapter(Context context, Uri pdfUri, String jobName, Mode mode) {
         this.context = context.getApplicationContext();
@@ -40,108 +76,283 @@ public class SelectivePdfPrintAdapter extends PrintDocumentAdapter {
         this.mode = mode;
     }
 
+    /**
+     * 渲染路径的 DPI 上限（72~1200，默认 200）；打印机未报告分辨率时直接按此渲染。
+     * 古籍细节需要时可调到 400~600 DPI。
+     */
+    public void setRenderDpi(int dpi) {
+        this.renderDpi = Math.max(72, Math.min(1200, dpi));
+    }
+
+    /** 渲染路径单条带位图的内存上限（字节）。 */
+    public void setBandBudgetBytes(long bytes) {
+        this.bandBudgetBytes = bytes;
+    }
+
+    /** 渲染路径的并行度：workers 个 PdfRenderer 工作线程，至多 maxInFlight 页同时在途。 */
+    public void setRenderParallelism(int workers, int maxInFlight) {
+        this.renderWorkers = Math.max(1, workers);
+        this.maxInFlight = Math.max(1, maxInFlight);
+    }
+
+    /** 渲染路径的图像压缩方式。默认 {@link RasterEncoding#AUTO}：黑白文字页走 CCITT G4，只有 Flate RGB 的几十分之一。 */
+    public void setRasterEncoding(RasterEncoding encoding) {
+        this.rasterEncoding = encoding;
+    }
+
+    /**
+     * 是否把最终写出的渲染页存入磁盘缓存并优先复用（默认开启）。缓存按文档指纹 + 页序号 + 页面设置 + 编码策略存放，
+     * 同一范围再次打印时直接拼接已编码的图像，进程重启后依然有效。
+     */
+    public void setDiskCacheEnabled(boolean enabled) {
+        this.diskCacheEnabled = enabled;
+    }
+
+    /** 是否跳过空白页（默认否）。开启后 layout 阶段先分析缩略图，空白页不计入页数，也不解析、不渲染、不发送。 */
+    public void setSkipBlankPages(boolean skip) {
+        this.skipBlankPages = skip;
+    }
+
+    /** 空白页判定阈值：墨迹覆盖率（0~1）低于此值视为空白。 */
+    public void setBlankThreshold(float threshold) {
+        this.blankThreshold = threshold;
+    }
+
+    // 打印期间每次 onLayout / onWrite 都重新打开 pdfUri：暂存的副本在对话框关闭前不能被淘汰
+    @Override
+    public void onStart() {
+        DocumentStaging.get(context).retain(pdfUri);
+    }
+
+    @Override
+    public void onFinish() {
+        DocumentStaging.get(context).release(pdfUri);
+    }
+
     @Override
     public void onLayout(PrintAttributes oldAttributes, PrintAttributes newAttributes,
                          CancellationSignal cancellationSignal,
                          LayoutResultCallback callback, android.os.Bundle extras) {
-        if (cancellationSignal.isCanceled()) {
-            callback.onLayoutCancelled();
-            return;
-        }
-        try (ParcelFileDescriptor pfd = context.getContentResolver().openFileDescriptor(pdfUri, "r");
-             PdfRenderer renderer = (pfd != null ? new PdfRenderer(pfd) : null)) {
-
-            pageCount = (renderer != null) ? renderer.getPageCount() : 0;
+        preview = extras != null && extras.getBoolean(EXTRA_PRINT_PREVIEW, false);
+        attributes = newAttributes;
+        runner.layout(cancellationSignal, callback, "分析 PDF 失败: ", () -> {
+            // 趁用户调整设置时预先测速，写出时直接取用
+            if (!preview) LinkProbe.getInstance().refreshAsync(DirectPrintClient.forWifiGateway(context));
+            // 文档未变化时直接取缓存的页数，不再打开文件
+            pageCount = DocumentMetadataCache.getInstance().get(context.getContentResolver(), pdfUri).pageCount;
 
-            PrintDocumentInfo info = new PrintDocumentInfo.Builder(jobName)
+            // 声明的是输出文档的页数（仅奇数/仅偶数页），打印对话框的页码范围也以此为准
+            return new PrintDocumentInfo.Builder(jobName)
                     .setContentType(PrintDocumentInfo.CONTENT_TYPE_DOCUMENT)
-                    .setPageCount(pageCount)
+                    .setPageCount(outputPages(pageCount, cancellationSignal).length)
                     .build();
-            callback.onLayoutFinished(info, true);
-        } catch (Exception e) {
-            callback.onLayoutFailed("分析 PDF 失败: " + e.getMessage());
-        }
+        });
     }
 
     @Override
     public void onWrite(PageRange[] pages, ParcelFileDescriptor destination,
                         CancellationSignal cancellationSignal, WriteResultCallback callback) {
-        PrintedPdfDocument outDoc = null;
-        try (ParcelFileDescriptor pfd = context.getContentResolver().openFileDescriptor(pdfUri, "r");
-             PdfRenderer renderer = (pfd != null ? new PdfRenderer(pfd) : null);
-             FileOutputStream fos = new FileOutputStream(destination.getFileDescriptor())) {
-
-            if (renderer == null) {
-                callback.onWriteFailed("无法打开 PDF");
-                return;
+        boolean previewPass = preview;
+        PageSetup setup = PageSetup.from(attributes, renderDpi);
+        PrintMetrics.Job metrics = PrintMetrics.getInstance().newJob(previewPass ? jobName + "（预览）" : jobName);
+        runner.write(cancellationSignal, callback, "写入失败: ", metrics, () -> {
+            // 假脱机文件随后由打印服务经 Wi‑Fi 发给打印机，同样受链路速度制约
+            LinkProbe.Result link = previewPass ? null : cachedGatewayLink();
+            try (FileOutputStream out = new FileOutputStream(destination.getFileDescriptor())) {
+                return write(pages, out, cancellationSignal, setup, previewPass, metrics, link);
+            }
+        });
+    }
+
+    /** 没有打印对话框协商时（直连打印）的页面设置：A4、无边距、彩色，分辨率取 {@link #setRenderDpi(int)}。 */
+    PageSetup defaultSetup() {
+        return PageSetup.from(null, renderDpi);
+    }
+
+    /**
+     * 把所选输出页写到 out，返回实际写出的页：优先矢量子集，不可用时渲染。
+     * 打印对话框的假脱机文件与直连打印（{@link DirectPrintJob}，out 为打印机连接）共用这一路径。
+     * link 为到打印机的链路测速结果，非 null 时由 {@link SpoolPlanner} 按估计用时在矢量子集、栅格与降 DPI 栅格之间
+     * 选择：弱信号热点上，上百 MB 的扫描版子集不如渲染压缩后再发送来得快。
+     */
+    PageRange[] write(PageRange[] pages, OutputStream out, CancellationSignal cancellationSignal,
+                      PageSetup setup, boolean previewPass, PrintMetrics.Job metrics,
+                      LinkProbe.Result link) throws Exception {
+        metrics.identify(context.getContentResolver(), pdfUri);
+        PdfSubsetter subset;
+        PageRange[] written;
+        int count;
+        try {
+            PdfFile pdf = SubsetPrinter.open(context.getContentResolver(), pdfUri, metrics);
+            int[] picks = outputPages(PdfPageIndex.countPages(pdf), cancellationSignal);
+            int[] wanted = PageRanges.toIndices(pages, picks.length);
+            if (wanted.length == 0) throw new PrintTaskRunner.Failure("所选页码超出范围");
+            subset = PdfSubsetter.plan(pdf, PageRanges.pick(picks, wanted), cancellationSignal::isCanceled);
+            written = PageRanges.fromIndices(wanted);
+            count = wanted.length;
+        } catch (CancellationException | PrintTaskRunner.Failure e) {
+            throw e;
+        } catch (Exception e) {
+            // 加密/无法解析：此时尚未向 out 写入任何字节，可以安全回退到渲染路径
+            Log.w(TAG, "矢量子集不可用，回退为渲染输出: " + e.getMessage());
+            return writeRaster(pages, out, cancellationSignal, setup, previewPass, metrics, link);
+        }
+        if (link != null && !previewPass) {
+            SpoolPlanner.Choice choice = SpoolPlanner.choose(link, subset.estimateSize(), count, setup, renderWorkers);
+            if (choice.path != SpoolPlanner.Path.VECTOR) {
+                return writeRaster(pages, out, cancellationSignal, setup.withDpi(choice.dpi), false, metrics, null);
             }
+        }
+        metrics.setPath("矢量子集");
+        SubsetPrinter.write(subset, out, cancellationSignal, metrics);
+        metrics.addPages(count);
+        return written;
+    }
+
+    // 0 基页序号：ODD 取第 1、3、5… 页，EVEN 取第 2、4、6… 页，ALL 取全部
+    private int[] selectPages(int total) {
+        if (mode == Mode.ALL) return PageRanges.all(total);
+        int first = (mode == Mode.ODD) ? 0 : 1;
+        int[] picks = new int[Math.max(0, (total - first + 1) / 2)];
+        for (int k = 0; k < picks.length; k++) picks[k] = first + 2 * k;
+        return picks;
+    }
+
+    // 实际输出的源页：按模式选页，再按需去掉空白页（分析结果按文档缓存，layout 与 write 得到同一结果）
+    private int[] outputPages(int total, CancellationSignal signal) throws IOException {
+        int[] picks = selectPages(total);
+        if (!skipBlankPages) return picks;
+        BlankPageDetector.Result blank = BlankPageDetector.getInstance()
+                .analyze(context.getContentResolver(), pdfUri, signal);
+        if (blank.getPageCount() != total) return picks;
+        float threshold = blankThreshold;
+        int n = 0;
+        for (int p : picks) if (!blank.isBlank(p, threshold)) picks[n++] = p;
+        if (n < picks.length) Log.i(TAG, "跳过空白页 " + (picks.length - n) + " 张");
+        return Arrays.copyOf(picks, n);
+    }
 
-            outDoc = new PrintedPdfDocument(context, getBestAttributesForOutput());
+    /**
+     * 渲染路径：按协商出的纸张、边距、分辨率与颜色模式，多个 PdfRenderer 并行分带渲染、按页序流式写出；
+     * 线程数、在途页数、条带与 DPI 先经 {@link MemoryGovernor} 按设备内存下调，中途内存告急时再收紧。
+     * 预览改用随页数自适应的低 DPI 与 JPEG，结果按页缓存；最终写出的页另存入 {@link PageDiskCache}。
+     * link 非 null 时还要按链路速度决定是否降低 DPI（矢量子集不可用、尚未经过 {@link SpoolPlanner}）。
+     */
+    private PageRange[] writeRaster(PageRange[] pages, OutputStream destination,
+                                    CancellationSignal cancellationSignal, PageSetup setup,
+                                    boolean previewPass, PrintMetrics.Job metrics,
+                                    LinkProbe.Result link) throws Exception {
+        long startMs = SystemClock.elapsedRealtime();
+        metrics.setPath(previewPass ? "栅格预览" : "栅格");
+        // 线程数、在途页数、条带与 DPI 按设备内存预算下调，低端机不至于 OOM
+        MemoryGovernor governor = MemoryGovernor.get(context);
+        MemoryGovernor.Plan plan = governor.plan(setup.dpi, renderWorkers, maxInFlight, bandBudgetBytes);
+        // 每个渲染线程同一时刻只占用一块条带缓冲区
+        BitmapPool pool = new BitmapPool(plan.workers);
+        BandEncoder encoder = new BandEncoder();
+        // 预览只求快：JPEG 编码无需逐条带分析
+        BandedPageRenderer bander = new BandedPageRenderer(pool, encoder, plan.bandBudgetBytes,
+                previewPass ? RasterEncoding.JPEG : rasterEncoding);
+        IntConsumer onPressure = null;
+        ParcelFileDescriptor opened;
+        try (PrintMetrics.Section ignored = metrics.time(PrintMetrics.Stage.OPEN)) {
+            opened = context.getContentResolver().openFileDescriptor(pdfUri, "r");
+        }
+        try (ParcelFileDescriptor pfd = opened) {
 
-            // 计算纸张尺寸（以 points 计，1 point=1/72 inch）
-            PrintAttributes.MediaSize media = getBestAttributesForOutput().getMediaSize();
-            int pageWidthPts = (int) Math.round(media.getWidthMils() * 72.0 / 1000.0);
-            int pageHeightPts = (int) Math.round(media.getHeightMils() * 72.0 / 1000.0);
+            if (pfd == null) throw new PrintTaskRunner.Failure("无法打开 PDF");
 
-            for (int i = 0; i < renderer.getPageCount(); i++) {
-                if (cancellationSignal.isCanceled()) {
-                    callback.onWriteCancelled();
-                    return;
+            try (ParallelPageRenderer pipeline = new ParallelPageRenderer(pfd, plan.workers, plan.maxInFlight, bander, metrics)) {
+                // 任务进行中系统告急：在途页数降到 1，并释放可重建的缓存；压力回落后恢复计划的在途页数
+                onPressure = level -> {
+                    pipeline.setMaxInFlight(level >= 2 ? 1 : plan.maxInFlight);
+                    if (level >= 2) {
+                        previewCache.evictAll();
+                        pool.clear();
+                    }
+                };
+                governor.addListener(onPressure);
+                pipeline.setOutOfMemoryHandler(() -> {
+                    pool.clear();
+                    previewCache.evictAll();
+                    pipeline.setMaxInFlight(1);
+                    governor.onOutOfMemory();
+                });
+                // 只渲染请求的页，工作量与所选页数成正比
+                int[] picks = outputPages(pipeline.getPageCount(), cancellationSignal);
+                int[] wanted = PageRanges.toIndices(pages, picks.length);
+                if (wanted.length == 0) throw new PrintTaskRunner.Failure("所选页码超出范围");
+                PageSetup governed = plan.dpi == setup.dpi ? setup : setup.withDpi(plan.dpi);
+                if (link != null && !previewPass) {
+                    int dpi = SpoolPlanner.choose(link, -1, wanted.length, governed, plan.workers).dpi;
+                    if (dpi != governed.dpi) governed = governed.withDpi(dpi);
+                }
+                PageSetup out = previewPass ? governed.withDpi(previewDpi(wanted.length, governed.dpi)) : governed;
+                String keySuffix = ":" + out.cacheKey();
+                // 磁盘缓存只用于最终写出；预览分辨率低、内存缓存已足够
+                String docId = !previewPass && diskCacheEnabled ? documentId() : null;
+                PageDiskCache diskCache = docId != null ? PageDiskCache.get(context) : null;
+                // 每页完成即写出并冲刷，打印机在第一页之后就能收到数据；xref 与 trailer 最后写
+                StreamingPdfWriter writer = new StreamingPdfWriter(destination);
+                int[] rendered = {0};
+                pipeline.run(PageRanges.pick(picks, wanted), out, cancellationSignal,
+                        previewPass ? src -> previewCache.get(src + keySuffix)
+                                : diskCache != null ? src -> diskCache.load(PageDiskCache.key(docId, src, out, rasterEncoding)) : null,
+                        (k, sourcePage, page) -> {
+                            if (previewPass) previewCache.put(sourcePage + keySuffix, page);
+                            try (PrintMetrics.Section ignored = metrics.time(PrintMetrics.Stage.WRITE)) {
+                                writer.addPage(out.pageWidth, out.pageHeight, page.images);
+                            }
+                            metrics.addPages(1);
+                            if (!page.fromDisk) rendered[0]++;
+                            // 先写给打印机再落盘
+                            if (diskCache != null && !page.fromDisk) {
+                                diskCache.store(PageDiskCache.key(docId, sourcePage, out, rasterEncoding), page);
+                            }
+                        });
+                long bytes;
+                try (PrintMetrics.Section ignored = metrics.time(PrintMetrics.Stage.WRITE)) {
+                    bytes = writer.finish();
                 }
-                int pageNumberHuman = i + 1;
-                boolean pick = (mode == Mode.ODD) ? (pageNumberHuman % 2 == 1)
-                        : (pageNumberHuman % 2 == 0);
-                if (!pick) continue;
-
-                PdfRenderer.Page srcPage = renderer.openPage(i);
-                try {
-                    PrintedPdfDocument.PageInfo pageInfo = new PrintedPdfDocument.PageInfo.Builder(
-                            pageWidthPts, pageHeightPts, pageNumberHuman).create();
-                    PrintedPdfDocument.Page dstPage = outDoc.startPage(pageInfo);
-
-                    // 将 PDF 页面渲染成位图（按目标纸张尺寸的 DPI）
-                    int bmpW = (int) Math.ceil(pageWidthPts / 72f * RENDER_DPI);
-                    int bmpH = (int) Math.ceil(pageHeightPts / 72f * RENDER_DPI);
-                    Bitmap bmp = Bitmap.createBitmap(Math.max(1, bmpW), Math.max(1, bmpH), Bitmap.Config.ARGB_8888);
-
-                    srcPage.render(bmp, null, null, PdfRenderer.Page.RENDER_MODE_FOR_PRINT);
-
-                    // 等比缩放居中绘制到目标页
-                    Canvas canvas = dstPage.getCanvas();
-                    float scale = Math.min(
-                            canvas.getWidth() / (float) bmp.getWidth(),
-                            canvas.getHeight() / (float) bmp.getHeight()
-                    );
-                    Matrix m = new Matrix();
-                    float dx = (canvas.getWidth() - bmp.getWidth() * scale) / 2f;
-                    float dy = (canvas.getHeight() - bmp.getHeight() * scale) / 2f;
-                    m.postScale(scale, scale);
-                    m.postTranslate(dx, dy);
-                    canvas.drawBitmap(bmp, m, null);
-
-                    outDoc.finishPage(dstPage);
-                    bmp.recycle();
-                } finally {
-                    srcPage.close();
+                metrics.addBytes(bytes);
+                if (!previewPass) {
+                    long pixels = SpoolPlanner.pagePixels(out, out.dpi);
+                    SpoolPlanner.recordRaster(bytes, pixels * wanted.length, pixels * rendered[0],
+                            metrics.totalNanos(PrintMetrics.Stage.RENDER));
                 }
+                Log.i(TAG, (previewPass ? "预览" : "渲染") + "输出 " + wanted.length + " 页（" + out.dpi + " DPI"
+                        + (out.monochrome ? "，黑白" : "") + "），共 " + bytes + " 字节，用时 "
+                        + (SystemClock.elapsedRealtime() - startMs) + " ms（" + encoder.summary() + "）"
+                        + (diskCache != null ? "；磁盘缓存 " + diskCache.getStats() : ""));
+                return PageRanges.fromIndices(wanted);
             }
-
-            outDoc.writeTo(fos);
-            callback.onWriteFinished(new PageRange[]{PageRange.ALL_PAGES});
-        } catch (Exception e) {
-            callback.onWriteFailed("写入失败: " + e.getMessage());
         } finally {
-            if (outDoc != null) outDoc.close();
+            if (onPressure != null) governor.removeListener(onPressure);
+            metrics.recordBitmapBytes(pool.getPeakBytes());
+            Log.d(TAG, "位图池 命中 " + pool.getHitCount() + " / 未命中 " + pool.getMissCount());
+            pool.clear();
+        }
+    }
+
+    // 当前 Wi‑Fi 网关（DIRECT 热点上即打印机）已有的测速结果；不在这里当场测速，免得拖慢写出
+    private LinkProbe.Result cachedGatewayLink() {
+        DirectPrintClient gateway = DirectPrintClient.forWifiGateway(context);
+        return gateway != null ? LinkProbe.getInstance().getCached(gateway.getHost()) : null;
+    }
+
+    // 文档指纹作为磁盘缓存键的一部分；读不到时不使用磁盘缓存
+    private String documentId() {
+        try {
+            return DocumentFingerprint.getInstance().getId(context.getContentResolver(), pdfUri);
+        } catch (IOException | RuntimeException e) {
+            Log.w(TAG, "无法计算文档指纹，跳过磁盘缓存: " + e.getMessage());
+            return null;
         }
     }
 
-    // 直接使用系统传入的 attributes 会有机型兼容差异，这里按常见设置回退
-    private PrintAttributes getBestAttributesForOutput() {
-        PrintAttributes.Builder b = new PrintAttributes.Builder()
-                .setMediaSize(PrintAttributes.MediaSize.ISO_A4)
-                .setColorMode(PrintAttributes.COLOR_MODE_COLOR)
-                .setResolution(new PrintAttributes.Resolution("pdf", "pdf", RENDER_DPI, RENDER_DPI))
-                .setMinMargins(PrintAttributes.Margins.NO_MARGINS);
-        return b.build();
+    // 预览缩略图很小：页数少时 72 DPI，页数多时按 1/sqrt(页数) 递减，不低于 48 DPI，也不超过正式分辨率
+    private static int previewDpi(int pages, int printDpi) {
+        int dpi = (int) Math.round(PREVIEW_MAX_DPI * Math.sqrt(8.0 / Math.max(8, pages)));
+        return Math.min(printDpi, Math.max(PREVIEW_MIN_DPI, dpi));
     }
 }
@@ -0,0 +1,143 @@
+package com.pdf.reader.print;
+
+import android.util.Log;
+
+import com.pdf.reader.net.LinkProbe;
+
+import java.util.Locale;
+import java.util.function.LongUnaryOperator;
+
+/**
+ * 按链路测速结果选择输出路径，使估计的端到端用时（生成 + 传给打印机）最短：
+ * <ul>
+ *   <li>矢量子集：几乎不耗 CPU，用时约等于子集大小 / 吞吐量；扫描版古籍的子集动辄上百 MB；</li>
+ *   <li>栅格：按打印分辨率渲染并压缩，边渲染边发送，用时取渲染与传输中较慢的一方，再加首页的渲染；</li>
+ *   <li>降 DPI 栅格：体积与渲染量按分辨率平方下降，但损失细节。</li>
+ * </ul>
+ * 质量更低的路径须比更好的路径快出一定比例、并且省下足够多的时间才会选中：栅格体积随 DPI 平方下降，
+ * 只比比例的话，只要传输是瓶颈就总会降 DPI；小任务省几秒也不值得牺牲清晰度。链路够快时始终走矢量子集。
+ * 每像素压缩后的位数与渲染耗时从最近的栅格任务滑动平均得出，初值按典型文字稿设定。
+ */
+final class SpoolPlanner {
+
+    private static final String TAG = "SpoolPlanner";
+    // 栅格须比矢量子集快 20% 且省 5 秒以上，降 DPI 须比前两者快 30% 且省 30 秒以上才值得
+    private static final double RASTER_MARGIN = 0.8;
+    private static final long RASTER_MIN_SAVING_MS = 5_000;
+    private static final double REDUCED_MARGIN = 0.7;
+    private static final long REDUCED_MIN_SAVING_MS = 30_000;
+    private static final int REDUCED_MIN_DPI = 150;
+    private static final double EWMA_WEIGHT = 0.3;
+
+    enum Path { VECTOR, RASTER, RASTER_REDUCED_DPI }
+
+    /** 选定的路径与各路径的估计用时（毫秒，不可用的路径为 -1）。 */
+    static final class Choice {
+        final Path path;
+        final int dpi;
+        final long vectorMs;
+        final long rasterMs;
+        final long reducedMs;
+
+        Choice(Path path, int dpi, long vectorMs, long rasterMs, long reducedMs) {
+            this.path = path;
+            this.dpi = dpi;
+            this.vectorMs = vectorMs;
+            this.rasterMs = rasterMs;
+            this.reducedMs = reducedMs;
+        }
+
+        @Override
+        public String toString() {
+            return String.format(Locale.ROOT, "%s @ %d DPI（估计 矢量 %d ms / 栅格 %d ms / 降 DPI %d ms）",
+                    path, dpi, vectorMs, rasterMs, reducedMs);
+        }
+    }
+
+    // AUTO 编码下文字稿多为 CCITT G4，每像素远小于 1 位；照片页用 JPEG 约 1~2 位
+    private static final double INITIAL_BITS_PER_PIXEL = 0.5;
+    // 单线程渲染 + 编码每像素的耗时
+    private static final double INITIAL_NANOS_PER_PIXEL = 40;
+
+    private static double bitsPerPixel = INITIAL_BITS_PER_PIXEL; // guarded by SpoolPlanner.class
+    private static double nanosPerPixel = INITIAL_NANOS_PER_PIXEL; // guarded by SpoolPlanner.class
+
+    private SpoolPlanner() {}
+
+    /**
+     * @param vectorBytes 矢量子集的估计大小，矢量路径不可用时为 -1
+     * @param workers     渲染线程数
+     */
+    static Choice choose(LinkProbe.Result link, long vectorBytes, int pages, PageSetup setup, int workers) {
+        Choice c = choose(link::estimateTransferMs, vectorBytes, pages,
+                setup.content.width(), setup.content.height(), setup.dpi, workers);
+        Log.i(TAG, pages + " 页，" + link + " → " + c);
+        return c;
+    }
+
+    /** 纯计算部分：transferMs 给出传完若干字节的估计用时，页面尺寸为可打印区域（point）。 */
+    static Choice choose(LongUnaryOperator transferMs, long vectorBytes, int pages,
+                         double contentWidth, double contentHeight, int dpi, int workers) {
+        double bpp, nspp;
+        synchronized (SpoolPlanner.class) {
+            bpp = bitsPerPixel;
+            nspp = nanosPerPixel;
+        }
+        long vectorMs = vectorBytes >= 0 ? transferMs.applyAsLong(vectorBytes) : -1;
+        long rasterMs = rasterMs(transferMs, pages, pagePixels(contentWidth, contentHeight, dpi), workers, bpp, nspp);
+        int reducedDpi = Math.max(REDUCED_MIN_DPI, dpi * 3 / 4);
+        long reducedMs = reducedDpi < dpi
+                ? rasterMs(transferMs, pages, pagePixels(contentWidth, contentHeight, reducedDpi), workers, bpp, nspp)
+                : -1;
+
+        Path path = Path.VECTOR;
+        long best = vectorMs;
+        if (best < 0 || worthIt(rasterMs, best, RASTER_MARGIN, RASTER_MIN_SAVING_MS)) {
+            path = Path.RASTER;
+            best = rasterMs;
+        }
+        if (reducedMs >= 0 && worthIt(reducedMs, best, REDUCED_MARGIN, REDUCED_MIN_SAVING_MS)) {
+            path = Path.RASTER_REDUCED_DPI;
+        }
+        return new Choice(path, path == Path.RASTER_REDUCED_DPI ? reducedDpi : dpi, vectorMs, rasterMs, reducedMs);
+    }
+
+    /** 栅格任务结束后记录实际的压缩率与渲染耗时（renderNanos 为各线程的渲染时间之和）。 */
+    static synchronized void recordRaster(long encodedBytes, long pixels, long renderedPixels, long renderNanos) {
+        if (pixels > 0) {
+            bitsPerPixel += EWMA_WEIGHT * (encodedBytes * 8.0 / pixels - bitsPerPixel);
+        }
+        // 磁盘缓存命中的页不渲染，只按实际渲染的像素计
+        if (renderedPixels > 0 && renderNanos > 0) {
+            nanosPerPixel += EWMA_WEIGHT * ((double) renderNanos / renderedPixels - nanosPerPixel);
+        }
+    }
+
+    /** 恢复压缩率与渲染耗时的初值（测试用）。 */
+    static synchronized void resetEstimates() {
+        bitsPerPixel = INITIAL_BITS_PER_PIXEL;
+        nanosPerPixel = INITIAL_NANOS_PER_PIXEL;
+    }
+
+    /** 一页在给定 DPI 下的像素数（可打印区域）。 */
+    static long pagePixels(PageSetup setup, int dpi) {
+        return pagePixels(setup.content.width(), setup.content.height(), dpi);
+    }
+
+    private static long pagePixels(double contentWidth, double contentHeight, int dpi) {
+        return (long) (contentWidth / 72.0 * dpi * (contentHeight / 72.0 * dpi));
+    }
+
+    private static boolean worthIt(long candidateMs, long bestMs, double margin, long minSavingMs) {
+        return candidateMs < bestMs * margin && bestMs - candidateMs >= minSavingMs;
+    }
+
+    // 渲染与发送流水线并行：取两者中较慢的一方，加上第一页渲染完成前链路的空闲时间
+    private static long rasterMs(LongUnaryOperator transferMs, int pages, long pixels, int workers,
+                                 double bpp, double nspp) {
+        long bytes = (long) (pages * pixels * bpp / 8);
+        double pageRenderMs = pixels * nspp / 1e6;
+        double renderMs = pages * pageRenderMs / Math.max(1, workers);
+        return Math.round(Math.max(renderMs, transferMs.applyAsLong(bytes)) + pageRenderMs);
+    }
+}
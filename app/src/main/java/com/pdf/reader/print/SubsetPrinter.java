@@ -0,0 +1,54 @@
+package com.pdf.reader.print;
+
+import android.content.ContentResolver;
+import android.net.Uri;
+import android.os.CancellationSignal;
+import android.os.ParcelFileDescriptor;
+
+import com.pdf.reader.pdf.PdfFile;
+import com.pdf.reader.pdf.PdfSubsetter;
+
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.channels.FileChannel;
+
+/**
+ * 两个打印适配器共用的无损子集输出：映射源文件、写出子集。
+ */
+final class SubsetPrinter {
+    private SubsetPrinter() {}
+
+    /** 只读映射源文档并解析结构；不可定位的管道或无法解析时抛出 IOException。 */
+    static PdfFile open(ContentResolver resolver, Uri uri, PrintMetrics.Job metrics) throws IOException {
+        ParcelFileDescriptor opened;
+        try (PrintMetrics.Section ignored = metrics.time(PrintMetrics.Stage.OPEN)) {
+            opened = resolver.openFileDescriptor(uri, "r");
+        }
+        try (ParcelFileDescriptor pfd = opened) {
+            if (pfd == null) throw new IOException("无法打开 PDF");
+            try (FileInputStream in = new FileInputStream(pfd.getFileDescriptor());
+                 FileChannel channel = in.getChannel();
+                 PrintMetrics.Section ignored = metrics.time(PrintMetrics.Stage.PARSE)) {
+                return PdfFile.open(channel);
+            }
+        }
+    }
+
+    /** 取消时抛出 CancellationException。 */
+    static void write(PdfSubsetter subset, ParcelFileDescriptor destination,
+                      CancellationSignal cancellationSignal, PrintMetrics.Job metrics) throws IOException {
+        try (OutputStream out = new FileOutputStream(destination.getFileDescriptor())) {
+            write(subset, out, cancellationSignal, metrics);
+        }
+    }
+
+    /** 写到调用方管理的流（不关闭 out）。 */
+    static void write(PdfSubsetter subset, OutputStream out, CancellationSignal cancellationSignal,
+                      PrintMetrics.Job metrics) throws IOException {
+        try (PrintMetrics.Section ignored = metrics.time(PrintMetrics.Stage.WRITE)) {
+            metrics.addBytes(subset.writeTo(out, cancellationSignal::isCanceled));
+        }
+    }
+}
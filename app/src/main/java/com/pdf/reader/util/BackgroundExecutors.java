@@ -0,0 +1,53 @@
+package com.pdf.reader.util;
+
+import android.os.Process;
+
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * 后台线程池：守护线程，空闲 30 秒后退出，进程内常驻也不占线程，无需关闭。
+ * 线程优先级在线程内设置（{@link Process#setThreadPriority(int)} 只作用于调用线程）。
+ */
+public final class BackgroundExecutors {
+    private BackgroundExecutors() {}
+
+    private static final long KEEP_ALIVE_SECONDS = 30;
+
+    /** 单线程、后台优先级，任务按提交顺序执行。 */
+    public static ThreadPoolExecutor serial(String threadName) {
+        return serial(threadName, Process.THREAD_PRIORITY_BACKGROUND);
+    }
+
+    /** 单线程，priority 为 {@link Process} 的线程优先级。 */
+    public static ThreadPoolExecutor serial(String threadName, int priority) {
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(1, 1, KEEP_ALIVE_SECONDS, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(), factory(() -> threadName, priority));
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
+    }
+
+    /** 不设上限、后台优先级：每个任务立即得到自己的线程（名为 prefix-序号），不会排队。 */
+    public static ThreadPoolExecutor unbounded(String prefix) {
+        AtomicInteger seq = new AtomicInteger();
+        return new ThreadPoolExecutor(0, Integer.MAX_VALUE, KEEP_ALIVE_SECONDS, TimeUnit.SECONDS,
+                new SynchronousQueue<>(), factory(() -> prefix + "-" + seq.incrementAndGet(),
+                Process.THREAD_PRIORITY_BACKGROUND));
+    }
+
+    private static ThreadFactory factory(Supplier<String> name, int priority) {
+        return r -> {
+            Thread t = new Thread(() -> {
+                Process.setThreadPriority(priority);
+                r.run();
+            }, name.get());
+            t.setDaemon(true);
+            return t;
+        };
+    }
+}
@@ -0,0 +1,56 @@
+package com.pdf.reader.util;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.util.concurrent.CancellationException;
+import java.util.function.BooleanSupplier;
+
+/**
+ * 大文件通道拷贝：可定位的源文件走 transferTo（内核态拷贝，不经过 Java 堆），
+ * 管道等不可定位的源回退为大块直接缓冲区循环。每个分块之间检查一次取消。
+ */
+public final class ChannelCopier {
+    private ChannelCopier() {}
+
+    private static final long TRANSFER_CHUNK = 8L * 1024 * 1024;
+    private static final int BUFFER_SIZE = 1024 * 1024;
+
+    /** 从 src 当前位置拷贝到结尾，返回拷贝的字节数；取消时抛出 CancellationException。 */
+    public static long copy(ReadableByteChannel src, WritableByteChannel dst, BooleanSupplier canceled) throws IOException {
+        long done = 0;
+        if (src instanceof FileChannel) {
+            FileChannel fc = (FileChannel) src;
+            long size;
+            long pos;
+            try {
+                size = fc.size();
+                pos = fc.position();
+            } catch (IOException e) {
+                size = -1;
+                pos = 0;
+            }
+            while (pos < size) {
+                if (canceled.getAsBoolean()) throw new CancellationException();
+                long n = fc.transferTo(pos, Math.min(TRANSFER_CHUNK, size - pos), dst);
+                if (n <= 0) break; // 目标不支持零拷贝或源被截断：余下部分走缓冲区
+                pos += n;
+                done += n;
+            }
+            if (size >= 0) fc.position(pos);
+        }
+        ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+        while (true) {
+            if (canceled.getAsBoolean()) throw new CancellationException();
+            int n = src.read(buffer);
+            if (n < 0) break;
+            buffer.flip();
+            while (buffer.hasRemaining()) dst.write(buffer);
+            buffer.clear();
+            done += n;
+        }
+        return done;
+    }
+}
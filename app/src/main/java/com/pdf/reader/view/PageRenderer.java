@@ -0,0 +1,254 @@
+package com.pdf.reader.view;
+
+import android.content.ContentResolver;
+import android.graphics.Bitmap;
+import android.graphics.Matrix;
+import android.graphics.pdf.PdfRenderer;
+import android.net.Uri;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.ParcelFileDescriptor;
+import android.os.Process;
+import android.util.Log;
+
+import com.pdf.reader.print.BitmapPool;
+import com.pdf.reader.util.BackgroundExecutors;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.function.Consumer;
+
+/**
+ * 阅读视图的后台渲染器。PdfRenderer 不是线程安全的，同一时刻只能打开一页，因此每个文档一条渲染线程，
+ * 请求分两个队列：可见内容（当前页的整页位图与可见图块）总是先于预取的相邻页。
+ * 两个队列都由视图整体替换——翻页、缩放后过时的请求随即丢弃，不会挡在新请求前面。
+ * <p>
+ * 连续请求同一页时保持该页打开，省去每个图块重复解析页面内容。结果在主线程交给回调，
+ * 位图的去留（放入缓存或还给位图池）由视图决定。
+ */
+final class PageRenderer {
+
+    private static final String TAG = "PageRenderer";
+
+    /** 一次渲染请求：整页位图（level 0）或某一缩放级别下的一个图块。 */
+    static final class Request {
+        final long key;
+        final int page;
+        final int level;
+        final int tileX;
+        final int tileY;
+        // 整页：适配框的宽高；图块：该级别下整页的像素宽高
+        final int width;
+        final int height;
+        final int generation;
+
+        private Request(int page, int level, int tileX, int tileY, int width, int height, int generation) {
+            this.key = TileCache.key(page, level, tileX, tileY);
+            this.page = page;
+            this.level = level;
+            this.tileX = tileX;
+            this.tileY = tileY;
+            this.width = width;
+            this.height = height;
+            this.generation = generation;
+        }
+
+        static Request page(int page, int boxWidth, int boxHeight, int generation) {
+            return new Request(page, 0, 0, 0, boxWidth, boxHeight, generation);
+        }
+
+        static Request tile(int page, int level, int tileX, int tileY, int pageWidth, int pageHeight, int generation) {
+            return new Request(page, level, tileX, tileY, pageWidth, pageHeight, generation);
+        }
+    }
+
+    /** 渲染结果；bitmap 为 null 表示渲染失败。pageWidth / pageHeight 为页面尺寸（点）。 */
+    static final class Result {
+        final Request request;
+        final Bitmap bitmap;
+        final int pageWidth;
+        final int pageHeight;
+
+        Result(Request request, Bitmap bitmap, int pageWidth, int pageHeight) {
+            this.request = request;
+            this.bitmap = bitmap;
+            this.pageWidth = pageWidth;
+            this.pageHeight = pageHeight;
+        }
+    }
+
+    private final ContentResolver resolver;
+    private final Uri uri;
+    private final BitmapPool pool;
+    private final Consumer<Result> onResult;
+    private final Handler main = new Handler(Looper.getMainLooper());
+    private final ThreadPoolExecutor executor;
+
+    private final ArrayDeque<Request> visible = new ArrayDeque<>(); // guarded by this
+    private final ArrayDeque<Request> prefetch = new ArrayDeque<>(); // guarded by this
+    // 排队中与正在渲染的请求，避免重复提交（guarded by this）
+    private final Set<Long> pending = new HashSet<>();
+    private boolean draining; // guarded by this
+    private volatile boolean closed;
+
+    // 以下只在渲染线程访问
+    private ParcelFileDescriptor pfd;
+    private PdfRenderer renderer;
+    private PdfRenderer.Page openPage;
+    private final Matrix matrix = new Matrix();
+
+    PageRenderer(ContentResolver resolver, Uri uri, BitmapPool pool, Consumer<Result> onResult) {
+        this.resolver = resolver;
+        this.uri = uri;
+        this.pool = pool;
+        this.onResult = onResult;
+        // 可见内容要尽快出现，不降到后台优先级
+        executor = BackgroundExecutors.serial("reader-render", Process.THREAD_PRIORITY_DEFAULT);
+    }
+
+    /** 在渲染线程打开文档，完成后在主线程回调页数；失败回调 -1。 */
+    void open(Consumer<Integer> onOpened) {
+        executor.execute(() -> {
+            int count;
+            try {
+                pfd = resolver.openFileDescriptor(uri, "r");
+                if (pfd == null) throw new IOException("无法打开 PDF");
+                renderer = new PdfRenderer(pfd);
+                count = renderer.getPageCount();
+            } catch (IOException | RuntimeException e) {
+                Log.w(TAG, "打开失败: " + e.getMessage());
+                closeQuietly();
+                count = -1;
+            }
+            int result = count;
+            main.post(() -> {
+                if (!closed) onOpened.accept(result);
+            });
+        });
+    }
+
+    /** 替换可见内容队列；已在队列或正在渲染的请求不重复提交。 */
+    synchronized void setVisible(List<Request> requests) {
+        // 已在预取队列中的请求提到可见队列
+        for (Request r : requests) {
+            if (prefetch.removeIf(p -> p.key == r.key)) pending.remove(r.key);
+        }
+        replace(visible, requests);
+    }
+
+    /** 替换预取队列，只在可见内容全部完成后渲染。 */
+    synchronized void setPrefetch(List<Request> requests) {
+        replace(prefetch, requests);
+    }
+
+    /** 放弃全部请求并在渲染线程关闭文档；正在渲染的那一块完成后即停止。 */
+    void close() {
+        closed = true;
+        synchronized (this) {
+            visible.clear();
+            prefetch.clear();
+            pending.clear();
+        }
+        executor.execute(this::closeQuietly);
+        executor.shutdown();
+    }
+
+    /** 按页面尺寸（点）等比适配进框内的位图尺寸，视图排版与渲染共用，保证两边一致。 */
+    static int[] fit(int pageWidth, int pageHeight, int boxWidth, int boxHeight) {
+        float scale = Math.min((float) boxWidth / pageWidth, (float) boxHeight / pageHeight);
+        return new int[]{Math.max(1, Math.round(pageWidth * scale)), Math.max(1, Math.round(pageHeight * scale))};
+    }
+
+    private void replace(ArrayDeque<Request> queue, List<Request> requests) {
+        if (closed) return;
+        for (Request r : queue) pending.remove(r.key);
+        queue.clear();
+        for (Request r : requests) {
+            if (pending.add(r.key)) queue.addLast(r);
+        }
+        if (!draining && !queue.isEmpty()) {
+            draining = true;
+            executor.execute(this::drain);
+        }
+    }
+
+    private void drain() {
+        while (true) {
+            Request r;
+            synchronized (this) {
+                r = visible.pollFirst();
+                if (r == null) r = prefetch.pollFirst();
+                if (r == null || closed) {
+                    draining = false;
+                    return;
+                }
+            }
+            Result result = render(r);
+            // 结果进缓存前仍算作进行中，否则视图在此间隙会再请求一次
+            main.post(() -> {
+                synchronized (this) {
+                    pending.remove(result.request.key);
+                }
+                if (closed) {
+                    TileCache.release(pool, result.bitmap);
+                    return;
+                }
+                onResult.accept(result);
+            });
+        }
+    }
+
+    private Result render(Request r) {
+        if (renderer == null) return new Result(r, null, 0, 0);
+        Bitmap bitmap = null;
+        try {
+            PdfRenderer.Page page = page(r.page);
+            int pw = page.getWidth(), ph = page.getHeight();
+            if (r.level == 0) {
+                int[] size = fit(pw, ph, r.width, r.height);
+                bitmap = pool.acquire(size[0], size[1], Bitmap.Config.ARGB_8888);
+                matrix.setScale((float) size[0] / pw, (float) size[1] / ph);
+            } else {
+                // 图块固定尺寸；边缘图块超出页面的部分保持白色，绘制时只取有效区域
+                bitmap = pool.acquire(TileCache.TILE_SIZE, TileCache.TILE_SIZE, Bitmap.Config.ARGB_8888);
+                matrix.setScale((float) r.width / pw, (float) r.height / ph);
+                matrix.postTranslate(-r.tileX * TileCache.TILE_SIZE, -r.tileY * TileCache.TILE_SIZE);
+            }
+            page.render(bitmap, null, matrix, PdfRenderer.Page.RENDER_MODE_FOR_DISPLAY);
+            return new Result(r, bitmap, pw, ph);
+        } catch (OutOfMemoryError e) {
+            // 位图池的空闲位图先还给系统，这一块留给视图下次再请求
+            Log.w(TAG, "渲染第 " + (r.page + 1) + " 页时内存不足");
+            pool.clear();
+            return new Result(r, null, 0, 0);
+        } catch (RuntimeException e) {
+            Log.w(TAG, "渲染第 " + (r.page + 1) + " 页失败: " + e.getMessage());
+            TileCache.release(pool, bitmap);
+            return new Result(r, null, 0, 0);
+        }
+    }
+
+    // 同一页的连续请求复用已打开的页面
+    private PdfRenderer.Page page(int index) {
+        if (openPage != null && openPage.getIndex() == index) return openPage;
+        if (openPage != null) openPage.close();
+        openPage = null;
+        openPage = renderer.openPage(index);
+        return openPage;
+    }
+
+    private void closeQuietly() {
+        if (openPage != null) openPage.close();
+        openPage = null;
+        if (renderer != null) renderer.close();
+        renderer = null;
+        if (pfd != null) {
+            try { pfd.close(); } catch (IOException ignored) {}
+        }
+        pfd = null;
+    }
+}
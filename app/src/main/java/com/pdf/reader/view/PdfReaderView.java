@@ -0,0 +1,532 @@
+package com.pdf.reader.view;
+
+import android.content.ContentResolver;
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.Paint;
+import android.graphics.Rect;
+import android.graphics.RectF;
+import android.net.Uri;
+import android.os.Trace;
+import android.util.AttributeSet;
+import android.util.Log;
+import android.view.GestureDetector;
+import android.view.MotionEvent;
+import android.view.ScaleGestureDetector;
+import android.view.View;
+
+import com.pdf.reader.print.BitmapPool;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.function.Consumer;
+
+/**
+ * 基于 PdfRenderer 的阅读视图，支持单页、双页（从右往左时首页在右）与半页模式。
+ * <p>
+ * 每页先渲染一张适配屏幕的整页位图，翻页时只需绘制已缓存的位图；当前屏显示后，
+ * 顺着最近的翻页方向预取后面两屏、保留前面一屏，连续翻页不等渲染。
+ * 放大后在整页位图上叠加固定尺寸的图块，图块分辨率按 2 的幂分级，同一级别内缩放不重新渲染；
+ * 级别受 600 DPI 与缓存容量两头限制，只渲染可见区域，放大扫描件时内存占用与屏幕大小相当，而不是与页面像素相当。
+ * <p>
+ * 手势：左右边缘点击或横向滑动翻页（方向随从右往左设置），点击中间回调给宿主（显示/隐藏按钮），
+ * 双指缩放，放大后拖动，双击放大或恢复。
+ */
+public class PdfReaderView extends View {
+
+    private static final String TAG = "PdfReaderView";
+    private static final float MAX_ZOOM = 8f;
+    private static final float DOUBLE_TAP_ZOOM = 2.5f;
+    // 扫描件通常不超过 600 DPI，再高的图块只是插值
+    private static final int MAX_TILE_DPI = 600;
+    // 图块最多放大这么多倍绘制：可见图块的总像素约为屏幕的 (2 / 1.2)² ≈ 2.8 倍以内
+    private static final float TILE_UPSCALE = 1.2f;
+    // 顺着阅读方向预取的屏数，与反方向保留的屏数
+    private static final int PREFETCH_AHEAD = 2;
+    private static final int PREFETCH_BEHIND = 1;
+    private static final float EDGE_TAP_FRACTION = 0.25f;
+    // 页面尺寸未知时按 A4 纵向排版，渲染结果带回真实尺寸后更正
+    private static final int DEFAULT_PAGE_WIDTH = 595;
+    private static final int DEFAULT_PAGE_HEIGHT = 842;
+
+    public enum Layout { SINGLE, DOUBLE, HALF }
+
+    public interface OnPageChangeListener {
+        /** 当前屏显示的页码范围（从 0 开始）与总页数。 */
+        void onPageChanged(int firstPage, int lastPage, int pageCount);
+    }
+
+    // 当前屏上的一页：dest 为整页在视图中的位置（未缩放），clip 为实际显示的部分（半页模式只显示一半）
+    private static final class Slot {
+        int page;
+        int width;
+        int height;
+        final RectF dest = new RectF();
+        final RectF clip = new RectF();
+
+        void set(int page, float left, float top, int[] size) {
+            this.page = page;
+            this.width = size[0];
+            this.height = size[1];
+            dest.set(left, top, left + size[0], top + size[1]);
+        }
+    }
+
+    // 只存放空闲图块，12 块共 3MB
+    private final BitmapPool pool = new BitmapPool(12);
+    private final TileCache cache;
+    private final Paint bitmapPaint = new Paint(Paint.FILTER_BITMAP_FLAG);
+    private final Paint blankPaint = new Paint();
+    private final GestureDetector gestures;
+    private final ScaleGestureDetector scaler;
+
+    private PageRenderer renderer;
+    private int pageCount;
+    // 页码 → 页面尺寸（点），随渲染结果得知
+    private final HashMap<Integer, int[]> pageSizes = new HashMap<>();
+    private Layout layout = Layout.SINGLE;
+    private boolean rightToLeft;
+    // 单页：页码；双页：第几对；半页：页码 × 2 + 第几半（按阅读顺序）
+    private int position;
+    // 最近一次翻页的方向（1 向后，-1 向前），决定预取哪一侧
+    private int direction = 1;
+    // 版面（视图尺寸、模式）每变一次加一，之前发出的请求的结果作废
+    private int generation;
+    private OnPageChangeListener pageListener;
+    private Runnable centerTapListener;
+
+    private float zoom = 1f;
+    private float panX;
+    private float panY;
+
+    // 以下每帧复用
+    private final Slot[] slots = {new Slot(), new Slot()};
+    private int slotCount;
+    private final ArrayList<PageRenderer.Request> wanted = new ArrayList<>();
+    private final RectF visibleRect = new RectF();
+    private final RectF tileArea = new RectF();
+    private final RectF tileDest = new RectF();
+    private final Rect tileSrc = new Rect();
+
+    public PdfReaderView(Context context) {
+        this(context, null);
+    }
+
+    public PdfReaderView(Context context, AttributeSet attrs) {
+        super(context, attrs);
+        cache = new TileCache(context, pool);
+        blankPaint.setColor(Color.WHITE);
+        GestureListener listener = new GestureListener();
+        gestures = new GestureDetector(context, listener);
+        gestures.setOnDoubleTapListener(listener);
+        scaler = new ScaleGestureDetector(context, new ScaleListener());
+    }
+
+    /** 打开文档（应为本地副本，PdfRenderer 需要可定位的文件），在主线程回调页数，失败回调 -1。 */
+    public void open(ContentResolver resolver, Uri uri, Consumer<Integer> onOpened) {
+        close();
+        renderer = new PageRenderer(resolver, uri, pool, this::onRendered);
+        PageRenderer current = renderer;
+        renderer.open(count -> {
+            if (renderer != current) return;
+            pageCount = Math.max(0, count);
+            position = Math.min(position, Math.max(0, positionCount() - 1));
+            onOpened.accept(count);
+            if (count > 0) {
+                notifyPageChanged();
+                schedulePrefetch();
+                invalidate();
+            }
+        });
+    }
+
+    /** 关闭文档并释放全部位图。 */
+    public void close() {
+        if (renderer != null) renderer.close();
+        renderer = null;
+        pageCount = 0;
+        pageSizes.clear();
+        generation++;
+        cache.clear();
+        pool.clear();
+    }
+
+    public void setLayout(Layout layout) {
+        if (this.layout == layout) return;
+        int page = firstPage(position);
+        this.layout = layout;
+        position = positionOf(page);
+        relayout();
+        notifyPageChanged();
+    }
+
+    public Layout getLayout() {
+        return layout;
+    }
+
+    /** 从右往左阅读（竖排古籍）：左侧点击 / 向右滑动翻到下一页，双页时靠前的页在右，半页先看右半边。 */
+    public void setRightToLeft(boolean rightToLeft) {
+        if (this.rightToLeft == rightToLeft) return;
+        this.rightToLeft = rightToLeft;
+        resetZoom();
+        invalidate();
+    }
+
+    public void setOnPageChangeListener(OnPageChangeListener listener) {
+        pageListener = listener;
+    }
+
+    /** 点击屏幕中间时回调，宿主用来显示 / 隐藏控制栏。 */
+    public void setOnCenterTapListener(Runnable listener) {
+        centerTapListener = listener;
+    }
+
+    public int getCurrentPage() {
+        return firstPage(position);
+    }
+
+    public void goToPage(int page) {
+        if (pageCount <= 0) return;
+        int target = positionOf(Math.max(0, Math.min(pageCount - 1, page)));
+        if (target != position) turn(target - position);
+    }
+
+    /** 按阅读顺序翻 delta 屏，越界时不动。 */
+    public void turn(int delta) {
+        int target = position + delta;
+        if (delta == 0 || target < 0 || target >= positionCount()) return;
+        direction = delta > 0 ? 1 : -1;
+        position = target;
+        resetZoom();
+        notifyPageChanged();
+        schedulePrefetch();
+        invalidate();
+    }
+
+    /** 由宿主 Activity 转发 onTrimMemory。 */
+    public void onTrimMemory(int level) {
+        cache.onTrimMemory(level);
+        Log.i(TAG, "onTrimMemory " + level + " → " + cache.stats());
+    }
+
+    @Override
+    protected void onSizeChanged(int w, int h, int oldw, int oldh) {
+        super.onSizeChanged(w, h, oldw, oldh);
+        if (w != oldw || h != oldh) relayout();
+    }
+
+    @Override
+    protected void onDraw(Canvas canvas) {
+        super.onDraw(canvas);
+        if (renderer == null || pageCount <= 0 || getWidth() == 0) return;
+        Trace.beginSection("reader:draw");
+        try {
+            cache.nextFrame();
+            layoutSlots();
+            wanted.clear();
+            visibleRect.set(-panX / zoom, -panY / zoom, (getWidth() - panX) / zoom, (getHeight() - panY) / zoom);
+            canvas.save();
+            canvas.translate(panX, panY);
+            canvas.scale(zoom, zoom);
+            for (int i = 0; i < slotCount; i++) drawSlot(canvas, slots[i]);
+            canvas.restore();
+            // 整体替换可见队列：上一帧要过、现在已不可见的图块随之放弃
+            renderer.setVisible(wanted);
+        } finally {
+            Trace.endSection();
+        }
+    }
+
+    @Override
+    public boolean onTouchEvent(MotionEvent event) {
+        boolean handled = scaler.onTouchEvent(event);
+        if (!scaler.isInProgress()) handled |= gestures.onTouchEvent(event);
+        return handled || super.onTouchEvent(event);
+    }
+
+    private void drawSlot(Canvas canvas, Slot s) {
+        canvas.save();
+        canvas.clipRect(s.clip.left, s.clip.top, s.clip.right, s.clip.bottom);
+        Bitmap base = cache.draw(TileCache.key(s.page, 0, 0, 0));
+        if (base != null) {
+            canvas.drawBitmap(base, null, s.dest, bitmapPaint);
+            int level = tileLevel(s);
+            if (level > 0) drawTiles(canvas, s, level);
+        } else {
+            canvas.drawRect(s.dest, blankPaint);
+            int[] box = box();
+            wanted.add(PageRenderer.Request.page(s.page, box[0], box[1], generation));
+        }
+        canvas.restore();
+    }
+
+    // 缺的图块先显示整页位图放大的效果，同时请求渲染；缩放手势进行中级别还在变，只画已有的
+    private void drawTiles(Canvas canvas, Slot s, int level) {
+        tileArea.set(s.clip);
+        if (!tileArea.intersect(visibleRect)) return;
+        int scale = 1 << level;
+        int fullWidth = s.width * scale, fullHeight = s.height * scale;
+        float tileInBase = (float) TileCache.TILE_SIZE / scale;
+        int x0 = Math.max(0, (int) ((tileArea.left - s.dest.left) / tileInBase));
+        int y0 = Math.max(0, (int) ((tileArea.top - s.dest.top) / tileInBase));
+        int x1 = Math.min((fullWidth - 1) / TileCache.TILE_SIZE, (int) ((tileArea.right - s.dest.left) / tileInBase));
+        int y1 = Math.min((fullHeight - 1) / TileCache.TILE_SIZE, (int) ((tileArea.bottom - s.dest.top) / tileInBase));
+        boolean scaling = scaler.isInProgress();
+        for (int ty = y0; ty <= y1; ty++) {
+            for (int tx = x0; tx <= x1; tx++) {
+                Bitmap tile = cache.draw(TileCache.key(s.page, level, tx, ty));
+                if (tile == null) {
+                    if (!scaling) {
+                        wanted.add(PageRenderer.Request.tile(s.page, level, tx, ty, fullWidth, fullHeight, generation));
+                    }
+                    continue;
+                }
+                int w = Math.min(TileCache.TILE_SIZE, fullWidth - tx * TileCache.TILE_SIZE);
+                int h = Math.min(TileCache.TILE_SIZE, fullHeight - ty * TileCache.TILE_SIZE);
+                tileSrc.set(0, 0, w, h);
+                float left = s.dest.left + tx * tileInBase, top = s.dest.top + ty * tileInBase;
+                tileDest.set(left, top, left + (float) w / scale, top + (float) h / scale);
+                canvas.drawBitmap(tile, tileSrc, tileDest, bitmapPaint);
+            }
+        }
+    }
+
+    // 取满足当前缩放的最低级别，再按 600 DPI 与缓存容量往下压：当前屏的整页位图每帧都用，不会先被淘汰，
+    // 可见图块可占到容量的 3/4，挤掉的是预取页
+    private int tileLevel(Slot s) {
+        if (zoom <= TILE_UPSCALE) return 0;
+        int level = 0;
+        while ((1 << level) * TILE_UPSCALE < zoom) level++;
+        int[] pt = pageSizes.get(s.page);
+        if (pt == null) return 0;
+        float maxWidth = pt[0] * MAX_TILE_DPI / 72f;
+        while (level > 0 && ((long) s.width << level) > maxWidth) level--;
+        tileArea.set(s.clip);
+        if (!tileArea.intersect(visibleRect)) return 0;
+        while (level > 0 && tileBytes(tileArea.width(), tileArea.height(), level) > cache.maxBytes() * 3L / 4) level--;
+        return level;
+    }
+
+    // 覆盖可见区域的图块字节数上限：四周各多出一块
+    private static long tileBytes(float width, float height, int level) {
+        int scale = 1 << level;
+        return (long) (width * scale + 2 * TileCache.TILE_SIZE) * (long) (height * scale + 2 * TileCache.TILE_SIZE) * 4;
+    }
+
+    // 按当前模式与位置排出本屏的页；半页模式把要看的那一半居中
+    private void layoutSlots() {
+        int w = getWidth(), h = getHeight();
+        slotCount = 0;
+        int first = firstPage(position), last = lastPage(position);
+        for (int page = first; page <= last; page++) {
+            Slot s = slots[slotCount++];
+            int[] size = baseSize(page);
+            float top = (h - size[1]) / 2f;
+            if (layout == Layout.DOUBLE) {
+                // 阅读顺序靠前的页在起始一侧：从右往左时在右半边
+                boolean right = (page == first) == rightToLeft;
+                s.set(page, right ? w / 2f : w / 2f - size[0], top, size);
+                s.clip.set(s.dest);
+            } else if (layout == Layout.HALF) {
+                float half = size[0] / 2f;
+                boolean rightHalf = (position % 2 == 0) == rightToLeft;
+                float left = (w - half) / 2f - (rightHalf ? half : 0);
+                s.set(page, left, top, size);
+                s.clip.set(left + (rightHalf ? half : 0), top, left + (rightHalf ? size[0] : half), top + size[1]);
+            } else {
+                s.set(page, (w - size[0]) / 2f, top, size);
+                s.clip.set(s.dest);
+            }
+        }
+    }
+
+    // 整页位图的适配框：单页为整个视图，双页各占一半，半页模式下页面的一半占满宽度
+    private int[] box() {
+        int w = getWidth(), h = getHeight();
+        if (layout == Layout.DOUBLE) return new int[]{Math.max(1, w / 2), h};
+        if (layout == Layout.HALF) return new int[]{w * 2, h};
+        return new int[]{w, h};
+    }
+
+    private int[] baseSize(int page) {
+        int[] pt = pageSizes.get(page);
+        int[] box = box();
+        return pt != null
+                ? PageRenderer.fit(pt[0], pt[1], box[0], box[1])
+                : PageRenderer.fit(DEFAULT_PAGE_WIDTH, DEFAULT_PAGE_HEIGHT, box[0], box[1]);
+    }
+
+    // 顺着翻页方向预取；整页位图按适配框估算大小，连同当前屏不超过缓存的一半，其余留给图块
+    private void schedulePrefetch() {
+        if (renderer == null || pageCount <= 0 || getWidth() == 0) return;
+        int[] box = box();
+        long pageBytes = (long) box[0] * box[1] * 4;
+        int first = firstPage(position), last = lastPage(position);
+        int perScreen = layout == Layout.DOUBLE ? 2 : 1;
+        long used = pageBytes * (last - first + 1);
+        ArrayList<PageRenderer.Request> list = new ArrayList<>();
+        int ahead = PREFETCH_AHEAD * perScreen, behind = PREFETCH_BEHIND * perScreen;
+        for (int i = 1; i <= ahead + behind; i++) {
+            int page = i <= ahead
+                    ? (direction > 0 ? last + i : first - i)
+                    : (direction > 0 ? first - (i - ahead) : last + (i - ahead));
+            if (page < 0 || page >= pageCount) continue;
+            used += pageBytes;
+            if (used > cache.maxBytes() / 2) break;
+            long key = TileCache.key(page, 0, 0, 0);
+            if (!cache.has(key)) list.add(PageRenderer.Request.page(page, box[0], box[1], generation));
+        }
+        renderer.setPrefetch(list);
+    }
+
+    private void onRendered(PageRenderer.Result result) {
+        PageRenderer.Request r = result.request;
+        if (result.bitmap == null) return;
+        if (r.generation != generation) {
+            // 版面已变，尺寸不再适用；当前屏需要的会在重绘时重新请求
+            TileCache.release(pool, result.bitmap);
+            invalidate();
+            return;
+        }
+        pageSizes.put(r.page, new int[]{result.pageWidth, result.pageHeight});
+        cache.put(r.key, result.bitmap);
+        if (r.page >= firstPage(position) && r.page <= lastPage(position)) invalidate();
+    }
+
+    private void relayout() {
+        generation++;
+        cache.clear();
+        resetZoom();
+        schedulePrefetch();
+        invalidate();
+    }
+
+    private void notifyPageChanged() {
+        if (pageListener != null && pageCount > 0) {
+            pageListener.onPageChanged(firstPage(position), lastPage(position), pageCount);
+        }
+    }
+
+    private int positionCount() {
+        if (layout == Layout.DOUBLE) return (pageCount + 1) / 2;
+        if (layout == Layout.HALF) return pageCount * 2;
+        return pageCount;
+    }
+
+    private int positionOf(int page) {
+        if (layout == Layout.DOUBLE) return page / 2;
+        if (layout == Layout.HALF) return page * 2;
+        return page;
+    }
+
+    private int firstPage(int position) {
+        if (layout == Layout.DOUBLE) return position * 2;
+        if (layout == Layout.HALF) return position / 2;
+        return position;
+    }
+
+    private int lastPage(int position) {
+        if (layout == Layout.DOUBLE) return Math.min(pageCount - 1, position * 2 + 1);
+        return firstPage(position);
+    }
+
+    private void resetZoom() {
+        zoom = 1f;
+        panX = 0;
+        panY = 0;
+    }
+
+    private void zoomTo(float target, float focusX, float focusY) {
+        target = Math.max(1f, Math.min(MAX_ZOOM, target));
+        panX = focusX - (focusX - panX) * target / zoom;
+        panY = focusY - (focusY - panY) * target / zoom;
+        zoom = target;
+        clampPan();
+        invalidate();
+    }
+
+    // 内容比视图小的方向居中，比视图大的方向不露出边外
+    private void clampPan() {
+        layoutSlots();
+        if (slotCount == 0) return;
+        RectF content = new RectF(slots[0].clip);
+        for (int i = 1; i < slotCount; i++) {
+            content.set(Math.min(content.left, slots[i].clip.left), Math.min(content.top, slots[i].clip.top),
+                    Math.max(content.right, slots[i].clip.right), Math.max(content.bottom, slots[i].clip.bottom));
+        }
+        panX = clamp(panX, content.left, content.right, getWidth());
+        panY = clamp(panY, content.top, content.bottom, getHeight());
+    }
+
+    private float clamp(float pan, float start, float end, int viewSize) {
+        float size = (end - start) * zoom;
+        if (size <= viewSize) return (viewSize - size) / 2f - start * zoom;
+        return Math.min(-start * zoom, Math.max(viewSize - end * zoom, pan));
+    }
+
+    private final class GestureListener extends GestureDetector.SimpleOnGestureListener {
+        @Override
+        public boolean onDown(MotionEvent e) {
+            return true;
+        }
+
+        @Override
+        public boolean onSingleTapConfirmed(MotionEvent e) {
+            float x = e.getX(), w = getWidth();
+            if (x < w * EDGE_TAP_FRACTION) {
+                turn(rightToLeft ? 1 : -1);
+            } else if (x > w * (1 - EDGE_TAP_FRACTION)) {
+                turn(rightToLeft ? -1 : 1);
+            } else if (centerTapListener != null) {
+                centerTapListener.run();
+            }
+            return true;
+        }
+
+        @Override
+        public boolean onDoubleTap(MotionEvent e) {
+            if (zoom > 1f) {
+                resetZoom();
+                invalidate();
+            } else {
+                zoomTo(DOUBLE_TAP_ZOOM, e.getX(), e.getY());
+            }
+            return true;
+        }
+
+        @Override
+        public boolean onScroll(MotionEvent down, MotionEvent move, float dx, float dy) {
+            if (zoom <= 1f) return false;
+            panX -= dx;
+            panY -= dy;
+            clampPan();
+            invalidate();
+            return true;
+        }
+
+        // 未放大时横向快速滑动翻页：从右往左时向右滑是下一页
+        @Override
+        public boolean onFling(MotionEvent down, MotionEvent up, float vx, float vy) {
+            if (zoom > 1f || Math.abs(vx) < Math.abs(vy)) return false;
+            boolean next = rightToLeft ? vx > 0 : vx < 0;
+            turn(next ? 1 : -1);
+            return true;
+        }
+    }
+
+    private final class ScaleListener extends ScaleGestureDetector.SimpleOnScaleGestureListener {
+        @Override
+        public boolean onScale(ScaleGestureDetector detector) {
+            zoomTo(zoom * detector.getScaleFactor(), detector.getFocusX(), detector.getFocusY());
+            return true;
+        }
+
+        @Override
+        public void onScaleEnd(ScaleGestureDetector detector) {
+            // 级别已定，按新级别请求图块
+            invalidate();
+        }
+    }
+}
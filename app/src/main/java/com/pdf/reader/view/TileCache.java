@@ -0,0 +1,120 @@
+package com.pdf.reader.view;
+
+import android.app.ActivityManager;
+import android.content.ComponentCallbacks2;
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.util.LruCache;
+
+import com.pdf.reader.print.BitmapPool;
+
+import java.util.Locale;
+
+/**
+ * 阅读视图的位图缓存：整页位图与各缩放级别的图块共用一个按字节计的 LRU。
+ * 容量取内存等级的 1/4（低内存设备再减半），与打印任务的预算互不挤占；收到 onTrimMemory 时按级别收缩。
+ * <p>
+ * 只在主线程访问。被淘汰的图块若上一帧没有绘制，还给位图池供渲染线程复用；
+ * 上一帧画过的可能仍被显示列表引用，交给 GC。
+ */
+final class TileCache {
+
+    /** 图块边长（像素）。256 在重绘的粒度与请求数之间折中，一块 256KB。 */
+    static final int TILE_SIZE = 256;
+    private static final long MB = 1024L * 1024;
+    private static final long MIN_BYTES = 16 * MB;
+
+    /** 缓存项：位图与它最近一次被绘制的帧号。 */
+    static final class Entry {
+        final Bitmap bitmap;
+        int drawnFrame = -1;
+
+        Entry(Bitmap bitmap) {
+            this.bitmap = bitmap;
+        }
+    }
+
+    private final LruCache<Long, Entry> lru;
+    private final BitmapPool pool;
+    private final int maxBytes;
+    private int frame;
+
+    TileCache(Context context, BitmapPool pool) {
+        this.pool = pool;
+        ActivityManager am = (ActivityManager) context.getSystemService(Context.ACTIVITY_SERVICE);
+        long bytes = am.getMemoryClass() * MB / 4;
+        if (am.isLowRamDevice()) bytes /= 2;
+        maxBytes = (int) Math.max(MIN_BYTES, Math.min(Integer.MAX_VALUE, bytes));
+        lru = new LruCache<Long, Entry>(maxBytes) {
+            @Override
+            protected int sizeOf(Long key, Entry value) {
+                return value.bitmap.getAllocationByteCount();
+            }
+
+            @Override
+            protected void entryRemoved(boolean evicted, Long key, Entry oldValue, Entry newValue) {
+                if (oldValue.drawnFrame != frame) release(pool, oldValue.bitmap);
+            }
+        };
+    }
+
+    /** 页码、级别（0 为整页位图）与图块坐标拼成的键。 */
+    static long key(int page, int level, int tileX, int tileY) {
+        return ((long) page << 40) | ((long) level << 36) | ((long) tileX << 18) | tileY;
+    }
+
+    /** 只有图块尺寸的位图回池；整页位图大小不一，交给 GC，免得空闲位图游离在缓存容量之外。 */
+    static void release(BitmapPool pool, Bitmap bitmap) {
+        if (bitmap != null && bitmap.getWidth() == TILE_SIZE && bitmap.getHeight() == TILE_SIZE) {
+            pool.release(bitmap);
+        }
+    }
+
+    int maxBytes() {
+        return maxBytes;
+    }
+
+    /** 开始绘制新的一帧，返回帧号。 */
+    int nextFrame() {
+        return ++frame;
+    }
+
+    /** 取出并标记为本帧已绘制；未命中返回 null。 */
+    Bitmap draw(long key) {
+        Entry e = lru.get(key);
+        if (e == null) return null;
+        e.drawnFrame = frame;
+        return e.bitmap;
+    }
+
+    /** 是否已缓存；命中同时刷新最近使用时间（预取的页随之保留）。 */
+    boolean has(long key) {
+        return lru.get(key) != null;
+    }
+
+    void put(long key, Bitmap bitmap) {
+        lru.put(key, new Entry(bitmap));
+    }
+
+    /** 版面变化（视图尺寸、单双页）后旧位图尺寸不再适用，全部清空。 */
+    void clear() {
+        lru.evictAll();
+    }
+
+    void onTrimMemory(int level) {
+        if (level >= ComponentCallbacks2.TRIM_MEMORY_MODERATE) {
+            lru.evictAll();
+            pool.clear();
+        } else if (level >= ComponentCallbacks2.TRIM_MEMORY_RUNNING_LOW) {
+            lru.trimToSize(maxBytes / 4);
+            pool.clear();
+        } else if (level >= ComponentCallbacks2.TRIM_MEMORY_RUNNING_MODERATE) {
+            lru.trimToSize(maxBytes / 2);
+        }
+    }
+
+    String stats() {
+        return String.format(Locale.ROOT, "%d/%d KB，命中 %d，未命中 %d",
+                lru.size() / 1024, maxBytes / 1024, lru.hitCount(), lru.missCount());
+    }
+}
@@ -0,0 +1,240 @@
+package com.pdf.reader.net;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import android.os.CancellationSignal;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/** 直连打印客户端对本机打印机替身的端到端测试：IPP 请求的编码、应答的解析与错误状态的处理。 */
+public class DirectPrintClientTest {
+
+    private static final int PRINTER_ATTRIBUTES = 0x04;
+    private static final int JOB_ATTRIBUTES = 0x02;
+    private static final int VALUE_TEXT = 0x41;
+
+    private FakePrinter printer;
+    private DirectPrintClient client;
+
+    @Before
+    public void setUp() throws IOException {
+        printer = new FakePrinter();
+        client = printer.client();
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        printer.close();
+    }
+
+    @Test
+    public void getPrinterAttributes() throws Exception {
+        printer.ippReply = FakePrinter.reply(0x0000)
+                .group(PRINTER_ATTRIBUTES)
+                .string(VALUE_TEXT, "printer-make-and-model", "EPSON L4260 Series")
+                .integer(IppMessage.VALUE_ENUM, "printer-state", 3)
+                .string(IppMessage.VALUE_KEYWORD, "printer-state-reasons", "none")
+                .string(IppMessage.VALUE_MIME, "document-format-supported", "image/urf", "application/pdf")
+                .bool("printer-is-accepting-jobs", true)
+                .finish();
+
+        DirectPrintClient.PrinterInfo info = client.getPrinterInfo();
+        assertEquals("EPSON L4260 Series", info.makeAndModel);
+        assertEquals(3, info.state);
+        assertEquals(Arrays.asList("none"), info.stateReasons);
+        assertEquals(Arrays.asList("image/urf", "application/pdf"), info.documentFormats);
+        assertTrue(info.supportsPdf());
+        assertTrue(info.acceptingJobs);
+
+        FakePrinter.Exchange e = printer.nextExchange();
+        assertEquals("POST /ipp/print HTTP/1.1", e.requestLine);
+        assertEquals("application/ipp", e.headers.get("content-type"));
+        assertEquals(String.valueOf(e.body.length), e.headers.get("content-length"));
+        // 版本 1.1、操作码 Get-Printer-Attributes，操作属性组以字符集、语言、printer-uri 开头
+        assertEquals(0x01, e.body[0]);
+        assertEquals(0x01, e.body[1]);
+        assertEquals(IppMessage.TAG_OPERATION, e.body[8]);
+        assertEquals(IppMessage.VALUE_CHARSET, e.body[9]);
+        IppMessage.Response request = IppMessage.Response.parse(new ByteArrayInputStream(e.body));
+        assertEquals(IppMessage.GET_PRINTER_ATTRIBUTES, request.status);
+        assertEquals("utf-8", request.stringValue("attributes-charset"));
+        assertEquals("zh-cn", request.stringValue("attributes-natural-language"));
+        assertEquals("ipp://127.0.0.1:" + printer.ippPort() + "/ipp/print", request.stringValue("printer-uri"));
+        assertEquals(Arrays.asList("printer-make-and-model", "printer-state", "printer-state-reasons",
+                "document-format-supported", "printer-is-accepting-jobs"), request.values("requested-attributes"));
+    }
+
+    @Test
+    public void printerNotAcceptingJobs() throws Exception {
+        printer.ippReply = FakePrinter.reply(0x0000)
+                .group(PRINTER_ATTRIBUTES)
+                .integer(IppMessage.VALUE_ENUM, "printer-state", 5)
+                .string(IppMessage.VALUE_KEYWORD, "printer-state-reasons", "media-empty-error", "paused")
+                .bool("printer-is-accepting-jobs", false)
+                .finish();
+
+        DirectPrintClient.PrinterInfo info = client.getPrinterInfo();
+        assertEquals(5, info.state);
+        assertEquals(Arrays.asList("media-empty-error", "paused"), info.stateReasons);
+        assertFalse(info.acceptingJobs);
+        assertFalse(info.supportsPdf());
+        assertEquals(null, info.makeAndModel);
+    }
+
+    @Test
+    public void printJobStreamsHeaderThenDocument() throws Exception {
+        printer.ippReply = FakePrinter.reply(0x0000)
+                .group(JOB_ATTRIBUTES)
+                .integer(IppMessage.VALUE_INTEGER, "job-id", 42)
+                .string(IppMessage.VALUE_KEYWORD, "job-state-reasons", "job-incoming")
+                .finish();
+        byte[] document = new byte[700 * 1024];
+        new Random(1).nextBytes(document);
+        AtomicLong lastProgress = new AtomicLong();
+
+        int jobId = client.printIpp("报告.pdf", "tester", DirectPrintClient.PDF, out -> {
+            // 分几次写，模拟边生成边发送
+            for (int off = 0; off < document.length; off += 100_000) {
+                out.write(document, off, Math.min(100_000, document.length - off));
+            }
+        }, lastProgress::set, new CancellationSignal());
+        assertEquals(42, jobId);
+
+        FakePrinter.Exchange e = printer.nextExchange();
+        assertEquals("chunked", e.headers.get("transfer-encoding"));
+        InputStream body = new ByteArrayInputStream(e.body);
+        IppMessage.Response request = IppMessage.Response.parse(body);
+        assertEquals(IppMessage.PRINT_JOB, request.status);
+        assertEquals("ipp://127.0.0.1:" + printer.ippPort() + "/ipp/print", request.stringValue("printer-uri"));
+        assertEquals("tester", request.stringValue("requesting-user-name"));
+        assertEquals("报告.pdf", request.stringValue("job-name"));
+        assertEquals("application/pdf", request.stringValue("document-format"));
+        // 请求头之后原样是文档数据
+        ByteArrayOutputStream rest = new ByteArrayOutputStream();
+        byte[] b = new byte[8192];
+        for (int n; (n = body.read(b)) >= 0; ) rest.write(b, 0, n);
+        assertArrayEquals(document, rest.toByteArray());
+        // 进度最终报告全部已发送字节（请求头 + 文档）
+        assertEquals(e.body.length, lastProgress.get());
+    }
+
+    @Test
+    public void ippErrorStatusIsReported() throws Exception {
+        printer.ippReply = FakePrinter.reply(0x040A)
+                .string(VALUE_TEXT, "status-message", "document-format-not-supported")
+                .finish();
+        try {
+            client.printIpp("a", "tester", DirectPrintClient.PDF, out -> out.write(new byte[1024]),
+                    null, new CancellationSignal());
+            fail("IPP 错误状态应当抛出异常");
+        } catch (IOException e) {
+            assertTrue(e.getMessage(), e.getMessage().contains("0x040a"));
+            assertTrue(e.getMessage(), e.getMessage().contains("document-format-not-supported"));
+        }
+    }
+
+    @Test
+    public void successfulStatusWithDetailIsAccepted() throws Exception {
+        // 0x0001 successful-ok-ignored-or-substituted-attributes 仍是成功
+        printer.ippReply = FakePrinter.reply(0x0001)
+                .group(JOB_ATTRIBUTES)
+                .integer(IppMessage.VALUE_INTEGER, "job-id", 7)
+                .finish();
+        assertEquals(7, client.printIpp("a", "tester", DirectPrintClient.PDF, out -> out.write(1),
+                null, new CancellationSignal()));
+    }
+
+    @Test
+    public void httpErrorIsReported() throws Exception {
+        printer.httpStatus = 503;
+        try {
+            client.getPrinterInfo();
+            fail("HTTP 错误应当抛出异常");
+        } catch (IOException e) {
+            assertTrue(e.getMessage(), e.getMessage().contains("HTTP 503"));
+        }
+    }
+
+    @Test
+    public void rawPortReceivesDocumentVerbatim() throws Exception {
+        byte[] document = new byte[300 * 1024];
+        new Random(2).nextBytes(document);
+        client.printRaw(out -> out.write(document), null, new CancellationSignal());
+        byte[] received = printer.rawJobs.poll(10, TimeUnit.SECONDS);
+        assertNotNull(received);
+        assertArrayEquals(document, received);
+    }
+
+    @Test
+    public void failedBodyAbortsIppJob() throws Exception {
+        // 请求头与一部分文档已经发出后生成失败：打印机不能收到以结束块收尾的请求
+        try {
+            client.printIpp("a", "tester", DirectPrintClient.PDF, out -> {
+                out.write(new byte[200 * 1024]);
+                throw new IllegalStateException("渲染失败");
+            }, null, new CancellationSignal());
+            fail("生成失败应当抛出异常");
+        } catch (IllegalStateException expected) {
+        }
+        assertNotNull("替身应当看到连接中断", printer.aborted.poll(10, TimeUnit.SECONDS));
+        assertNull(printer.exchanges.poll());
+    }
+
+    @Test
+    public void cancelledBodyAbortsIppJob() throws Exception {
+        // 只发出了请求头；取消时 ProgressStream 抛出的正是 CancellationException
+        try {
+            client.printIpp("a", "tester", DirectPrintClient.PDF, out -> {
+                throw new CancellationException();
+            }, null, new CancellationSignal());
+            fail("取消应当抛出异常");
+        } catch (CancellationException expected) {
+        }
+        assertNotNull("替身应当看到连接中断", printer.aborted.poll(10, TimeUnit.SECONDS));
+        assertNull(printer.exchanges.poll());
+    }
+
+    @Test
+    public void failedBodyResetsRawJob() throws Exception {
+        try {
+            client.printRaw(out -> {
+                out.write(new byte[200 * 1024]);
+                out.flush();
+                throw new IOException("渲染失败");
+            }, null, new CancellationSignal());
+            fail("生成失败应当抛出异常");
+        } catch (IOException expected) {
+        }
+        assertNotNull("替身应当看到连接复位", printer.aborted.poll(10, TimeUnit.SECONDS));
+        assertNull(printer.rawJobs.poll());
+    }
+
+    @Test
+    public void connectFailsOnClosedPort() throws Exception {
+        int port = printer.rawPort();
+        printer.close();
+        try {
+            client.connectMillis(port, 1000);
+            fail("端口已关闭时应当连不上");
+        } catch (IOException expected) {
+        }
+    }
+}
@@ -0,0 +1,295 @@
+package com.pdf.reader.net;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 本机回环上的打印机替身：一个 IPP（HTTP POST）端口与一个 RAW 端口，均为临时端口。
+ * 记录收到的每个请求，按预设的 HTTP 状态与 IPP 应答回应；可限制读取请求体的速度，模拟慢速链路。
+ */
+final class FakePrinter implements Closeable {
+
+    /** 一次 HTTP 请求。body 已去掉分块编码。 */
+    static final class Exchange {
+        final String requestLine;
+        final Map<String, String> headers;
+        final byte[] body;
+
+        Exchange(String requestLine, Map<String, String> headers, byte[] body) {
+            this.requestLine = requestLine;
+            this.headers = headers;
+            this.body = body;
+        }
+    }
+
+    final BlockingQueue<Exchange> exchanges = new LinkedBlockingQueue<>();
+    final BlockingQueue<byte[]> rawJobs = new LinkedBlockingQueue<>();
+    /** 中途断开、没有发完的请求（IPP 缺少结束块、RAW 被复位）。 */
+    final BlockingQueue<IOException> aborted = new LinkedBlockingQueue<>();
+
+    volatile int httpStatus = 200;
+    volatile byte[] ippReply = reply(0x0000).finish();
+    /** 读取请求体的速度上限（字节/秒），0 表示不限。 */
+    volatile long throttleBytesPerSecond;
+
+    private final ServerSocket ipp;
+    private final ServerSocket raw;
+    private final ExecutorService threads = Executors.newCachedThreadPool(r -> {
+        Thread t = new Thread(r, "fake-printer");
+        t.setDaemon(true);
+        return t;
+    });
+
+    FakePrinter() throws IOException {
+        InetAddress loopback = InetAddress.getLoopbackAddress();
+        ipp = new ServerSocket();
+        // 接收缓冲区小一些，限速时客户端的写入才会随之阻塞
+        ipp.setReceiveBufferSize(64 * 1024);
+        ipp.bind(new InetSocketAddress(loopback, 0));
+        raw = new ServerSocket(0, 50, loopback);
+        threads.execute(() -> accept(ipp, this::serveIpp));
+        threads.execute(() -> accept(raw, this::serveRaw));
+    }
+
+    DirectPrintClient client() {
+        return new DirectPrintClient(null, "127.0.0.1", ippPort(), rawPort());
+    }
+
+    int ippPort() {
+        return ipp.getLocalPort();
+    }
+
+    int rawPort() {
+        return raw.getLocalPort();
+    }
+
+    Exchange nextExchange() throws InterruptedException {
+        Exchange e = exchanges.poll(10, TimeUnit.SECONDS);
+        if (e == null) throw new AssertionError("替身没有收到 IPP 请求");
+        return e;
+    }
+
+    /** 关闭端口并等接受连接的线程退出：阻塞在 accept 中的套接字要等该线程醒来才真正关闭。 */
+    @Override
+    public void close() throws IOException {
+        ipp.close();
+        raw.close();
+        threads.shutdownNow();
+        try {
+            if (!threads.awaitTermination(5, TimeUnit.SECONDS)) throw new IOException("替身线程未退出");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /** 手工编码的 IPP 应答：操作属性组带字符集与语言，其后由调用方追加属性。 */
+    static Reply reply(int status) {
+        return new Reply(status);
+    }
+
+    static final class Reply {
+        private final ByteArrayOutputStream buf = new ByteArrayOutputStream();
+        private final DataOutputStream out = new DataOutputStream(buf);
+
+        private Reply(int status) {
+            try {
+                out.writeShort(0x0101);
+                out.writeShort(status);
+                out.writeInt(1);
+                out.writeByte(IppMessage.TAG_OPERATION);
+                string(IppMessage.VALUE_CHARSET, "attributes-charset", "utf-8");
+                string(IppMessage.VALUE_LANGUAGE, "attributes-natural-language", "en");
+            } catch (IOException e) {
+                throw new AssertionError(e);
+            }
+        }
+
+        /** 开始新的属性组（打印机属性组 0x04、作业属性组 0x02）。 */
+        Reply group(int tag) throws IOException {
+            out.writeByte(tag);
+            return this;
+        }
+
+        Reply string(int tag, String name, String... values) throws IOException {
+            for (int i = 0; i < values.length; i++) {
+                value(tag, i == 0 ? name : "", values[i].getBytes(StandardCharsets.UTF_8));
+            }
+            return this;
+        }
+
+        Reply integer(int tag, String name, int v) throws IOException {
+            return value(tag, name, new byte[]{(byte) (v >>> 24), (byte) (v >>> 16), (byte) (v >>> 8), (byte) v});
+        }
+
+        Reply bool(String name, boolean v) throws IOException {
+            return value(IppMessage.VALUE_BOOLEAN, name, new byte[]{(byte) (v ? 1 : 0)});
+        }
+
+        private Reply value(int tag, String name, byte[] v) throws IOException {
+            byte[] n = name.getBytes(StandardCharsets.UTF_8);
+            out.writeByte(tag);
+            out.writeShort(n.length);
+            out.write(n);
+            out.writeShort(v.length);
+            out.write(v);
+            return this;
+        }
+
+        byte[] finish() {
+            try {
+                out.writeByte(IppMessage.TAG_END);
+                out.flush();
+            } catch (IOException e) {
+                throw new AssertionError(e);
+            }
+            return buf.toByteArray();
+        }
+    }
+
+    private interface Handler {
+        void serve(Socket s) throws IOException;
+    }
+
+    private void accept(ServerSocket server, Handler handler) {
+        while (!server.isClosed()) {
+            Socket s;
+            try {
+                s = server.accept();
+            } catch (IOException e) {
+                return;
+            }
+            try {
+                threads.execute(() -> {
+                    try (Socket socket = s) {
+                        handler.serve(socket);
+                    } catch (IOException e) {
+                        aborted.add(e);
+                    }
+                });
+            } catch (RejectedExecutionException e) {
+                // 关闭途中到达的连接
+                try {
+                    s.close();
+                } catch (IOException ignored) {
+                }
+                return;
+            }
+        }
+    }
+
+    private void serveIpp(Socket s) throws IOException {
+        InputStream in = new BufferedInputStream(s.getInputStream());
+        String requestLine = line(in);
+        if (requestLine == null) return;
+        Map<String, String> headers = new LinkedHashMap<>();
+        for (String h = line(in); h != null && !h.isEmpty(); h = line(in)) {
+            int colon = h.indexOf(':');
+            headers.put(h.substring(0, colon).trim().toLowerCase(Locale.ROOT), h.substring(colon + 1).trim());
+        }
+        Throttle throttle = new Throttle(throttleBytesPerSecond);
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        if ("chunked".equalsIgnoreCase(headers.get("transfer-encoding"))) {
+            while (true) {
+                String size = line(in);
+                if (size == null) throw new EOFException();
+                int n = Integer.parseInt(size.trim(), 16);
+                if (n == 0) {
+                    line(in);
+                    break;
+                }
+                copy(in, body, n, throttle);
+                line(in);
+            }
+        } else {
+            copy(in, body, Integer.parseInt(headers.getOrDefault("content-length", "0")), throttle);
+        }
+        exchanges.add(new Exchange(requestLine, headers, body.toByteArray()));
+
+        int status = httpStatus;
+        byte[] payload = status == 200 ? ippReply : new byte[0];
+        OutputStream out = s.getOutputStream();
+        out.write(("HTTP/1.1 " + status + " " + (status == 200 ? "OK" : "Error") + "\r\n"
+                + "Content-Type: application/ipp\r\n"
+                + "Content-Length: " + payload.length + "\r\n"
+                + "Connection: close\r\n\r\n").getBytes(StandardCharsets.US_ASCII));
+        out.write(payload);
+        out.flush();
+    }
+
+    private void serveRaw(Socket s) throws IOException {
+        ByteArrayOutputStream job = new ByteArrayOutputStream();
+        byte[] b = new byte[8192];
+        InputStream in = s.getInputStream();
+        for (int n; (n = in.read(b)) >= 0; ) job.write(b, 0, n);
+        rawJobs.add(job.toByteArray());
+        // 打印机常在收完数据后回传一点状态
+        s.getOutputStream().write("@PJL USTATUS\r\n".getBytes(StandardCharsets.US_ASCII));
+    }
+
+    private static void copy(InputStream in, ByteArrayOutputStream out, int length, Throttle throttle)
+            throws IOException {
+        byte[] b = new byte[8192];
+        while (length > 0) {
+            int n = in.read(b, 0, Math.min(b.length, length));
+            if (n < 0) throw new EOFException();
+            out.write(b, 0, n);
+            length -= n;
+            throttle.consumed(n);
+        }
+    }
+
+    private static String line(InputStream in) throws IOException {
+        StringBuilder sb = new StringBuilder();
+        int c;
+        while ((c = in.read()) >= 0 && c != '\n') sb.append((char) c);
+        if (c < 0 && sb.length() == 0) return null;
+        int end = sb.length();
+        if (end > 0 && sb.charAt(end - 1) == '\r') sb.setLength(end - 1);
+        return sb.toString();
+    }
+
+    /** 按速度上限睡眠，使读取的字节数不超过 rate × 已用时间。 */
+    private static final class Throttle {
+        private final long rate;
+        private final long start = System.nanoTime();
+        private long total;
+
+        Throttle(long rate) {
+            this.rate = rate;
+        }
+
+        void consumed(int n) throws IOException {
+            if (rate <= 0) return;
+            total += n;
+            long dueNanos = total * 1_000_000_000L / rate;
+            long ahead = dueNanos - (System.nanoTime() - start);
+            if (ahead > 0) {
+                try {
+                    TimeUnit.NANOSECONDS.sleep(ahead);
+                } catch (InterruptedException e) {
+                    throw new IOException(e);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,73 @@
+package com.pdf.reader.net;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+
+/** 链路测速：本机替身按给定速度读取请求体，测得的吞吐量应接近该速度。 */
+public class LinkProbeTest {
+
+    private FakePrinter printer;
+
+    @Before
+    public void setUp() throws IOException {
+        printer = new FakePrinter();
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        printer.close();
+    }
+
+    @Test
+    public void measuresThrottledThroughput() throws Exception {
+        long rate = 512 * 1024;
+        printer.throttleBytesPerSecond = rate;
+        long start = System.nanoTime();
+        LinkProbe.Result r = LinkProbe.measure(printer.client(), printer.ippPort(), 1000, 4 * 1024 * 1024);
+        long wallMs = (System.nanoTime() - start) / 1_000_000;
+
+        assertTrue(r.toString(), r.bytesPerSecond > rate * 0.75 && r.bytesPerSecond < rate * 1.25);
+        // 发送在预算处停止，积压在缓冲区里的数据不多
+        assertTrue(r.toString(), r.probedBytes < 4 * 1024 * 1024);
+        assertTrue("用时 " + wallMs + " ms", wallMs < 2000);
+        assertTrue(r.toString(), r.rttMs >= 0 && r.rttMs < 100);
+        // 估计的传输用时与实测速度一致
+        long oneMb = r.estimateTransferMs(1024 * 1024);
+        assertTrue(String.valueOf(oneMb), oneMb > 1500 && oneMb < 2800);
+
+        // 测速请求本身是合法的 Get-Printer-Attributes，后面跟着填充数据
+        FakePrinter.Exchange e = printer.nextExchange();
+        assertEquals("POST /ipp/print HTTP/1.1", e.requestLine);
+        assertEquals("chunked", e.headers.get("transfer-encoding"));
+        assertEquals(r.probedBytes, e.body.length);
+        IppMessage.Response request = IppMessage.Response.parse(new ByteArrayInputStream(e.body));
+        assertEquals(IppMessage.GET_PRINTER_ATTRIBUTES, request.status);
+        assertEquals("printer-state", request.stringValue("requested-attributes"));
+    }
+
+    @Test
+    public void fastLinkStopsAtMaxBytes() throws Exception {
+        LinkProbe.Result r = LinkProbe.measure(printer.client(), printer.ippPort(), 5000, 256 * 1024);
+        assertEquals(256 * 1024, r.probedBytes);
+        assertTrue(r.toString(), r.bytesPerSecond > 1024 * 1024);
+    }
+
+    @Test
+    public void rejectedProbeIsAnError() throws Exception {
+        printer.httpStatus = 400;
+        try {
+            LinkProbe.measure(printer.client(), printer.ippPort(), 200, 64 * 1024);
+            fail("HTTP 400 应当抛出异常");
+        } catch (IOException e) {
+            assertTrue(e.getMessage(), e.getMessage().contains("HTTP 400"));
+        }
+    }
+}
@@ -0,0 +1,242 @@
+package com.pdf.reader.net;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/** 诊断引擎：各项探测并行、单项超时不拖累其余、结果缓存的有效期与并发请求合并。 */
+public class PrinterDiagnosticsTest {
+
+    private static final long SLOW_MS = 800;
+
+    private FakePrinter printer;
+    private final AtomicInteger browses = new AtomicInteger();
+    private final AtomicLong clockOffset = new AtomicLong();
+    private final BlockingQueue<PrinterDiagnostics.Report> reports = new LinkedBlockingQueue<>();
+    private volatile long browseDelayMs;
+    private volatile long servicesDelayMs;
+    private volatile List<PrinterDiagnostics.Printer> found = Collections.emptyList();
+
+    @Before
+    public void setUp() throws IOException {
+        printer = new FakePrinter();
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        printer.close();
+    }
+
+    @Test
+    public void probesRunInParallel() throws Exception {
+        // 两项 mDNS 与打印服务各耗时 SLOW_MS，串行至少要 3 倍
+        browseDelayMs = SLOW_MS;
+        servicesDelayMs = SLOW_MS;
+        PrinterDiagnostics.Report r = runOnce(diagnostics(), "DIRECT-xx-EPSON", false);
+
+        assertFalse(r.cached);
+        assertEquals(5, r.probes.size());
+        assertTrue("总耗时 " + r.totalMs + " ms", r.totalMs < 2 * SLOW_MS);
+        for (PrinterDiagnostics.Probe p : r.probes) {
+            assertFalse(p.name, p.timedOut);
+            if (!p.name.startsWith("TCP")) assertTrue(p.name + " " + p.elapsedMs, p.elapsedMs >= SLOW_MS - 50);
+        }
+        // 替身的两个端口都能连上
+        assertTrue(probe(r, "TCP " + printer.ippPort()).ok);
+        assertTrue(probe(r, "TCP " + printer.rawPort()).ok);
+        assertTrue(r.isPrinterReachable());
+        assertEquals(Arrays.asList("Mopria Print Service"), r.printServices);
+    }
+
+    @Test
+    public void hungProbeTimesOutWithoutStallingOthers() throws Exception {
+        // mDNS 卡住远超其 4 秒期限；其余探测照常完成，整次诊断在期限附近结束
+        browseDelayMs = 60_000;
+        long start = System.nanoTime();
+        PrinterDiagnostics.Report r = runOnce(diagnostics(), "lab", false);
+        long wallMs = (System.nanoTime() - start) / 1_000_000;
+
+        assertTrue("用时 " + wallMs + " ms", wallMs < 6000);
+        for (PrinterDiagnostics.Probe p : r.probes) {
+            if (p.name.startsWith("mDNS")) {
+                assertTrue(p.name, p.timedOut);
+                assertFalse(p.name, p.ok);
+                assertTrue(p.name + " " + p.elapsedMs, p.elapsedMs <= 4000);
+            } else {
+                assertFalse(p.name, p.timedOut);
+                assertTrue(p.name, p.ok);
+                assertTrue(p.name + " " + p.elapsedMs, p.elapsedMs < 1000);
+            }
+        }
+    }
+
+    @Test
+    public void closedPortFailsFast() throws Exception {
+        PrinterDiagnostics diagnostics = diagnostics();
+        int ipp = printer.ippPort();
+        printer.close();
+        PrinterDiagnostics.Report r = runOnce(diagnostics, "lab", false);
+        PrinterDiagnostics.Probe p = probe(r, "TCP " + ipp);
+        assertFalse(p.ok);
+        assertFalse(p.timedOut);
+        assertNotNull(p.detail);
+        assertFalse(r.isPrinterReachable());
+    }
+
+    @Test
+    public void reachableResultCachedForFiveMinutes() throws Exception {
+        PrinterDiagnostics diagnostics = diagnostics();
+        runOnce(diagnostics, "home", false);
+        assertEquals(2, browses.get());
+
+        clockOffset.addAndGet(4 * 60_000);
+        PrinterDiagnostics.Report hit = runOnce(diagnostics, "home", false);
+        assertTrue(hit.cached);
+        assertTrue("ageMs " + hit.ageMs, hit.ageMs >= 4 * 60_000);
+        assertEquals(2, browses.get());
+
+        // 换了网络不命中；force 忽略缓存
+        runOnce(diagnostics, "office", false);
+        assertEquals(4, browses.get());
+        assertFalse(runOnce(diagnostics, "home", true).cached);
+        assertEquals(6, browses.get());
+
+        clockOffset.addAndGet(5 * 60_000 + 1);
+        assertFalse(runOnce(diagnostics, "home", false).cached);
+        assertEquals(8, browses.get());
+    }
+
+    @Test
+    public void missCachedOnlyBriefly() throws Exception {
+        // 没有 Wi‑Fi 网关、mDNS 也没找到：打印机不可达，结果只缓存 30 秒
+        PrinterDiagnostics diagnostics = new PrinterDiagnostics(browser(), environment(null));
+        PrinterDiagnostics.Report first = runOnce(diagnostics, "cafe", false);
+        assertFalse(first.isPrinterReachable());
+        assertEquals("未连接 Wi‑Fi", probe(first, "TCP " + DirectPrintClient.IPP_PORT).detail);
+
+        clockOffset.addAndGet(20_000);
+        assertTrue(runOnce(diagnostics, "cafe", false).cached);
+        clockOffset.addAndGet(10_001);
+        assertFalse(runOnce(diagnostics, "cafe", false).cached);
+        assertEquals(4, browses.get());
+
+        // mDNS 找到打印机即算可达，按 5 分钟缓存
+        found = Collections.singletonList(new PrinterDiagnostics.Printer("EPSON", "_ipp._tcp", "192.168.223.1", 631));
+        diagnostics.invalidate();
+        assertTrue(runOnce(diagnostics, "cafe", false).isPrinterReachable());
+        clockOffset.addAndGet(60_000);
+        assertTrue(runOnce(diagnostics, "cafe", false).cached);
+    }
+
+    @Test
+    public void concurrentRequestsShareOneRun() throws Exception {
+        browseDelayMs = 300;
+        PrinterDiagnostics diagnostics = diagnostics();
+        CountDownLatch done = new CountDownLatch(3);
+        for (int i = 0; i < 3; i++) {
+            diagnostics.runAsync("shared", false, r -> {
+                reports.add(r);
+                done.countDown();
+            });
+        }
+        assertTrue(done.await(10, TimeUnit.SECONDS));
+        assertEquals(2, browses.get());
+        PrinterDiagnostics.Report a = reports.take();
+        assertTrue(a == reports.take() && a == reports.take());
+    }
+
+    @Test
+    public void overlappingRunsDoNotStarveEachOther() throws Exception {
+        // 两个网络的诊断同时进行：各自的探测都应立即开始，不能排在另一次之后被判超时
+        browseDelayMs = 2500;
+        servicesDelayMs = 2000;
+        PrinterDiagnostics diagnostics = diagnostics();
+        CountDownLatch done = new CountDownLatch(2);
+        diagnostics.runAsync("home", false, r -> {
+            reports.add(r);
+            done.countDown();
+        });
+        diagnostics.runAsync("office", false, r -> {
+            reports.add(r);
+            done.countDown();
+        });
+        assertTrue(done.await(10, TimeUnit.SECONDS));
+        for (int i = 0; i < 2; i++) {
+            PrinterDiagnostics.Report r = reports.take();
+            assertTrue(r.ssid + " 总耗时 " + r.totalMs + " ms", r.totalMs < 3500);
+            for (PrinterDiagnostics.Probe p : r.probes) {
+                assertFalse(r.ssid + " " + p.name, p.timedOut);
+                // mDNS 在替身环境里什么也找不到，只看是否按时完成
+                if (!p.name.startsWith("mDNS")) assertTrue(r.ssid + " " + p.name, p.ok);
+            }
+        }
+        assertEquals(4, browses.get());
+    }
+
+    private PrinterDiagnostics diagnostics() {
+        return new PrinterDiagnostics(browser(), environment(printer.client()));
+    }
+
+    private PrinterDiagnostics.Browser browser() {
+        return (type, timeoutMs) -> {
+            browses.incrementAndGet();
+            Thread.sleep(browseDelayMs);
+            return found;
+        };
+    }
+
+    private PrinterDiagnostics.Environment environment(DirectPrintClient gateway) {
+        return new PrinterDiagnostics.Environment() {
+            @Override
+            public DirectPrintClient gateway() {
+                return gateway;
+            }
+
+            @Override
+            public List<String> printServices() throws Exception {
+                Thread.sleep(servicesDelayMs);
+                return Collections.singletonList("Mopria Print Service");
+            }
+
+            @Override
+            public long now() {
+                return System.nanoTime() / 1_000_000 + clockOffset.get();
+            }
+
+            @Override
+            public void post(Runnable r) {
+                r.run();
+            }
+        };
+    }
+
+    private PrinterDiagnostics.Report runOnce(PrinterDiagnostics d, String ssid, boolean force) throws Exception {
+        d.runAsync(ssid, force, reports::add);
+        PrinterDiagnostics.Report r = reports.poll(15, TimeUnit.SECONDS);
+        assertNotNull("诊断没有回调", r);
+        return r;
+    }
+
+    private static PrinterDiagnostics.Probe probe(PrinterDiagnostics.Report r, String name) {
+        for (PrinterDiagnostics.Probe p : r.probes) {
+            if (p.name.equals(name)) return p;
+        }
+        throw new AssertionError("没有探测项 " + name);
+    }
+}
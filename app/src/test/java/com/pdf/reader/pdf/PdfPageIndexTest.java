@@ -0,0 +1,395 @@
+package com.pdf.reader.pdf;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.zip.DeflaterOutputStream;
+
+/**
+ * 合成上万页的页面树，检查惰性索引的页数、定位与继承属性，以及 /Count 不可信时的回退。
+ * 文档有传统 xref 表与“对象流 + xref 流”两种写法，另有一例经由文件映射打开。
+ */
+public class PdfPageIndexTest {
+
+    private static final int PAGES = 10_000;
+    private static final float[] LETTER = {0, 0, 612, 792};
+    private static final float[] A4 = {0, 0, 595, 842};
+    // 压缩写法中每隔这么多页留一页为普通对象，其余都在对象流里
+    private static final int PLAIN_EVERY = 1000;
+    private static final int OBJECTS_PER_STREAM = 500;
+
+    @Rule
+    public final TemporaryFolder tmp = new TemporaryFolder();
+
+    /** 合成的文档与每一页的对象引用（按阅读顺序）。 */
+    private static final class Synthetic {
+        final byte[] bytes;
+        final PdfFile file;
+        final List<PdfRef> pages;
+
+        Synthetic(byte[] bytes, List<PdfRef> pages) throws IOException {
+            this.bytes = bytes;
+            this.file = PdfFile.open(ByteBuffer.wrap(bytes));
+            this.pages = pages;
+        }
+    }
+
+    /** 页面树的对象去处：传统写法直接交给 PdfWriter，压缩写法先收集起来。 */
+    private interface Sink {
+        int reserve();
+
+        void put(int num, Object obj) throws IOException;
+    }
+
+    @Test
+    public void balancedTreeCountAndLookup() throws IOException {
+        // 100 个中间节点 × 100 页；MediaBox 在根上，Rotate 在奇数号中间节点上
+        Synthetic doc = build(new int[]{100, 100}, 0);
+        PdfPageIndex index = PdfPageIndex.open(doc.file);
+        assertEquals(PAGES, index.getPageCount());
+
+        for (int i : new int[]{0, 1, 99, 100, 101, 4999, 5000, 9998, PAGES - 1}) {
+            PdfPageIndex.PageInfo info = index.getPage(i);
+            assertEquals("第 " + i + " 页", doc.pages.get(i), info.ref);
+            assertEquals(expectedRotate(i, 100), info.rotate);
+            assertArrayEquals(expectedMedia(i), info.mediaBox, 0f);
+            assertArrayEquals(info.mediaBox, info.cropBox, 0f);
+        }
+        // 旋转 90° 的页宽高互换
+        PdfPageIndex.PageInfo rotated = index.getPage(100);
+        assertEquals(90, rotated.rotate);
+        assertEquals(792f, rotated.getWidth(), 0f);
+        assertEquals(612f, rotated.getHeight(), 0f);
+    }
+
+    @Test
+    public void everyPageMatchesFullWalk() throws IOException {
+        // 三层、各级扇出不同，逐页与 PdfFile 的全量遍历对照
+        Synthetic doc = build(new int[]{10, 25, 40}, 0);
+        PdfPageIndex index = PdfPageIndex.open(doc.file);
+        assertEquals(PAGES, index.getPageCount());
+        List<PdfRef> walked = doc.file.getPageRefs();
+        assertEquals(doc.pages, walked);
+        for (int i = PAGES - 1; i >= 0; i--) {
+            assertEquals(walked.get(i), index.getPage(i).ref);
+        }
+    }
+
+    @Test
+    public void flatTree() throws IOException {
+        Synthetic doc = build(new int[]{PAGES}, 0);
+        PdfPageIndex index = PdfPageIndex.open(doc.file);
+        assertEquals(PAGES, index.getPageCount());
+        assertEquals(doc.pages.get(7777), index.getPage(7777).ref);
+        assertEquals(doc.pages.get(PAGES - 1), index.getPage(PAGES - 1).ref);
+    }
+
+    @Test
+    public void wrongRootCountFallsBackToFullWalk() throws IOException {
+        // 根 /Count 多报 5 页：定位末页时发现不符，改用全量遍历的页数
+        Synthetic doc = build(new int[]{100, 100}, 5);
+        assertEquals(PAGES, PdfPageIndex.countPages(doc.file));
+
+        PdfPageIndex index = PdfPageIndex.open(doc.file);
+        assertEquals(PAGES + 5, index.getPageCount());
+        assertEquals(doc.pages.get(PAGES - 1), index.getPage(PAGES - 1).ref);
+        try {
+            index.getPage(PAGES + 2);
+            fail("越界的页应当报错");
+        } catch (IOException expected) {
+            assertEquals(PAGES, index.getPageCount());
+        }
+        // 回退后的继承属性沿 /Parent 取得，结果与按树定位一致
+        assertEquals(expectedRotate(150, 100), index.getPage(150).rotate);
+        assertArrayEquals(expectedMedia(150), index.getPage(150).mediaBox, 0f);
+    }
+
+    @Test
+    public void countPagesOnConsistentTree() throws IOException {
+        assertEquals(PAGES, PdfPageIndex.countPages(build(new int[]{100, 100}, 0).file));
+    }
+
+    @Test
+    public void outOfRange() throws IOException {
+        PdfPageIndex index = PdfPageIndex.open(build(new int[]{100, 100}, 0).file);
+        for (int i : new int[]{-1, PAGES}) {
+            try {
+                index.getPage(i);
+                fail("第 " + i + " 页应当越界");
+            } catch (IOException expected) {
+            }
+        }
+    }
+
+    @Test
+    public void pagesInObjectStreamsBehindXrefStream() throws IOException {
+        Synthetic doc = buildCompressed(new int[]{100, 100});
+        // 经 xref 流解析，而不是交叉引用损坏后的全文扫描（重建的 trailer 没有 /Type）
+        assertEquals("XRef", doc.file.getTrailer().getName("Type"));
+        PdfPageIndex index = PdfPageIndex.open(doc.file);
+        assertEquals(PAGES, index.getPageCount());
+        assertEquals(doc.pages, doc.file.getPageRefs());
+
+        for (int i : new int[]{0, 1, 100, 999, 1000, 1001, 5000, 9999}) {
+            PdfPageIndex.PageInfo info = index.getPage(i);
+            PdfRef ref = doc.pages.get(i);
+            assertEquals("第 " + i + " 页", ref, info.ref);
+            assertEquals(expectedRotate(i, 100), info.rotate);
+            assertArrayEquals(expectedMedia(i), info.mediaBox, 0f);
+            assertEquals(doc.file.getObjectOffset(ref.num), info.offset);
+            if (i % PLAIN_EVERY == 0) {
+                // 普通对象的偏移指向 "N 0 obj"
+                String at = new String(doc.bytes, (int) info.offset, 16, StandardCharsets.ISO_8859_1);
+                assertTrue(at, at.startsWith(ref.num + " 0 obj"));
+            } else {
+                assertEquals(-1, info.offset);
+            }
+        }
+        assertEquals(PAGES, PdfPageIndex.countPages(doc.file));
+    }
+
+    @Test
+    public void mappedFile() throws IOException {
+        Synthetic doc = buildCompressed(new int[]{10, 25, 40});
+        File f = tmp.newFile("big.pdf");
+        Files.write(f.toPath(), doc.bytes);
+        PdfFile mapped;
+        try (FileChannel channel = FileChannel.open(f.toPath(), StandardOpenOption.READ)) {
+            mapped = PdfFile.open(channel);
+        }
+        assertEquals("XRef", mapped.getTrailer().getName("Type"));
+        // 通道关闭后映射仍然有效
+        PdfPageIndex index = PdfPageIndex.open(mapped);
+        assertEquals(PAGES, index.getPageCount());
+        for (int i = 0; i < PAGES; i += 333) {
+            assertEquals(doc.pages.get(i), index.getPage(i).ref);
+            assertArrayEquals(expectedMedia(i), index.getPage(i).mediaBox, 0f);
+        }
+        assertEquals(doc.pages.get(PAGES - 1), index.getPage(PAGES - 1).ref);
+    }
+
+    // 每第 7 页自带 A4 MediaBox，其余继承根上的 Letter
+    private static float[] expectedMedia(int page) {
+        return page % 7 == 0 ? A4 : LETTER;
+    }
+
+    // 只有第二层（根的子节点）带 Rotate，奇数号节点为 90°
+    private static int expectedRotate(int page, int pagesPerTopKid) {
+        return (page / pagesPerTopKid) % 2 == 1 ? 90 : 0;
+    }
+
+    /**
+     * 按 fanout 逐级展开的页面树，叶子总数为各级扇出之积（须为 {@link #PAGES}）。
+     * rootCountError 加到根的 /Count 上，用来制造计数不符。
+     */
+    private static Synthetic build(int[] fanout, int rootCountError) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        PdfWriter w = new PdfWriter(bytes);
+        w.writeHeader("1.7");
+        PdfDict trailer = new PdfDict();
+        List<PdfRef> pages = tree(new Sink() {
+            @Override
+            public int reserve() {
+                return w.reserve();
+            }
+
+            @Override
+            public void put(int num, Object obj) throws IOException {
+                w.writeObject(num, obj);
+            }
+        }, fanout, rootCountError, trailer);
+        w.finish(trailer);
+        return new Synthetic(bytes.toByteArray(), pages);
+    }
+
+    /**
+     * 同样的页面树，页面与中间节点放进 FlateDecode 的 /ObjStm，交叉引用为 /XRef 流（PDF 1.5 起的写法）。
+     * 目录与每第 {@link #PLAIN_EVERY} 页仍为普通对象。
+     */
+    private static Synthetic buildCompressed(int[] fanout) throws IOException {
+        Map<Integer, Object> objects = new TreeMap<>();
+        int[] next = {0};
+        PdfDict trailer = new PdfDict();
+        List<PdfRef> pages = tree(new Sink() {
+            @Override
+            public int reserve() {
+                return ++next[0];
+            }
+
+            @Override
+            public void put(int num, Object obj) {
+                objects.put(num, obj);
+            }
+        }, fanout, 0, trailer);
+
+        List<Integer> plain = new ArrayList<>();
+        plain.add(((PdfRef) trailer.get("Root")).num);
+        for (int i = 0; i < PAGES; i += PLAIN_EVERY) plain.add(pages.get(i).num);
+        List<Integer> packed = new ArrayList<>(objects.keySet());
+        packed.removeAll(plain);
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        out.write("%PDF-1.7\n".getBytes(StandardCharsets.ISO_8859_1));
+        // 每个对象的 xref 行：{类型, 偏移或对象流号, 流内序号}
+        Map<Integer, long[]> xref = new TreeMap<>();
+        for (int num : plain) {
+            xref.put(num, new long[]{1, out.size(), 0});
+            writeObject(out, num, objects.get(num));
+        }
+        for (int from = 0; from < packed.size(); from += OBJECTS_PER_STREAM) {
+            List<Integer> group = packed.subList(from, Math.min(packed.size(), from + OBJECTS_PER_STREAM));
+            int stm = ++next[0];
+            StringBuilder header = new StringBuilder();
+            ByteArrayOutputStream body = new ByteArrayOutputStream();
+            for (int k = 0; k < group.size(); k++) {
+                int num = group.get(k);
+                header.append(num).append(' ').append(body.size()).append(' ');
+                body.write(serialize(objects.get(num)));
+                body.write('\n');
+                xref.put(num, new long[]{2, stm, k});
+            }
+            byte[] head = header.toString().getBytes(StandardCharsets.ISO_8859_1);
+            ByteArrayOutputStream raw = new ByteArrayOutputStream();
+            raw.write(head);
+            raw.write(body.toByteArray());
+            PdfDict dict = new PdfDict();
+            dict.put("Type", new PdfName("ObjStm"));
+            dict.put("N", (long) group.size());
+            dict.put("First", (long) head.length);
+            dict.put("Filter", new PdfName("FlateDecode"));
+            xref.put(stm, new long[]{1, out.size(), 0});
+            writeStream(out, stm, dict, deflate(raw.toByteArray()));
+        }
+
+        int xrefNum = ++next[0];
+        long xrefOffset = out.size();
+        xref.put(xrefNum, new long[]{1, xrefOffset, 0});
+        int size = xrefNum + 1;
+        ByteArrayOutputStream rows = new ByteArrayOutputStream();
+        for (int num = 0; num < size; num++) {
+            long[] e = xref.getOrDefault(num, new long[]{0, 0, num == 0 ? 65535 : 0});
+            rows.write((int) e[0]);
+            for (int shift = 24; shift >= 0; shift -= 8) rows.write((int) (e[1] >>> shift));
+            rows.write((int) (e[2] >>> 8));
+            rows.write((int) e[2]);
+        }
+        PdfDict dict = new PdfDict();
+        dict.put("Type", new PdfName("XRef"));
+        dict.put("Size", (long) size);
+        dict.put("W", Arrays.asList((Object) 1L, 4L, 2L));
+        dict.put("Root", trailer.get("Root"));
+        writeStream(out, xrefNum, dict, rows.toByteArray());
+        out.write(("startxref\n" + xrefOffset + "\n%%EOF\n").getBytes(StandardCharsets.ISO_8859_1));
+        return new Synthetic(out.toByteArray(), pages);
+    }
+
+    /** 生成目录与页面树，trailer 中填入 /Root，返回各页的引用。 */
+    private static List<PdfRef> tree(Sink sink, int[] fanout, int rootCountError, PdfDict trailer) throws IOException {
+        int catalog = sink.reserve();
+        int root = sink.reserve();
+        List<PdfRef> pages = new ArrayList<>();
+        int[] counter = {0};
+
+        PdfDict rootDict = node(sink, fanout, 0, root, -1, pages, counter);
+        rootDict.put("MediaBox", box(LETTER));
+        rootDict.put("Count", (long) PAGES + rootCountError);
+        sink.put(root, rootDict);
+        assertEquals(PAGES, pages.size());
+
+        PdfDict cat = new PdfDict();
+        cat.put("Type", new PdfName("Catalog"));
+        cat.put("Pages", new PdfRef(root, 0));
+        sink.put(catalog, cat);
+        trailer.put("Root", new PdfRef(catalog, 0));
+        return pages;
+    }
+
+    // 写出 num 号节点的全部子孙，返回节点自身的字典（由调用方写出，根需要补属性）
+    private static PdfDict node(Sink w, int[] fanout, int depth, int num, int parent,
+                                List<PdfRef> pages, int[] counter) throws IOException {
+        List<Object> kids = new ArrayList<>();
+        int count = 0;
+        for (int k = 0; k < fanout[depth]; k++) {
+            int kid = w.reserve();
+            kids.add(new PdfRef(kid, 0));
+            if (depth == fanout.length - 1) {
+                PdfDict page = new PdfDict();
+                page.put("Type", new PdfName("Page"));
+                page.put("Parent", new PdfRef(num, 0));
+                if (counter[0] % 7 == 0) page.put("MediaBox", box(A4));
+                counter[0]++;
+                pages.add(new PdfRef(kid, 0));
+                w.put(kid, page);
+                count++;
+            } else {
+                PdfDict child = node(w, fanout, depth + 1, kid, num, pages, counter);
+                if (depth == 0 && k % 2 == 1) child.put("Rotate", 90L);
+                count += ((Number) child.get("Count")).intValue();
+                w.put(kid, child);
+            }
+        }
+        PdfDict dict = new PdfDict();
+        dict.put("Type", new PdfName("Pages"));
+        dict.put("Kids", kids);
+        dict.put("Count", (long) count);
+        if (parent > 0) dict.put("Parent", new PdfRef(parent, 0));
+        return dict;
+    }
+
+    // 借 PdfWriter 序列化单个对象，去掉外层的 "1 0 obj" 与 "endobj"
+    private static byte[] serialize(Object obj) throws IOException {
+        ByteArrayOutputStream buf = new ByteArrayOutputStream();
+        PdfWriter w = new PdfWriter(buf);
+        w.writeObject(w.reserve(), obj);
+        w.flush();
+        byte[] b = buf.toByteArray();
+        int head = "1 0 obj\n".length();
+        return Arrays.copyOfRange(b, head, b.length - "\nendobj\n".length());
+    }
+
+    private static void writeObject(ByteArrayOutputStream out, int num, Object obj) throws IOException {
+        out.write((num + " 0 obj\n").getBytes(StandardCharsets.ISO_8859_1));
+        out.write(serialize(obj));
+        out.write("\nendobj\n".getBytes(StandardCharsets.ISO_8859_1));
+    }
+
+    private static void writeStream(ByteArrayOutputStream out, int num, PdfDict dict, byte[] data) throws IOException {
+        dict.put("Length", (long) data.length);
+        out.write((num + " 0 obj\n").getBytes(StandardCharsets.ISO_8859_1));
+        out.write(serialize(dict));
+        out.write("\nstream\n".getBytes(StandardCharsets.ISO_8859_1));
+        out.write(data);
+        out.write("\nendstream\nendobj\n".getBytes(StandardCharsets.ISO_8859_1));
+    }
+
+    private static byte[] deflate(byte[] data) throws IOException {
+        ByteArrayOutputStream buf = new ByteArrayOutputStream();
+        try (DeflaterOutputStream z = new DeflaterOutputStream(buf)) {
+            z.write(data);
+        }
+        return buf.toByteArray();
+    }
+
+    private static List<Object> box(float[] b) {
+        return Arrays.asList((Object) (long) b[0], (long) b[1], (long) b[2], (long) b[3]);
+    }
+}
@@ -0,0 +1,112 @@
+package com.pdf.reader.print;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.function.LongUnaryOperator;
+
+/** 输出路径的选择：纯算术，链路以“RTT + 字节数 / 吞吐量”的估计代替实际测速。 */
+public class SpoolPlannerTest {
+
+    // A4 可打印区域（point）
+    private static final double W = 595;
+    private static final double H = 842;
+    private static final long MB = 1_000_000;
+
+    @Before
+    public void setUp() {
+        SpoolPlanner.resetEstimates();
+    }
+
+    @After
+    public void tearDown() {
+        SpoolPlanner.resetEstimates();
+    }
+
+    @Test
+    public void fastLinkKeepsVector() {
+        // 10 MB/s：20 MB 的矢量子集 2 秒，栅格受渲染所限要慢得多
+        SpoolPlanner.Choice c = SpoolPlanner.choose(link(5, 10 * MB), 20 * MB, 100, W, H, 300, 4);
+        assertEquals(SpoolPlanner.Path.VECTOR, c.path);
+        assertEquals(300, c.dpi);
+        assertEquals(2005, c.vectorMs);
+        assertTrue(c.rasterMs > c.vectorMs);
+    }
+
+    @Test
+    public void slowLinkWithHugeScanReducesDpi() {
+        // 100 KB/s 上传 200 MB 的扫描件要半个多小时；栅格体积小得多，降 DPI 又省下一大截
+        SpoolPlanner.Choice c = SpoolPlanner.choose(link(20, 100_000), 200 * MB, 100, W, H, 300, 4);
+        assertEquals(SpoolPlanner.Path.RASTER_REDUCED_DPI, c.path);
+        assertEquals(225, c.dpi);
+        assertTrue(c.rasterMs < c.vectorMs);
+        assertTrue(c.reducedMs < c.rasterMs * 0.7);
+    }
+
+    @Test
+    public void rasterMustWinByMarginAndAbsoluteSaving() {
+        // 1 MB/s、10 页：栅格约 5.8 秒
+        LongUnaryOperator link = link(0, MB);
+        SpoolPlanner.Choice close = SpoolPlanner.choose(link, 6_500_000, 10, W, H, 300, 4);
+        assertTrue("栅格确实更快 " + close, close.rasterMs < close.vectorMs);
+        // 只快 10% 左右，不够 20% 的门槛
+        assertEquals(SpoolPlanner.Path.VECTOR, close.path);
+
+        SpoolPlanner.Choice clear = SpoolPlanner.choose(link, 12 * MB, 10, W, H, 300, 4);
+        assertEquals(SpoolPlanner.Path.RASTER, clear.path);
+        assertEquals(300, clear.dpi);
+
+        // 100 KB/s 上的单页：比例够了但只省两秒多，小任务不值得牺牲清晰度
+        SpoolPlanner.Choice small = SpoolPlanner.choose(link(0, 100_000), 800_000, 1, W, H, 300, 4);
+        assertTrue(small.rasterMs < small.vectorMs * 0.8);
+        assertEquals(SpoolPlanner.Path.VECTOR, small.path);
+    }
+
+    @Test
+    public void noVectorFallsBackToRaster() {
+        SpoolPlanner.Choice c = SpoolPlanner.choose(link(5, 10 * MB), -1, 100, W, H, 300, 4);
+        assertEquals(-1, c.vectorMs);
+        // 渲染是瓶颈，降 DPI 省下的不到 30 秒
+        assertEquals(SpoolPlanner.Path.RASTER, c.path);
+        assertTrue(c.reducedMs < c.rasterMs);
+    }
+
+    @Test
+    public void rasterEstimateMatchesPipelineModel() {
+        // 每页 300 DPI 约 870 万像素；默认 0.5 位/像素、40 ns/像素
+        long pixels = (long) (W / 72 * 300 * (H / 72 * 300));
+        long bytes = (long) (100 * pixels * 0.5 / 8);
+        double pageMs = pixels * 40 / 1e6;
+        long transferMs = bytes * 1000 / (500 * 1000);
+        double renderMs = 100 * pageMs / 4;
+        SpoolPlanner.Choice c = SpoolPlanner.choose(link(0, 500 * 1000), -1, 100, W, H, 300, 4);
+        assertEquals(Math.round(Math.max(renderMs, transferMs) + pageMs), c.rasterMs, 1);
+    }
+
+    @Test
+    public void minimumDpiIsNotReducedFurther() {
+        SpoolPlanner.Choice c = SpoolPlanner.choose(link(20, 10_000), -1, 100, W, H, 150, 4);
+        assertEquals(-1, c.reducedMs);
+        assertEquals(SpoolPlanner.Path.RASTER, c.path);
+        assertEquals(150, c.dpi);
+    }
+
+    @Test
+    public void recordedRasterJobsUpdateEstimates() {
+        LongUnaryOperator link = link(0, MB);
+        long before = SpoolPlanner.choose(link, -1, 50, W, H, 300, 4).rasterMs;
+        // 照片页：每像素 4 位，传输时间随之变长
+        long pixels = 10_000_000;
+        for (int i = 0; i < 10; i++) SpoolPlanner.recordRaster(pixels / 2, pixels, pixels, pixels * 40);
+        long after = SpoolPlanner.choose(link, -1, 50, W, H, 300, 4).rasterMs;
+        assertTrue(before + " → " + after, after > before * 5);
+    }
+
+    private static LongUnaryOperator link(double rttMs, long bytesPerSecond) {
+        return bytes -> Math.round(rttMs + bytes * 1000.0 / bytesPerSecond);
+    }
+}